@@ -0,0 +1,165 @@
+package com.zhouyutong.zorm.benchmark;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.zhouyutong.zorm.benchmark.entity.Entity10;
+import com.zhouyutong.zorm.benchmark.entity.Entity200;
+import com.zhouyutong.zorm.benchmark.entity.Entity50;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.entity.EntityMetadata;
+import com.zhouyutong.zorm.entity.IdEntity;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.CriteriaOperators;
+import org.h2.tools.SimpleResultSet;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试共用的entity、查询条件和结果集
+ * 所有值都是确定的,每次运行的输入相同
+ */
+public final class BenchmarkFixtures {
+    //2017-06-08 00:00:00 UTC
+    private static final long BASE_TIME = 1496880000000L;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 根据字段数得到entity class
+     *
+     * @param columns - 10,50,200其中之一
+     */
+    public static Class<? extends IdEntity> entityClass(int columns) {
+        switch (columns) {
+            case 10:
+                return Entity10.class;
+            case 50:
+                return Entity50.class;
+            case 200:
+                return Entity200.class;
+            default:
+                throw new IllegalArgumentException("columns must be 10, 50 or 200");
+        }
+    }
+
+    /**
+     * 创建所有属性都有值的entity
+     */
+    public static IdEntity newEntity(Class<? extends IdEntity> entityClass, long seed) {
+        EntityMetadata entityMetadata = EntityMetadata.of(entityClass);
+        IdEntity entity = (IdEntity) entityMetadata.newInstance();
+        List<EntityMetadata.Property> properties = entityMetadata.getProperties();
+        for (int i = MixedConstant.INT_0; i < properties.size(); i++) {
+            EntityMetadata.Property property = properties.get(i);
+            property.set(entity, value(property.getType(), seed + i));
+        }
+        return entity;
+    }
+
+    /**
+     * 属性名到值的映射,顺序与属性声明顺序一致
+     */
+    public static Map<String, Object> values(Class<? extends IdEntity> entityClass, long seed) {
+        Map<String, Object> values = Maps.newLinkedHashMap();
+        List<EntityMetadata.Property> properties = EntityMetadata.of(entityClass).getProperties();
+        for (int i = MixedConstant.INT_0; i < properties.size(); i++) {
+            EntityMetadata.Property property = properties.get(i);
+            values.put(property.getName(), value(property.getType(), seed + i));
+        }
+        return values;
+    }
+
+    /**
+     * 每个属性一个条件,操作符依次为EQ,GT,LTE,IN,NE
+     */
+    public static Criteria criteria(Class<? extends IdEntity> entityClass) {
+        Criteria criteria = null;
+        int i = MixedConstant.INT_0;
+        for (Map.Entry<String, Object> entry : values(entityClass, MixedConstant.LONG_0).entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (criteria == null) {
+                criteria = Criteria.where(key, CriteriaOperators.EQ, value);
+            } else if (i % 5 == 1) {
+                criteria.gt(key, value);
+            } else if (i % 5 == 2) {
+                criteria.lte(key, value);
+            } else if (i % 5 == 3) {
+                criteria.in(key, Lists.newArrayList(value, value));
+            } else if (i % 5 == 4) {
+                criteria.ne(key, value);
+            } else {
+                criteria.eq(key, value);
+            }
+            i++;
+        }
+        return criteria;
+    }
+
+    /**
+     * 基于内存数组的ResultSet(h2的SimpleResultSet),不连接数据库,getXxx只做简单的类型转换
+     * 可以重复读取,每次读取前调用beforeFirst,Setup中创建一次,测量时不再分配结果集
+     *
+     * @param columnNames - 列名
+     * @param rows        - 每行的值,与columnNames顺序一致,不能有null值,Date值转换为Timestamp
+     */
+    public static SimpleResultSet resultSet(List<String> columnNames, List<Object[]> rows) {
+        SimpleResultSet resultSet = new SimpleResultSet();
+        resultSet.setAutoClose(false);
+        Object[] firstRow = rows.get(MixedConstant.INT_0);
+        for (int i = MixedConstant.INT_0; i < columnNames.size(); i++) {
+            resultSet.addColumn(columnNames.get(i), sqlType(firstRow[i]), MixedConstant.INT_0, MixedConstant.INT_0);
+        }
+        for (Object[] row : rows) {
+            Object[] values = new Object[row.length];
+            for (int i = MixedConstant.INT_0; i < row.length; i++) {
+                values[i] = row[i] instanceof Date ? new Timestamp(((Date) row[i]).getTime()) : row[i];
+            }
+            resultSet.addRow(values);
+        }
+        return resultSet;
+    }
+
+    private static int sqlType(Object value) {
+        if (value instanceof String) {
+            return Types.VARCHAR;
+        } else if (value instanceof Long) {
+            return Types.BIGINT;
+        } else if (value instanceof Integer) {
+            return Types.INTEGER;
+        } else if (value instanceof Double) {
+            return Types.DOUBLE;
+        } else if (value instanceof BigDecimal) {
+            return Types.DECIMAL;
+        } else if (value instanceof Date) {
+            return Types.TIMESTAMP;
+        }
+        throw new IllegalArgumentException("unsupported value " + value);
+    }
+
+    /**
+     * 指定类型的确定值
+     */
+    public static Object value(Class<?> type, long seed) {
+        if (type == String.class) {
+            return "value" + seed;
+        } else if (type == Long.class) {
+            return seed + 1L;
+        } else if (type == Integer.class) {
+            return (int) seed + 1;
+        } else if (type == Double.class) {
+            return seed + 0.5D;
+        } else if (type == BigDecimal.class) {
+            return BigDecimal.valueOf(seed * 100L + 25L, 2);
+        } else if (type == Date.class) {
+            return new Date(BASE_TIME + seed * 1000L);
+        }
+        throw new IllegalArgumentException("unsupported type " + type);
+    }
+}
@@ -0,0 +1,63 @@
+package com.zhouyutong.zorm.benchmark;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.TypeCodec;
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.constant.MixedConstant;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不连接cassandra创建driver的Row,值按driver的默认codec序列化,读取时走与线上相同的反序列化
+ * ColumnDefinitions和ArrayBackedRow的构造方法在driver包内可见,通过反射调用,只在Setup中执行一次,不影响测量
+ */
+public final class BenchmarkRows {
+    private static final String DRIVER_PACKAGE = "com.datastax.driver.core.";
+
+    private BenchmarkRows() {
+    }
+
+    /**
+     * @param keyspace  - 键空间
+     * @param tableName - 表名
+     * @param values    - 列名到值的映射,不能有null值
+     */
+    public static Row row(String keyspace, String tableName, Map<String, Object> values) {
+        ProtocolVersion protocolVersion = ProtocolVersion.NEWEST_SUPPORTED;
+        CodecRegistry codecRegistry = CodecRegistry.DEFAULT_INSTANCE;
+        try {
+            Constructor<ColumnDefinitions.Definition> definitionConstructor = ColumnDefinitions.Definition.class
+                    .getDeclaredConstructor(String.class, String.class, String.class, DataType.class);
+            definitionConstructor.setAccessible(true);
+            Object definitions = Array.newInstance(ColumnDefinitions.Definition.class, values.size());
+            List<ByteBuffer> data = Lists.newArrayListWithCapacity(values.size());
+            int i = MixedConstant.INT_0;
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                TypeCodec<Object> codec = codecRegistry.codecFor(entry.getValue());
+                Array.set(definitions, i++, definitionConstructor.newInstance(keyspace, tableName, entry.getKey(), codec.getCqlType()));
+                data.add(codec.serialize(entry.getValue(), protocolVersion));
+            }
+
+            Constructor<ColumnDefinitions> columnDefinitionsConstructor = ColumnDefinitions.class
+                    .getDeclaredConstructor(definitions.getClass(), CodecRegistry.class);
+            columnDefinitionsConstructor.setAccessible(true);
+            ColumnDefinitions columnDefinitions = columnDefinitionsConstructor.newInstance(definitions, codecRegistry);
+
+            Method fromData = Class.forName(DRIVER_PACKAGE + "ArrayBackedRow").getDeclaredMethod("fromData",
+                    ColumnDefinitions.class, Class.forName(DRIVER_PACKAGE + "Token$Factory"), ProtocolVersion.class, List.class);
+            fromData.setAccessible(true);
+            return Row.class.cast(fromData.invoke(null, columnDefinitions, null, protocolVersion, data));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("无法创建cassandra driver的Row,driver版本不兼容", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.zhouyutong.zorm.benchmark;
+
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.dao.DaoHelper;
+import com.zhouyutong.zorm.entity.IdEntity;
+import com.zhouyutong.zorm.query.Update;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DaoHelper.entity2Update,update(entity)和updateByIds的公共路径
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoHelperBenchmark {
+    @Param({"10", "50", "200"})
+    private int columns;
+
+    private IdEntity entity;
+    private List<String> firstProperty;
+
+    @Setup
+    public void setup() {
+        this.entity = BenchmarkFixtures.newEntity(BenchmarkFixtures.entityClass(columns), MixedConstant.LONG_0);
+        this.firstProperty = Collections.singletonList("field1");
+    }
+
+    /**
+     * 更新所有属性
+     */
+    @Benchmark
+    public Update entity2UpdateAll() {
+        return DaoHelper.entity2Update(entity, null);
+    }
+
+    /**
+     * 只更新一个属性,仍然需要遍历所有属性
+     */
+    @Benchmark
+    public Update entity2UpdateOne() {
+        return DaoHelper.entity2Update(entity, firstProperty);
+    }
+}
@@ -0,0 +1,44 @@
+package com.zhouyutong.zorm.benchmark;
+
+import com.zhouyutong.zorm.dao.elasticsearch.ElasticSearchHelper;
+import com.zhouyutong.zorm.query.Criteria;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ElasticSearchHelper.criteria2QueryBuilder,每个字段一个条件
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElasticSearchHelperBenchmark {
+    @Param({"10", "50", "200"})
+    private int columns;
+
+    private Criteria criteria;
+
+    @Setup
+    public void setup() {
+        this.criteria = BenchmarkFixtures.criteria(BenchmarkFixtures.entityClass(columns));
+    }
+
+    @Benchmark
+    public QueryBuilder criteria2QueryBuilder() {
+        return ElasticSearchHelper.criteria2QueryBuilder(criteria);
+    }
+}
@@ -0,0 +1,54 @@
+package com.zhouyutong.zorm.benchmark.entity;
+
+import com.zhouyutong.zorm.annotation.PK;
+import com.zhouyutong.zorm.dao.cassandra.annotation.CassandraTable;
+import com.zhouyutong.zorm.dao.elasticsearch.annotation.Document;
+import com.zhouyutong.zorm.dao.elasticsearch.annotation.Field;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Column;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Table;
+import com.zhouyutong.zorm.entity.IdEntity;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 10个字段的基准测试entity,除主键外字段类型依次为String,Long,Integer,Double,BigDecimal,Date
+ */
+@Data
+@Table("t_bench_10")
+@Document(indexName = "bench_10", typeName = "bench")
+@CassandraTable(keyspace = "bench", tableName = "t_bench_10")
+public class Entity10 implements IdEntity {
+    @PK
+    @Column
+    @Field
+    private Long id;
+    @Column
+    @Field
+    private String field1;
+    @Column
+    @Field
+    private Long field2;
+    @Column
+    @Field
+    private Integer field3;
+    @Column
+    @Field
+    private Double field4;
+    @Column
+    @Field
+    private BigDecimal field5;
+    @Column
+    @Field
+    private Date field6;
+    @Column
+    @Field
+    private String field7;
+    @Column
+    @Field
+    private Long field8;
+    @Column
+    @Field
+    private Integer field9;
+}
@@ -0,0 +1,624 @@
+package com.zhouyutong.zorm.benchmark.entity;
+
+import com.zhouyutong.zorm.annotation.PK;
+import com.zhouyutong.zorm.dao.cassandra.annotation.CassandraTable;
+import com.zhouyutong.zorm.dao.elasticsearch.annotation.Document;
+import com.zhouyutong.zorm.dao.elasticsearch.annotation.Field;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Column;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Table;
+import com.zhouyutong.zorm.entity.IdEntity;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 200个字段的基准测试entity,除主键外字段类型依次为String,Long,Integer,Double,BigDecimal,Date
+ */
+@Data
+@Table("t_bench_200")
+@Document(indexName = "bench_200", typeName = "bench")
+@CassandraTable(keyspace = "bench", tableName = "t_bench_200")
+public class Entity200 implements IdEntity {
+    @PK
+    @Column
+    @Field
+    private Long id;
+    @Column
+    @Field
+    private String field1;
+    @Column
+    @Field
+    private Long field2;
+    @Column
+    @Field
+    private Integer field3;
+    @Column
+    @Field
+    private Double field4;
+    @Column
+    @Field
+    private BigDecimal field5;
+    @Column
+    @Field
+    private Date field6;
+    @Column
+    @Field
+    private String field7;
+    @Column
+    @Field
+    private Long field8;
+    @Column
+    @Field
+    private Integer field9;
+    @Column
+    @Field
+    private Double field10;
+    @Column
+    @Field
+    private BigDecimal field11;
+    @Column
+    @Field
+    private Date field12;
+    @Column
+    @Field
+    private String field13;
+    @Column
+    @Field
+    private Long field14;
+    @Column
+    @Field
+    private Integer field15;
+    @Column
+    @Field
+    private Double field16;
+    @Column
+    @Field
+    private BigDecimal field17;
+    @Column
+    @Field
+    private Date field18;
+    @Column
+    @Field
+    private String field19;
+    @Column
+    @Field
+    private Long field20;
+    @Column
+    @Field
+    private Integer field21;
+    @Column
+    @Field
+    private Double field22;
+    @Column
+    @Field
+    private BigDecimal field23;
+    @Column
+    @Field
+    private Date field24;
+    @Column
+    @Field
+    private String field25;
+    @Column
+    @Field
+    private Long field26;
+    @Column
+    @Field
+    private Integer field27;
+    @Column
+    @Field
+    private Double field28;
+    @Column
+    @Field
+    private BigDecimal field29;
+    @Column
+    @Field
+    private Date field30;
+    @Column
+    @Field
+    private String field31;
+    @Column
+    @Field
+    private Long field32;
+    @Column
+    @Field
+    private Integer field33;
+    @Column
+    @Field
+    private Double field34;
+    @Column
+    @Field
+    private BigDecimal field35;
+    @Column
+    @Field
+    private Date field36;
+    @Column
+    @Field
+    private String field37;
+    @Column
+    @Field
+    private Long field38;
+    @Column
+    @Field
+    private Integer field39;
+    @Column
+    @Field
+    private Double field40;
+    @Column
+    @Field
+    private BigDecimal field41;
+    @Column
+    @Field
+    private Date field42;
+    @Column
+    @Field
+    private String field43;
+    @Column
+    @Field
+    private Long field44;
+    @Column
+    @Field
+    private Integer field45;
+    @Column
+    @Field
+    private Double field46;
+    @Column
+    @Field
+    private BigDecimal field47;
+    @Column
+    @Field
+    private Date field48;
+    @Column
+    @Field
+    private String field49;
+    @Column
+    @Field
+    private Long field50;
+    @Column
+    @Field
+    private Integer field51;
+    @Column
+    @Field
+    private Double field52;
+    @Column
+    @Field
+    private BigDecimal field53;
+    @Column
+    @Field
+    private Date field54;
+    @Column
+    @Field
+    private String field55;
+    @Column
+    @Field
+    private Long field56;
+    @Column
+    @Field
+    private Integer field57;
+    @Column
+    @Field
+    private Double field58;
+    @Column
+    @Field
+    private BigDecimal field59;
+    @Column
+    @Field
+    private Date field60;
+    @Column
+    @Field
+    private String field61;
+    @Column
+    @Field
+    private Long field62;
+    @Column
+    @Field
+    private Integer field63;
+    @Column
+    @Field
+    private Double field64;
+    @Column
+    @Field
+    private BigDecimal field65;
+    @Column
+    @Field
+    private Date field66;
+    @Column
+    @Field
+    private String field67;
+    @Column
+    @Field
+    private Long field68;
+    @Column
+    @Field
+    private Integer field69;
+    @Column
+    @Field
+    private Double field70;
+    @Column
+    @Field
+    private BigDecimal field71;
+    @Column
+    @Field
+    private Date field72;
+    @Column
+    @Field
+    private String field73;
+    @Column
+    @Field
+    private Long field74;
+    @Column
+    @Field
+    private Integer field75;
+    @Column
+    @Field
+    private Double field76;
+    @Column
+    @Field
+    private BigDecimal field77;
+    @Column
+    @Field
+    private Date field78;
+    @Column
+    @Field
+    private String field79;
+    @Column
+    @Field
+    private Long field80;
+    @Column
+    @Field
+    private Integer field81;
+    @Column
+    @Field
+    private Double field82;
+    @Column
+    @Field
+    private BigDecimal field83;
+    @Column
+    @Field
+    private Date field84;
+    @Column
+    @Field
+    private String field85;
+    @Column
+    @Field
+    private Long field86;
+    @Column
+    @Field
+    private Integer field87;
+    @Column
+    @Field
+    private Double field88;
+    @Column
+    @Field
+    private BigDecimal field89;
+    @Column
+    @Field
+    private Date field90;
+    @Column
+    @Field
+    private String field91;
+    @Column
+    @Field
+    private Long field92;
+    @Column
+    @Field
+    private Integer field93;
+    @Column
+    @Field
+    private Double field94;
+    @Column
+    @Field
+    private BigDecimal field95;
+    @Column
+    @Field
+    private Date field96;
+    @Column
+    @Field
+    private String field97;
+    @Column
+    @Field
+    private Long field98;
+    @Column
+    @Field
+    private Integer field99;
+    @Column
+    @Field
+    private Double field100;
+    @Column
+    @Field
+    private BigDecimal field101;
+    @Column
+    @Field
+    private Date field102;
+    @Column
+    @Field
+    private String field103;
+    @Column
+    @Field
+    private Long field104;
+    @Column
+    @Field
+    private Integer field105;
+    @Column
+    @Field
+    private Double field106;
+    @Column
+    @Field
+    private BigDecimal field107;
+    @Column
+    @Field
+    private Date field108;
+    @Column
+    @Field
+    private String field109;
+    @Column
+    @Field
+    private Long field110;
+    @Column
+    @Field
+    private Integer field111;
+    @Column
+    @Field
+    private Double field112;
+    @Column
+    @Field
+    private BigDecimal field113;
+    @Column
+    @Field
+    private Date field114;
+    @Column
+    @Field
+    private String field115;
+    @Column
+    @Field
+    private Long field116;
+    @Column
+    @Field
+    private Integer field117;
+    @Column
+    @Field
+    private Double field118;
+    @Column
+    @Field
+    private BigDecimal field119;
+    @Column
+    @Field
+    private Date field120;
+    @Column
+    @Field
+    private String field121;
+    @Column
+    @Field
+    private Long field122;
+    @Column
+    @Field
+    private Integer field123;
+    @Column
+    @Field
+    private Double field124;
+    @Column
+    @Field
+    private BigDecimal field125;
+    @Column
+    @Field
+    private Date field126;
+    @Column
+    @Field
+    private String field127;
+    @Column
+    @Field
+    private Long field128;
+    @Column
+    @Field
+    private Integer field129;
+    @Column
+    @Field
+    private Double field130;
+    @Column
+    @Field
+    private BigDecimal field131;
+    @Column
+    @Field
+    private Date field132;
+    @Column
+    @Field
+    private String field133;
+    @Column
+    @Field
+    private Long field134;
+    @Column
+    @Field
+    private Integer field135;
+    @Column
+    @Field
+    private Double field136;
+    @Column
+    @Field
+    private BigDecimal field137;
+    @Column
+    @Field
+    private Date field138;
+    @Column
+    @Field
+    private String field139;
+    @Column
+    @Field
+    private Long field140;
+    @Column
+    @Field
+    private Integer field141;
+    @Column
+    @Field
+    private Double field142;
+    @Column
+    @Field
+    private BigDecimal field143;
+    @Column
+    @Field
+    private Date field144;
+    @Column
+    @Field
+    private String field145;
+    @Column
+    @Field
+    private Long field146;
+    @Column
+    @Field
+    private Integer field147;
+    @Column
+    @Field
+    private Double field148;
+    @Column
+    @Field
+    private BigDecimal field149;
+    @Column
+    @Field
+    private Date field150;
+    @Column
+    @Field
+    private String field151;
+    @Column
+    @Field
+    private Long field152;
+    @Column
+    @Field
+    private Integer field153;
+    @Column
+    @Field
+    private Double field154;
+    @Column
+    @Field
+    private BigDecimal field155;
+    @Column
+    @Field
+    private Date field156;
+    @Column
+    @Field
+    private String field157;
+    @Column
+    @Field
+    private Long field158;
+    @Column
+    @Field
+    private Integer field159;
+    @Column
+    @Field
+    private Double field160;
+    @Column
+    @Field
+    private BigDecimal field161;
+    @Column
+    @Field
+    private Date field162;
+    @Column
+    @Field
+    private String field163;
+    @Column
+    @Field
+    private Long field164;
+    @Column
+    @Field
+    private Integer field165;
+    @Column
+    @Field
+    private Double field166;
+    @Column
+    @Field
+    private BigDecimal field167;
+    @Column
+    @Field
+    private Date field168;
+    @Column
+    @Field
+    private String field169;
+    @Column
+    @Field
+    private Long field170;
+    @Column
+    @Field
+    private Integer field171;
+    @Column
+    @Field
+    private Double field172;
+    @Column
+    @Field
+    private BigDecimal field173;
+    @Column
+    @Field
+    private Date field174;
+    @Column
+    @Field
+    private String field175;
+    @Column
+    @Field
+    private Long field176;
+    @Column
+    @Field
+    private Integer field177;
+    @Column
+    @Field
+    private Double field178;
+    @Column
+    @Field
+    private BigDecimal field179;
+    @Column
+    @Field
+    private Date field180;
+    @Column
+    @Field
+    private String field181;
+    @Column
+    @Field
+    private Long field182;
+    @Column
+    @Field
+    private Integer field183;
+    @Column
+    @Field
+    private Double field184;
+    @Column
+    @Field
+    private BigDecimal field185;
+    @Column
+    @Field
+    private Date field186;
+    @Column
+    @Field
+    private String field187;
+    @Column
+    @Field
+    private Long field188;
+    @Column
+    @Field
+    private Integer field189;
+    @Column
+    @Field
+    private Double field190;
+    @Column
+    @Field
+    private BigDecimal field191;
+    @Column
+    @Field
+    private Date field192;
+    @Column
+    @Field
+    private String field193;
+    @Column
+    @Field
+    private Long field194;
+    @Column
+    @Field
+    private Integer field195;
+    @Column
+    @Field
+    private Double field196;
+    @Column
+    @Field
+    private BigDecimal field197;
+    @Column
+    @Field
+    private Date field198;
+    @Column
+    @Field
+    private String field199;
+}
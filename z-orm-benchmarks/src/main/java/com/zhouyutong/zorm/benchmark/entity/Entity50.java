@@ -0,0 +1,174 @@
+package com.zhouyutong.zorm.benchmark.entity;
+
+import com.zhouyutong.zorm.annotation.PK;
+import com.zhouyutong.zorm.dao.cassandra.annotation.CassandraTable;
+import com.zhouyutong.zorm.dao.elasticsearch.annotation.Document;
+import com.zhouyutong.zorm.dao.elasticsearch.annotation.Field;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Column;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Table;
+import com.zhouyutong.zorm.entity.IdEntity;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 50个字段的基准测试entity,除主键外字段类型依次为String,Long,Integer,Double,BigDecimal,Date
+ */
+@Data
+@Table("t_bench_50")
+@Document(indexName = "bench_50", typeName = "bench")
+@CassandraTable(keyspace = "bench", tableName = "t_bench_50")
+public class Entity50 implements IdEntity {
+    @PK
+    @Column
+    @Field
+    private Long id;
+    @Column
+    @Field
+    private String field1;
+    @Column
+    @Field
+    private Long field2;
+    @Column
+    @Field
+    private Integer field3;
+    @Column
+    @Field
+    private Double field4;
+    @Column
+    @Field
+    private BigDecimal field5;
+    @Column
+    @Field
+    private Date field6;
+    @Column
+    @Field
+    private String field7;
+    @Column
+    @Field
+    private Long field8;
+    @Column
+    @Field
+    private Integer field9;
+    @Column
+    @Field
+    private Double field10;
+    @Column
+    @Field
+    private BigDecimal field11;
+    @Column
+    @Field
+    private Date field12;
+    @Column
+    @Field
+    private String field13;
+    @Column
+    @Field
+    private Long field14;
+    @Column
+    @Field
+    private Integer field15;
+    @Column
+    @Field
+    private Double field16;
+    @Column
+    @Field
+    private BigDecimal field17;
+    @Column
+    @Field
+    private Date field18;
+    @Column
+    @Field
+    private String field19;
+    @Column
+    @Field
+    private Long field20;
+    @Column
+    @Field
+    private Integer field21;
+    @Column
+    @Field
+    private Double field22;
+    @Column
+    @Field
+    private BigDecimal field23;
+    @Column
+    @Field
+    private Date field24;
+    @Column
+    @Field
+    private String field25;
+    @Column
+    @Field
+    private Long field26;
+    @Column
+    @Field
+    private Integer field27;
+    @Column
+    @Field
+    private Double field28;
+    @Column
+    @Field
+    private BigDecimal field29;
+    @Column
+    @Field
+    private Date field30;
+    @Column
+    @Field
+    private String field31;
+    @Column
+    @Field
+    private Long field32;
+    @Column
+    @Field
+    private Integer field33;
+    @Column
+    @Field
+    private Double field34;
+    @Column
+    @Field
+    private BigDecimal field35;
+    @Column
+    @Field
+    private Date field36;
+    @Column
+    @Field
+    private String field37;
+    @Column
+    @Field
+    private Long field38;
+    @Column
+    @Field
+    private Integer field39;
+    @Column
+    @Field
+    private Double field40;
+    @Column
+    @Field
+    private BigDecimal field41;
+    @Column
+    @Field
+    private Date field42;
+    @Column
+    @Field
+    private String field43;
+    @Column
+    @Field
+    private Long field44;
+    @Column
+    @Field
+    private Integer field45;
+    @Column
+    @Field
+    private Double field46;
+    @Column
+    @Field
+    private BigDecimal field47;
+    @Column
+    @Field
+    private Date field48;
+    @Column
+    @Field
+    private String field49;
+}
@@ -0,0 +1,59 @@
+package com.zhouyutong.zorm.dao.cassandra;
+
+import com.datastax.driver.core.Row;
+import com.google.common.collect.Maps;
+import com.zhouyutong.zorm.benchmark.BenchmarkFixtures;
+import com.zhouyutong.zorm.benchmark.BenchmarkRows;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.entity.EntityMetadata;
+import com.zhouyutong.zorm.entity.IdEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CassandraHelper.getEntity,单行反序列化并写入entity
+ * 放在dao.cassandra包中以访问包内可见的CassandraHelper
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CassandraHelperBenchmark {
+    @Param({"10", "50", "200"})
+    private int columns;
+
+    private Class<? extends IdEntity> entityClass;
+    //与CassandraBaseDao中的fieldNameAndFieldClassMap相同
+    private Map<String, Class> fieldNameAndFieldClassMap;
+    private Row row;
+
+    @Setup
+    public void setup() {
+        this.entityClass = BenchmarkFixtures.entityClass(columns);
+        this.fieldNameAndFieldClassMap = Maps.newHashMap();
+        for (EntityMetadata.Property property : EntityMetadata.of(entityClass).getProperties()) {
+            fieldNameAndFieldClassMap.put(property.getName(), property.getType());
+        }
+        this.row = BenchmarkRows.row(CassandraHelper.getKeyspace(entityClass), CassandraHelper.getTableName(entityClass),
+                BenchmarkFixtures.values(entityClass, MixedConstant.LONG_0));
+    }
+
+    @Benchmark
+    public IdEntity getEntity() {
+        return CassandraHelper.getEntity(row, entityClass, fieldNameAndFieldClassMap);
+    }
+}
@@ -0,0 +1,99 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.zhouyutong.zorm.benchmark.BenchmarkFixtures;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.entity.IdEntity;
+import com.zhouyutong.zorm.utils.BeanUtils;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10000行结果集映射为entity,EntityRowMapper与原有映射方式对比
+ * 原有方式:queryForList把每行读成Map,再由map2Entity转换属性名后通过commons-beanutils拷贝到entity
+ * map2Entity已经删除,这里按删除前的实现还原,只用于对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityRowMapperBenchmark {
+    private static final int ROWS = 10000;
+
+    @Param({"10", "50", "200"})
+    private int columns;
+
+    private Class<IdEntity> entityClass;
+    private EntityMapper<IdEntity> entityMapper;
+    private SimpleResultSet resultSet;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        this.entityClass = (Class<IdEntity>) BenchmarkFixtures.entityClass(columns);
+        this.entityMapper = new EntityMapper<>(entityClass);
+        List<Object[]> rows = Lists.newArrayListWithCapacity(ROWS);
+        for (int i = MixedConstant.INT_0; i < ROWS; i++) {
+            rows.add(BenchmarkFixtures.values(entityClass, i).values().toArray());
+        }
+        this.resultSet = BenchmarkFixtures.resultSet(Lists.newArrayList(entityMapper.getPropertyToColumnMapper().values()), rows);
+    }
+
+    /**
+     * 按列下标类型化读取,直接写入entity字段
+     */
+    @Benchmark
+    public List<IdEntity> entityRowMapper() throws SQLException {
+        resultSet.beforeFirst();
+        return entityMapper.getRowMapper().extractData(resultSet);
+    }
+
+    /**
+     * 原有方式,每行一个列名Map和一个属性名Map,再由commons-beanutils反射拷贝
+     */
+    @Benchmark
+    public List<IdEntity> columnMapAndBeanUtils() throws SQLException {
+        resultSet.beforeFirst();
+        List<Map<String, Object>> mapList = new RowMapperResultSetExtractor<>(new ColumnMapRowMapper()).extractData(resultSet);
+        List<IdEntity> entityList = Lists.newArrayList();
+        for (Map<String, Object> map : mapList) {
+            entityList.add(map2Entity(map, entityMapper, entityClass));
+        }
+        return entityList;
+    }
+
+    //删除前的JdbcHelper.map2Entity
+    private static <T> T map2Entity(Map<String, Object> map, EntityMapper<T> entityMapper, Class<T> entityClass) {
+        Map<String, String> columnToPropertyMapper = entityMapper.getColumnToPropertyMapper();
+        HashMap<String, Object> propertyMap = Maps.newHashMap();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            String propertyName = columnToPropertyMapper.get(entry.getKey().toLowerCase());
+            if (propertyName == null) {
+                continue;
+            }
+            propertyMap.put(propertyName, entry.getValue());
+        }
+        return BeanUtils.mapToBean(propertyMap, entityClass);
+    }
+}
@@ -0,0 +1,110 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.benchmark.BenchmarkFixtures;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.dao.jdbc.dialect.Dialect;
+import com.zhouyutong.zorm.dao.jdbc.dialect.JdbcDialectEnum;
+import com.zhouyutong.zorm.entity.IdEntity;
+import com.zhouyutong.zorm.enums.DialectEnum;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.Query;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JdbcHelper的sql生成和EntityRowMapper的结果集映射
+ * 放在dao.jdbc包中以访问包内可见的JdbcHelper
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcHelperBenchmark {
+    //映射结果集时每次调用的行数
+    private static final int ROWS = 100;
+
+    @Param({"10", "50", "200"})
+    private int columns;
+
+    private EntityMapper<IdEntity> entityMapper;
+    private Dialect dialect;
+    private IdEntity entity;
+    private Query selectFieldsQuery;
+    private Criteria criteria;
+    private SimpleResultSet resultSet;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        Class<IdEntity> entityClass = (Class<IdEntity>) BenchmarkFixtures.entityClass(columns);
+        this.entityMapper = new EntityMapper<>(entityClass);
+        this.dialect = JdbcDialectEnum.of(DialectEnum.MYSQL);
+        this.entity = BenchmarkFixtures.newEntity(entityClass, MixedConstant.LONG_0);
+        this.criteria = BenchmarkFixtures.criteria(entityClass);
+
+        Map<String, String> propertyToColumnMapper = entityMapper.getPropertyToColumnMapper();
+        this.selectFieldsQuery = Query.query().includeField(propertyToColumnMapper.keySet().toArray(new String[0]));
+        List<Object[]> rows = Lists.newArrayListWithCapacity(ROWS);
+        for (int i = MixedConstant.INT_0; i < ROWS; i++) {
+            rows.add(BenchmarkFixtures.values(entityClass, i).values().toArray());
+        }
+        this.resultSet = BenchmarkFixtures.resultSet(Lists.newArrayList(propertyToColumnMapper.values()), rows);
+    }
+
+    /**
+     * 指定所有字段的select,不能使用预编译的select
+     */
+    @Benchmark
+    public String select() {
+        return JdbcHelper.SELECT(selectFieldsQuery, entityMapper);
+    }
+
+    /**
+     * 每个字段一个条件的where
+     */
+    @Benchmark
+    public void where(Blackhole blackhole) {
+        List<Object> valueList = new ArrayList<>();
+        blackhole.consume(JdbcHelper.WHERE(criteria, valueList, entityMapper));
+        blackhole.consume(valueList);
+    }
+
+    /**
+     * 已设置主键的insert,不访问数据库
+     */
+    @Benchmark
+    public void insert(Blackhole blackhole) {
+        List<Object> valueList = new ArrayList<>();
+        blackhole.consume(JdbcHelper.INSERT(entity, valueList, entityMapper, dialect, null));
+        blackhole.consume(valueList);
+    }
+
+    /**
+     * 结果集映射为entity,每次调用映射ROWS行,结果集在Setup中创建,只计入映射本身的分配
+     */
+    @Benchmark
+    public List<IdEntity> mapRows() throws SQLException {
+        resultSet.beforeFirst();
+        return entityMapper.getRowMapper().extractData(resultSet);
+    }
+}
@@ -0,0 +1,94 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.benchmark.BenchmarkFixtures;
+import com.zhouyutong.zorm.dao.DaoHelper;
+import com.zhouyutong.zorm.dao.jdbc.dialect.JdbcDialectEnum;
+import com.zhouyutong.zorm.entity.EntityMetadata;
+import com.zhouyutong.zorm.entity.IdEntity;
+import com.zhouyutong.zorm.enums.DialectEnum;
+import com.zhouyutong.zorm.query.Query;
+import org.h2.tools.SimpleResultSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 基准测试的entity和结果集与被测代码一致,保证测量的是完整的映射和sql生成,而不是提前失败或跳过的路径
+ */
+public class BenchmarkFixturesTest {
+    private static final int[] COLUMNS = {10, 50, 200};
+
+    @Test
+    public void entityClassesHaveRequestedColumns() {
+        for (int columns : COLUMNS) {
+            Class<? extends IdEntity> entityClass = BenchmarkFixtures.entityClass(columns);
+
+            assertEquals(columns, EntityMetadata.of(entityClass).getProperties().size());
+            assertEquals(columns, new EntityMapper<>(entityClass).getPropertyToColumnMapper().size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedColumns() {
+        BenchmarkFixtures.entityClass(20);
+    }
+
+    /**
+     * 映射基准测试的结果集得到的entity与直接设置属性值创建的entity相同
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void resultSetMapsToFixtureEntities() throws Exception {
+        for (int columns : COLUMNS) {
+            Class<IdEntity> entityClass = (Class<IdEntity>) BenchmarkFixtures.entityClass(columns);
+            EntityMapper<IdEntity> entityMapper = new EntityMapper<>(entityClass);
+            List<Object[]> rows = Lists.newArrayList();
+            for (int i = 0; i < 3; i++) {
+                rows.add(BenchmarkFixtures.values(entityClass, i).values().toArray());
+            }
+            SimpleResultSet resultSet = BenchmarkFixtures.resultSet(Lists.newArrayList(entityMapper.getPropertyToColumnMapper().values()), rows);
+
+            for (int repeat = 0; repeat < 2; repeat++) {
+                resultSet.beforeFirst();
+                List<IdEntity> entityList = entityMapper.getRowMapper().extractData(resultSet);
+
+                assertEquals(3, entityList.size());
+                for (int i = 0; i < 3; i++) {
+                    assertEquals(BenchmarkFixtures.newEntity(entityClass, i), entityList.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sqlCoversEveryColumn() {
+        for (int columns : COLUMNS) {
+            Class<IdEntity> entityClass = (Class<IdEntity>) BenchmarkFixtures.entityClass(columns);
+            EntityMapper<IdEntity> entityMapper = new EntityMapper<>(entityClass);
+            IdEntity entity = BenchmarkFixtures.newEntity(entityClass, 0L);
+
+            List<Object> insertValueList = new ArrayList<>();
+            JdbcHelper.INSERT(entity, insertValueList, entityMapper, JdbcDialectEnum.of(DialectEnum.MYSQL), null);
+            assertEquals(columns, insertValueList.size());
+
+            List<Object> whereValueList = new ArrayList<>();
+            String where = JdbcHelper.WHERE(BenchmarkFixtures.criteria(entityClass), whereValueList, entityMapper);
+            //IN条件绑定两个值
+            assertEquals(columns + (columns + 1) / 5, whereValueList.size());
+            assertTrue(where.contains(" IN "));
+
+            String select = JdbcHelper.SELECT(Query.query().includeField(entityMapper.getPropertyToColumnMapper().keySet().toArray(new String[0])), entityMapper);
+            for (String column : entityMapper.getPropertyToColumnMapper().values()) {
+                assertTrue(select.contains(column));
+            }
+
+            assertEquals(columns, DaoHelper.entity2Update(entity, null).getSetMap().size());
+        }
+    }
+}
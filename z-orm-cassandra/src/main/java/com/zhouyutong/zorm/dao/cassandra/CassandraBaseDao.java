@@ -3,12 +3,18 @@ package com.zhouyutong.zorm.dao.cassandra;
 import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.zhouyutong.zorm.dao.AbstractBaseDao;
 import com.zhouyutong.zorm.dao.DaoHelper;
+import com.zhouyutong.zorm.enums.DaoOperationEnum;
 import com.zhouyutong.zorm.enums.DialectEnum;
 import com.zhouyutong.zorm.query.Criteria;
 import com.zhouyutong.zorm.query.Pageable;
@@ -24,12 +30,16 @@ import org.springframework.context.ApplicationContextAware;
 
 import javax.annotation.PostConstruct;
 import java.io.Serializable;
-import java.lang.reflect.Field;
+import com.zhouyutong.zorm.entity.EntityMetadata;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * 基于cassandra-driver-core的Dao实现
@@ -68,19 +78,39 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
 
     @Override
     public long countAll() {
+        return this.invoke(DaoOperationEnum.COUNT_ALL, () -> this.doCountAll());
+    }
+
+    private long doCountAll() {
         Session session = CassandraClientFactory.INSTANCE.getClient(cassandraSettings);
         String countAllCql = "select count(*) from " + keyspace + "." + tableName;
         try {
             ResultSet resultSet = session.execute(countAllCql);
-            long count = resultSet == null ? 0L : resultSet.one().getLong(1);
-            return count;
+            return this.getCount(resultSet);
         } catch (RuntimeException e) {
             throw ExceptionTranslator.translate(e, DialectEnum.CASSANDRA);
         }
     }
 
+    @Override
+    public CompletableFuture<Long> countAllAsync() {
+        return this.invokeAsync(DaoOperationEnum.COUNT_ALL, () -> this.doCountAllAsync());
+    }
+
+    private CompletableFuture<Long> doCountAllAsync() {
+        return this.executeAsync("countAll", () -> new SimpleStatement("select count(*) from " + keyspace + "." + tableName), this::getCount);
+    }
+
+    private long getCount(ResultSet resultSet) {
+        return resultSet == null ? 0L : resultSet.one().getLong(1);
+    }
+
     @Override
     protected long countBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.COUNT_BY_SQL, sql, param, () -> this.doCountBySql(sql, param));
+    }
+
+    private long doCountBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
         Session session = CassandraClientFactory.INSTANCE.getClient(cassandraSettings);
 
@@ -117,6 +147,10 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
 
     @Override
     protected T findOneBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.FIND_ONE_BY_SQL, sql, param, () -> this.doFindOneBySql(sql, param));
+    }
+
+    private T doFindOneBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
 
         Session session = CassandraClientFactory.INSTANCE.getClient(cassandraSettings);
@@ -157,6 +191,10 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
 
     @Override
     protected List<T> findListBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.FIND_LIST_BY_SQL, sql, param, () -> this.doFindListBySql(sql, param));
+    }
+
+    private List<T> doFindListBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
 
         Session session = CassandraClientFactory.INSTANCE.getClient(cassandraSettings);
@@ -180,17 +218,20 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
         }
     }
 
+    @Override
+    public Stream<T> stream(Query query) {
+        throw new RuntimeException("CassandraBaseDao do not support The Method");
+    }
+
     @Override
     public int insert(T entity) {
+        return this.invoke(DaoOperationEnum.INSERT, entity, () -> this.doInsert(entity));
+    }
+
+    private int doInsert(T entity) {
         DaoHelper.checkArgumentEntity(entity);
         Session session = CassandraClientFactory.INSTANCE.getClient(cassandraSettings);
-        Insert insert = QueryBuilder.insertInto(keyspace, tableName);
-        Field[] fields = entityClass.getDeclaredFields();
-        for (Field field : fields) {
-            String propertyName = field.getName();
-            Object propertyValue = DaoHelper.getColumnValue(propertyName, entity);
-            insert.value(propertyName, propertyValue);
-        }
+        Insert insert = this.insertStatement(entity);
 
         try {
             if (log.isDebugEnabled()) {
@@ -206,22 +247,36 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
         }
     }
 
+    @Override
+    public CompletableFuture<Integer> insertAsync(T entity) {
+        return this.invokeAsync(DaoOperationEnum.INSERT, entity, () -> this.doInsertAsync(entity));
+    }
+
+    private CompletableFuture<Integer> doInsertAsync(T entity) {
+        return this.executeAsync("insert", () -> {
+            DaoHelper.checkArgumentEntity(entity);
+            return this.insertStatement(entity);
+        }, resultSet -> 1);
+    }
+
+    private Insert insertStatement(T entity) {
+        Insert insert = QueryBuilder.insertInto(keyspace, tableName);
+        for (EntityMetadata.Property property : EntityMetadata.of(entityClass).getProperties()) {
+            insert.value(property.getName(), property.get(entity));
+        }
+        return insert;
+    }
+
     @Override
     public int insert(List<T> entityList) {
+        return this.invoke(DaoOperationEnum.INSERT, entityList, () -> this.doInsert(entityList));
+    }
+
+    private int doInsert(List<T> entityList) {
         DaoHelper.checkArgumentBatchInsert(entityList);
         Session session = CassandraClientFactory.INSTANCE.getClient(cassandraSettings);
 
-        BatchStatement batchStatement = new BatchStatement();
-        for (T entity : entityList) {
-            Insert insert = QueryBuilder.insertInto(keyspace, tableName);
-            Field[] fields = entityClass.getDeclaredFields();
-            for (Field field : fields) {
-                String propertyName = field.getName();
-                Object propertyValue = DaoHelper.getColumnValue(propertyName, entity);
-                insert.value(propertyName, propertyValue);
-            }
-            batchStatement.add(insert);
-        }
+        BatchStatement batchStatement = this.batchInsertStatement(entityList);
 
         try {
             if (log.isDebugEnabled()) {
@@ -238,6 +293,26 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
         }
     }
 
+    @Override
+    public CompletableFuture<Integer> insertAsync(List<T> entityList) {
+        return this.invokeAsync(DaoOperationEnum.INSERT, entityList, () -> this.doInsertAsync(entityList));
+    }
+
+    private CompletableFuture<Integer> doInsertAsync(List<T> entityList) {
+        return this.executeAsync("batch insert", () -> {
+            DaoHelper.checkArgumentBatchInsert(entityList);
+            return this.batchInsertStatement(entityList);
+        }, resultSet -> entityList.size());
+    }
+
+    private BatchStatement batchInsertStatement(List<T> entityList) {
+        BatchStatement batchStatement = new BatchStatement();
+        for (T entity : entityList) {
+            batchStatement.add(this.insertStatement(entity));
+        }
+        return batchStatement;
+    }
+
     @Override
     public int update(T entity) {
         throw new RuntimeException("CassandraBaseDao do not support The Method");
@@ -265,6 +340,10 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
 
     @Override
     protected int updateBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.UPDATE_BY_SQL, sql, param, () -> this.doUpdateBySql(sql, param));
+    }
+
+    private int doUpdateBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
 
         Session session = CassandraClientFactory.INSTANCE.getClient(cassandraSettings);
@@ -295,6 +374,10 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
 
     @Override
     public int deleteBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.DELETE_BY_SQL, sql, param, () -> this.doDeleteBySql(sql, param));
+    }
+
+    private int doDeleteBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
 
         Session session = CassandraClientFactory.INSTANCE.getClient(cassandraSettings);
@@ -318,6 +401,59 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
         }
     }
 
+    @Override
+    public CompletableFuture<Integer> deleteBySqlAsync(String sql, LinkedHashMap<String, Object> param) {
+        return this.invokeAsync(DaoOperationEnum.DELETE_BY_SQL, sql, param, () -> this.doDeleteBySqlAsync(sql, param));
+    }
+
+    private CompletableFuture<Integer> doDeleteBySqlAsync(String sql, LinkedHashMap<String, Object> param) {
+        return this.executeAsync("deleteBySql", () -> {
+            DaoHelper.checkArgument(sql);
+            List<Object> valueList = MapUtils.isEmpty(param) ? null : Lists.newArrayList(param.values());
+            return CollectionUtils.isEmpty(valueList) ? new SimpleStatement(sql) : new SimpleStatement(sql, valueList.toArray());
+        }, resultSet -> 1);
+    }
+
+    /**
+     * 使用Session.executeAsync执行,不占用调用线程
+     * 回调在driver的io线程中执行,后续耗时的处理应使用thenApplyAsync等切换到业务线程池
+     *
+     * @param method            - 方法名,用于日志
+     * @param statementSupplier - 构造语句,参数校验异常通过future返回
+     * @param resultMapper      - ResultSet转换为结果
+     */
+    private <R> CompletableFuture<R> executeAsync(String method, Supplier<Statement> statementSupplier, Function<ResultSet, R> resultMapper) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            Session session = CassandraClientFactory.INSTANCE.getClient(cassandraSettings);
+            Statement statement = statementSupplier.get();
+            if (log.isDebugEnabled()) {
+                log.debug("=========" + method + " request:" + statement.toString());
+            }
+            Futures.addCallback(session.executeAsync(statement), new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet resultSet) {
+                    try {
+                        if (log.isDebugEnabled()) {
+                            log.debug("=========" + method + " response:" + resultSet);
+                        }
+                        future.complete(resultMapper.apply(resultSet));
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(ExceptionTranslator.translate(e, DialectEnum.CASSANDRA));
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    future.completeExceptionally(ExceptionTranslator.translate(t, DialectEnum.CASSANDRA));
+                }
+            }, MoreExecutors.directExecutor());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     @PostConstruct
     protected void afterPropertiesSet() {
         Class daoClass = this.getClass();
@@ -337,9 +473,8 @@ public abstract class CassandraBaseDao<T> extends AbstractBaseDao<T> implements
         }
 
         //得到所有字段名和对应类型
-        Field[] fields = entityClass.getDeclaredFields();
-        for (Field field : fields) {
-            fieldNameAndFieldClassMap.put(field.getName(), field.getType());
+        for (EntityMetadata.Property property : EntityMetadata.of(entityClass).getProperties()) {
+            fieldNameAndFieldClassMap.put(property.getName(), property.getType());
         }
         CassandraClientFactory.INSTANCE.setClient(this.cassandraSettings);
     }
@@ -3,9 +3,8 @@ package com.zhouyutong.zorm.dao.cassandra;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.zhouyutong.zorm.dao.cassandra.annotation.CassandraTable;
-import com.zhouyutong.zorm.utils.BeanUtils;
+import com.zhouyutong.zorm.entity.EntityMetadata;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Field;
@@ -69,21 +68,29 @@ public final class CassandraHelper {
         return entityList;
     }
 
+    @SuppressWarnings("unchecked")
     static <T> T getEntity(Row row, Class<T> entityClass, Map<String, Class> fieldNameAndFieldClassMap) {
         if (row == null) {
             return null;
         }
-        Map<String, Object> map = Maps.newHashMap();
+        EntityMetadata entityMetadata = EntityMetadata.of(entityClass);
         try {
+            Object entity = null;
             for (Map.Entry<String, Class> entry : fieldNameAndFieldClassMap.entrySet()) {
                 String fieldName = entry.getKey();
                 if (!row.getColumnDefinitions().contains(fieldName)) {
                     continue;
                 }
+                if (entity == null) {
+                    entity = entityMetadata.newInstance();
+                }
                 Object value = row.get(fieldName, entry.getValue());
-                map.put(entry.getKey(), value);
+                //null值不写入,基本类型保持默认值
+                if (value != null) {
+                    entityMetadata.getRequiredProperty(fieldName).set(entity, value);
+                }
             }
-            return BeanUtils.mapToBean(map, entityClass);
+            return (T) entity;
         } catch (RuntimeException e) {
             log.error("CassandraHelper.getEntity error", e);
         }
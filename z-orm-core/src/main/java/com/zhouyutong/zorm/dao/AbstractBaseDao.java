@@ -1,18 +1,39 @@
 package com.zhouyutong.zorm.dao;
 
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.dao.interceptor.DaoInterceptor;
+import com.zhouyutong.zorm.dao.interceptor.DaoInterceptorRegistry;
+import com.zhouyutong.zorm.dao.interceptor.DaoInvocation;
+import com.zhouyutong.zorm.enums.DaoOperationEnum;
+import com.zhouyutong.zorm.metrics.DaoMetrics;
+import com.zhouyutong.zorm.metrics.MetricsRegistry;
 import com.zhouyutong.zorm.query.*;
 
 import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * 基础DAO接口 封装常用的CRUD操作,与具体orm框架无关
+ * 异步操作默认在调用线程执行同步操作后返回已完成的future,各实现可以覆盖async或具体的xxxAsync方法使用原生的异步调用
+ * 各实现的操作通过invoke/invokeAsync执行,经过DaoInterceptor,按dao class和操作名记录耗时、调用数、异常数和行数
+ * 没有匹配的拦截器且关闭了指标时invoke/invokeAsync直接执行操作
+ * 同一线程内嵌套调用本dao的操作时(如exists委托给findOneByQuery),与指标一样只有最外层的操作经过拦截器
  *
  * @author zhouyutong
  * @since 2015/11/24
  */
-public abstract class AbstractBaseDao<T> {
+public abstract class AbstractBaseDao<T> implements AsyncDao<T> {
+    private static final DaoInterceptor[] NO_INTERCEPTORS = new DaoInterceptor[0];
+
+    private volatile DaoMetrics daoMetrics;
+    private volatile ResolvedInterceptors resolvedInterceptors;
+    //当前线程正在经过拦截器执行的本dao操作的嵌套层数
+    private final ThreadLocal<int[]> interceptorDepth = ThreadLocal.withInitial(() -> new int[1]);
 
     public abstract Class<T> getGenericClass();
 
@@ -62,6 +83,24 @@ public abstract class AbstractBaseDao<T> {
 
     protected abstract List<T> findListBySql(String sql, LinkedHashMap<String, Object> param);
 
+    //逐条读取查询结果,返回的Stream持有底层连接或游标,使用完必须close
+    public abstract Stream<T> stream(Query query);
+
+    /**
+     * 逐条处理查询结果,处理结束或异常时释放底层资源
+     * 适用于全表处理等结果集很大的场景,内存占用与结果集大小无关
+     */
+    public void forEach(Query query, Consumer<T> consumer) {
+        DaoHelper.checkArgumentQuery(query);
+        if (consumer == null) {
+            throw new IllegalArgumentException("Param consumer must be not null");
+        }
+
+        try (Stream<T> stream = this.stream(query)) {
+            stream.forEach(consumer);
+        }
+    }
+
     public T findOne(List<String> fields, Criteria criteria) {
         DaoHelper.checkArgumentFields(fields);
         DaoHelper.checkArgumentCriteria(criteria);
@@ -179,4 +218,205 @@ public abstract class AbstractBaseDao<T> {
         return this.findListByQuery(query, pageable);
     }
 
+    public DaoMetrics getDaoMetrics() {
+        DaoMetrics metrics = this.daoMetrics;
+        if (metrics == null) {
+            metrics = MetricsRegistry.INSTANCE.getDaoMetrics(this.getClass());
+            this.daoMetrics = metrics;
+        }
+        return metrics;
+    }
+
+    /**
+     * 执行一次dao操作,经过匹配的DaoInterceptor后执行,记录耗时、调用数、异常数和行数
+     *
+     * @param operation - 操作
+     * @param action    - 操作的实现
+     */
+    protected <R> R invoke(DaoOperationEnum operation, Supplier<R> action) {
+        DaoInterceptor[] interceptors = this.getInterceptors(operation);
+        return this.getDaoMetrics().record(operation.value(), interceptors.length == 0 ? action
+                : this.chain(operation, false, MixedConstant.EMPTY_OBJECT_ARRAY, interceptors, action));
+    }
+
+    protected <R> R invoke(DaoOperationEnum operation, Object arg, Supplier<R> action) {
+        DaoInterceptor[] interceptors = this.getInterceptors(operation);
+        return this.getDaoMetrics().record(operation.value(), interceptors.length == 0 ? action
+                : this.chain(operation, false, new Object[]{arg}, interceptors, action));
+    }
+
+    protected <R> R invoke(DaoOperationEnum operation, Object arg0, Object arg1, Supplier<R> action) {
+        DaoInterceptor[] interceptors = this.getInterceptors(operation);
+        return this.getDaoMetrics().record(operation.value(), interceptors.length == 0 ? action
+                : this.chain(operation, false, new Object[]{arg0, arg1}, interceptors, action));
+    }
+
+    /**
+     * 执行一次原生异步的dao操作,在future完成时记录,拦截器的返回值为CompletableFuture
+     *
+     * @param operation - 操作,与对应的同步操作相同
+     * @param action    - 发起异步操作
+     */
+    protected <R> CompletableFuture<R> invokeAsync(DaoOperationEnum operation, Supplier<CompletableFuture<R>> action) {
+        DaoInterceptor[] interceptors = this.getInterceptors(operation);
+        return this.getDaoMetrics().recordAsync(operation.value(), interceptors.length == 0 ? action
+                : this.chain(operation, true, MixedConstant.EMPTY_OBJECT_ARRAY, interceptors, action));
+    }
+
+    protected <R> CompletableFuture<R> invokeAsync(DaoOperationEnum operation, Object arg, Supplier<CompletableFuture<R>> action) {
+        DaoInterceptor[] interceptors = this.getInterceptors(operation);
+        return this.getDaoMetrics().recordAsync(operation.value(), interceptors.length == 0 ? action
+                : this.chain(operation, true, new Object[]{arg}, interceptors, action));
+    }
+
+    protected <R> CompletableFuture<R> invokeAsync(DaoOperationEnum operation, Object arg0, Object arg1, Supplier<CompletableFuture<R>> action) {
+        DaoInterceptor[] interceptors = this.getInterceptors(operation);
+        return this.getDaoMetrics().recordAsync(operation.value(), interceptors.length == 0 ? action
+                : this.chain(operation, true, new Object[]{arg0, arg1}, interceptors, action));
+    }
+
+    //依次经过拦截器后执行action,执行期间(异步操作为发起期间)嵌套调用的本dao操作不再经过拦截器
+    @SuppressWarnings("unchecked")
+    private <R> Supplier<R> chain(DaoOperationEnum operation, boolean async, Object[] args, DaoInterceptor[] interceptors, Supplier<R> action) {
+        return () -> {
+            int[] current = interceptorDepth.get();
+            current[0]++;
+            try {
+                return (R) new DaoInvocation(this, operation, async, args, interceptors, action).proceed();
+            } finally {
+                current[0]--;
+            }
+        };
+    }
+
+    //拦截器注册或移除后重新解析,嵌套调用时没有拦截器
+    private DaoInterceptor[] getInterceptors(DaoOperationEnum operation) {
+        if (interceptorDepth.get()[0] > 0) {
+            return NO_INTERCEPTORS;
+        }
+        ResolvedInterceptors resolved = this.resolvedInterceptors;
+        int version = DaoInterceptorRegistry.INSTANCE.getVersion();
+        if (resolved == null || resolved.version != version) {
+            resolved = new ResolvedInterceptors(version, DaoInterceptorRegistry.INSTANCE.resolve(this.getClass()));
+            this.resolvedInterceptors = resolved;
+        }
+        return resolved.interceptors[operation.ordinal()];
+    }
+
+    private static final class ResolvedInterceptors {
+        private final int version;
+        //下标为DaoOperationEnum.ordinal()
+        private final DaoInterceptor[][] interceptors;
+
+        private ResolvedInterceptors(int version, DaoInterceptor[][] interceptors) {
+            this.version = version;
+            this.interceptors = interceptors;
+        }
+    }
+
+    /**
+     * 执行异步操作,默认在调用线程执行,异常通过future返回
+     *
+     * @param supplier - 对应的同步操作
+     */
+    protected <R> CompletableFuture<R> async(Supplier<R> supplier) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            future.complete(supplier.get());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertAsync(T entity) {
+        return this.async(() -> this.insert(entity));
+    }
+
+    @Override
+    public CompletableFuture<Integer> insertAsync(List<T> entityList) {
+        return this.async(() -> this.insert(entityList));
+    }
+
+    @Override
+    public CompletableFuture<Integer> updateAsync(T entity) {
+        return this.async(() -> this.update(entity));
+    }
+
+    @Override
+    public CompletableFuture<Integer> updateAsync(T entity, List<String> propetyList) {
+        return this.async(() -> this.update(entity, propetyList));
+    }
+
+    @Override
+    public CompletableFuture<Integer> updateByIdAsync(Serializable id, Update update) {
+        return this.async(() -> this.updateById(id, update));
+    }
+
+    @Override
+    public CompletableFuture<Integer> updateByIdsAsync(List<Serializable> ids, Update update) {
+        return this.async(() -> this.updateByIds(ids, update));
+    }
+
+    @Override
+    public CompletableFuture<Integer> updateByCriteriaAsync(Criteria criteria, Update update) {
+        return this.async(() -> this.updateByCriteria(criteria, update));
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteByIdAsync(Serializable id) {
+        return this.async(() -> this.deleteById(id));
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteBySqlAsync(String sql, LinkedHashMap<String, Object> param) {
+        return this.async(() -> this.deleteBySql(sql, param));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(Serializable id) {
+        return this.async(() -> this.exists(id));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(Criteria criteria) {
+        return this.async(() -> this.exists(criteria));
+    }
+
+    @Override
+    public CompletableFuture<Long> countByCriteriaAsync(Criteria criteria) {
+        return this.async(() -> this.countByCriteria(criteria));
+    }
+
+    @Override
+    public CompletableFuture<Long> countAllAsync() {
+        return this.async(() -> this.countAll());
+    }
+
+    @Override
+    public CompletableFuture<T> findOneByIdAsync(Serializable id) {
+        return this.async(() -> this.findOneById(id));
+    }
+
+    @Override
+    public CompletableFuture<T> findOneByQueryAsync(Query query) {
+        return this.async(() -> this.findOneByQuery(query));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findListByIdsAsync(List<Serializable> ids) {
+        return this.async(() -> this.findListByIds(ids));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findListByQueryAsync(Query query) {
+        return this.async(() -> this.findListByQuery(query));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findListByQueryAsync(Query query, Pageable pageable) {
+        return this.async(() -> this.findListByQuery(query, pageable));
+    }
+
 }
@@ -0,0 +1,58 @@
+package com.zhouyutong.zorm.dao;
+
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.Pageable;
+import com.zhouyutong.zorm.query.Query;
+import com.zhouyutong.zorm.query.Update;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步DAO接口,与AbstractBaseDao的同名操作一一对应,返回CompletableFuture
+ * 多个互不依赖的查询可以同时发出,总耗时取决于最慢的一个而不是耗时之和
+ * 异常通过future返回,不在调用线程抛出
+ *
+ * @author zhouyutong
+ * @since 2015/11/24
+ */
+public interface AsyncDao<T> {
+
+    CompletableFuture<Integer> insertAsync(T entity);
+
+    CompletableFuture<Integer> insertAsync(List<T> entityList);
+
+    CompletableFuture<Integer> updateAsync(T entity);
+
+    CompletableFuture<Integer> updateAsync(T entity, List<String> propetyList);
+
+    CompletableFuture<Integer> updateByIdAsync(Serializable id, Update update);
+
+    CompletableFuture<Integer> updateByIdsAsync(List<Serializable> ids, Update update);
+
+    CompletableFuture<Integer> updateByCriteriaAsync(Criteria criteria, Update update);
+
+    CompletableFuture<Integer> deleteByIdAsync(Serializable id);
+
+    CompletableFuture<Integer> deleteBySqlAsync(String sql, LinkedHashMap<String, Object> param);
+
+    CompletableFuture<Boolean> existsAsync(Serializable id);
+
+    CompletableFuture<Boolean> existsAsync(Criteria criteria);
+
+    CompletableFuture<Long> countByCriteriaAsync(Criteria criteria);
+
+    CompletableFuture<Long> countAllAsync();
+
+    CompletableFuture<T> findOneByIdAsync(Serializable id);
+
+    CompletableFuture<T> findOneByQueryAsync(Query query);
+
+    CompletableFuture<List<T>> findListByIdsAsync(List<Serializable> ids);
+
+    CompletableFuture<List<T>> findListByQueryAsync(Query query);
+
+    CompletableFuture<List<T>> findListByQueryAsync(Query query, Pageable pageable);
+}
@@ -2,7 +2,7 @@ package com.zhouyutong.zorm.dao;
 
 import com.google.common.collect.Lists;
 import com.zhouyutong.zorm.annotation.Dao;
-import com.zhouyutong.zorm.annotation.PK;
+import com.zhouyutong.zorm.entity.EntityMetadata;
 import com.zhouyutong.zorm.entity.IdEntity;
 import com.zhouyutong.zorm.query.*;
 import org.apache.commons.collections.CollectionUtils;
@@ -11,7 +11,6 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -28,17 +27,14 @@ public class DaoHelper {
     public static Update entity2Update(Object entity, List<String> propetyList) {
         Update update = new Update();
 
-        List<Field> fieldList = Lists.newArrayList();
-        fieldList.addAll(Arrays.asList(entity.getClass().getDeclaredFields()));
-
-        for (Field field : fieldList) {
-            if (isFinalOrStatic(field)) {
+        for (EntityMetadata.Property property : EntityMetadata.of(entity.getClass()).getProperties()) {
+            if (property.isFinal()) {
                 continue;
             }
-            String propertyName = field.getName();
+            String propertyName = property.getName();
             //propetyList为空所有属性都需要更新，否则只更新包含的属性
             if (CollectionUtils.isEmpty(propetyList) || propetyList.contains(propertyName)) {
-                update.set(propertyName, getColumnValue(field, entity));
+                update.set(propertyName, property.get(entity));
             }
         }
 
@@ -53,6 +49,10 @@ public class DaoHelper {
      * @return - 返回filed值
      */
     public static Object getColumnValue(Field field, Object bean) {
+        EntityMetadata.Property property = EntityMetadata.of(bean.getClass()).getProperty(field.getName());
+        if (property != null && property.getField().equals(field)) {
+            return property.get(bean);
+        }
         field.setAccessible(true);
         try {
             return field.get(bean);
@@ -69,13 +69,11 @@ public class DaoHelper {
      * @return - 返回filed值
      */
     public static Object getColumnValue(String fieldName, Object bean) {
-        try {
-            Field field = bean.getClass().getDeclaredField(fieldName);
-            field.setAccessible(true);
-            return field.get(bean);
-        } catch (Exception e) {
-            throw new RuntimeException("无法获取entity[" + bean.getClass().getName() + "]的属性[" + fieldName + "]的值", e);
+        EntityMetadata.Property property = EntityMetadata.of(bean.getClass()).getProperty(fieldName);
+        if (property == null) {
+            throw new RuntimeException("无法获取entity[" + bean.getClass().getName() + "]的属性[" + fieldName + "]的值");
         }
+        return property.get(bean);
     }
 
     /**
@@ -86,6 +84,11 @@ public class DaoHelper {
      * @return - 返回filed值
      */
     public static void setColumnValue(Field field, Object bean, Object v) {
+        EntityMetadata.Property property = EntityMetadata.of(bean.getClass()).getProperty(field.getName());
+        if (property != null && property.getField().equals(field) && !property.isFinal()) {
+            property.set(bean, v);
+            return;
+        }
         field.setAccessible(true);
         try {
             field.set(bean, v);
@@ -210,12 +213,19 @@ public class DaoHelper {
     }
 
     /**
-     * 批量插入前的校验
+     * 批量操作前的校验,不限制数量
      */
-    public static void checkArgumentBatchInsert(List<?> entityList) {
+    public static void checkArgumentEntityList(List<?> entityList) {
         if (CollectionUtils.isEmpty(entityList)) {
             throw new IllegalArgumentException("Param entityList must be not null and empty");
         }
+    }
+
+    /**
+     * 批量插入前的校验
+     */
+    public static void checkArgumentBatchInsert(List<?> entityList) {
+        checkArgumentEntityList(entityList);
         if (entityList.size() > 500) {
             throw new IllegalArgumentException("Batch insert must not exceed 500 entities");
         }
@@ -265,16 +275,8 @@ public class DaoHelper {
      * @return
      */
     public static Field getPkField(IdEntity idEntity) {
-        Field pkField = null;
-        Field[] fields = idEntity.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            PK pkAnnotation = field.getAnnotation(PK.class);
-            if (pkAnnotation != null) {
-                pkField = field;
-                break;
-            }
-        }
-        return pkField;
+        EntityMetadata.Property pk = EntityMetadata.of(idEntity.getClass()).getPk();
+        return pk == null ? null : pk.getField();
     }
 
 
@@ -285,8 +287,11 @@ public class DaoHelper {
      * @return - 返回filed值
      */
     public static Serializable getPkValue(IdEntity idEntity) {
-        Field pkField = getPkField(idEntity);
-        return (Serializable) getColumnValue(pkField, idEntity);
+        EntityMetadata.Property pk = EntityMetadata.of(idEntity.getClass()).getPk();
+        if (pk == null) {
+            throw new RuntimeException("entity[" + idEntity.getClass().getName() + "]没有PK注解的属性");
+        }
+        return (Serializable) pk.get(idEntity);
     }
 
     /**
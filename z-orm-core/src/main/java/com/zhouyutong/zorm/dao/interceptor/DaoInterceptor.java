@@ -0,0 +1,31 @@
+package com.zhouyutong.zorm.dao.interceptor;
+
+import com.zhouyutong.zorm.enums.DaoOperationEnum;
+
+/**
+ * 内置在dao调用路径中的拦截器,适用于jdbc、elasticsearch、cassandra所有实现
+ * 可用于缓存、链路追踪、审计等,通过DaoInterceptorRegistry.INSTANCE注册
+ *
+ * 每个dao实例按操作预先解析出匹配的拦截器数组,调用时不使用反射
+ * 没有匹配的拦截器时直接执行操作,不创建DaoInvocation和参数数组
+ */
+public interface DaoInterceptor {
+
+    /**
+     * 是否拦截某个dao的某个操作,只在解析时调用,不在每次调用时执行
+     *
+     * @param daoClass  - dao class
+     * @param operation - 操作
+     */
+    default boolean supports(Class<?> daoClass, DaoOperationEnum operation) {
+        return true;
+    }
+
+    /**
+     * 处理一次拦截,调用invocation.proceed()执行后续拦截器和真正的dao操作
+     * 异步操作(invocation.isAsync())时返回值为CompletableFuture
+     *
+     * @return - 返回目标操作的返回值
+     */
+    Object intercept(DaoInvocation invocation);
+}
@@ -0,0 +1,70 @@
+package com.zhouyutong.zorm.dao.interceptor;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.enums.DaoOperationEnum;
+
+import java.util.List;
+
+/**
+ * 所有DaoInterceptor,先注册的在外层
+ * 注册或移除时版本号加1,各dao实例在下次调用时按新版本重新解析匹配的拦截器
+ */
+public enum DaoInterceptorRegistry {
+    INSTANCE;
+
+    private static final DaoInterceptor[] EMPTY = new DaoInterceptor[0];
+
+    private volatile List<DaoInterceptor> interceptors = Lists.newArrayList();
+    private volatile int version;
+
+    public synchronized void addInterceptor(DaoInterceptor interceptor) {
+        if (interceptor == null) {
+            throw new IllegalArgumentException("Param interceptor must be not null");
+        }
+        List<DaoInterceptor> newInterceptors = Lists.newArrayList(this.interceptors);
+        newInterceptors.add(interceptor);
+        this.interceptors = newInterceptors;
+        this.version++;
+    }
+
+    public synchronized void removeInterceptor(DaoInterceptor interceptor) {
+        List<DaoInterceptor> newInterceptors = Lists.newArrayList(this.interceptors);
+        if (newInterceptors.remove(interceptor)) {
+            this.interceptors = newInterceptors;
+            this.version++;
+        }
+    }
+
+    //便于spring配置注入
+    public void setInterceptors(List<DaoInterceptor> interceptors) {
+        if (interceptors == null || interceptors.isEmpty()) {
+            return;
+        }
+        for (DaoInterceptor interceptor : interceptors) {
+            this.addInterceptor(interceptor);
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * 解析某个dao的所有操作匹配的拦截器,下标为DaoOperationEnum.ordinal()
+     */
+    public DaoInterceptor[][] resolve(Class<?> daoClass) {
+        List<DaoInterceptor> current = this.interceptors;
+        DaoOperationEnum[] operations = DaoOperationEnum.values();
+        DaoInterceptor[][] resolved = new DaoInterceptor[operations.length][];
+        for (DaoOperationEnum operation : operations) {
+            List<DaoInterceptor> matched = Lists.newArrayList();
+            for (DaoInterceptor interceptor : current) {
+                if (interceptor.supports(daoClass, operation)) {
+                    matched.add(interceptor);
+                }
+            }
+            resolved[operation.ordinal()] = matched.isEmpty() ? EMPTY : matched.toArray(new DaoInterceptor[matched.size()]);
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,56 @@
+package com.zhouyutong.zorm.dao.interceptor;
+
+import com.zhouyutong.zorm.enums.DaoOperationEnum;
+
+import java.util.function.Supplier;
+
+/**
+ * dao操作的一次调用,只在有匹配的拦截器时创建,不能跨线程共享
+ */
+public final class DaoInvocation {
+    //某个dao的具体实例
+    private final Object target;
+    private final DaoOperationEnum operation;
+    //是否是xxxAsync方法,是时返回值为CompletableFuture
+    private final boolean async;
+    //dao方法的参数
+    private final Object[] args;
+    private final DaoInterceptor[] interceptors;
+    private final Supplier<?> action;
+    //下一个要执行的拦截器
+    private int index;
+
+    public DaoInvocation(Object target, DaoOperationEnum operation, boolean async, Object[] args,
+                         DaoInterceptor[] interceptors, Supplier<?> action) {
+        this.target = target;
+        this.operation = operation;
+        this.async = async;
+        this.args = args;
+        this.interceptors = interceptors;
+        this.action = action;
+    }
+
+    public Object getTarget() {
+        return target;
+    }
+
+    public DaoOperationEnum getOperation() {
+        return operation;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public Object[] getArgs() {
+        return args;
+    }
+
+    //执行下一个拦截器,没有时执行真正的dao操作
+    public Object proceed() {
+        if (index < interceptors.length) {
+            return interceptors[index++].intercept(this);
+        }
+        return action.get();
+    }
+}
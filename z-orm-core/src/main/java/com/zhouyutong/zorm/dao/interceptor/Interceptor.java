@@ -9,7 +9,9 @@ package com.zhouyutong.zorm.dao.interceptor;
  *
  * @Author zhouyutong
  * @Date 2016/10/21
+ * @deprecated dao不是接口,动态代理无法拦截,使用内置在dao调用路径中的DaoInterceptor
  */
+@Deprecated
 public interface Interceptor {
 
     /**
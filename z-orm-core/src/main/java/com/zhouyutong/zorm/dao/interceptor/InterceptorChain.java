@@ -13,7 +13,9 @@ import java.util.concurrent.locks.ReentrantLock;
  *
  * @Author zhouyutong
  * @Date 2016/10/21
+ * @deprecated dao不是接口,动态代理无法拦截,使用内置在dao调用路径中的DaoInterceptor
  */
+@Deprecated
 public class InterceptorChain {
     private Set<Interceptor> interceptors = Sets.newLinkedHashSet();
     private final Lock locker = new ReentrantLock();
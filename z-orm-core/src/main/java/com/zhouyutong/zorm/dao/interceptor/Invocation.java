@@ -8,7 +8,9 @@ import java.lang.reflect.Method;
  *
  * @Author zhouyutong
  * @Date 2016/10/21
+ * @deprecated dao不是接口,动态代理无法拦截,使用内置在dao调用路径中的DaoInterceptor
  */
+@Deprecated
 public class Invocation {
     //某个dao的具体实例
     private Object target;
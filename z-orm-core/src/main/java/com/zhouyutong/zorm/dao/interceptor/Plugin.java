@@ -11,7 +11,9 @@ import java.util.Set;
  *
  * @Author zhouyutong
  * @Date 2016/10/21
+ * @deprecated dao不是接口,动态代理无法拦截,使用内置在dao调用路径中的DaoInterceptor
  */
+@Deprecated
 public class Plugin implements InvocationHandler {
 
     private Object target;
@@ -0,0 +1,67 @@
+package com.zhouyutong.zorm.entity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * entity的属性读写器,由z-orm-processor在编译期为每个entity生成,类名为entity类名加_ZormAccessor
+ * 存在时EntityMetadata直接调用生成的代码读写属性,不再使用反射
+ * jdbc entity的结果集映射(mapRow)和insert参数(getValues)也直接使用生成的代码
+ */
+public interface EntityAccessor {
+    /**
+     * 生成的类名后缀
+     */
+    String CLASS_SUFFIX = "_ZormAccessor";
+
+    /**
+     * 所有非静态属性名,下标即get/set的index
+     *
+     * @return
+     */
+    List<String> getPropertyNames();
+
+    /**
+     * 属性名到jdbc字段名的映射,只包含需要映射的属性,entity没有Table注解时为空
+     *
+     * @return
+     */
+    Map<String, String> getColumnNames();
+
+    /**
+     * 通过无参构造函数创建entity
+     *
+     * @return
+     */
+    Object newInstance();
+
+    Object get(Object entity, int index);
+
+    void set(Object entity, int index, Object value);
+
+    /**
+     * 所有属性的值,下标与getPropertyNames一致,用于insert、upsert绑定参数
+     *
+     * @return
+     */
+    Object[] getValues(Object entity);
+
+    /**
+     * 是否生成了mapRow,只有jdbc entity且所有字段都是可以直接读取的类型时生成
+     *
+     * @return
+     */
+    boolean hasRowMapper();
+
+    /**
+     * 按属性的声明类型调用ResultSet.getXxx读取当前行并创建entity,null值不写入,与EntityRowMapper逐个属性映射的结果一致
+     *
+     * @param rs            - 结果集,已经移动到要读取的行
+     * @param columnIndexes - 下标与getPropertyNames一致,值为该属性所在的列,0表示结果集中没有该列
+     * @return
+     * @throws SQLException
+     */
+    Object mapRow(ResultSet rs, int[] columnIndexes) throws SQLException;
+}
@@ -0,0 +1,286 @@
+package com.zhouyutong.zorm.entity;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.zhouyutong.zorm.annotation.PK;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * entity的属性元数据,每个entity class只解析一次,所有dao共用
+ * 属性的读写通过预先创建的MethodHandle完成,不再每次调用getDeclaredField和setAccessible
+ * 属性只包含entity class自身声明的非静态字段,与原有的getDeclaredFields行为一致
+ * 编译期生成了EntityAccessor时通过生成的代码读写属性和创建entity
+ */
+public final class EntityMetadata {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final ConcurrentMap<Class<?>, EntityMetadata> REGISTRY = Maps.newConcurrentMap();
+
+    private final Class<?> entityClass;
+    //没有使用z-orm-processor生成时为null
+    private final EntityAccessor accessor;
+    //没有无参构造函数或使用生成的accessor时为null
+    private final MethodHandle constructor;
+    private final List<Property> properties;
+    private final Map<String, Property> propertyMap;
+    //没有PK注解时为null
+    private final Property pk;
+
+    private EntityMetadata(Class<?> entityClass) {
+        this.entityClass = entityClass;
+        this.accessor = loadAccessor(entityClass);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle constructorHandle = null;
+        if (accessor == null) {
+            try {
+                Constructor<?> c = entityClass.getDeclaredConstructor();
+                c.setAccessible(true);
+                constructorHandle = lookup.unreflectConstructor(c).asType(CONSTRUCTOR_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                //接口、抽象类或没有无参构造函数,只能读写属性
+            }
+        }
+        this.constructor = constructorHandle;
+        List<String> generatedPropertyNames = accessor == null ? null : accessor.getPropertyNames();
+
+        ImmutableList.Builder<Property> propertyBuilder = ImmutableList.builder();
+        ImmutableMap.Builder<String, Property> propertyMapBuilder = ImmutableMap.builder();
+        Property pkProperty = null;
+        for (Field field : entityClass.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            int index = generatedPropertyNames == null ? -1 : generatedPropertyNames.indexOf(field.getName());
+            Property property = index < 0 ? new Property(lookup, field) : new Property(field, accessor, index);
+            propertyBuilder.add(property);
+            propertyMapBuilder.put(property.name, property);
+            if (pkProperty == null && field.getAnnotation(PK.class) != null) {
+                pkProperty = property;
+            }
+        }
+        this.properties = propertyBuilder.build();
+        this.propertyMap = propertyMapBuilder.build();
+        this.pk = pkProperty;
+    }
+
+    /**
+     * 加载编译期生成的accessor,类名为entity的binary name中的$替换为_后加上后缀
+     */
+    private static EntityAccessor loadAccessor(Class<?> entityClass) {
+        String accessorClassName = entityClass.getName().replace('$', '_') + EntityAccessor.CLASS_SUFFIX;
+        try {
+            Class<?> accessorClass = Class.forName(accessorClassName, true, entityClass.getClassLoader());
+            if (!EntityAccessor.class.isAssignableFrom(accessorClass)) {
+                return null;
+            }
+            return (EntityAccessor) accessorClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new RuntimeException("无法创建entity[" + entityClass.getName() + "]生成的[" + accessorClassName + "]", e);
+        }
+    }
+
+    /**
+     * 得到entity class的元数据,第一次调用时解析
+     *
+     * @param entityClass - entity class
+     * @return - 元数据
+     */
+    public static EntityMetadata of(Class<?> entityClass) {
+        EntityMetadata entityMetadata = REGISTRY.get(entityClass);
+        if (entityMetadata == null) {
+            entityMetadata = REGISTRY.computeIfAbsent(entityClass, EntityMetadata::new);
+        }
+        return entityMetadata;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * 是否使用编译期生成的accessor,生成时已经校验过entity的注解
+     */
+    public boolean isGenerated() {
+        return accessor != null;
+    }
+
+    /**
+     * 编译期生成的accessor,没有生成时返回null
+     */
+    public EntityAccessor getAccessor() {
+        return accessor;
+    }
+
+    /**
+     * 所有非静态属性,顺序与声明顺序一致
+     */
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * 根据属性名得到属性
+     *
+     * @param name - 属性名
+     * @return - 属性,不存在时返回null
+     */
+    public Property getProperty(String name) {
+        return propertyMap.get(name);
+    }
+
+    /**
+     * 根据属性名得到属性,不存在时抛出异常
+     *
+     * @param name - 属性名
+     * @return - 属性
+     */
+    public Property getRequiredProperty(String name) {
+        Property property = propertyMap.get(name);
+        if (property == null) {
+            throw new RuntimeException("entity[" + entityClass.getName() + "]没有属性[" + name + "]");
+        }
+        return property;
+    }
+
+    /**
+     * 标注了PK注解的属性,没有时返回null
+     */
+    public Property getPk() {
+        return pk;
+    }
+
+    /**
+     * 通过无参构造函数创建entity
+     */
+    public Object newInstance() {
+        if (accessor != null) {
+            return accessor.newInstance();
+        }
+        if (constructor == null) {
+            throw new RuntimeException("entity[" + entityClass.getName() + "]必须有无参构造函数");
+        }
+        try {
+            return constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new RuntimeException("无法创建entity[" + entityClass.getName() + "]", e);
+        }
+    }
+
+    /**
+     * 复制entity,非final属性逐个复制,Date(包括Timestamp)属性复制为新对象,其他属性值共用
+     * 用于缓存返回给调用方的entity,调用方修改返回值不影响缓存中的entity
+     *
+     * @param entity - 当前entity class的实例
+     * @return - 新的entity
+     */
+    public Object copy(Object entity) {
+        Object copy = this.newInstance();
+        for (Property property : properties) {
+            if (property.isFinal()) {
+                continue;
+            }
+            Object v = property.get(entity);
+            property.set(copy, v instanceof Date ? ((Date) v).clone() : v);
+        }
+        return copy;
+    }
+
+    /**
+     * entity的一个属性及其读写句柄
+     */
+    public static final class Property {
+        private final String name;
+        private final Class<?> type;
+        private final Field field;
+        private final boolean finalField;
+        //使用生成的accessor时getter和setter为null
+        private final MethodHandle getter;
+        //final属性为null
+        private final MethodHandle setter;
+        private final EntityAccessor accessor;
+        private final int index;
+
+        private Property(MethodHandles.Lookup lookup, Field field) {
+            this.name = field.getName();
+            this.type = field.getType();
+            this.field = field;
+            this.finalField = Modifier.isFinal(field.getModifiers());
+            this.accessor = null;
+            this.index = -1;
+            try {
+                field.setAccessible(true);
+                this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+                this.setter = finalField ? null : lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("无法访问entity[" + field.getDeclaringClass().getName() + "]的属性[" + name + "]", e);
+            }
+        }
+
+        private Property(Field field, EntityAccessor accessor, int index) {
+            this.name = field.getName();
+            this.type = field.getType();
+            this.field = field;
+            this.finalField = Modifier.isFinal(field.getModifiers());
+            this.getter = null;
+            this.setter = null;
+            this.accessor = accessor;
+            this.index = index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public boolean isFinal() {
+            return finalField;
+        }
+
+        public Object get(Object bean) {
+            try {
+                if (accessor != null) {
+                    return accessor.get(bean, index);
+                }
+                return getter.invokeExact(bean);
+            } catch (Throwable e) {
+                throw new RuntimeException("无法获取entity[" + bean.getClass().getName() + "]的属性[" + name + "]的值", e);
+            }
+        }
+
+        public void set(Object bean, Object v) {
+            if (finalField) {
+                throw new RuntimeException("无法设置entity[" + bean.getClass().getName() + "]的final属性[" + name + "]");
+            }
+            try {
+                if (accessor != null) {
+                    accessor.set(bean, index, v);
+                    return;
+                }
+                setter.invokeExact(bean, v);
+            } catch (Throwable e) {
+                throw new RuntimeException("无法设置entity[" + bean.getClass().getName() + "]的属性[" + name + "],值[" + v + "]", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.zhouyutong.zorm.enums;
+
+/**
+ * dao操作枚举,重载的方法和对应的xxxAsync方法属于同一个操作
+ * 用于指标的操作名和拦截器的匹配
+ *
+ * @author zhouyutong
+ */
+public enum DaoOperationEnum {
+    EXISTS("exists"),
+    COUNT_BY_CRITERIA("countByCriteria"),
+    COUNT_ALL("countAll"),
+    COUNT_BY_SQL("countBySql"),
+    FIND_ONE_BY_ID("findOneById"),
+    FIND_ONE_BY_QUERY("findOneByQuery"),
+    FIND_ONE_BY_SQL("findOneBySql"),
+    FIND_LIST_BY_IDS("findListByIds"),
+    FIND_LIST_BY_QUERY("findListByQuery"),
+    FIND_LIST_BY_SQL("findListBySql"),
+    STREAM("stream"),
+    EXPORT("export"),
+    INSERT("insert"),
+    UPSERT("upsert"),
+    UPDATE("update"),
+    UPDATE_BY_ID("updateById"),
+    UPDATE_BY_IDS("updateByIds"),
+    UPDATE_BY_CRITERIA("updateByCriteria"),
+    UPDATE_BY_SQL("updateBySql"),
+    DELETE_BY_ID("deleteById"),
+    DELETE_BY_CRITERIA("deleteByCriteria"),
+    DELETE_BY_SQL("deleteBySql");
+
+    private final String value;
+
+    DaoOperationEnum(String value) {
+        this.value = value;
+    }
+
+    public String value() {
+        return this.value;
+    }
+}
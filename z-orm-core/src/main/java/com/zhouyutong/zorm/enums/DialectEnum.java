@@ -8,6 +8,8 @@ package com.zhouyutong.zorm.enums;
 public enum DialectEnum {
     MYSQL("mysql"),
     ORACLE("oracle"),
+    POSTGRESQL("postgresql"),
+    H2("h2"),
     ELASTICSEARCH("elasticsearch"),
     CASSANDRA("cassandra");
 
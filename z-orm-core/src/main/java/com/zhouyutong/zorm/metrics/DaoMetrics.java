@@ -0,0 +1,142 @@
+package com.zhouyutong.zorm.metrics;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.zhouyutong.zorm.constant.MixedConstant;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.BaseStream;
+
+/**
+ * 一个dao class的所有操作的指标
+ * 同一线程内嵌套调用同一个dao的操作时(如update委托给updateById),只记录最外层的操作,避免重复计数
+ * 行数的计算规则:int为影响的行数,Collection为元素个数,boolean为true时为1,null为0,其他单个结果(entity、count)为1
+ */
+public final class DaoMetrics {
+    private final String daoName;
+    private final ConcurrentMap<String, OperationMetrics> operations = Maps.newConcurrentMap();
+    //当前线程正在执行的本dao操作的嵌套层数
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    DaoMetrics(String daoName) {
+        this.daoName = daoName;
+    }
+
+    public String getDaoName() {
+        return daoName;
+    }
+
+    /**
+     * 当前线程调用本dao的操作时是否会记录,未开启或处于嵌套调用中时不记录
+     */
+    public boolean shouldRecord() {
+        return MetricsRegistry.INSTANCE.isEnabled() && depth.get()[0] == 0;
+    }
+
+    /**
+     * 执行同步操作并记录,异常原样抛出
+     *
+     * @param operation - 操作名
+     * @param action    - 操作
+     */
+    public <R> R record(String operation, Supplier<R> action) {
+        if (!MetricsRegistry.INSTANCE.isEnabled()) {
+            return action.get();
+        }
+        int[] current = depth.get();
+        if (current[0] > 0) {
+            return action.get();
+        }
+
+        current[0]++;
+        long start = System.nanoTime();
+        try {
+            R result = action.get();
+            this.getOperation(operation).recordSuccess(System.nanoTime() - start, rows(result));
+            return result;
+        } catch (RuntimeException | Error e) {
+            this.getOperation(operation).recordError(System.nanoTime() - start);
+            throw e;
+        } finally {
+            current[0]--;
+        }
+    }
+
+    /**
+     * 执行原生异步操作,在future完成时记录,耗时从调用开始到future完成
+     *
+     * @param operation - 操作名,与对应的同步操作相同
+     * @param action    - 发起异步操作
+     */
+    public <R> CompletableFuture<R> recordAsync(String operation, Supplier<CompletableFuture<R>> action) {
+        if (!MetricsRegistry.INSTANCE.isEnabled()) {
+            return action.get();
+        }
+        int[] current = depth.get();
+        if (current[0] > 0) {
+            return action.get();
+        }
+
+        //发起时嵌套的异步操作(如existsAsync委托给findOneByQueryAsync)同样只记录最外层
+        current[0]++;
+        long start = System.nanoTime();
+        CompletableFuture<R> future;
+        try {
+            future = action.get();
+        } catch (RuntimeException | Error e) {
+            this.getOperation(operation).recordError(System.nanoTime() - start);
+            throw e;
+        } finally {
+            current[0]--;
+        }
+        OperationMetrics operationMetrics = this.getOperation(operation);
+        future.whenComplete((result, t) -> {
+            if (t == null) {
+                operationMetrics.recordSuccess(System.nanoTime() - start, rows(result));
+            } else {
+                operationMetrics.recordError(System.nanoTime() - start);
+            }
+        });
+        return future;
+    }
+
+    List<OperationSnapshot> snapshot() {
+        List<OperationSnapshot> snapshots = Lists.newArrayListWithCapacity(operations.size());
+        for (OperationMetrics operationMetrics : operations.values()) {
+            snapshots.add(operationMetrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    private OperationMetrics getOperation(String operation) {
+        OperationMetrics operationMetrics = operations.get(operation);
+        if (operationMetrics == null) {
+            operationMetrics = operations.computeIfAbsent(operation, k -> new OperationMetrics(daoName, k));
+        }
+        return operationMetrics;
+    }
+
+    private static long rows(Object result) {
+        if (result == null) {
+            return MixedConstant.LONG_0;
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        if (result instanceof Collection) {
+            return ((Collection) result).size();
+        }
+        if (result instanceof Boolean) {
+            return (Boolean) result ? MixedConstant.LONG_1 : MixedConstant.LONG_0;
+        }
+        //stream在调用方读取时才产生行,不计数
+        if (result instanceof BaseStream) {
+            return MixedConstant.LONG_0;
+        }
+        return MixedConstant.LONG_1;
+    }
+}
@@ -0,0 +1,136 @@
+package com.zhouyutong.zorm.metrics;
+
+import com.zhouyutong.zorm.constant.MixedConstant;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图,单位微秒,按HDR Histogram的方式分桶:
+ * 小于64us每1us一个桶,之后每个2的幂区间再等分32个桶,相对误差不超过1/32(约3%)
+ * 桶在创建时一次性分配,记录时只做数组下标计算和原子自增,不分配对象
+ * 超过2^32us(约71分钟)的耗时记入最后一个桶
+ */
+public final class LatencyHistogram {
+    //每个2的幂区间等分为2^SUB_BUCKET_BITS个桶
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    //小于2^LINEAR_BITS的值每个值一个桶
+    private static final int LINEAR_BITS = SUB_BUCKET_BITS + 1;
+    private static final int LINEAR_COUNT = 1 << LINEAR_BITS;
+    private static final int MAX_BITS = 32;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKET_COUNT = LINEAR_COUNT + (MAX_BITS - LINEAR_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, MixedConstant.LONG_0);
+
+    /**
+     * @param nanos - 耗时,纳秒
+     */
+    public void recordNanos(long nanos) {
+        this.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * @param micros - 耗时,微秒
+     */
+    public void record(long micros) {
+        long value = micros < 0 ? MixedConstant.LONG_0 : Math.min(micros, MAX_VALUE);
+        buckets.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(counts, count.sum(), sum.sum(), max.get());
+    }
+
+    static int index(long value) {
+        if (value < LINEAR_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+        return LINEAR_COUNT + (exponent - LINEAR_BITS) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    //桶内的最大值
+    static long upperBound(int index) {
+        if (index < LINEAR_COUNT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_COUNT) / SUB_BUCKET_COUNT + LINEAR_BITS;
+        long subBucket = (index - LINEAR_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * 直方图某一时刻的拷贝,各桶之间不保证是同一时刻的值,用于监控足够
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        //微秒
+        public long getMax() {
+            return max;
+        }
+
+        //微秒
+        public double getMean() {
+            return count == 0 ? 0D : (double) sum / count;
+        }
+
+        /**
+         * @param percentile - 百分位,如99.9
+         * @return 对应百分位所在桶的上界,微秒,不超过max
+         */
+        public long getValueAtPercentile(double percentile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return MixedConstant.LONG_0;
+            }
+            long target = Math.max(MixedConstant.LONG_1, (long) Math.ceil(Math.min(percentile, 100D) / 100D * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + Math.round(getMean()) + "us, p50=" + getValueAtPercentile(50D)
+                    + "us, p99=" + getValueAtPercentile(99D) + "us, p999=" + getValueAtPercentile(99.9D) + "us, max=" + max + "us";
+        }
+    }
+}
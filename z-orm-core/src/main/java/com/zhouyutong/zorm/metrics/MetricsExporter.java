@@ -0,0 +1,15 @@
+package com.zhouyutong.zorm.metrics;
+
+import java.util.List;
+
+/**
+ * 指标导出接口,由使用方实现并桥接到自己的监控系统
+ * 通过MetricsRegistry.INSTANCE.addExporter注册,在z-orm的导出线程中按固定周期调用
+ */
+public interface MetricsExporter {
+
+    /**
+     * @param snapshots - 所有dao所有操作的累计指标
+     */
+    void export(List<OperationSnapshot> snapshots);
+}
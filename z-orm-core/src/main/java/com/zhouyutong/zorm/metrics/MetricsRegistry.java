@@ -0,0 +1,91 @@
+package com.zhouyutong.zorm.metrics;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有dao的指标,按dao class名区分
+ * 默认开启,关闭后dao操作不再计时和计数
+ * 注册了exporter时才创建导出线程,导出线程为守护线程
+ */
+@Slf4j
+public enum MetricsRegistry {
+    INSTANCE;
+
+    private final ConcurrentMap<String, DaoMetrics> daoMetricsMap = Maps.newConcurrentMap();
+    private final ConcurrentMap<MetricsExporter, ScheduledFuture<?>> exporters = Maps.newConcurrentMap();
+    private volatile boolean enabled = true;
+    private ScheduledExecutorService scheduler;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public DaoMetrics getDaoMetrics(Class<?> daoClass) {
+        return daoMetricsMap.computeIfAbsent(daoClass.getName(), DaoMetrics::new);
+    }
+
+    /**
+     * @return 所有dao所有操作的累计指标
+     */
+    public List<OperationSnapshot> snapshot() {
+        List<OperationSnapshot> snapshots = Lists.newArrayList();
+        for (DaoMetrics daoMetrics : daoMetricsMap.values()) {
+            snapshots.addAll(daoMetrics.snapshot());
+        }
+        return Collections.unmodifiableList(snapshots);
+    }
+
+    /**
+     * 注册exporter,按固定周期导出,同一个exporter重复注册时忽略
+     *
+     * @param exporter - 导出实现
+     * @param period   - 导出周期
+     * @param unit     - 周期单位
+     */
+    public synchronized void addExporter(MetricsExporter exporter, long period, TimeUnit unit) {
+        if (exporter == null) {
+            throw new IllegalArgumentException("Param exporter must be not null");
+        }
+        if (period <= 0 || unit == null) {
+            throw new IllegalArgumentException("Param period must be positive and unit must be not null");
+        }
+        if (exporters.containsKey(exporter)) {
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("z-orm-metrics-exporter-%d").setDaemon(true).build());
+        }
+        exporters.put(exporter, scheduler.scheduleAtFixedRate(() -> this.export(exporter), period, period, unit));
+    }
+
+    public synchronized void removeExporter(MetricsExporter exporter) {
+        ScheduledFuture<?> future = exporters.remove(exporter);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private void export(MetricsExporter exporter) {
+        try {
+            exporter.export(this.snapshot());
+        } catch (Throwable t) {
+            //异常不能抛出,否则周期任务会被取消
+            log.error("MetricsExporter[" + exporter.getClass().getName() + "] export error", t);
+        }
+    }
+}
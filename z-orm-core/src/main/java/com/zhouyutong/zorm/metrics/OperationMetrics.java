@@ -0,0 +1,36 @@
+package com.zhouyutong.zorm.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个dao的一种操作的累计指标
+ */
+final class OperationMetrics {
+    private final String daoName;
+    private final String operation;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    OperationMetrics(String daoName, String operation) {
+        this.daoName = daoName;
+        this.operation = operation;
+    }
+
+    void recordSuccess(long nanos, long rowCount) {
+        calls.increment();
+        rows.add(rowCount);
+        latency.recordNanos(nanos);
+    }
+
+    void recordError(long nanos) {
+        calls.increment();
+        errors.increment();
+        latency.recordNanos(nanos);
+    }
+
+    OperationSnapshot snapshot() {
+        return new OperationSnapshot(daoName, operation, calls.sum(), errors.sum(), rows.sum(), latency.snapshot());
+    }
+}
@@ -0,0 +1,29 @@
+package com.zhouyutong.zorm.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一个dao的一种操作在导出时刻的累计指标,计数从应用启动开始累计,需要速率时由exporter对两次导出做差
+ */
+@Getter
+@AllArgsConstructor
+public final class OperationSnapshot {
+    //dao的类名
+    private final String daoName;
+    //操作名,如findListByQuery、insert、countByCriteria
+    private final String operation;
+    //调用次数,包含异常
+    private final long calls;
+    //异常次数
+    private final long errors;
+    //返回或影响的行数
+    private final long rows;
+    //耗时分布,微秒
+    private final LatencyHistogram.Snapshot latency;
+
+    @Override
+    public String toString() {
+        return daoName + "." + operation + " calls=" + calls + ", errors=" + errors + ", rows=" + rows + ", latency[" + latency + "]";
+    }
+}
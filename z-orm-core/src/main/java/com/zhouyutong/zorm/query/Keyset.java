@@ -0,0 +1,101 @@
+package com.zhouyutong.zorm.query;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.dao.DaoHelper;
+import com.zhouyutong.zorm.entity.IdEntity;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * seek分页游标,保存上一页最后一行的order by字段值和主键值
+ * 下一页通过where条件直接定位到游标之后,代价与页码无关
+ * 排序规则:query中的order by截止到主键为止,最后总是以主键排序保证顺序唯一
+ * 游标值不能为null,null与任何值比较都不成立,不支持在可为null的字段上seek分页
+ *
+ * @author zhouyutong
+ */
+public class Keyset implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Keyset FIRST = new Keyset(Collections.emptyList());
+
+    /**
+     * 依次为seek排序字段的值,最后一个是主键值,为空表示第一页
+     */
+    private final List<Object> values;
+
+    private Keyset(List<Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * 第一页,使用seek排序但没有游标条件
+     */
+    public static Keyset first() {
+        return FIRST;
+    }
+
+    /**
+     * 根据值构造游标,值的顺序与seekOrderBys一致
+     */
+    public static Keyset of(Object... values) {
+        Preconditions.checkArgument(values != null && values.length > 0, "Param values must be not null or empty");
+        for (int i = 0; i < values.length; i++) {
+            Preconditions.checkArgument(values[i] != null, "Keyset的第%s个值为null,seek分页的排序字段不能为null", i + 1);
+        }
+        return new Keyset(Collections.unmodifiableList(Lists.newArrayList(values)));
+    }
+
+    /**
+     * 根据上一页最后一个entity构造游标
+     *
+     * @param lastEntity - 上一页最后一个entity
+     * @param orderBys   - 查询使用的order by,可以为空
+     */
+    public static Keyset after(IdEntity lastEntity, List<OrderBy> orderBys) {
+        Preconditions.checkNotNull(lastEntity, "Param lastEntity must be not null");
+        String pkFieldName = DaoHelper.getPkField(lastEntity).getName();
+        List<Object> values = Lists.newArrayList();
+        for (OrderBy orderBy : seekOrderBys(orderBys, pkFieldName)) {
+            Object value = DaoHelper.getColumnValue(orderBy.getKey(), lastEntity);
+            Preconditions.checkArgument(value != null, "seek分页的排序字段[%s]在%s中为null,不支持在可为null的字段上seek分页", orderBy.getKey(), lastEntity);
+            values.add(value);
+        }
+        return new Keyset(Collections.unmodifiableList(values));
+    }
+
+    /**
+     * seek分页实际使用的排序
+     * order by截止到主键为止,主键不在order by中时追加主键,方向与最后一个order by一致,默认ASC
+     */
+    public static List<OrderBy> seekOrderBys(List<OrderBy> orderBys, String pkFieldName) {
+        List<OrderBy> seekOrderBys = Lists.newArrayList();
+        OrderBy.Direction direction = OrderBy.Direction.ASC;
+        if (orderBys != null) {
+            for (OrderBy orderBy : orderBys) {
+                direction = OrderBy.Direction.valueOf(orderBy.getDirection());
+                if (pkFieldName.equals(orderBy.getKey())) {
+                    break;
+                }
+                seekOrderBys.add(orderBy);
+            }
+        }
+        seekOrderBys.add(OrderBy.orderBy(pkFieldName, direction));
+        return seekOrderBys;
+    }
+
+    public boolean isFirst() {
+        return values.isEmpty();
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "Keyset" + values;
+    }
+}
@@ -17,6 +17,8 @@ public class Pageable implements Serializable {
 
     private int pageNumber;
     private int pageSize;
+    //seek分页游标,不为null时忽略pageNumber
+    private Keyset keyset;
 
     public Pageable() {
         setPageNumber(DEFAULT_PAGE_NUMBER);
@@ -32,6 +34,18 @@ public class Pageable implements Serializable {
         setPageSize(pageSize);
     }
 
+    /**
+     * seek分页,深度翻页与第一页代价相同
+     *
+     * @param keyset   - 上一页最后一行生成的游标,第一页使用Keyset.first()
+     * @param pageSize - 每页条数
+     */
+    public Pageable(Keyset keyset, int pageSize) {
+        setPageNumber(DEFAULT_PAGE_NUMBER);
+        setPageSize(pageSize);
+        this.keyset = keyset;
+    }
+
     public int getPageNumber() {
         return pageNumber;
     }
@@ -57,4 +71,12 @@ public class Pageable implements Serializable {
         this.pageSize = pageSize;
     }
 
+    public Keyset getKeyset() {
+        return keyset;
+    }
+
+    public void setKeyset(Keyset keyset) {
+        this.keyset = keyset;
+    }
+
 }
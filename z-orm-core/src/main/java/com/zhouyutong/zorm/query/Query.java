@@ -36,6 +36,10 @@ public class Query {
     private int offset;
     private int limit;
     private String hint;
+    /**
+     * seek分页游标,不为null时使用seek分页代替offset
+     */
+    private Keyset keyset;
 
     private Query() {
     }
@@ -88,6 +92,12 @@ public class Query {
         return this;
     }
 
+    public Query seek(Keyset keyset) {
+        Preconditions.checkNotNull(keyset, "Param keyset must be not null");
+        this.keyset = keyset;
+        return this;
+    }
+
     public Query hint(String hint) {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(hint), "Param key was %s, It must be not null or empty", hint);
         this.hint = hint;
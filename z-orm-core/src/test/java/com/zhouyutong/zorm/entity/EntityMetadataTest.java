@@ -0,0 +1,119 @@
+package com.zhouyutong.zorm.entity;
+
+import com.zhouyutong.zorm.annotation.PK;
+import com.zhouyutong.zorm.dao.DaoHelper;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EntityMetadataTest {
+
+    @Test
+    public void parsedOncePerClass() {
+        EntityMetadata entityMetadata = EntityMetadata.of(Sample.class);
+
+        assertSame(entityMetadata, EntityMetadata.of(Sample.class));
+        assertFalse(entityMetadata.isGenerated());
+        assertNull(entityMetadata.getAccessor());
+    }
+
+    @Test
+    public void propertiesInDeclarationOrderWithoutStatic() {
+        EntityMetadata entityMetadata = EntityMetadata.of(Sample.class);
+
+        List<String> names = entityMetadata.getProperties().stream().map(EntityMetadata.Property::getName).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("id", "name", "age", "createTime", "type"), names);
+        assertEquals("id", entityMetadata.getPk().getName());
+        assertSame(int.class, entityMetadata.getProperty("age").getType());
+        assertTrue(entityMetadata.getProperty("type").isFinal());
+        assertNull(entityMetadata.getProperty("missing"));
+        assertNull(EntityMetadata.of(NoPk.class).getPk());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void requiredPropertyMissing() {
+        EntityMetadata.of(Sample.class).getRequiredProperty("missing");
+    }
+
+    @Test
+    public void getAndSetPrivateFields() {
+        EntityMetadata entityMetadata = EntityMetadata.of(Sample.class);
+        Sample sample = (Sample) entityMetadata.newInstance();
+
+        entityMetadata.getRequiredProperty("id").set(sample, 7L);
+        entityMetadata.getRequiredProperty("age").set(sample, 18);
+        entityMetadata.getRequiredProperty("name").set(sample, null);
+
+        assertEquals(Long.valueOf(7L), sample.id);
+        assertEquals(18, sample.age);
+        assertEquals(18, entityMetadata.getRequiredProperty("age").get(sample));
+        assertEquals("sample", entityMetadata.getRequiredProperty("type").get(sample));
+        assertEquals(7L, DaoHelper.getPkValue(sample));
+        assertEquals(18, DaoHelper.getColumnValue("age", sample));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void setFinalFieldRejected() {
+        EntityMetadata.of(Sample.class).getRequiredProperty("type").set(new Sample(), "other");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void setWrongTypeRejected() {
+        EntityMetadata.of(Sample.class).getRequiredProperty("age").set(new Sample(), "eighteen");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void newInstanceWithoutNoArgConstructor() {
+        EntityMetadata.of(NoPk.class).newInstance();
+    }
+
+    @Test
+    public void copyClonesDates() {
+        Sample sample = new Sample();
+        sample.id = 1L;
+        sample.name = "tom";
+        sample.age = 20;
+        sample.createTime = new Date(1000L);
+
+        Sample copy = (Sample) EntityMetadata.of(Sample.class).copy(sample);
+        sample.createTime.setTime(2000L);
+
+        assertNotSame(sample, copy);
+        assertEquals(Long.valueOf(1L), copy.id);
+        assertEquals("tom", copy.name);
+        assertEquals(20, copy.age);
+        assertEquals(new Date(1000L), copy.createTime);
+    }
+
+    private static class Sample implements IdEntity {
+        private static final String TYPE = "sample";
+        @PK
+        private Long id;
+        private String name;
+        private int age;
+        private Date createTime;
+        private final String type = TYPE;
+
+        private Sample() {
+        }
+    }
+
+    private static class NoPk {
+        private String name;
+
+        private NoPk(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.zhouyutong.zorm.metrics;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DaoMetricsTest {
+
+    @After
+    public void tearDown() {
+        MetricsRegistry.INSTANCE.setEnabled(true);
+    }
+
+    private static OperationSnapshot snapshot(DaoMetrics daoMetrics, String operation) {
+        for (OperationSnapshot snapshot : daoMetrics.snapshot()) {
+            if (snapshot.getOperation().equals(operation)) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void recordsCallsRowsAndErrors() {
+        DaoMetrics daoMetrics = new DaoMetrics("recordsCallsRowsAndErrors");
+
+        assertEquals(3, daoMetrics.record("findListByQuery", () -> Lists.newArrayList(1, 2, 3)).size());
+        assertEquals(Integer.valueOf(2), daoMetrics.record("update", () -> 2));
+        daoMetrics.record("findListByQuery", () -> null);
+        try {
+            daoMetrics.record("update", () -> {
+                throw new IllegalStateException("update failed");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("update failed", e.getMessage());
+        }
+
+        OperationSnapshot find = snapshot(daoMetrics, "findListByQuery");
+        assertEquals(2, find.getCalls());
+        assertEquals(0, find.getErrors());
+        assertEquals(3, find.getRows());
+        assertEquals(2, find.getLatency().getCount());
+        OperationSnapshot update = snapshot(daoMetrics, "update");
+        assertEquals(2, update.getCalls());
+        assertEquals(1, update.getErrors());
+        assertEquals(2, update.getRows());
+    }
+
+    /**
+     * 同一个dao的嵌套调用只记录最外层
+     */
+    @Test
+    public void nestedCallsRecordOnlyOutermost() {
+        DaoMetrics daoMetrics = new DaoMetrics("nestedCallsRecordOnlyOutermost");
+
+        daoMetrics.record("findOneByQuery", () -> {
+            assertFalse(daoMetrics.shouldRecord());
+            return daoMetrics.record("findListByQuery", () -> Lists.newArrayList("a"));
+        });
+
+        assertTrue(daoMetrics.shouldRecord());
+        assertEquals(1, snapshot(daoMetrics, "findOneByQuery").getCalls());
+        assertNull(snapshot(daoMetrics, "findListByQuery"));
+    }
+
+    @Test
+    public void disabledRecordsNothing() {
+        DaoMetrics daoMetrics = new DaoMetrics("disabledRecordsNothing");
+        MetricsRegistry.INSTANCE.setEnabled(false);
+
+        daoMetrics.record("insert", () -> 1);
+
+        assertFalse(daoMetrics.shouldRecord());
+        assertTrue(daoMetrics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void asyncRecordedOnCompletion() {
+        DaoMetrics daoMetrics = new DaoMetrics("asyncRecordedOnCompletion");
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        CompletableFuture<Integer> failing = new CompletableFuture<>();
+
+        assertSame(pending, daoMetrics.recordAsync("insert", () -> pending));
+        daoMetrics.recordAsync("insert", () -> failing);
+        assertEquals(0, snapshot(daoMetrics, "insert").getCalls());
+
+        pending.complete(5);
+        failing.completeExceptionally(new IllegalStateException());
+
+        OperationSnapshot insert = snapshot(daoMetrics, "insert");
+        assertEquals(2, insert.getCalls());
+        assertEquals(1, insert.getErrors());
+        assertEquals(5, insert.getRows());
+    }
+
+    @Test
+    public void exporterReceivesRegistrySnapshots() throws Exception {
+        DaoMetrics daoMetrics = MetricsRegistry.INSTANCE.getDaoMetrics(ExportedDao.class);
+        assertSame(daoMetrics, MetricsRegistry.INSTANCE.getDaoMetrics(ExportedDao.class));
+        daoMetrics.record("countAll", () -> 7L);
+
+        CountDownLatch exported = new CountDownLatch(1);
+        AtomicReference<List<OperationSnapshot>> received = new AtomicReference<>();
+        MetricsExporter exporter = snapshots -> {
+            received.set(snapshots);
+            exported.countDown();
+        };
+        MetricsRegistry.INSTANCE.addExporter(exporter, 10, TimeUnit.MILLISECONDS);
+        try {
+            assertTrue(exported.await(5, TimeUnit.SECONDS));
+        } finally {
+            MetricsRegistry.INSTANCE.removeExporter(exporter);
+        }
+
+        List<String> operations = received.get().stream()
+                .filter(s -> s.getDaoName().equals(ExportedDao.class.getName()))
+                .map(OperationSnapshot::getOperation)
+                .collect(Collectors.toList());
+        assertEquals(Lists.newArrayList("countAll"), operations);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exporterPeriodMustBePositive() {
+        MetricsRegistry.INSTANCE.addExporter(snapshots -> {
+        }, 0, TimeUnit.SECONDS);
+    }
+
+    private static class ExportedDao {
+    }
+}
@@ -0,0 +1,69 @@
+package com.zhouyutong.zorm.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    /**
+     * 每个值落在上界不小于它的桶中,上界的相对误差不超过1/32
+     */
+    @Test
+    public void bucketUpperBoundWithinRelativeError() {
+        int previous = -1;
+        for (long value = 0; value < (1L << 32); value = value < 1000 ? value + 1 : value + value / 7) {
+            int index = LatencyHistogram.index(value);
+            long upperBound = LatencyHistogram.upperBound(index);
+
+            assertTrue(index >= previous);
+            assertTrue(value <= upperBound);
+            assertTrue(value + "->" + upperBound, upperBound - value <= Math.max(0L, value / 32));
+            if (index > 0) {
+                assertTrue(LatencyHistogram.upperBound(index - 1) < value);
+            }
+            previous = index;
+        }
+    }
+
+    @Test
+    public void percentilesCountAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(10000L);
+        histogram.recordNanos(-5L);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(102, snapshot.getCount());
+        assertEquals(10000L, snapshot.getMax());
+        assertEquals((5050D + 10000D) / 102, snapshot.getMean(), 0.0001D);
+        assertEquals(50L, snapshot.getValueAtPercentile(50D));
+        //64us以上的桶宽为2us,返回100所在桶的上界
+        assertEquals(101L, snapshot.getValueAtPercentile(99D));
+        assertEquals(10000L, snapshot.getValueAtPercentile(100D));
+    }
+
+    @Test
+    public void emptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0D, snapshot.getMean(), 0D);
+        assertEquals(0L, snapshot.getValueAtPercentile(99.9D));
+    }
+
+    /**
+     * 超出范围的值记入最后一个桶,百分位不超过max
+     */
+    @Test
+    public void overflowGoesToLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals((1L << 32) - 1, histogram.snapshot().getValueAtPercentile(50D));
+    }
+}
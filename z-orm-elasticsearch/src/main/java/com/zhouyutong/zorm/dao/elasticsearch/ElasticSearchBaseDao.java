@@ -1,11 +1,15 @@
 package com.zhouyutong.zorm.dao.elasticsearch;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.zhouyutong.zapplication.serialization.json.FastJson;
 import com.zhouyutong.zorm.annotation.PK;
 import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.constant.SymbolConstant;
 import com.zhouyutong.zorm.dao.AbstractBaseDao;
 import com.zhouyutong.zorm.dao.DaoHelper;
 import com.zhouyutong.zorm.entity.IdEntity;
+import com.zhouyutong.zorm.enums.DaoOperationEnum;
 import com.zhouyutong.zorm.enums.DialectEnum;
 import com.zhouyutong.zorm.query.*;
 import com.zhouyutong.zorm.utils.ExceptionTranslator;
@@ -13,8 +17,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
@@ -27,12 +39,21 @@ import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.IdsQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -40,14 +61,25 @@ import org.springframework.context.ApplicationContextAware;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * 基于ElasticSearch6.2.3 RestHighLevelClient的Dao实现
@@ -66,6 +98,9 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
     private Class<T> entityClass;
     private ApplicationContext applicationContext;
 
+    //_update_by_query的脚本,将params.doc中的字段逐个写入_source,脚本内容固定以便服务端缓存编译结果
+    private static final String UPDATE_BY_QUERY_SCRIPT = "for (def entry : params.doc.entrySet()) { ctx._source[entry.getKey()] = entry.getValue(); }";
+
     @Override
     public Class<T> getGenericClass() {
         return this.entityClass;
@@ -73,27 +108,65 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
 
     @Override
     public boolean exists(Serializable id) {
+        return this.invoke(DaoOperationEnum.EXISTS, id, () -> this.doExists(id));
+    }
+
+    private boolean doExists(Serializable id) {
         DaoHelper.checkArgumentId(id);
         return this.exists(Criteria.where(pkFieldName, id));
     }
 
     @Override
     public boolean exists(Criteria criteria) {
+        return this.invoke(DaoOperationEnum.EXISTS, criteria, () -> this.doExists(criteria));
+    }
+
+    private boolean doExists(Criteria criteria) {
         DaoHelper.checkArgumentCriteria(criteria);
         return null != this.findOne(Arrays.asList(pkFieldName), criteria);
     }
 
+    @Override
+    public CompletableFuture<Boolean> existsAsync(Serializable id) {
+        return this.invokeAsync(DaoOperationEnum.EXISTS, id, () -> this.doExistsAsync(id));
+    }
+
+    private CompletableFuture<Boolean> doExistsAsync(Serializable id) {
+        try {
+            DaoHelper.checkArgumentId(id);
+            return this.existsAsync(Criteria.where(pkFieldName, id));
+        } catch (RuntimeException e) {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(Criteria criteria) {
+        return this.invokeAsync(DaoOperationEnum.EXISTS, criteria, () -> this.doExistsAsync(criteria));
+    }
+
+    private CompletableFuture<Boolean> doExistsAsync(Criteria criteria) {
+        try {
+            DaoHelper.checkArgumentCriteria(criteria);
+            Query query = Query.query(criteria).includeField(pkFieldName);
+            return this.findOneByQueryAsync(query).thenApply(entity -> entity != null);
+        } catch (RuntimeException e) {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
     @Override
     public long countByCriteria(Criteria criteria) {
-        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices(ElasticSearchHelper.getRealIndex(index, indexPattern));
-        searchRequest.types(type);
+        return this.invoke(DaoOperationEnum.COUNT_BY_CRITERIA, criteria, () -> this.doCountByCriteria(criteria));
+    }
 
-        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-        searchSourceBuilder.query(ElasticSearchHelper.criteria2QueryBuilder(criteria))
-                .size(MixedConstant.INT_0);
-        searchRequest.source(searchSourceBuilder);
+    private long doCountByCriteria(Criteria criteria) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        SearchRequest searchRequest = this.countRequest(criteria);
 
         try {
             if (log.isDebugEnabled()) {
@@ -109,13 +182,53 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
         }
     }
 
+    @Override
+    public CompletableFuture<Long> countByCriteriaAsync(Criteria criteria) {
+        return this.invokeAsync(DaoOperationEnum.COUNT_BY_CRITERIA, criteria, () -> this.doCountByCriteriaAsync(criteria));
+    }
+
+    private CompletableFuture<Long> doCountByCriteriaAsync(Criteria criteria) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        return this.executeAsync("countByCriteria", () -> this.countRequest(criteria), client::searchAsync,
+                (SearchResponse searchResponse) -> searchResponse.getHits().getTotalHits());
+    }
+
+    private SearchRequest countRequest(Criteria criteria) {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(ElasticSearchHelper.getRealIndex(index, indexPattern));
+        searchRequest.types(type);
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        searchSourceBuilder.query(ElasticSearchHelper.criteria2QueryBuilder(criteria))
+                .size(MixedConstant.INT_0);
+        searchRequest.source(searchSourceBuilder);
+        return searchRequest;
+    }
+
     @Override
     public long countAll() {
+        return this.invoke(DaoOperationEnum.COUNT_ALL, () -> this.doCountAll());
+    }
+
+    private long doCountAll() {
         return countByCriteria(null);
     }
 
+    @Override
+    public CompletableFuture<Long> countAllAsync() {
+        return this.invokeAsync(DaoOperationEnum.COUNT_ALL, () -> this.doCountAllAsync());
+    }
+
+    private CompletableFuture<Long> doCountAllAsync() {
+        return this.countByCriteriaAsync(null);
+    }
+
     @Override
     protected long countBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.COUNT_BY_SQL, sql, param, () -> this.doCountBySql(sql, param));
+    }
+
+    private long doCountBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
         RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
         SearchRequest searchRequest = new SearchRequest();
@@ -142,6 +255,10 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
 
     @Override
     public T findOneById(Serializable id) {
+        return this.invoke(DaoOperationEnum.FIND_ONE_BY_ID, id, () -> this.doFindOneById(id));
+    }
+
+    private T doFindOneById(Serializable id) {
         DaoHelper.checkArgumentId(id);
 
         RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
@@ -154,34 +271,41 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
             if (log.isDebugEnabled()) {
                 log.debug("=========findOneById response:" + getResponse.toString());
             }
-            if (!getResponse.isExists()) {
-                return null;
-            }
-            String source = getResponse.getSourceAsString();
-            return FastJson.jsonStr2Object(source, entityClass);
+            return this.getEntity(getResponse);
         } catch (IOException e) {
             throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
         }
     }
 
     @Override
-    public T findOneByQuery(Query query) {
-        DaoHelper.checkArgumentQuery(query);
+    public CompletableFuture<T> findOneByIdAsync(Serializable id) {
+        return this.invokeAsync(DaoOperationEnum.FIND_ONE_BY_ID, id, () -> this.doFindOneByIdAsync(id));
+    }
 
+    private CompletableFuture<T> doFindOneByIdAsync(Serializable id) {
         RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
-        String[] includes = ElasticSearchHelper.includeFileds(query.getFields());
-        String[] excludes = MixedConstant.EMPTY_STRING_ARRAY;
+        return this.executeAsync("findOneById", () -> {
+            DaoHelper.checkArgumentId(id);
+            return new GetRequest(index, type, id.toString());
+        }, client::getAsync, this::getEntity);
+    }
 
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices(ElasticSearchHelper.getRealIndex(index, indexPattern));
-        searchRequest.types(type);
+    private T getEntity(GetResponse getResponse) {
+        if (!getResponse.isExists()) {
+            return null;
+        }
+        String source = getResponse.getSourceAsString();
+        return FastJson.jsonStr2Object(source, entityClass);
+    }
 
-        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-        searchSourceBuilder.query(ElasticSearchHelper.criteria2QueryBuilder(query.getCriteria()))
-                .fetchSource(includes, excludes)
-                .from(MixedConstant.INT_0)
-                .size(MixedConstant.INT_1);
-        searchRequest.source(searchSourceBuilder);
+    @Override
+    public T findOneByQuery(Query query) {
+        return this.invoke(DaoOperationEnum.FIND_ONE_BY_QUERY, query, () -> this.doFindOneByQuery(query));
+    }
+
+    private T doFindOneByQuery(Query query) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        SearchRequest searchRequest = this.findOneByQueryRequest(query);
         try {
             if (log.isDebugEnabled()) {
                 log.debug("=========findOneByQuery request:" + searchRequest.toString());
@@ -196,8 +320,42 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
         }
     }
 
+    @Override
+    public CompletableFuture<T> findOneByQueryAsync(Query query) {
+        return this.invokeAsync(DaoOperationEnum.FIND_ONE_BY_QUERY, query, () -> this.doFindOneByQueryAsync(query));
+    }
+
+    private CompletableFuture<T> doFindOneByQueryAsync(Query query) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        return this.executeAsync("findOneByQuery", () -> this.findOneByQueryRequest(query), client::searchAsync,
+                (SearchResponse searchResponse) -> ElasticSearchHelper.getEntity(searchResponse, entityClass));
+    }
+
+    private SearchRequest findOneByQueryRequest(Query query) {
+        DaoHelper.checkArgumentQuery(query);
+
+        String[] includes = ElasticSearchHelper.includeFileds(query.getFields());
+        String[] excludes = MixedConstant.EMPTY_STRING_ARRAY;
+
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(ElasticSearchHelper.getRealIndex(index, indexPattern));
+        searchRequest.types(type);
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        searchSourceBuilder.query(ElasticSearchHelper.criteria2QueryBuilder(query.getCriteria()))
+                .fetchSource(includes, excludes)
+                .from(MixedConstant.INT_0)
+                .size(MixedConstant.INT_1);
+        searchRequest.source(searchSourceBuilder);
+        return searchRequest;
+    }
+
     @Override
     protected T findOneBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.FIND_ONE_BY_SQL, sql, param, () -> this.doFindOneBySql(sql, param));
+    }
+
+    private T doFindOneBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
 
         RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
@@ -226,8 +384,39 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
 
     @Override
     public List<T> findListByIds(List<Serializable> ids) {
-        DaoHelper.checkArgumentIds(ids);
+        return this.invoke(DaoOperationEnum.FIND_LIST_BY_IDS, ids, () -> this.doFindListByIds(ids));
+    }
+
+    private List<T> doFindListByIds(List<Serializable> ids) {
         RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        SearchRequest searchRequest = this.findListByIdsRequest(ids);
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("=========findListByIds request:" + searchRequest.toString());
+            }
+            SearchResponse searchResponse = client.search(searchRequest);
+            if (log.isDebugEnabled()) {
+                log.debug("=========findListByIds response:" + searchResponse.toString());
+            }
+            return ElasticSearchHelper.getEntityList(searchResponse, entityClass);
+        } catch (IOException e) {
+            throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findListByIdsAsync(List<Serializable> ids) {
+        return this.invokeAsync(DaoOperationEnum.FIND_LIST_BY_IDS, ids, () -> this.doFindListByIdsAsync(ids));
+    }
+
+    private CompletableFuture<List<T>> doFindListByIdsAsync(List<Serializable> ids) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        return this.executeAsync("findListByIds", () -> this.findListByIdsRequest(ids), client::searchAsync,
+                (SearchResponse searchResponse) -> ElasticSearchHelper.getEntityList(searchResponse, entityClass));
+    }
+
+    private SearchRequest findListByIdsRequest(List<Serializable> ids) {
+        DaoHelper.checkArgumentIds(ids);
 
         SearchRequest searchRequest = new SearchRequest();
         searchRequest.indices(ElasticSearchHelper.getRealIndex(index, indexPattern));
@@ -238,13 +427,24 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
         SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
         searchSourceBuilder.query(idsQueryBuilder);
         searchRequest.source(searchSourceBuilder);
+        return searchRequest;
+    }
+
+    @Override
+    public List<T> findListByQuery(Query query) {
+        return this.invoke(DaoOperationEnum.FIND_LIST_BY_QUERY, query, () -> this.doFindListByQuery(query));
+    }
+
+    private List<T> doFindListByQuery(Query query) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        SearchRequest searchRequest = this.findListByQueryRequest(query);
         try {
             if (log.isDebugEnabled()) {
-                log.debug("=========findListByIds request:" + searchRequest.toString());
+                log.debug("=========findListByQuery request:" + searchRequest.toString());
             }
             SearchResponse searchResponse = client.search(searchRequest);
             if (log.isDebugEnabled()) {
-                log.debug("=========findListByIds response:" + searchResponse.toString());
+                log.debug("=========findListByQuery response:" + searchResponse.toString());
             }
             return ElasticSearchHelper.getEntityList(searchResponse, entityClass);
         } catch (IOException e) {
@@ -253,13 +453,22 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
     }
 
     @Override
-    public List<T> findListByQuery(Query query) {
+    public CompletableFuture<List<T>> findListByQueryAsync(Query query) {
+        return this.invokeAsync(DaoOperationEnum.FIND_LIST_BY_QUERY, query, () -> this.doFindListByQueryAsync(query));
+    }
+
+    private CompletableFuture<List<T>> doFindListByQueryAsync(Query query) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        return this.executeAsync("findListByQuery", () -> this.findListByQueryRequest(query), client::searchAsync,
+                (SearchResponse searchResponse) -> ElasticSearchHelper.getEntityList(searchResponse, entityClass));
+    }
+
+    private SearchRequest findListByQueryRequest(Query query) {
         DaoHelper.checkArgumentQuery(query);
         if (CollectionUtils.isNotEmpty(query.getGroupBys())) { //聚合使用findListBySql
             throw new IllegalArgumentException("findListByQuery not support groupBy Search");
         }
 
-        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
         String[] includes = ElasticSearchHelper.includeFileds(query.getFields());
         String[] excludes = MixedConstant.EMPTY_STRING_ARRAY;
         int from = query.getOffset() < MixedConstant.INT_0 ? MixedConstant.INT_0 : query.getOffset();
@@ -274,8 +483,16 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
                 .fetchSource(includes, excludes)
                 .from(from)
                 .size(size);
-        if (CollectionUtils.isNotEmpty(query.getOrderBys())) {
-            for (OrderBy orderBy : query.getOrderBys()) {
+        List<OrderBy> orderBys = query.getOrderBys();
+        if (query.getKeyset() != null) {    //seek分页使用search_after,from必须为0
+            orderBys = Keyset.seekOrderBys(orderBys, pkFieldName);
+            searchSourceBuilder.from(MixedConstant.INT_0);
+            if (!query.getKeyset().isFirst()) {
+                searchSourceBuilder.searchAfter(ElasticSearchHelper.searchAfterValues(query.getKeyset().getValues()));
+            }
+        }
+        if (CollectionUtils.isNotEmpty(orderBys)) {
+            for (OrderBy orderBy : orderBys) {
                 String field = orderBy.getKey();
                 String direction = orderBy.getDirection();
                 SortOrder order = OrderBy.Direction.ASC.getDirection().equals(direction) ? SortOrder.ASC : SortOrder.DESC;
@@ -283,33 +500,54 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
             }
         }
         searchRequest.source(searchSourceBuilder);
-        try {
-            if (log.isDebugEnabled()) {
-                log.debug("=========findListByQuery request:" + searchRequest.toString());
-            }
-            SearchResponse searchResponse = client.search(searchRequest);
-            if (log.isDebugEnabled()) {
-                log.debug("=========findListByQuery response:" + searchResponse.toString());
-            }
-            return ElasticSearchHelper.getEntityList(searchResponse, entityClass);
-        } catch (IOException e) {
-            throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
-        }
+        return searchRequest;
     }
 
     @Override
     public List<T> findListByQuery(Query query, Pageable pageable) {
+        return this.invoke(DaoOperationEnum.FIND_LIST_BY_QUERY, query, pageable, () -> this.doFindListByQuery(query, pageable));
+    }
+
+    private List<T> doFindListByQuery(Query query, Pageable pageable) {
+        return this.findListByQuery(this.pageQuery(query, pageable));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findListByQueryAsync(Query query, Pageable pageable) {
+        return this.invokeAsync(DaoOperationEnum.FIND_LIST_BY_QUERY, query, pageable, () -> this.doFindListByQueryAsync(query, pageable));
+    }
+
+    private CompletableFuture<List<T>> doFindListByQueryAsync(Query query, Pageable pageable) {
+        try {
+            return this.findListByQueryAsync(this.pageQuery(query, pageable));
+        } catch (RuntimeException e) {
+            CompletableFuture<List<T>> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * 根据pageable设置query的offset和limit
+     */
+    private Query pageQuery(Query query, Pageable pageable) {
         DaoHelper.checkArgumentQuery(query);
         DaoHelper.checkArgumentPageable(pageable);
 
         int limit = pageable.getPageSize();
+        if (pageable.getKeyset() != null) {   //seek分页从游标之后取limit条
+            return query.seek(pageable.getKeyset()).offset(MixedConstant.INT_0).limit(limit);
+        }
         int offset = (pageable.getPageNumber() - 1) * limit;
-        query.offset(offset).limit(limit);
-        return this.findListByQuery(query);
+        return query.offset(offset).limit(limit);
     }
 
     @Override
     protected List<T> findListBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.FIND_LIST_BY_SQL, sql, param, () -> this.doFindListBySql(sql, param));
+    }
+
+    private List<T> doFindListBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
         if (param == null) {
             throw new IllegalArgumentException("Param param must be not null");
@@ -359,26 +597,132 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
         }
     }
 
+    /**
+     * 使用scroll逐页读取,每页ElasticSearchSettings.scrollSize个hit,读取时才映射为entity,内存占用与结果总数无关
+     * 没有order by时按_doc排序(scroll最高效的方式),offset和limit在客户端跳过和截断
+     * 调用方必须close返回的Stream以释放scroll(推荐try-with-resources)
+     */
     @Override
-    public int insert(T entity) {
-        DaoHelper.checkArgumentEntity(entity);
+    public Stream<T> stream(Query query) {
+        return this.invoke(DaoOperationEnum.STREAM, query, () -> this.doStream(query));
+    }
+
+    private Stream<T> doStream(Query query) {
+        DaoHelper.checkArgumentQuery(query);
+        if (CollectionUtils.isNotEmpty(query.getGroupBys())) {
+            throw new IllegalArgumentException("stream not support groupBy Search");
+        }
+        if (query.getKeyset() != null) {    //scroll中不能使用search_after
+            throw new IllegalArgumentException("stream not support keyset");
+        }
+
+        int offset = query.getOffset() < MixedConstant.INT_0 ? MixedConstant.INT_0 : query.getOffset();
+        int limit = query.getLimit() < MixedConstant.INT_1 ? MixedConstant.INT_0 : query.getLimit();
+        int size = Math.max(elasticSearchSettings.getScrollSize(), MixedConstant.INT_1);
+        if (limit > MixedConstant.INT_0) {
+            size = Math.min(size, offset + limit);
+        }
 
         RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        Stream<T> stream = ScrollSpliterator.stream(client, this.scrollRequest(query, size), elasticSearchSettings.getScrollKeepAliveMillis(), entityClass);
+        if (offset > MixedConstant.INT_0) {
+            stream = stream.skip(offset);
+        }
+        return limit > MixedConstant.INT_0 ? stream.limit(limit) : stream;
+    }
 
-        IdEntity idEntity = (IdEntity) entity;
-        Field pkField = DaoHelper.getPkField(idEntity);
-        Object pkValue = DaoHelper.getColumnValue(pkField, idEntity);
-        boolean hasSetPkValue = DaoHelper.hasSetPkValue(pkValue);
-        //使用es必须使用外部id
-        if (!hasSetPkValue) {
-            throw new IllegalArgumentException("Param entity must be set id");
+    /**
+     * 按切片并行scroll读取全部匹配的文档,适用于全量导出,在调用线程中依次交给sink,全部读完后返回
+     * 读取线程通过有界队列交给sink,sink处理慢时读取线程阻塞,内存占用不超过queueCapacity个entity加每个切片一页
+     * 结果无序,query中只使用criteria和fields
+     *
+     * @param exportSettings - 切片数(默认为索引的主分片数)、读取线程数和队列大小
+     * @param sink           - 只在调用线程中执行,不需要线程安全,抛出异常时取消导出
+     * @return 交给sink的文档数
+     */
+    public long export(Query query, ElasticSearchExportSettings exportSettings, Consumer<? super T> sink) {
+        return this.invoke(DaoOperationEnum.EXPORT, query, exportSettings, () -> this.doExport(query, exportSettings, sink));
+    }
+
+    private long doExport(Query query, ElasticSearchExportSettings exportSettings, Consumer<? super T> sink) {
+        DaoHelper.checkArgumentQuery(query);
+        if (exportSettings == null) {
+            throw new IllegalArgumentException("Param exportSettings must be not null");
+        }
+        if (sink == null) {
+            throw new IllegalArgumentException("Param sink must be not null");
+        }
+        if (CollectionUtils.isNotEmpty(query.getGroupBys()) || CollectionUtils.isNotEmpty(query.getOrderBys())
+                || query.getKeyset() != null || query.getOffset() > MixedConstant.INT_0 || query.getLimit() > MixedConstant.INT_0) {
+            throw new IllegalArgumentException("export only support criteria and fields");
         }
 
-        IndexRequest indexRequest = new IndexRequest(index, type);
-        indexRequest.id(pkValue.toString());
-        indexRequest.opType(DocWriteRequest.OpType.CREATE);
-        String sourceJsonStr = FastJson.object2JsonStrUseNullValue(entity);
-        indexRequest.source(sourceJsonStr, XContentType.JSON);
+        int slices = exportSettings.getSlices() > MixedConstant.INT_0 ? exportSettings.getSlices() : this.numberOfShards();
+        int workers = exportSettings.getWorkers() > MixedConstant.INT_0 ? exportSettings.getWorkers() : slices;
+        int size = Math.max(elasticSearchSettings.getScrollSize(), MixedConstant.INT_1);
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        SlicedScrollExporter<T> exporter = new SlicedScrollExporter<>(client, slice -> {
+            SearchRequest searchRequest = this.scrollRequest(query, size);
+            if (slice != null) {
+                searchRequest.source().slice(slice);
+            }
+            return searchRequest;
+        }, elasticSearchSettings.getScrollKeepAliveMillis(), entityClass, exportSettings.getQueueCapacity());
+        return exporter.export(slices, workers, sink);
+    }
+
+    //索引的主分片数,匹配多个索引时取最大值
+    private int numberOfShards() {
+        RestClient restClient = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings).getLowLevelClient();
+        String endpoint = SymbolConstant.SLASH + ElasticSearchHelper.getRealIndex(index, indexPattern) + "/_settings/index.number_of_shards";
+        try {
+            Map<String, Object> result = this.performRequest(restClient, HttpGet.METHOD_NAME, endpoint, Collections.singletonMap("flat_settings", "true"), null);
+            int shards = MixedConstant.INT_1;
+            for (Object indexSettings : result.values()) {
+                Object settings = indexSettings instanceof Map ? ((Map<?, ?>) indexSettings).get("settings") : null;
+                Object numberOfShards = settings instanceof Map ? ((Map<?, ?>) settings).get("index.number_of_shards") : null;
+                if (numberOfShards == null) {
+                    throw ExceptionTranslator.translate(new IllegalStateException("index.number_of_shards not found in settings:" + indexSettings), DialectEnum.ELASTICSEARCH);
+                }
+                shards = Math.max(shards, Integer.parseInt(String.valueOf(numberOfShards)));
+            }
+            return shards;
+        } catch (IOException e) {
+            throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
+        }
+    }
+
+    private SearchRequest scrollRequest(Query query, int size) {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(ElasticSearchHelper.getRealIndex(index, indexPattern));
+        searchRequest.types(type);
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        searchSourceBuilder.query(ElasticSearchHelper.criteria2QueryBuilder(query.getCriteria()))
+                .fetchSource(ElasticSearchHelper.includeFileds(query.getFields()), MixedConstant.EMPTY_STRING_ARRAY)
+                .size(size);
+        if (CollectionUtils.isNotEmpty(query.getOrderBys())) {
+            for (OrderBy orderBy : query.getOrderBys()) {
+                SortOrder order = OrderBy.Direction.ASC.getDirection().equals(orderBy.getDirection()) ? SortOrder.ASC : SortOrder.DESC;
+                searchSourceBuilder.sort(orderBy.getKey(), order);
+            }
+        } else {
+            searchSourceBuilder.sort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC);
+        }
+        searchRequest.source(searchSourceBuilder);
+        return searchRequest;
+    }
+
+    @Override
+    public int insert(T entity) {
+        return this.invoke(DaoOperationEnum.INSERT, entity, () -> this.doInsert(entity));
+    }
+
+    private int doInsert(T entity) {
+        DaoHelper.checkArgumentEntity(entity);
+
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        IndexRequest indexRequest = this.insertRequest(entity);
 
         try {
             if (log.isDebugEnabled()) {
@@ -397,29 +741,45 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
     }
 
     @Override
-    public int insert(List<T> entityList) {
-        DaoHelper.checkArgumentBatchInsert(entityList);
+    public CompletableFuture<Integer> insertAsync(T entity) {
+        return this.invokeAsync(DaoOperationEnum.INSERT, entity, () -> this.doInsertAsync(entity));
+    }
+
+    private CompletableFuture<Integer> doInsertAsync(T entity) {
         RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        return this.executeAsync("insert", () -> {
+            DaoHelper.checkArgumentEntity(entity);
+            return this.insertRequest(entity);
+        }, client::indexAsync, (IndexResponse indexResponse) -> (int) indexResponse.getVersion());
+    }
 
-        BulkRequest bulkRequest = new BulkRequest();
-        for (T entity : entityList) {
-            IdEntity idEntity = (IdEntity) entity;
-            Field pkField = DaoHelper.getPkField(idEntity);
-            Object pkValue = DaoHelper.getColumnValue(pkField, idEntity);
-            boolean hasSetPkValue = DaoHelper.hasSetPkValue(pkValue);
-            //使用es必须使用外部id
-            if (!hasSetPkValue) {
-                throw new IllegalArgumentException("Param entity must be set id");
-            }
+    private IndexRequest insertRequest(T entity) {
+        IdEntity idEntity = (IdEntity) entity;
+        Object pkValue = DaoHelper.getPkValue(idEntity);
+        boolean hasSetPkValue = DaoHelper.hasSetPkValue(pkValue);
+        //使用es必须使用外部id
+        if (!hasSetPkValue) {
+            throw new IllegalArgumentException("Param entity must be set id");
+        }
 
-            IndexRequest indexRequest = new IndexRequest(index, type);
-            indexRequest.id(pkValue.toString());
-            indexRequest.opType(DocWriteRequest.OpType.CREATE);
-            String sourceJsonStr = FastJson.object2JsonStrUseNullValue(entity);
-            indexRequest.source(sourceJsonStr, XContentType.JSON);
+        IndexRequest indexRequest = new IndexRequest(index, type);
+        indexRequest.id(pkValue.toString());
+        indexRequest.opType(DocWriteRequest.OpType.CREATE);
+        String sourceJsonStr = FastJson.object2JsonStrUseNullValue(entity);
+        indexRequest.source(sourceJsonStr, XContentType.JSON);
+        return indexRequest;
+    }
 
-            bulkRequest.add(indexRequest);
-        }
+    @Override
+    public int insert(List<T> entityList) {
+        return this.invoke(DaoOperationEnum.INSERT, entityList, () -> this.doInsert(entityList));
+    }
+
+    private int doInsert(List<T> entityList) {
+        DaoHelper.checkArgumentBatchInsert(entityList);
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+
+        BulkRequest bulkRequest = this.insertRequest(entityList);
         Header[] headers = new Header[0];
 
         try {
@@ -431,14 +791,76 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
                 log.debug("=========batch insert response:" + bulkResponse.toString());
             }
 
-            return bulkResponse.getItems().length;
+            return this.bulkResult(bulkResponse);
         } catch (IOException e) {
             throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
         }
     }
 
+    @Override
+    public CompletableFuture<Integer> insertAsync(List<T> entityList) {
+        return this.invokeAsync(DaoOperationEnum.INSERT, entityList, () -> this.doInsertAsync(entityList));
+    }
+
+    private CompletableFuture<Integer> doInsertAsync(List<T> entityList) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        return this.executeAsync("batch insert", () -> {
+            DaoHelper.checkArgumentBatchInsert(entityList);
+            return this.insertRequest(entityList);
+        }, client::bulkAsync, this::bulkResult);
+    }
+
+    //成功的操作数,失败的操作打印warn日志
+    private int bulkResult(BulkResponse bulkResponse) {
+        if (!bulkResponse.hasFailures()) {
+            return bulkResponse.getItems().length;
+        }
+        log.warn("bulk request has failures:" + bulkResponse.buildFailureMessage());
+        int count = MixedConstant.INT_0;
+        for (BulkItemResponse item : bulkResponse.getItems()) {
+            if (!item.isFailed()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private BulkRequest insertRequest(List<T> entityList) {
+        BulkRequest bulkRequest = new BulkRequest();
+        for (T entity : entityList) {
+            bulkRequest.add(this.insertRequest(entity));
+        }
+        return bulkRequest;
+    }
+
+    /**
+     * 创建批量写入管道,适用于重建索引等大量写入,使用完必须close
+     *
+     * @param bulkSettings - 发送条件、并发数和重试设置
+     */
+    public ElasticSearchBulkIndexer<T> bulkIndexer(ElasticSearchBulkSettings bulkSettings) {
+        if (bulkSettings == null) {
+            throw new IllegalArgumentException("Param bulkSettings must be not null");
+        }
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        return new ElasticSearchBulkIndexer<>(this, client, bulkSettings);
+    }
+
+    //写入entity,文档已存在时覆盖
+    IndexRequest indexRequest(T entity) {
+        return this.insertRequest(entity).opType(DocWriteRequest.OpType.INDEX);
+    }
+
+    DeleteRequest deleteRequest(Serializable id) {
+        return new DeleteRequest(index, type, id.toString());
+    }
+
     @Override
     public int update(T entity) {
+        return this.invoke(DaoOperationEnum.UPDATE, entity, () -> this.doUpdate(entity));
+    }
+
+    private int doUpdate(T entity) {
         DaoHelper.checkArgumentEntity(entity);
 
         return this.update(entity, null);
@@ -446,6 +868,10 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
 
     @Override
     public int update(T entity, List<String> propetyList) {
+        return this.invoke(DaoOperationEnum.UPDATE, entity, propetyList, () -> this.doUpdate(entity, propetyList));
+    }
+
+    private int doUpdate(T entity, List<String> propetyList) {
         DaoHelper.checkArgumentEntity(entity);
 
         IdEntity idEntity = (IdEntity) entity;
@@ -453,16 +879,40 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
         return this.updateById(pkValue, DaoHelper.entity2Update(entity, propetyList));
     }
 
+    @Override
+    public CompletableFuture<Integer> updateAsync(T entity) {
+        return this.invokeAsync(DaoOperationEnum.UPDATE, entity, () -> this.doUpdateAsync(entity));
+    }
+
+    private CompletableFuture<Integer> doUpdateAsync(T entity) {
+        return this.updateAsync(entity, null);
+    }
+
+    @Override
+    public CompletableFuture<Integer> updateAsync(T entity, List<String> propetyList) {
+        return this.invokeAsync(DaoOperationEnum.UPDATE, entity, propetyList, () -> this.doUpdateAsync(entity, propetyList));
+    }
+
+    private CompletableFuture<Integer> doUpdateAsync(T entity, List<String> propetyList) {
+        try {
+            DaoHelper.checkArgumentEntity(entity);
+            IdEntity idEntity = (IdEntity) entity;
+            return this.updateByIdAsync(DaoHelper.getPkValue(idEntity), DaoHelper.entity2Update(entity, propetyList));
+        } catch (RuntimeException e) {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
     @Override
     public int updateById(Serializable id, Update update) {
-        DaoHelper.checkArgumentId(id);
-        DaoHelper.checkArgumentUpdate(update);
+        return this.invoke(DaoOperationEnum.UPDATE_BY_ID, id, update, () -> this.doUpdateById(id, update));
+    }
 
+    private int doUpdateById(Serializable id, Update update) {
         RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
-        UpdateRequest request = new UpdateRequest(index, type, id.toString());
-        request.doc(FastJson.object2JsonStrUseNullValue(update.getSetMap()), XContentType.JSON);
-        request.retryOnConflict(3); //版本冲突重试3次
-        request.docAsUpsert(false); //只更新
+        UpdateRequest request = this.updateByIdRequest(id, update);
 
         try {
             if (log.isDebugEnabled()) {
@@ -473,46 +923,183 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
                 log.debug("=========updateById response:" + updateResponse.toString());
             }
 
-            int op = updateResponse.getResult().getOp();
-            if (op == DocWriteResponse.Result.NOOP.getOp()) {   //值没有变化,_version不会增加
-                return MixedConstant.INT_0;
-            }
-            return MixedConstant.INT_1;
+            return this.updateResult(updateResponse);
         } catch (IOException e) {
             throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
         }
     }
 
     @Override
-    public int updateByIds(List<Serializable> ids, Update update) {
-        DaoHelper.checkArgumentIds(ids);
+    public CompletableFuture<Integer> updateByIdAsync(Serializable id, Update update) {
+        return this.invokeAsync(DaoOperationEnum.UPDATE_BY_ID, id, update, () -> this.doUpdateByIdAsync(id, update));
+    }
+
+    private CompletableFuture<Integer> doUpdateByIdAsync(Serializable id, Update update) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        return this.executeAsync("updateById", () -> this.updateByIdRequest(id, update), client::updateAsync, this::updateResult);
+    }
+
+    UpdateRequest updateByIdRequest(Serializable id, Update update) {
+        DaoHelper.checkArgumentId(id);
         DaoHelper.checkArgumentUpdate(update);
 
+        return this.updateByIdRequest(id, FastJson.object2JsonStrUseNullValue(update.getSetMap()));
+    }
+
+    private UpdateRequest updateByIdRequest(Serializable id, String docJson) {
+        UpdateRequest request = new UpdateRequest(index, type, id.toString());
+        request.doc(docJson, XContentType.JSON);
+        request.retryOnConflict(3); //版本冲突重试3次
+        request.docAsUpsert(false); //只更新
+        return request;
+    }
+
+    private int updateResult(UpdateResponse updateResponse) {
+        int op = updateResponse.getResult().getOp();
+        if (op == DocWriteResponse.Result.NOOP.getOp()) {   //值没有变化,_version不会增加
+            return MixedConstant.INT_0;
+        }
+        return MixedConstant.INT_1;
+    }
+
+    @Override
+    public int updateByIds(List<Serializable> ids, Update update) {
+        return this.invoke(DaoOperationEnum.UPDATE_BY_IDS, ids, update, () -> this.doUpdateByIds(ids, update));
+    }
+
+    private int doUpdateByIds(List<Serializable> ids, Update update) {
+        try {
+            return this.doUpdateByIdsAsync(ids, update).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * ids按ElasticSearchSettings.bulkUpdateChunkSize分块,每块一个bulk请求,所有更新使用同一个doc
+     * 同时在途的请求数不超过bulkUpdateConcurrency,有文档更新失败(如不存在)时抛出异常
+     */
+    @Override
+    public CompletableFuture<Integer> updateByIdsAsync(List<Serializable> ids, Update update) {
+        return this.invokeAsync(DaoOperationEnum.UPDATE_BY_IDS, ids, update, () -> this.doUpdateByIdsAsync(ids, update));
+    }
+
+    private CompletableFuture<Integer> doUpdateByIdsAsync(List<Serializable> ids, Update update) {
+        String docJson;
+        try {
+            DaoHelper.checkArgumentIds(ids);
+            DaoHelper.checkArgumentUpdate(update);
+            docJson = FastJson.object2JsonStrUseNullValue(update.getSetMap());
+        } catch (RuntimeException e) {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        List<List<Serializable>> chunks = Lists.partition(ids, Math.max(elasticSearchSettings.getBulkUpdateChunkSize(), MixedConstant.INT_1));
+        int concurrency = Math.min(Math.max(elasticSearchSettings.getBulkUpdateConcurrency(), MixedConstant.INT_1), chunks.size());
+        AtomicInteger nextChunk = new AtomicInteger();
+        List<CompletableFuture<Integer>> futureList = Lists.newArrayListWithCapacity(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            futureList.add(this.updateChunks(client, chunks, nextChunk, docJson, MixedConstant.INT_0));
+        }
+        return CompletableFuture.allOf(futureList.toArray(new CompletableFuture[futureList.size()])).thenApply(v -> {
+            int count = MixedConstant.INT_0;
+            for (CompletableFuture<Integer> future : futureList) {
+                count += future.join();
+            }
+            return count;
+        });
+    }
+
+    //依次发送剩余的块,前一个完成后再发送下一个
+    private CompletableFuture<Integer> updateChunks(RestHighLevelClient client, List<List<Serializable>> chunks, AtomicInteger nextChunk,
+                                                    String docJson, int count) {
+        int chunk = nextChunk.getAndIncrement();
+        if (chunk >= chunks.size()) {
+            return CompletableFuture.completedFuture(count);
+        }
+        return this.executeAsync("updateByIds", () -> {
+            BulkRequest bulkRequest = new BulkRequest();
+            for (Serializable id : chunks.get(chunk)) {
+                DaoHelper.checkArgumentId(id);
+                bulkRequest.add(this.updateByIdRequest(id, docJson));
+            }
+            return bulkRequest;
+        }, client::bulkAsync, this::updateByIdsResult).thenCompose(n -> this.updateChunks(client, chunks, nextChunk, docJson, count + n));
+    }
+
+    //与updateById相同,值没有变化(NOOP)的文档不计数
+    private int updateByIdsResult(BulkResponse bulkResponse) {
+        if (bulkResponse.hasFailures()) {
+            throw ExceptionTranslator.translate(new IllegalStateException(bulkResponse.buildFailureMessage()), DialectEnum.ELASTICSEARCH);
+        }
         int count = MixedConstant.INT_0;
-        for (Serializable id : ids) {
-            if (MixedConstant.INT_1 == this.updateById(id, update)) {
+        for (BulkItemResponse item : bulkResponse.getItems()) {
+            if (item.getResponse().getResult() != DocWriteResponse.Result.NOOP) {
                 count++;
             }
         }
         return count;
     }
 
+    /**
+     * 使用_update_by_query在服务端按切片并行更新,版本冲突的文档跳过(conflicts=proceed)
+     * 限流、切片数、是否后台任务执行见ElasticSearchSettings.byQueryXxx
+     */
     @Override
     public int updateByCriteria(Criteria criteria, Update update) {
-        throw new RuntimeException("ElasticSearchBaseDao do not support The Method");
+        return this.invoke(DaoOperationEnum.UPDATE_BY_CRITERIA, criteria, update, () -> this.doUpdateByCriteria(criteria, update));
+    }
+
+    private int doUpdateByCriteria(Criteria criteria, Update update) {
+        DaoHelper.checkArgumentCriteria(criteria);
+        DaoHelper.checkArgumentUpdate(update);
+
+        return this.updateByQuery("updateByCriteria", ElasticSearchHelper.criteria2QueryBuilder(criteria), update.getSetMap());
     }
 
+    /**
+     * 同updateByCriteria
+     *
+     * @param sql   - 查询条件的json,同countBySql
+     * @param param - 要更新的字段和值
+     */
     @Override
     protected int updateBySql(String sql, LinkedHashMap<String, Object> param) {
-        throw new RuntimeException("ElasticSearchBaseDao do not support The Method");
+        return this.invoke(DaoOperationEnum.UPDATE_BY_SQL, sql, param, () -> this.doUpdateBySql(sql, param));
+    }
+
+    private int doUpdateBySql(String sql, LinkedHashMap<String, Object> param) {
+        DaoHelper.checkArgument(sql);
+        if (MapUtils.isEmpty(param)) {
+            throw new IllegalArgumentException("Param param must be not null and empty");
+        }
+
+        return this.updateByQuery("updateBySql", QueryBuilders.wrapperQuery(sql), param);
+    }
+
+    private int updateByQuery(String method, QueryBuilder queryBuilder, Map<String, Object> setMap) {
+        //与updateById相同使用FastJson序列化字段值,再作为脚本参数
+        String docJson = FastJson.object2JsonStrUseNullValue(setMap);
+        Map<String, Object> scriptParams = Collections.singletonMap("doc", XContentHelper.convertToMap(XContentType.JSON.xContent(), docJson, true));
+        Script script = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, UPDATE_BY_QUERY_SCRIPT, scriptParams);
+
+        Map<String, Object> result = this.executeByQuery(method, "_update_by_query", queryBuilder, script);
+        return this.byQueryCount(method, result, "updated");
     }
 
     @Override
     public int deleteById(Serializable id) {
+        return this.invoke(DaoOperationEnum.DELETE_BY_ID, id, () -> this.doDeleteById(id));
+    }
+
+    private int doDeleteById(Serializable id) {
         DaoHelper.checkArgumentId(id);
 
         RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
-        DeleteRequest deleteRequest = new DeleteRequest(index, type, id.toString());
+        DeleteRequest deleteRequest = this.deleteRequest(id);
         try {
             if (log.isDebugEnabled()) {
                 log.debug("=========deleteById request:" + deleteRequest.toString());
@@ -522,19 +1109,214 @@ public abstract class ElasticSearchBaseDao<T> extends AbstractBaseDao<T> impleme
                 log.debug("=========deleteById response:" + deleteResponse.toString());
             }
 
-            int op = deleteResponse.getResult().getOp();
-            if (op == DocWriteResponse.Result.NOT_FOUND.getOp()) {
-                return MixedConstant.INT_0;
-            }
-            return MixedConstant.INT_1;
+            return this.deleteResult(deleteResponse);
         } catch (IOException e) {
             throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
         }
     }
 
+    @Override
+    public CompletableFuture<Integer> deleteByIdAsync(Serializable id) {
+        return this.invokeAsync(DaoOperationEnum.DELETE_BY_ID, id, () -> this.doDeleteByIdAsync(id));
+    }
+
+    private CompletableFuture<Integer> doDeleteByIdAsync(Serializable id) {
+        RestHighLevelClient client = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings);
+        return this.executeAsync("deleteById", () -> {
+            DaoHelper.checkArgumentId(id);
+            return new DeleteRequest(index, type, id.toString());
+        }, client::deleteAsync, this::deleteResult);
+    }
+
+    private int deleteResult(DeleteResponse deleteResponse) {
+        int op = deleteResponse.getResult().getOp();
+        if (op == DocWriteResponse.Result.NOT_FOUND.getOp()) {
+            return MixedConstant.INT_0;
+        }
+        return MixedConstant.INT_1;
+    }
+
     @Override
     public int deleteBySql(String sql, LinkedHashMap<String, Object> param) {
-        throw new RuntimeException("ElasticSearchBaseDao do not support The Method");
+        return this.invoke(DaoOperationEnum.DELETE_BY_SQL, sql, param, () -> this.doDeleteBySql(sql, param));
+    }
+
+    private int doDeleteBySql(String sql, LinkedHashMap<String, Object> param) {
+        DaoHelper.checkArgument(sql);
+
+        return this.deleteByQuery("deleteBySql", QueryBuilders.wrapperQuery(sql));
+    }
+
+    /**
+     * 使用_delete_by_query在服务端按切片并行删除,版本冲突的文档跳过(conflicts=proceed)
+     * 限流、切片数、是否后台任务执行见ElasticSearchSettings.byQueryXxx
+     */
+    public int deleteByCriteria(Criteria criteria) {
+        return this.invoke(DaoOperationEnum.DELETE_BY_CRITERIA, criteria, () -> this.doDeleteByCriteria(criteria));
+    }
+
+    private int doDeleteByCriteria(Criteria criteria) {
+        DaoHelper.checkArgumentCriteria(criteria);
+
+        return this.deleteByQuery("deleteByCriteria", ElasticSearchHelper.criteria2QueryBuilder(criteria));
+    }
+
+    private int deleteByQuery(String method, QueryBuilder queryBuilder) {
+        Map<String, Object> result = this.executeByQuery(method, "_delete_by_query", queryBuilder, null);
+        return this.byQueryCount(method, result, "deleted");
+    }
+
+    /**
+     * 从_update_by_query/_delete_by_query的结果中取出处理的文档数,缺少该字段时带上原始结果报错
+     */
+    private int byQueryCount(String method, Map<String, Object> result, String field) {
+        Object count = result.get(field);
+        if (!(count instanceof Number)) {
+            throw ExceptionTranslator.translate(new IllegalStateException(method + " response has no " + field + ":" + result), DialectEnum.ELASTICSEARCH);
+        }
+        return ((Number) count).intValue();
+    }
+
+    /**
+     * RestHighLevelClient6.2.3没有提供_update_by_query/_delete_by_query,使用low level client发送
+     *
+     * @param method - 方法名,用于日志
+     * @param action - _update_by_query或_delete_by_query
+     * @param script - 为null时不设置
+     * @return 任务的结果,包含updated、deleted、version_conflicts等
+     */
+    private Map<String, Object> executeByQuery(String method, String action, QueryBuilder queryBuilder, Script script) {
+        RestClient restClient = ElasticSearchClientFactory.INSTANCE.getClient(elasticSearchSettings).getLowLevelClient();
+        String endpoint = SymbolConstant.SLASH + ElasticSearchHelper.getRealIndex(index, indexPattern) + SymbolConstant.SLASH + type + SymbolConstant.SLASH + action;
+
+        Map<String, String> params = Maps.newHashMap();
+        params.put("conflicts", "proceed");
+        params.put("slices", elasticSearchSettings.getByQuerySlices() > MixedConstant.INT_0 ? String.valueOf(elasticSearchSettings.getByQuerySlices()) : "auto");
+        params.put("requests_per_second", elasticSearchSettings.getByQueryRequestsPerSecond() > 0F ? String.valueOf(elasticSearchSettings.getByQueryRequestsPerSecond()) : "-1");
+        params.put("wait_for_completion", String.valueOf(elasticSearchSettings.isByQueryWaitForCompletion()));
+        try {
+            XContentBuilder builder = XContentFactory.jsonBuilder().startObject().field("query", queryBuilder);
+            if (script != null) {
+                builder.field("script", script);
+            }
+            String body = builder.endObject().string();
+            if (log.isDebugEnabled()) {
+                log.debug("=========" + method + " request:" + endpoint + params + body);
+            }
+            Map<String, Object> result = this.performRequest(restClient, HttpPost.METHOD_NAME, endpoint, params, body);
+            Object taskId = result.get("task");
+            if (taskId != null) {   //wait_for_completion=false
+                result = this.waitForTask(restClient, method, String.valueOf(taskId));
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("=========" + method + " response:" + result);
+            }
+            return this.byQueryResult(method, result);
+        } catch (IOException e) {
+            throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
+        }
+    }
+
+    /**
+     * 轮询后台任务直到完成,完成后删除.tasks索引中保存的任务结果
+     * 调用线程被中断时取消服务端任务
+     */
+    private Map<String, Object> waitForTask(RestClient restClient, String method, String taskId) throws IOException {
+        String endpoint = "/_tasks/" + taskId;
+        while (true) {
+            try {
+                Thread.sleep(elasticSearchSettings.getByQueryTaskPollMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.performRequest(restClient, HttpPost.METHOD_NAME, endpoint + "/_cancel", Collections.emptyMap(), null);
+                throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
+            }
+            Map<String, Object> task = this.performRequest(restClient, HttpGet.METHOD_NAME, endpoint, Collections.emptyMap(), null);
+            if (!Boolean.TRUE.equals(task.get("completed"))) {
+                continue;
+            }
+            try {
+                this.performRequest(restClient, HttpDelete.METHOD_NAME, "/.tasks/task/" + taskId, Collections.emptyMap(), null);
+            } catch (IOException e) {
+                log.warn("delete task result[" + taskId + "] failed", e);
+            }
+            if (task.get("error") != null) {
+                throw ExceptionTranslator.translate(new IllegalStateException(method + " task[" + taskId + "] failed:" + task.get("error")), DialectEnum.ELASTICSEARCH);
+            }
+            Object response = task.get("response");
+            if (!(response instanceof Map)) {
+                throw ExceptionTranslator.translate(new IllegalStateException(method + " task[" + taskId + "] has no response:" + task), DialectEnum.ELASTICSEARCH);
+            }
+            Map<String, Object> result = Maps.newHashMap();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) response).entrySet()) {
+                result.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            return result;
+        }
+    }
+
+    private Map<String, Object> byQueryResult(String method, Map<String, Object> result) {
+        Object failures = result.get("failures");
+        if (failures instanceof Collection && CollectionUtils.isNotEmpty((Collection<?>) failures)) {
+            throw ExceptionTranslator.translate(new IllegalStateException(method + " has failures:" + failures), DialectEnum.ELASTICSEARCH);
+        }
+        if (Boolean.TRUE.equals(result.get("timed_out"))) {
+            throw ExceptionTranslator.translate(new IllegalStateException(method + " timed out:" + result), DialectEnum.ELASTICSEARCH);
+        }
+        Number versionConflicts = (Number) result.get("version_conflicts");
+        if (versionConflicts != null && versionConflicts.longValue() > MixedConstant.LONG_0) {
+            log.warn(method + " skipped " + versionConflicts + " documents on version conflict");
+        }
+        return result;
+    }
+
+    private Map<String, Object> performRequest(RestClient restClient, String httpMethod, String endpoint, Map<String, String> params, String body) throws IOException {
+        HttpEntity entity = body == null ? null : new NStringEntity(body, ContentType.APPLICATION_JSON);
+        Response response = restClient.performRequest(httpMethod, endpoint, params, entity);
+        try (InputStream inputStream = response.getEntity().getContent()) {
+            return XContentHelper.convertToMap(XContentType.JSON.xContent(), inputStream, false);
+        }
+    }
+
+    /**
+     * 使用RestHighLevelClient的原生异步接口执行,不占用调用线程
+     * 回调在client的io线程中执行,后续耗时的处理应使用thenApplyAsync等切换到业务线程池
+     *
+     * @param method          - 方法名,用于日志
+     * @param requestSupplier - 构造请求,参数校验异常通过future返回
+     * @param asyncCall       - client的异步方法
+     * @param responseMapper  - 响应转换为结果
+     */
+    private <Req, Resp, R> CompletableFuture<R> executeAsync(String method, Supplier<Req> requestSupplier,
+                                                            BiConsumer<Req, ActionListener<Resp>> asyncCall, Function<Resp, R> responseMapper) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            Req request = requestSupplier.get();
+            if (log.isDebugEnabled()) {
+                log.debug("=========" + method + " request:" + request.toString());
+            }
+            asyncCall.accept(request, new ActionListener<Resp>() {
+                @Override
+                public void onResponse(Resp response) {
+                    try {
+                        if (log.isDebugEnabled()) {
+                            log.debug("=========" + method + " response:" + response.toString());
+                        }
+                        future.complete(responseMapper.apply(response));
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    future.completeExceptionally(ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH));
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
     }
 
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
@@ -0,0 +1,245 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.dao.DaoHelper;
+import com.zhouyutong.zorm.query.Update;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于BulkProcessor的批量写入管道,通过ElasticSearchBaseDao.bulkIndexer创建
+ * 缓冲index/update/delete操作,按操作数、请求大小或时间间隔发送bulk请求,同时在途的请求数有上限
+ * 被拒绝(429)的操作按指数退避只重发这些操作,其他失败和超过重试次数的操作通过FailureListener回调
+ * 使用完必须close,close会发送缓冲中的操作并等待在途请求和重试完成
+ */
+@Slf4j
+public final class ElasticSearchBulkIndexer<T> implements Closeable {
+    private static final long CLOSE_TIMEOUT_MILLIS = 60000L;
+    private static final long CLOSE_POLL_MILLIS = 10L;
+
+    private final ElasticSearchBaseDao<T> dao;
+    private final ElasticSearchBulkSettings settings;
+    private final FailureListener failureListener;
+    private final BulkProcessor bulkProcessor;
+    private final ScheduledExecutorService retryScheduler;
+    //已发出还没有响应的bulk请求数
+    private final AtomicInteger inFlight = new AtomicInteger();
+    //等待重发的操作数
+    private final AtomicInteger pendingRetries = new AtomicInteger();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+
+    ElasticSearchBulkIndexer(ElasticSearchBaseDao<T> dao, RestHighLevelClient client, ElasticSearchBulkSettings settings) {
+        this.dao = dao;
+        this.settings = settings;
+        this.failureListener = settings.getFailureListener() != null ? settings.getFailureListener()
+                : (request, status, cause) -> log.warn("bulk " + request.opType() + " id[" + request.id() + "] failed, status=" + status, cause);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("z-orm-es-bulk-retry-%d").setDaemon(true).build());
+        //重试由本类处理,6.2的Retry不能识别rest client返回的429
+        this.bulkProcessor = BulkProcessor.builder(client::bulkAsync, new RetryListener())
+                .setBulkActions(settings.getBulkActions() > 0 ? settings.getBulkActions() : -1)
+                .setBulkSize(settings.getBulkSizeBytes() > 0 ? new ByteSizeValue(settings.getBulkSizeBytes(), ByteSizeUnit.BYTES) : new ByteSizeValue(-1))
+                .setFlushInterval(settings.getFlushIntervalMillis() > 0 ? TimeValue.timeValueMillis(settings.getFlushIntervalMillis()) : null)
+                .setConcurrentRequests(settings.getConcurrentRequests())
+                .setBackoffPolicy(BackoffPolicy.noBackoff())
+                .build();
+    }
+
+    /**
+     * 写入entity,文档已存在时覆盖
+     */
+    public ElasticSearchBulkIndexer<T> index(T entity) {
+        DaoHelper.checkArgumentEntity(entity);
+        bulkProcessor.add(dao.indexRequest(entity));
+        return this;
+    }
+
+    /**
+     * 部分更新,与updateById相同
+     */
+    public ElasticSearchBulkIndexer<T> update(Serializable id, Update update) {
+        bulkProcessor.add(dao.updateByIdRequest(id, update));
+        return this;
+    }
+
+    public ElasticSearchBulkIndexer<T> delete(Serializable id) {
+        DaoHelper.checkArgumentId(id);
+        bulkProcessor.add(dao.deleteRequest(id));
+        return this;
+    }
+
+    /**
+     * 立即发送缓冲中的操作,不等待响应
+     */
+    public void flush() {
+        bulkProcessor.flush();
+    }
+
+    /**
+     * 发送缓冲中的操作,等待在途请求和重试完成后关闭,最多等待60秒
+     */
+    @Override
+    public void close() {
+        try {
+            if (!this.awaitClose(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("ElasticSearchBulkIndexer close timeout, inFlight=" + inFlight.get() + ",pendingRetries=" + pendingRetries.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return 超时前全部完成返回true
+     */
+    public boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        //重发的操作会重新进入bulkProcessor,全部完成前不能关闭
+        do {
+            bulkProcessor.flush();
+            if (inFlight.get() == 0 && pendingRetries.get() == 0) {
+                break;
+            }
+            Thread.sleep(CLOSE_POLL_MILLIS);
+        } while (System.nanoTime() < deadline);
+        retryScheduler.shutdown();
+        long remaining = Math.max(deadline - System.nanoTime(), MixedConstant.LONG_0);
+        return bulkProcessor.awaitClose(remaining, TimeUnit.NANOSECONDS) && pendingRetries.get() == 0;
+    }
+
+    //成功的操作数
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    //最终失败的操作数
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    //因429重发的次数
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    private void onItemFailure(DocWriteRequest request, Object attempts, RestStatus status, Throwable cause) {
+        int attempt = attempts == null ? MixedConstant.INT_0 : (Integer) attempts;
+        if (status == RestStatus.TOO_MANY_REQUESTS && attempt < settings.getMaxRetries()) {
+            long delay = settings.getRetryInitialDelayMillis() << Math.min(attempt, 20);
+            pendingRetries.incrementAndGet();
+            try {
+                retryScheduler.schedule(() -> {
+                    try {
+                        bulkProcessor.add(request, attempt + 1);
+                    } catch (RuntimeException e) {
+                        this.fail(request, status, e);
+                    } finally {
+                        pendingRetries.decrementAndGet();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+                retried.increment();
+                return;
+            } catch (RejectedExecutionException e) {
+                //已经关闭
+                pendingRetries.decrementAndGet();
+            }
+        }
+        this.fail(request, status, cause);
+    }
+
+    private void fail(DocWriteRequest request, RestStatus status, Throwable cause) {
+        failed.increment();
+        try {
+            failureListener.onFailure(request, status, cause);
+        } catch (RuntimeException e) {
+            log.warn("bulk failure listener failed", e);
+        }
+    }
+
+    private static Object payload(BulkRequest request, int i) {
+        List<Object> payloads = request.payloads();
+        return payloads == null ? null : payloads.get(i);
+    }
+
+    private final class RetryListener implements BulkProcessor.Listener {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            inFlight.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("=========bulk request:" + executionId + ",actions=" + request.numberOfActions() + ",bytes=" + request.estimatedSizeInBytes());
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug("=========bulk response:" + executionId + ",tookMillis=" + response.getTook().millis() + ",hasFailures=" + response.hasFailures());
+                }
+                List<DocWriteRequest> requests = request.requests();
+                for (BulkItemResponse item : response.getItems()) {
+                    if (item.isFailed()) {
+                        onItemFailure(requests.get(item.getItemId()), payload(request, item.getItemId()),
+                                item.getFailure().getStatus(), item.getFailure().getCause());
+                    } else {
+                        succeeded.increment();
+                    }
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            try {
+                //整个请求被拒绝时所有操作都重发
+                RestStatus status = failure instanceof ElasticsearchStatusException ? ((ElasticsearchStatusException) failure).status() : null;
+                List<DocWriteRequest> requests = request.requests();
+                for (int i = 0; i < requests.size(); i++) {
+                    onItemFailure(requests.get(i), payload(request, i), status, failure);
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 单个操作最终失败的回调,在client的io线程或重试线程中执行
+     */
+    public interface FailureListener {
+
+        /**
+         * @param request - 失败的操作
+         * @param status  - 失败的状态码,网络异常等没有状态码时为null
+         * @param cause   - 失败原因
+         */
+        void onFailure(DocWriteRequest request, RestStatus status, Throwable cause);
+    }
+}
@@ -0,0 +1,46 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * ElasticSearchBulkIndexer的设置,任意一个flush条件满足时发送一个bulk请求
+ */
+@Builder
+@Getter
+public class ElasticSearchBulkSettings {
+    /**
+     * 缓冲的操作数达到该值时发送,小于等于0表示不按操作数发送
+     */
+    @Builder.Default
+    private int bulkActions = 1000;
+    /**
+     * 缓冲的请求大小达到该值时发送,字节,小于等于0表示不按大小发送
+     */
+    @Builder.Default
+    private long bulkSizeBytes = 5L * 1024 * 1024;
+    /**
+     * 距离上次发送超过该时间时发送,毫秒,小于等于0表示不定时发送
+     */
+    @Builder.Default
+    private long flushIntervalMillis = 1000L;
+    /**
+     * 同时在途的bulk请求数,达到后添加操作的线程阻塞等待,0表示在添加操作的线程中同步发送
+     */
+    @Builder.Default
+    private int concurrentRequests = 2;
+    /**
+     * 被拒绝(429)的操作第一次重试的延迟,之后每次翻倍,毫秒
+     */
+    @Builder.Default
+    private long retryInitialDelayMillis = 100L;
+    /**
+     * 被拒绝(429)的操作的最大重试次数,超过后按失败回调
+     */
+    @Builder.Default
+    private int maxRetries = 5;
+    /**
+     * 单个操作最终失败时回调,为null时打印warn日志
+     */
+    private ElasticSearchBulkIndexer.FailureListener failureListener;
+}
@@ -48,4 +48,14 @@ public final class ElasticSearchClientFactory {
             throw new RuntimeException("无法生产Client[" + elasticSearchSettings + "]", e);
         }
     }
+
+    /**
+     * 使用已经创建好的客户端,dao初始化时不再创建,单元测试中用于注入mock的客户端
+     *
+     * @param elasticSearchSettings
+     * @param client
+     */
+    synchronized void setClient(ElasticSearchSettings elasticSearchSettings, RestHighLevelClient client) {
+        transportClientMap.put(elasticSearchSettings, client);
+    }
 }
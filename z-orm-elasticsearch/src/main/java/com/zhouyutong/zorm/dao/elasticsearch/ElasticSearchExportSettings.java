@@ -0,0 +1,27 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * ElasticSearchBaseDao.export的设置
+ */
+@Builder
+@Getter
+public class ElasticSearchExportSettings {
+    /**
+     * 切片数,每个切片一个scroll,小于等于0时使用索引的主分片数
+     */
+    @Builder.Default
+    private int slices = 0;
+    /**
+     * 读取切片的线程数,小于等于0时与切片数相同,切片多于线程时排队读取
+     */
+    @Builder.Default
+    private int workers = 0;
+    /**
+     * 已读取但还没有交给sink的entity数上限,达到后读取线程阻塞,不再读取下一页
+     */
+    @Builder.Default
+    private int queueCapacity = 1000;
+}
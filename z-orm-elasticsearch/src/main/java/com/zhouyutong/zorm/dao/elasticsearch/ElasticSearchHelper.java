@@ -6,6 +6,7 @@ import com.zhouyutong.zorm.annotation.PK;
 import com.zhouyutong.zorm.constant.MixedConstant;
 import com.zhouyutong.zorm.dao.DaoHelper;
 import com.zhouyutong.zorm.dao.elasticsearch.annotation.Document;
+import com.zhouyutong.zorm.entity.EntityMetadata;
 import com.zhouyutong.zorm.entity.IdEntity;
 import com.zhouyutong.zorm.query.Criteria;
 import com.zhouyutong.zorm.query.CriteriaOperators;
@@ -23,6 +24,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import static org.elasticsearch.index.query.QueryBuilders.*;
@@ -101,6 +103,18 @@ public final class ElasticSearchHelper {
         return fields.toArray(new String[fields.size()]);
     }
 
+    /**
+     * seek游标的值转换为search_after的值,SearchAfterBuilder不支持Date,日期字段的排序值是毫秒数
+     */
+    static Object[] searchAfterValues(List<Object> values) {
+        Object[] searchAfterValues = new Object[values.size()];
+        for (int i = 0; i < searchAfterValues.length; i++) {
+            Object value = values.get(i);
+            searchAfterValues[i] = value instanceof Date ? ((Date) value).getTime() : value;
+        }
+        return searchAfterValues;
+    }
+
     static <T> List<T> getEntityList(SearchResponse searchResponse, Class<T> entityClass) {
         SearchHits searchHits = searchResponse.getHits();
         if (searchHits.getTotalHits() == MixedConstant.LONG_0) {
@@ -196,6 +210,10 @@ public final class ElasticSearchHelper {
         if (tableAnnotation == null) {
             throw new RuntimeException("entity[" + entityClassName + "] must have Document annotation");
         }
+        //z-orm-processor生成accessor时已经在编译期校验过
+        if (EntityMetadata.of(entityClass).isGenerated()) {
+            return;
+        }
 
         Field[] fields = entityClass.getDeclaredFields();
         if (fields == null || fields.length == 0) {
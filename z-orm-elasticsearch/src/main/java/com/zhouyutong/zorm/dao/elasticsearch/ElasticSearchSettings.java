@@ -20,4 +20,38 @@ public final class ElasticSearchSettings implements DaoSettings {
      * 集群名称
      */
     private String clusterName = "elasticsearch";
+    /**
+     * updateByIds每个bulk请求包含的id数
+     */
+    private int bulkUpdateChunkSize = 500;
+    /**
+     * updateByIds同时在途的bulk请求数
+     */
+    private int bulkUpdateConcurrency = 4;
+    /**
+     * stream每次scroll读取的hit数
+     */
+    private int scrollSize = 1000;
+    /**
+     * stream两次scroll读取之间服务端保持scroll上下文的时间,毫秒
+     */
+    private long scrollKeepAliveMillis = 60000L;
+    /**
+     * updateByCriteria/deleteByCriteria等_update_by_query/_delete_by_query请求的限流,每秒处理的文档数
+     * 小于等于0不限流
+     */
+    private float byQueryRequestsPerSecond = -1F;
+    /**
+     * _update_by_query/_delete_by_query的并行切片数,小于等于0时由服务端按分片数自动切片(slices=auto)
+     */
+    private int byQuerySlices = 0;
+    /**
+     * 为false时提交为后台任务(wait_for_completion=false),按byQueryTaskPollMillis轮询任务直到完成
+     * 避免大批量修改时http请求超时
+     */
+    private boolean byQueryWaitForCompletion = true;
+    /**
+     * 轮询后台任务的间隔,毫秒
+     */
+    private long byQueryTaskPollMillis = 1000L;
 }
@@ -0,0 +1,151 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.zhouyutong.zapplication.serialization.json.FastJson;
+import com.zhouyutong.zorm.enums.DialectEnum;
+import com.zhouyutong.zorm.utils.ExceptionTranslator;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于scroll上下文逐页读取、逐个hit映射entity的游标,内存中只保留当前一页的hits
+ * 读完最后一页或Stream被close时立即清除服务端的scroll上下文
+ */
+@Slf4j
+final class ScrollSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+    private final RestHighLevelClient client;
+    private final TimeValue keepAlive;
+    private final Class<T> entityClass;
+    //未清除的scrollId,为null时不登记
+    private final Set<String> openScrollIds;
+    private String scrollId;
+    private SearchHit[] hits;
+    private int hitIndex = 0;
+    private boolean closed = false;
+
+    private ScrollSpliterator(RestHighLevelClient client, TimeValue keepAlive, Class<T> entityClass, Set<String> openScrollIds,
+                              SearchResponse searchResponse) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.client = client;
+        this.keepAlive = keepAlive;
+        this.entityClass = entityClass;
+        this.openScrollIds = openScrollIds;
+        this.hits = searchResponse.getHits().getHits();
+        this.updateScrollId(searchResponse.getScrollId());
+    }
+
+    /**
+     * 打开scroll并返回逐个hit映射的Stream,调用方必须close该Stream(推荐try-with-resources)
+     *
+     * @param client          - client
+     * @param searchRequest   - 查询请求,size为每页的hit数
+     * @param keepAliveMillis - 两次读取之间scroll上下文的保持时间
+     * @param entityClass     - entityClass
+     */
+    static <T> Stream<T> stream(RestHighLevelClient client, SearchRequest searchRequest, long keepAliveMillis, Class<T> entityClass) {
+        return stream(client, searchRequest, keepAliveMillis, entityClass, null);
+    }
+
+    /**
+     * 同stream,打开的scrollId登记到openScrollIds,清除后移除
+     * 读取线程没有正常close时,持有openScrollIds的一方负责清除剩余的scroll
+     *
+     * @param openScrollIds - 线程安全的Set
+     */
+    static <T> Stream<T> stream(RestHighLevelClient client, SearchRequest searchRequest, long keepAliveMillis, Class<T> entityClass,
+                                Set<String> openScrollIds) {
+        TimeValue keepAlive = TimeValue.timeValueMillis(keepAliveMillis);
+        searchRequest.scroll(keepAlive);
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("=========stream request:" + searchRequest.toString());
+            }
+            SearchResponse searchResponse = client.search(searchRequest);
+            ScrollSpliterator<T> spliterator = new ScrollSpliterator<>(client, keepAlive, entityClass, openScrollIds, searchResponse);
+            return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+        } catch (IOException e) {
+            throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed) {
+            return false;
+        }
+        T entity;
+        try {
+            if (hitIndex == hits.length && !this.nextPage()) {
+                this.close();
+                return false;
+            }
+            entity = FastJson.jsonStr2Object(hits[hitIndex++].getSourceAsString(), entityClass);
+        } catch (IOException | RuntimeException e) {
+            this.close();
+            throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
+        }
+        action.accept(entity);
+        return true;
+    }
+
+    //当前页读完后读取下一页,没有更多hits时返回false
+    private boolean nextPage() throws IOException {
+        if (hits.length == 0) {
+            return false;
+        }
+        SearchScrollRequest searchScrollRequest = new SearchScrollRequest(scrollId).scroll(keepAlive);
+        SearchResponse searchResponse = client.searchScroll(searchScrollRequest);
+        if (log.isDebugEnabled()) {
+            log.debug("=========stream scroll response:hits=" + searchResponse.getHits().getHits().length);
+        }
+        this.updateScrollId(searchResponse.getScrollId());
+        this.hits = searchResponse.getHits().getHits();
+        this.hitIndex = 0;
+        return hits.length > 0;
+    }
+
+    private void updateScrollId(String newScrollId) {
+        if (openScrollIds != null && newScrollId != null) {
+            openScrollIds.add(newScrollId);
+            if (scrollId != null && !scrollId.equals(newScrollId)) {
+                openScrollIds.remove(scrollId);
+            }
+        }
+        this.scrollId = newScrollId;
+    }
+
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        hits = null;
+        if (scrollId == null) {
+            return;
+        }
+        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+        clearScrollRequest.addScrollId(scrollId);
+        try {
+            client.clearScroll(clearScrollRequest);
+            if (openScrollIds != null) {
+                openScrollIds.remove(scrollId);
+            }
+        } catch (IOException | RuntimeException e) {
+            //scroll在keepAlive后由服务端自动释放
+            log.warn("clear scroll failed", e);
+        }
+    }
+}
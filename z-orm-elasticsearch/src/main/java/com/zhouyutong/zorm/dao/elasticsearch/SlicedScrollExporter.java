@@ -0,0 +1,176 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.enums.DialectEnum;
+import com.zhouyutong.zorm.utils.ExceptionTranslator;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.slice.SliceBuilder;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 并行读取多个切片scroll,通过有界队列交给调用线程中的sink
+ * 队列满时读取线程阻塞,不再读取下一页,sink的处理速度决定读取速度
+ * sink只在调用线程中执行,不需要线程安全
+ */
+@Slf4j
+final class SlicedScrollExporter<T> {
+    //切片读完的标记
+    private static final Object SLICE_DONE = new Object();
+    //读取线程放入队列等待的间隔,期间检查是否已取消
+    private static final long OFFER_WAIT_MILLIS = 100L;
+    //取消后等待读取线程退出的时间,超时后中断读取线程并直接清除剩余的scroll
+    private static final long TERMINATION_WAIT_MILLIS = 5000L;
+
+    private final RestHighLevelClient client;
+    private final Function<SliceBuilder, SearchRequest> requestFactory;
+    private final long keepAliveMillis;
+    private final Class<T> entityClass;
+    private final BlockingQueue<Object> queue;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    //读取线程打开且还没有清除的scrollId
+    private final Set<String> openScrollIds = Sets.newConcurrentHashSet();
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param requestFactory - 根据切片构造scroll的查询请求,切片为null时不切片
+     */
+    SlicedScrollExporter(RestHighLevelClient client, Function<SliceBuilder, SearchRequest> requestFactory, long keepAliveMillis,
+                         Class<T> entityClass, int queueCapacity) {
+        this.client = client;
+        this.requestFactory = requestFactory;
+        this.keepAliveMillis = keepAliveMillis;
+        this.entityClass = entityClass;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, MixedConstant.INT_1));
+    }
+
+    /**
+     * 读取全部切片并在调用线程中依次交给sink,全部读完后返回
+     * 任意切片读取失败或sink抛出异常时取消其余切片并抛出
+     *
+     * @param slices  - 切片数
+     * @param workers - 读取线程数,不超过切片数
+     * @return 交给sink的entity数
+     */
+    long export(int slices, int workers, Consumer<? super T> sink) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, slices),
+                new ThreadFactoryBuilder().setNameFormat("z-orm-es-export-%d").setDaemon(true).build());
+        try {
+            for (int i = 0; i < slices; i++) {
+                SliceBuilder slice = slices > MixedConstant.INT_1 ? new SliceBuilder(i, slices) : null;
+                executor.execute(() -> this.readSlice(slice));
+            }
+            long count = MixedConstant.LONG_0;
+            int done = MixedConstant.INT_0;
+            while (done < slices) {
+                Object item = queue.take();
+                if (failure.get() != null) {
+                    throw ExceptionTranslator.translate(failure.get(), DialectEnum.ELASTICSEARCH);
+                }
+                if (item == SLICE_DONE) {
+                    done++;
+                    continue;
+                }
+                sink.accept(entityClass.cast(item));
+                count++;
+            }
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ExceptionTranslator.translate(e, DialectEnum.ELASTICSEARCH);
+        } finally {
+            //异常时通知读取线程停止,各自close scroll后退出,未能退出或清除失败的scroll统一清除
+            //先清除中断标记,保证等待和清除scroll的请求能够执行,结束后恢复
+            cancelled = true;
+            boolean interrupted = Thread.interrupted();
+            interrupted |= this.awaitTermination(executor);
+            this.clearOpenScrolls();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 等待读取线程退出,超时或调用线程被中断时中断读取线程,不再等待
+     *
+     * @return 等待期间调用线程是否被中断
+     */
+    private boolean awaitTermination(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(TERMINATION_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("export workers not terminated in " + TERMINATION_WAIT_MILLIS + "ms,interrupt them");
+                executor.shutdownNow();
+            }
+            return false;
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            return true;
+        }
+    }
+
+    //读取线程没有正常close的scroll(超时、被中断或清除失败)在这里统一清除
+    private void clearOpenScrolls() {
+        if (openScrollIds.isEmpty()) {
+            return;
+        }
+        ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+        clearScrollRequest.setScrollIds(Lists.newArrayList(openScrollIds));
+        try {
+            client.clearScroll(clearScrollRequest);
+            openScrollIds.removeAll(clearScrollRequest.getScrollIds());
+        } catch (IOException | RuntimeException e) {
+            //scroll在keepAlive后由服务端自动释放
+            log.warn("clear scroll failed:" + openScrollIds, e);
+        }
+    }
+
+    private void readSlice(SliceBuilder slice) {
+        try {
+            if (cancelled) {
+                return;
+            }
+            try (Stream<T> stream = ScrollSpliterator.stream(client, requestFactory.apply(slice), keepAliveMillis, entityClass, openScrollIds)) {
+                Iterator<T> iterator = stream.iterator();
+                while (!cancelled && iterator.hasNext()) {
+                    this.offer(iterator.next());
+                }
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            try {
+                this.offer(SLICE_DONE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    //队列满时等待,已取消时丢弃
+    private void offer(Object item) throws InterruptedException {
+        while (!cancelled) {
+            if (queue.offer(item, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * mock客户端按脚本返回每个bulk请求的结果,验证发送条件、429重试和失败回调
+ * 发送、重试与操作类型无关,这里都使用delete,不依赖entity的json序列化
+ */
+public class ElasticSearchBulkIndexerTest {
+    //每个bulk请求中的文档id,按发送顺序
+    private final List<List<String>> bulks = new CopyOnWriteArrayList<>();
+    private final List<String> failures = new CopyOnWriteArrayList<>();
+    private AnnotationConfigApplicationContext context;
+    private RestHighLevelClient client;
+    private TestDocDao dao;
+
+    @Before
+    public void setUp() {
+        ElasticSearchSettings elasticSearchSettings = ElasticSearchTestSupport.settings();
+        client = ElasticSearchTestSupport.mockClient(elasticSearchSettings);
+        context = ElasticSearchTestSupport.context(elasticSearchSettings, TestDocDao.class);
+        dao = context.getBean(TestDocDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * @param itemStatus - 根据文档id和该id第几次发送(从1开始)返回失败的状态码,成功时返回null
+     */
+    private void respond(BiFunction<String, Integer, RestStatus> itemStatus) {
+        doAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            List<String> ids = request.requests().stream().map(DocWriteRequest::id).collect(Collectors.toList());
+            bulks.add(ids);
+            BulkItemResponse[] items = new BulkItemResponse[ids.size()];
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                int attempt = (int) bulks.stream().filter(bulk -> bulk.contains(id)).count();
+                RestStatus status = itemStatus.apply(id, attempt);
+                DocWriteRequest item = request.requests().get(i);
+                items[i] = status == null ? ElasticSearchTestSupport.success(i, item) : ElasticSearchTestSupport.failure(i, item, status);
+            }
+            listener.onResponse(new BulkResponse(items, 1L));
+            return null;
+        }).when(client).bulkAsync(any(BulkRequest.class), any(), any());
+    }
+
+    private ElasticSearchBulkIndexer<TestDoc> indexer(int bulkActions, int maxRetries) {
+        return dao.bulkIndexer(ElasticSearchBulkSettings.builder()
+                .bulkActions(bulkActions)
+                .flushIntervalMillis(0L)
+                .concurrentRequests(1)
+                .retryInitialDelayMillis(1L)
+                .maxRetries(maxRetries)
+                .failureListener((request, status, cause) -> failures.add(request.id() + ":" + status))
+                .build());
+    }
+
+    @Test
+    public void flushesByActionCountAndOnClose() {
+        this.respond((id, attempt) -> null);
+
+        ElasticSearchBulkIndexer<TestDoc> indexer = this.indexer(2, 5);
+        for (int i = 1; i <= 5; i++) {
+            indexer.delete(String.valueOf(i));
+        }
+        indexer.close();
+
+        assertEquals(ImmutableList.of(ImmutableList.of("1", "2"), ImmutableList.of("3", "4"), ImmutableList.of("5")), bulks);
+        assertEquals(5, indexer.getSucceeded());
+        assertEquals(0, indexer.getFailed());
+    }
+
+    /**
+     * 只有被拒绝的操作重发
+     */
+    @Test
+    public void rejectedItemsRetriedAlone() {
+        this.respond((id, attempt) -> id.equals("2") && attempt == 1 ? RestStatus.TOO_MANY_REQUESTS : null);
+
+        ElasticSearchBulkIndexer<TestDoc> indexer = this.indexer(3, 5);
+        for (int i = 1; i <= 3; i++) {
+            indexer.delete(String.valueOf(i));
+        }
+        indexer.close();
+
+        assertEquals(ImmutableList.of(ImmutableList.of("1", "2", "3"), ImmutableList.of("2")), bulks);
+        assertEquals(3, indexer.getSucceeded());
+        assertEquals(1, indexer.getRetried());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void otherFailuresReportedWithoutRetry() {
+        this.respond((id, attempt) -> id.equals("2") ? RestStatus.BAD_REQUEST : null);
+
+        ElasticSearchBulkIndexer<TestDoc> indexer = this.indexer(3, 5);
+        for (int i = 1; i <= 3; i++) {
+            indexer.delete(String.valueOf(i));
+        }
+        indexer.close();
+
+        assertEquals(1, bulks.size());
+        assertEquals(Lists.newArrayList("2:BAD_REQUEST"), failures);
+        assertEquals(2, indexer.getSucceeded());
+        assertEquals(1, indexer.getFailed());
+        assertEquals(0, indexer.getRetried());
+    }
+
+    @Test
+    public void retriesExhaustedReported() throws Exception {
+        this.respond((id, attempt) -> RestStatus.TOO_MANY_REQUESTS);
+
+        ElasticSearchBulkIndexer<TestDoc> indexer = this.indexer(1, 2);
+        indexer.delete("1");
+
+        assertTrue(indexer.awaitClose(10, TimeUnit.SECONDS));
+        assertEquals(3, bulks.size());
+        assertEquals(Lists.newArrayList("1:TOO_MANY_REQUESTS"), failures);
+        assertEquals(2, indexer.getRetried());
+        assertEquals(1, indexer.getFailed());
+    }
+
+    /**
+     * 整个bulk请求被拒绝时所有操作重发
+     */
+    @Test
+    public void rejectedRequestRetriesAllItems() {
+        doAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            bulks.add(request.requests().stream().map(DocWriteRequest::id).collect(Collectors.toList()));
+            if (bulks.size() == 1) {
+                listener.onFailure(new ElasticsearchStatusException("rejected", RestStatus.TOO_MANY_REQUESTS));
+                return null;
+            }
+            BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = ElasticSearchTestSupport.success(i, request.requests().get(i));
+            }
+            listener.onResponse(new BulkResponse(items, 1L));
+            return null;
+        }).when(client).bulkAsync(any(BulkRequest.class), any(), any());
+
+        ElasticSearchBulkIndexer<TestDoc> indexer = this.indexer(2, 5);
+        indexer.delete("1").delete("2");
+        indexer.close();
+
+        assertEquals(Lists.newArrayList("1", "2"), bulks.get(0));
+        //两个操作各自重发,可能合并在一个bulk中
+        List<String> retriedIds = bulks.subList(1, bulks.size()).stream().flatMap(List::stream).sorted().collect(Collectors.toList());
+        assertEquals(Lists.newArrayList("1", "2"), retriedIds);
+        assertEquals(2, indexer.getSucceeded());
+        assertEquals(2, indexer.getRetried());
+        assertTrue(failures.isEmpty());
+    }
+}
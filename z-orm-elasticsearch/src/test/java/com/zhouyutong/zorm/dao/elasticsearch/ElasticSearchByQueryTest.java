@@ -0,0 +1,191 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zapplication.exception.RemoteCallException;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.Update;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * _update_by_query/_delete_by_query通过low level client发送,mock RestClient按请求返回json
+ */
+public class ElasticSearchByQueryTest {
+    private final List<String> requests = Lists.newCopyOnWriteArrayList();
+    private final List<Map<String, String>> requestParams = Lists.newCopyOnWriteArrayList();
+    private final List<String> requestBodies = Lists.newCopyOnWriteArrayList();
+    private ElasticSearchSettings elasticSearchSettings;
+    private Function<String, String> responder;
+    private AnnotationConfigApplicationContext context;
+
+    @Before
+    public void setUp() {
+        elasticSearchSettings = ElasticSearchTestSupport.settings();
+    }
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    /**
+     * settings是客户端的key,修改完settings后再注入mock的客户端
+     */
+    private TestDocDao dao() {
+        RestHighLevelClient client = ElasticSearchTestSupport.mockClient(elasticSearchSettings);
+        RestClient restClient = mock(RestClient.class, this::answer);
+        when(client.getLowLevelClient()).thenReturn(restClient);
+        context = ElasticSearchTestSupport.context(elasticSearchSettings, TestDocDao.class);
+        return context.getBean(TestDocDao.class);
+    }
+
+    /**
+     * performRequest的headers是可变参数,按方法名应答,不依赖参数匹配
+     */
+    private Object answer(InvocationOnMock invocation) throws Throwable {
+        if (!"performRequest".equals(invocation.getMethod().getName())) {
+            return Answers.RETURNS_DEFAULTS.answer(invocation);
+        }
+        String request = invocation.getArgument(0) + " " + invocation.getArgument(1);
+        HttpEntity entity = invocation.getArgument(3);
+        requests.add(request);
+        requestParams.add(invocation.getArgument(2));
+        requestBodies.add(entity == null ? null : EntityUtils.toString(entity));
+        Response response = mock(Response.class);
+        when(response.getEntity()).thenReturn(new NStringEntity(responder.apply(request), ContentType.APPLICATION_JSON));
+        return response;
+    }
+
+    /**
+     * @param responder - 参数为"方法 endpoint",返回响应的json
+     */
+    private void respond(Function<String, String> responder) {
+        this.responder = responder;
+    }
+
+    @Test
+    public void deleteByCriteriaWaitsForCompletion() {
+        this.respond(request -> "{\"took\":10,\"timed_out\":false,\"deleted\":7,\"version_conflicts\":2,\"failures\":[]}");
+
+        int deleted = this.dao().deleteByCriteria(Criteria.where("title", "a"));
+
+        assertEquals(7, deleted);
+        assertEquals(Lists.newArrayList("POST /test_doc/doc/_delete_by_query"), requests);
+        Map<String, String> params = requestParams.get(0);
+        assertEquals("proceed", params.get("conflicts"));
+        assertEquals("auto", params.get("slices"));
+        assertEquals("-1", params.get("requests_per_second"));
+        assertEquals("true", params.get("wait_for_completion"));
+        assertTrue(requestBodies.get(0), requestBodies.get(0).contains("\"title\""));
+        assertTrue(requestBodies.get(0), !requestBodies.get(0).contains("\"script\""));
+    }
+
+    @Test
+    public void backgroundTaskPolledUntilCompleted() {
+        elasticSearchSettings.setByQuerySlices(4);
+        elasticSearchSettings.setByQueryRequestsPerSecond(500F);
+        elasticSearchSettings.setByQueryWaitForCompletion(false);
+        elasticSearchSettings.setByQueryTaskPollMillis(10L);
+        AtomicInteger polls = new AtomicInteger();
+        this.respond(request -> {
+            if (request.startsWith("POST")) {
+                return "{\"task\":\"node1:42\"}";
+            }
+            if (request.startsWith("GET")) {
+                return polls.incrementAndGet() < 3 ? "{\"completed\":false}"
+                        : "{\"completed\":true,\"response\":{\"timed_out\":false,\"deleted\":3,\"failures\":[]}}";
+            }
+            return "{\"result\":\"deleted\"}";
+        });
+
+        int deleted = this.dao().deleteByCriteria(Criteria.where("title", "a"));
+
+        assertEquals(3, deleted);
+        assertEquals(Lists.newArrayList("POST /test_doc/doc/_delete_by_query", "GET /_tasks/node1:42", "GET /_tasks/node1:42",
+                "GET /_tasks/node1:42", "DELETE /.tasks/task/node1:42"), requests);
+        Map<String, String> params = requestParams.get(0);
+        assertEquals("4", params.get("slices"));
+        assertEquals("500.0", params.get("requests_per_second"));
+        assertEquals("false", params.get("wait_for_completion"));
+    }
+
+    @Test
+    public void failuresRaised() {
+        this.respond(request -> "{\"timed_out\":false,\"deleted\":1,\"failures\":[{\"id\":\"2\",\"status\":500}]}");
+
+        try {
+            this.dao().deleteByCriteria(Criteria.where("title", "a"));
+            fail();
+        } catch (RemoteCallException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("deleteByCriteria has failures"));
+        }
+    }
+
+    @Test
+    public void missingCountRaised() {
+        this.respond(request -> "{\"timed_out\":false,\"version_conflicts\":0,\"failures\":[]}");
+
+        try {
+            this.dao().deleteByCriteria(Criteria.where("title", "a"));
+            fail();
+        } catch (RemoteCallException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("deleteByCriteria response has no deleted"));
+            assertTrue(e.getMessage(), e.getMessage().contains("version_conflicts"));
+        }
+    }
+
+    @Test
+    public void failedTaskRaised() {
+        elasticSearchSettings.setByQueryWaitForCompletion(false);
+        elasticSearchSettings.setByQueryTaskPollMillis(10L);
+        this.respond(request -> request.startsWith("POST") ? "{\"task\":\"node1:43\"}"
+                : "{\"completed\":true,\"error\":{\"type\":\"search_phase_execution_exception\"}}");
+
+        try {
+            this.dao().deleteByCriteria(Criteria.where("title", "a"));
+            fail();
+        } catch (RemoteCallException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("task[node1:43] failed"));
+        }
+        //任务结果已经读取,同样要删除
+        assertEquals("DELETE /.tasks/task/node1:43", requests.get(requests.size() - 1));
+    }
+
+    @Test
+    public void updateByCriteriaSendsScript() {
+        ElasticSearchTestSupport.assumeJsonSerialization();
+        this.respond(request -> "{\"timed_out\":false,\"updated\":5,\"failures\":[]}");
+
+        int updated = this.dao().updateByCriteria(Criteria.where("title", "a"), Update.update("views", 10));
+
+        assertEquals(5, updated);
+        assertEquals(Lists.newArrayList("POST /test_doc/doc/_update_by_query"), requests);
+        String body = requestBodies.get(0);
+        assertTrue(body, body.contains("\"script\""));
+        assertTrue(body, body.contains("\"views\":10"));
+    }
+}
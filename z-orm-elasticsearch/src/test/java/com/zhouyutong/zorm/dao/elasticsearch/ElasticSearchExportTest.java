@@ -0,0 +1,200 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.zhouyutong.zapplication.exception.RemoteCallException;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.Query;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * export按切片并行scroll读取,通过有界队列交给调用线程中的sink
+ * mock客户端每个切片5个文档,每页2个,hit映射为entity依赖FastJson
+ */
+public class ElasticSearchExportTest {
+    private static final Query QUERY = Query.query(Criteria.where("title", "a"));
+
+    private final List<String> lowLevelRequests = Lists.newCopyOnWriteArrayList();
+    private AnnotationConfigApplicationContext context;
+    private RestHighLevelClient client;
+    private List<String> clearedScrollIds;
+    private TestDocDao dao;
+
+    @Before
+    public void setUp() throws IOException {
+        ElasticSearchSettings elasticSearchSettings = ElasticSearchTestSupport.settings();
+        elasticSearchSettings.setScrollSize(2);
+        client = ElasticSearchTestSupport.mockClient(elasticSearchSettings);
+        clearedScrollIds = ElasticSearchTestSupport.stubScroll(client, 5);
+        //索引的主分片数
+        RestClient restClient = mock(RestClient.class, invocation -> {
+            if (!"performRequest".equals(invocation.getMethod().getName())) {
+                return Answers.RETURNS_DEFAULTS.answer(invocation);
+            }
+            lowLevelRequests.add(invocation.getArgument(0) + " " + invocation.getArgument(1));
+            Response response = mock(Response.class);
+            when(response.getEntity()).thenReturn(new NStringEntity("{\"test_doc\":{\"settings\":{\"index.number_of_shards\":\"4\"}}}",
+                    ContentType.APPLICATION_JSON));
+            return response;
+        });
+        when(client.getLowLevelClient()).thenReturn(restClient);
+        context = ElasticSearchTestSupport.context(elasticSearchSettings, TestDocDao.class);
+        dao = context.getBean(TestDocDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    private int invocationCount(String method) {
+        return (int) mockingDetails(client).getInvocations().stream()
+                .filter(invocation -> method.equals(invocation.getMethod().getName())).count();
+    }
+
+    @Test
+    public void readsEverySliceAndClearsScrolls() throws IOException {
+        ElasticSearchTestSupport.assumeJsonSerialization();
+        AtomicInteger accepted = new AtomicInteger();
+        ElasticSearchExportSettings exportSettings = ElasticSearchExportSettings.builder().slices(3).workers(2).build();
+
+        long count = dao.export(QUERY, exportSettings, doc -> accepted.incrementAndGet());
+
+        assertEquals(15L, count);
+        assertEquals(15, accepted.get());
+        ArgumentCaptor<SearchRequest> searchRequests = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(client, times(3)).search(searchRequests.capture());
+        Set<Integer> sliceIds = Sets.newHashSet();
+        for (SearchRequest searchRequest : searchRequests.getAllValues()) {
+            assertEquals(3, searchRequest.source().slice().getMax());
+            sliceIds.add(searchRequest.source().slice().getId());
+        }
+        assertEquals(Sets.newHashSet(0, 1, 2), sliceIds);
+        assertEquals(Sets.newHashSet("0:2:4", "1:2:4", "2:2:4"), Sets.newHashSet(clearedScrollIds));
+        assertTrue(lowLevelRequests.isEmpty());
+    }
+
+    @Test
+    public void slicesDefaultToShardCount() throws IOException {
+        ElasticSearchTestSupport.assumeJsonSerialization();
+        long count = dao.export(QUERY, ElasticSearchExportSettings.builder().build(), doc -> {
+        });
+
+        assertEquals(20L, count);
+        assertEquals(Lists.newArrayList("GET /test_doc/_settings/index.number_of_shards"), lowLevelRequests);
+        verify(client, times(4)).search(any(SearchRequest.class));
+        assertEquals(4, clearedScrollIds.size());
+    }
+
+    @Test
+    public void slowSinkBlocksReader() throws IOException {
+        ElasticSearchTestSupport.assumeJsonSerialization();
+        ElasticSearchExportSettings exportSettings = ElasticSearchExportSettings.builder().slices(1).queueCapacity(1).build();
+        List<Integer> scrollsBeforeAccept = Lists.newArrayList();
+
+        long count = dao.export(QUERY, exportSettings, doc -> {
+            try {
+                Thread.sleep(100L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scrollsBeforeAccept.add(this.invocationCount("searchScroll"));
+        });
+
+        assertEquals(5L, count);
+        //队列只能放1个entity,读取线程最多领先sink一页
+        assertEquals(Integer.valueOf(1), scrollsBeforeAccept.get(0));
+        assertEquals(Integer.valueOf(1), scrollsBeforeAccept.get(1));
+        assertEquals(Lists.newArrayList("0:2:4"), clearedScrollIds);
+    }
+
+    @Test
+    public void sinkFailureCancelsSlices() throws IOException {
+        ElasticSearchTestSupport.assumeJsonSerialization();
+        ElasticSearchExportSettings exportSettings = ElasticSearchExportSettings.builder().slices(2).queueCapacity(1).build();
+        AtomicInteger accepted = new AtomicInteger();
+
+        try {
+            dao.export(QUERY, exportSettings, doc -> {
+                if (accepted.incrementAndGet() == 2) {
+                    throw new IllegalStateException("sink failed");
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("sink failed", e.getMessage());
+        }
+        assertEquals(2, accepted.get());
+        //切片都没有读完,取消时已经打开的scroll都已清除,还没有开始的切片不再打开
+        assertTrue(this.invocationCount("searchScroll") < 6);
+        int opened = this.invocationCount("search");
+        assertTrue(opened >= 1);
+        assertEquals(opened, clearedScrollIds.stream().map(scrollId -> scrollId.split(":")[0]).distinct().count());
+    }
+
+    @Test
+    public void sliceFailureRaised() throws IOException {
+        ElasticSearchTestSupport.assumeJsonSerialization();
+        doThrow(new IOException("scroll lost")).when(client).searchScroll(any(SearchScrollRequest.class));
+        ElasticSearchExportSettings exportSettings = ElasticSearchExportSettings.builder().slices(2).build();
+
+        try {
+            dao.export(QUERY, exportSettings, doc -> {
+            });
+            fail();
+        } catch (RemoteCallException e) {
+            assertEquals("scroll lost", e.getMessage());
+        }
+        assertEquals(Sets.newHashSet("0:2:1", "1:2:1"), Sets.newHashSet(clearedScrollIds));
+    }
+
+    @Test
+    public void searchFailureRaised() throws IOException {
+        doThrow(new IOException("search failed")).when(client).search(any(SearchRequest.class));
+        ElasticSearchExportSettings exportSettings = ElasticSearchExportSettings.builder().slices(2).build();
+
+        try {
+            dao.export(QUERY, exportSettings, doc -> {
+            });
+            fail();
+        } catch (RemoteCallException e) {
+            assertEquals("search failed", e.getMessage());
+        }
+        //scroll没有打开,不需要清除
+        assertTrue(clearedScrollIds.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void limitRejected() {
+        dao.export(Query.query().limit(10), ElasticSearchExportSettings.builder().build(), doc -> {
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.zhouyutong.zorm.query.Keyset;
+import com.zhouyutong.zorm.query.OrderBy;
+import com.zhouyutong.zorm.query.Pageable;
+import com.zhouyutong.zorm.query.Query;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+/**
+ * seek分页通过search_after定位到游标之后
+ */
+public class ElasticSearchKeysetTest {
+    private AnnotationConfigApplicationContext context;
+    private RestHighLevelClient client;
+    private TestDocDao dao;
+
+    @Before
+    public void setUp() throws IOException {
+        ElasticSearchSettings elasticSearchSettings = ElasticSearchTestSupport.settings();
+        client = ElasticSearchTestSupport.mockClient(elasticSearchSettings);
+        doReturn(new SearchResponse(InternalSearchResponse.empty(), null, 1, 1, 0, 1L, ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY))
+                .when(client).search(any(SearchRequest.class));
+        context = ElasticSearchTestSupport.context(elasticSearchSettings, TestDocDao.class);
+        dao = context.getBean(TestDocDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * SearchAfterBuilder不支持Date,日期游标值按毫秒数发送
+     */
+    @Test
+    public void dateCursorValuesSentAsEpochMillis() throws IOException {
+        Date createTime = new Date(1500000000000L);
+
+        dao.findListByQuery(Query.query().orderBy(OrderBy.asc("createTime")), new Pageable(Keyset.of(createTime, "7"), 10));
+
+        ArgumentCaptor<SearchRequest> searchRequest = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(client).search(searchRequest.capture());
+        assertArrayEquals(new Object[]{1500000000000L, "7"}, searchRequest.getValue().source().searchAfter());
+    }
+}
@@ -0,0 +1,121 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zapplication.exception.RemoteCallException;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.Keyset;
+import com.zhouyutong.zorm.query.Query;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * stream按scrollSize逐页scroll读取,读完或close时清除scroll
+ */
+public class ElasticSearchStreamTest {
+    private AnnotationConfigApplicationContext context;
+    private RestHighLevelClient client;
+    private List<String> clearedScrollIds;
+    private TestDocDao dao;
+
+    @Before
+    public void setUp() throws IOException {
+        ElasticSearchSettings elasticSearchSettings = ElasticSearchTestSupport.settings();
+        elasticSearchSettings.setScrollSize(2);
+        elasticSearchSettings.setScrollKeepAliveMillis(30000L);
+        client = ElasticSearchTestSupport.mockClient(elasticSearchSettings);
+        clearedScrollIds = ElasticSearchTestSupport.stubScroll(client, 5);
+        context = ElasticSearchTestSupport.context(elasticSearchSettings, TestDocDao.class);
+        dao = context.getBean(TestDocDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void readsAllPagesAndClearsScroll() throws IOException {
+        try (Stream<TestDoc> stream = dao.stream(Query.query(Criteria.where("title", "a")))) {
+            assertEquals(5L, stream.count());
+        }
+
+        ArgumentCaptor<SearchRequest> searchRequest = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(client).search(searchRequest.capture());
+        assertEquals(2, searchRequest.getValue().source().size());
+        assertEquals(TimeValue.timeValueMillis(30000L), searchRequest.getValue().scroll().keepAlive());
+        assertEquals(FieldSortBuilder.DOC_FIELD_NAME, ((FieldSortBuilder) searchRequest.getValue().source().sorts().get(0)).getFieldName());
+        //第3页只有1个hit,再读一次空页才结束
+        verify(client, times(3)).searchScroll(any(SearchScrollRequest.class));
+        assertEquals(Lists.newArrayList("0:2:4"), clearedScrollIds);
+    }
+
+    @Test
+    public void closeBeforeExhaustedClearsScroll() throws IOException {
+        try (Stream<TestDoc> stream = dao.stream(Query.query(Criteria.where("title", "a")))) {
+            Iterator<TestDoc> iterator = stream.iterator();
+            iterator.next();
+            assertTrue(clearedScrollIds.isEmpty());
+        }
+
+        verify(client, never()).searchScroll(any(SearchScrollRequest.class));
+        assertEquals(Lists.newArrayList("0:2:1"), clearedScrollIds);
+    }
+
+    @Test
+    public void offsetAndLimitAppliedOnClient() throws IOException {
+        ElasticSearchTestSupport.assumeJsonSerialization();
+
+        List<TestDoc> docs;
+        try (Stream<TestDoc> stream = dao.stream(Query.query(Criteria.where("title", "a")).offset(1).limit(2))) {
+            docs = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(Lists.newArrayList("2", "3"), docs.stream().map(TestDoc::getId).collect(Collectors.toList()));
+        assertEquals("title3", docs.get(1).getTitle());
+        assertEquals(Integer.valueOf(3), docs.get(1).getViews());
+        //limit后不再读取剩余的页,close时清除
+        verify(client, times(1)).searchScroll(any(SearchScrollRequest.class));
+        assertEquals(Lists.newArrayList("0:2:2"), clearedScrollIds);
+    }
+
+    @Test
+    public void scrollFailureClearsScroll() throws IOException {
+        doThrow(new IOException("scroll lost")).when(client).searchScroll(any(SearchScrollRequest.class));
+
+        try (Stream<TestDoc> stream = dao.stream(Query.query(Criteria.where("title", "a")))) {
+            stream.count();
+            fail();
+        } catch (RemoteCallException e) {
+            assertEquals("scroll lost", e.getMessage());
+        }
+        assertEquals(Lists.newArrayList("0:2:1"), clearedScrollIds);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keysetRejected() {
+        dao.stream(Query.query().seek(Keyset.first()));
+    }
+}
@@ -0,0 +1,129 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.zhouyutong.zapplication.serialization.json.FastJson;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.junit.Assume;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * elasticsearch模块测试共用的mock客户端、spring容器和响应
+ * 每次创建的ElasticSearchSettings地址不同,各自对应一个mock客户端,测试之间互不影响
+ */
+final class ElasticSearchTestSupport {
+    static final String SETTINGS_BEAN_NAME = "elasticSearchSettings";
+    private static final AtomicInteger SETTINGS_SEQUENCE = new AtomicInteger();
+
+    private ElasticSearchTestSupport() {
+    }
+
+    static ElasticSearchSettings settings() {
+        ElasticSearchSettings elasticSearchSettings = new ElasticSearchSettings();
+        elasticSearchSettings.setServerAddressList("es-test-" + SETTINGS_SEQUENCE.incrementAndGet() + ":9200");
+        return elasticSearchSettings;
+    }
+
+    /**
+     * 为settings注入mock的客户端,dao初始化时使用该客户端
+     */
+    static RestHighLevelClient mockClient(ElasticSearchSettings elasticSearchSettings) {
+        RestHighLevelClient client = mock(RestHighLevelClient.class);
+        ElasticSearchClientFactory.INSTANCE.setClient(elasticSearchSettings, client);
+        return client;
+    }
+
+    /**
+     * 注册elasticSearchSettings和dao并启动容器
+     */
+    static AnnotationConfigApplicationContext context(ElasticSearchSettings elasticSearchSettings, Class<?>... daoClasses) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerSingleton(SETTINGS_BEAN_NAME, elasticSearchSettings);
+        context.register(daoClasses);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * entity和Update的json序列化由z-application的FastJson完成,只有接口的占位jar中返回null,此时跳过依赖序列化的测试
+     */
+    static void assumeJsonSerialization() {
+        Assume.assumeNotNull(FastJson.object2JsonStrUseNullValue(Collections.singletonMap("id", "1")));
+    }
+
+    static BulkItemResponse success(int itemId, DocWriteRequest request) {
+        IndexResponse indexResponse = new IndexResponse(new ShardId(request.index(), "_na_", 0), request.type(), request.id(), 1L, 1L, 1L, true);
+        return new BulkItemResponse(itemId, request.opType(), indexResponse);
+    }
+
+    static BulkItemResponse failure(int itemId, DocWriteRequest request, RestStatus status) {
+        BulkItemResponse.Failure failure = new BulkItemResponse.Failure(request.index(), request.type(), request.id(),
+                new IllegalStateException(status.name()), status);
+        return new BulkItemResponse(itemId, request.opType(), failure);
+    }
+
+    /**
+     * mock客户端的scroll,每个切片total个文档,按查询请求的size分页,读到空页为止
+     * 切片i(不切片时为0)的文档id为i*1000+1到i*1000+total,scrollId为"切片:size:页号"
+     *
+     * @return 被清除的scrollId,按清除顺序
+     */
+    static List<String> stubScroll(RestHighLevelClient client, int total) throws IOException {
+        doAnswer(invocation -> {
+            SearchRequest searchRequest = invocation.getArgument(0);
+            SliceBuilder slice = searchRequest.source().slice();
+            return scrollPage(slice == null ? 0 : slice.getId(), searchRequest.source().size(), 1, total);
+        }).when(client).search(any(SearchRequest.class));
+        doAnswer(invocation -> {
+            String[] scrollId = ((SearchScrollRequest) invocation.getArgument(0)).scrollId().split(":");
+            return scrollPage(Integer.parseInt(scrollId[0]), Integer.parseInt(scrollId[1]), Integer.parseInt(scrollId[2]) + 1, total);
+        }).when(client).searchScroll(any(SearchScrollRequest.class));
+        List<String> clearedScrollIds = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            List<String> scrollIds = ((ClearScrollRequest) invocation.getArgument(0)).getScrollIds();
+            clearedScrollIds.addAll(scrollIds);
+            return new ClearScrollResponse(true, scrollIds.size());
+        }).when(client).clearScroll(any(ClearScrollRequest.class));
+        return clearedScrollIds;
+    }
+
+    private static SearchResponse scrollPage(int slice, int size, int page, int total) {
+        int from = Math.min((page - 1) * size, total);
+        int to = Math.min(page * size, total);
+        SearchHit[] hits = new SearchHit[to - from];
+        for (int i = from; i < to; i++) {
+            int docId = slice * 1000 + i + 1;
+            String id = String.valueOf(docId);
+            hits[i - from] = new SearchHit(docId, id, new Text("doc"), Collections.emptyMap())
+                    .sourceRef(new BytesArray("{\"id\":\"" + id + "\",\"title\":\"title" + id + "\",\"views\":" + docId + "}"));
+        }
+        InternalSearchResponse internalSearchResponse = new InternalSearchResponse(new SearchHits(hits, total, 1F), null, null, null, false, null, 1);
+        return new SearchResponse(internalSearchResponse, slice + ":" + size + ":" + page, 1, 1, 0, 1L,
+                ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+    }
+}
@@ -0,0 +1,153 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.zhouyutong.zapplication.exception.RemoteCallException;
+import com.zhouyutong.zorm.query.Update;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * updateByIds按块发送bulk update,mock客户端延迟响应以便观察同时在途的请求数
+ */
+public class ElasticSearchUpdateByIdsTest {
+    private static final long RESPONSE_DELAY_MILLIS = 50L;
+
+    private final List<BulkRequest> bulks = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private ScheduledExecutorService responder;
+    private AnnotationConfigApplicationContext context;
+    private RestHighLevelClient client;
+    private TestDocDao dao;
+
+    @Before
+    public void setUp() {
+        ElasticSearchTestSupport.assumeJsonSerialization();
+        ElasticSearchSettings elasticSearchSettings = ElasticSearchTestSupport.settings();
+        elasticSearchSettings.setBulkUpdateChunkSize(2);
+        elasticSearchSettings.setBulkUpdateConcurrency(2);
+        client = ElasticSearchTestSupport.mockClient(elasticSearchSettings);
+        context = ElasticSearchTestSupport.context(elasticSearchSettings, TestDocDao.class);
+        dao = context.getBean(TestDocDao.class);
+        responder = Executors.newScheduledThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+            responder.shutdownNow();
+        }
+    }
+
+    /**
+     * @param noopIds   - 值没有变化的文档
+     * @param failedIds - 不存在的文档
+     */
+    private void respond(Set<String> noopIds, Set<String> failedIds) {
+        doAnswer(invocation -> {
+            BulkRequest request = invocation.getArgument(0);
+            ActionListener<BulkResponse> listener = invocation.getArgument(1);
+            bulks.add(request);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            responder.schedule(() -> {
+                BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+                for (int i = 0; i < items.length; i++) {
+                    DocWriteRequest item = request.requests().get(i);
+                    if (failedIds.contains(item.id())) {
+                        items[i] = ElasticSearchTestSupport.failure(i, item, RestStatus.NOT_FOUND);
+                        continue;
+                    }
+                    DocWriteResponse.Result result = noopIds.contains(item.id()) ? DocWriteResponse.Result.NOOP : DocWriteResponse.Result.UPDATED;
+                    items[i] = new BulkItemResponse(i, item.opType(), new UpdateResponse(new ShardId(item.index(), "_na_", 0), item.type(), item.id(), 2L, result));
+                }
+                inFlight.decrementAndGet();
+                listener.onResponse(new BulkResponse(items, 1L));
+            }, RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            return null;
+        }).when(client).bulkAsync(any(BulkRequest.class), any(), any());
+    }
+
+    private static List<Serializable> ids(int n) {
+        List<Serializable> ids = Lists.newArrayList();
+        for (int i = 1; i <= n; i++) {
+            ids.add(String.valueOf(i));
+        }
+        return ids;
+    }
+
+    @Test
+    public void chunkedBulkUpdatesWithBoundedConcurrency() {
+        this.respond(Sets.newHashSet("3"), Collections.emptySet());
+
+        int count = dao.updateByIds(ids(5), Update.update("views", 10));
+
+        //NOOP的文档不计数
+        assertEquals(4, count);
+        assertEquals(3, bulks.size());
+        assertEquals(2, maxInFlight.get());
+        List<String> sentIds = bulks.stream().flatMap(bulk -> bulk.requests().stream()).map(DocWriteRequest::id).sorted().collect(Collectors.toList());
+        assertEquals(Lists.newArrayList("1", "2", "3", "4", "5"), sentIds);
+        String doc = null;
+        for (BulkRequest bulk : bulks) {
+            assertTrue(bulk.numberOfActions() <= 2);
+            for (DocWriteRequest item : bulk.requests()) {
+                UpdateRequest updateRequest = (UpdateRequest) item;
+                assertEquals(3, updateRequest.retryOnConflict());
+                assertTrue(!updateRequest.docAsUpsert());
+                String itemDoc = updateRequest.doc().source().utf8ToString();
+                assertEquals(doc == null ? itemDoc : doc, itemDoc);
+                doc = itemDoc;
+            }
+        }
+        assertTrue(doc.contains("\"views\":10"));
+    }
+
+    @Test
+    public void failedItemFailsWholeCall() {
+        this.respond(Collections.emptySet(), Sets.newHashSet("4"));
+
+        try {
+            dao.updateByIds(ids(5), Update.update("views", 10));
+            fail();
+        } catch (RemoteCallException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("[4]"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyIdsRejected() {
+        dao.updateByIds(Lists.newArrayList(), Update.update("views", 10));
+    }
+}
@@ -0,0 +1,28 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.zhouyutong.zorm.annotation.PK;
+import com.zhouyutong.zorm.dao.elasticsearch.annotation.Document;
+import com.zhouyutong.zorm.dao.elasticsearch.annotation.Field;
+import com.zhouyutong.zorm.entity.IdEntity;
+import lombok.Data;
+
+@Data
+@Document(indexName = "test_doc", typeName = "doc")
+public class TestDoc implements IdEntity {
+    @PK
+    @Field
+    private String id;
+    @Field
+    private String title;
+    @Field
+    private Integer views;
+
+    public TestDoc() {
+    }
+
+    public TestDoc(String id, String title, Integer views) {
+        this.id = id;
+        this.title = title;
+        this.views = views;
+    }
+}
@@ -0,0 +1,7 @@
+package com.zhouyutong.zorm.dao.elasticsearch;
+
+import com.zhouyutong.zorm.annotation.Dao;
+
+@Dao(settingBeanName = ElasticSearchTestSupport.SETTINGS_BEAN_NAME)
+public class TestDocDao extends ElasticSearchBaseDao<TestDoc> {
+}
@@ -1,18 +1,26 @@
 package com.zhouyutong.zorm.dao.jdbc;
 
+import com.google.common.collect.ImmutableList;
 import com.zhouyutong.zorm.annotation.PK;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.constant.SymbolConstant;
 import com.zhouyutong.zorm.dao.DaoHelper;
 import com.zhouyutong.zorm.dao.jdbc.annotation.Column;
+import com.zhouyutong.zorm.entity.EntityAccessor;
+import com.zhouyutong.zorm.entity.EntityMetadata;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
 
 import java.lang.reflect.Field;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * 实体和数据库的映射
+ * 表名和固定不变的sql片段在创建时预编译,运行期只拼装动态部分
  *
  * @Author zhouyutong
  * @Date 2017/6/8
@@ -28,8 +36,31 @@ public final class EntityMapper<T> {
     //不需要持久化的字段
     private Set<String> notNeedTransientPropertySet = Sets.newHashSet();
 
+    //表名和sequence
+    private String tableName;
+    private String sequenceName;
+    //oracle主键分配器,没有设置sequence时为null
+    private SequenceIdAllocator sequenceIdAllocator;
+    //预编译的sql片段
+    private String selectAllSql;
+    private String fromSql;
+    private String updateSql;
+    private String deleteByPkSql;
+    private String insertWithPkSql;
+    private String insertWithoutPkSql;
+    //insert时除pk外需要持久化的属性,顺序与insert sql中的字段一致
+    private List<String> insertPropertyList;
+    //与insertPropertyList顺序一致的属性读写句柄
+    private List<EntityMetadata.Property> insertProperties;
+    //insertProperties在生成的EntityAccessor.getValues中的下标,没有生成EntityAccessor时为null
+    private int[] insertValueIndexes;
+    private EntityMetadata entityMetadata;
+    //行映射器
+    private EntityRowMapper<T> rowMapper;
+
     public EntityMapper(Class<T> entityClass) {
         this.entityName = entityClass.getCanonicalName();
+        this.entityMetadata = EntityMetadata.of(entityClass);
 
         try {
             //本类字段
@@ -49,12 +80,91 @@ public final class EntityMapper<T> {
                     pkFieldName = propertyName;
                 }
 
-                String columnName = JdbcHelper.getColumnName(field);
+                String columnName = entityMetadata.isGenerated()
+                        ? entityMetadata.getAccessor().getColumnNames().get(propertyName)
+                        : JdbcHelper.getColumnName(field);
                 propertyToColumnMapper.put(propertyName, columnName);
                 columnToPropertyMapper.put(columnName, propertyName);
             }
+
+            this.tableName = JdbcHelper.getTableName(entityClass);
+            this.sequenceName = JdbcHelper.getSequenceName(entityClass);
+            if (StringUtils.isNotBlank(sequenceName)) {
+                this.sequenceIdAllocator = new SequenceIdAllocator(sequenceName, JdbcHelper.getSequenceBlockSize(entityClass));
+            }
+            this.precompileSql();
+            this.rowMapper = new EntityRowMapper<>(entityClass, columnToPropertyMapper);
         } catch (Exception e) {
             throw new RuntimeException("无法创建Entity[" + getEntityName() + "]对应的EntityMapper", e);
         }
     }
+
+    /**
+     * 预编译与查询条件无关的sql片段
+     */
+    private void precompileSql() {
+        String pkColumnName = propertyToColumnMapper.get(pkFieldName);
+
+        //select所有字段
+        StringBuilder selectSB = new StringBuilder("SELECT ");
+        for (String column : propertyToColumnMapper.values()) {
+            selectSB.append(column).append(SymbolConstant.COMMA);
+        }
+        selectSB.deleteCharAt(selectSB.length() - MixedConstant.INT_1).append(SymbolConstant.BLANK);
+        this.selectAllSql = selectSB.toString();
+
+        this.fromSql = "FROM " + tableName + SymbolConstant.BLANK;
+        this.updateSql = "UPDATE " + tableName + SymbolConstant.BLANK;
+        this.deleteByPkSql = "DELETE " + fromSql + "WHERE " + pkColumnName + " = ?";
+
+        //insert字段,pk单独处理
+        ImmutableList.Builder<String> insertPropertyBuilder = ImmutableList.builder();
+        ImmutableList.Builder<EntityMetadata.Property> insertPropertiesBuilder = ImmutableList.builder();
+        StringBuilder columnSB = new StringBuilder();
+        StringBuilder questionSB = new StringBuilder();
+        for (Map.Entry<String, String> entry : propertyToColumnMapper.entrySet()) {
+            String fieldName = entry.getKey();
+            if (fieldName.equals(pkFieldName) || notNeedTransientPropertySet.contains(fieldName)) {
+                continue;
+            }
+            insertPropertyBuilder.add(fieldName);
+            insertPropertiesBuilder.add(entityMetadata.getRequiredProperty(fieldName));
+            columnSB.append(SymbolConstant.COMMA).append(entry.getValue());
+            questionSB.append(SymbolConstant.COMMA).append(SymbolConstant.QUESTION);
+        }
+        this.insertPropertyList = insertPropertyBuilder.build();
+        this.insertProperties = insertPropertiesBuilder.build();
+        EntityAccessor accessor = entityMetadata.getAccessor();
+        if (accessor != null) {
+            int[] indexes = new int[insertPropertyList.size()];
+            boolean generated = true;
+            for (int i = MixedConstant.INT_0; i < indexes.length; i++) {
+                indexes[i] = accessor.getPropertyNames().indexOf(insertPropertyList.get(i));
+                generated = generated && indexes[i] >= MixedConstant.INT_0;
+            }
+            this.insertValueIndexes = generated ? indexes : null;
+        }
+
+        String insertInto = " INSERT INTO " + tableName + " (";
+        this.insertWithPkSql = insertInto + pkColumnName + columnSB + ") VALUES (?" + questionSB + ") ";
+        this.insertWithoutPkSql = columnSB.length() == MixedConstant.INT_0 ? null
+                : insertInto + columnSB.substring(MixedConstant.INT_1) + ") VALUES (" + questionSB.substring(MixedConstant.INT_1) + ") ";
+    }
+
+    /**
+     * 按insertProperties的顺序把除pk外的属性值加入valueList
+     * 有生成的EntityAccessor时一次取出所有属性值,不再逐个属性读取
+     */
+    void addInsertValues(Object entity, List<Object> valueList) {
+        if (insertValueIndexes != null) {
+            Object[] values = entityMetadata.getAccessor().getValues(entity);
+            for (int index : insertValueIndexes) {
+                valueList.add(values[index]);
+            }
+            return;
+        }
+        for (EntityMetadata.Property property : insertProperties) {
+            valueList.add(property.get(entity));
+        }
+    }
 }
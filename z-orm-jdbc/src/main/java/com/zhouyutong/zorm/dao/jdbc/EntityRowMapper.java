@@ -0,0 +1,199 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.entity.EntityAccessor;
+import com.zhouyutong.zorm.entity.EntityMetadata;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 实体对应的行映射器,每个entity创建一次
+ * 按列下标使用类型化的getXxx读取ResultSet,通过EntityMetadata的MethodHandle直接写入entity字段,
+ * 不再经过中间Map和commons-beanutils的反射拷贝
+ * 有z-orm-processor生成的EntityAccessor.mapRow时整行交给生成的代码读取,不再逐个属性判断类型
+ */
+final class EntityRowMapper<T> implements ResultSetExtractor<List<T>> {
+    private final Class<T> entityClass;
+    private final String entityName;
+    private final EntityMetadata entityMetadata;
+    //列名(小写)到字段绑定的映射
+    private final Map<String, FieldBinding> columnBindingMap = Maps.newHashMap();
+    //生成的mapRow,没有生成时为null
+    private final EntityAccessor generatedAccessor;
+
+    EntityRowMapper(Class<T> entityClass, Map<String, String> columnToPropertyMapper) {
+        this.entityClass = entityClass;
+        this.entityName = entityClass.getCanonicalName();
+        this.entityMetadata = EntityMetadata.of(entityClass);
+        try {
+            for (Map.Entry<String, String> entry : columnToPropertyMapper.entrySet()) {
+                EntityMetadata.Property property = entityMetadata.getRequiredProperty(entry.getValue());
+                if (property.isFinal()) {
+                    continue;
+                }
+                columnBindingMap.put(entry.getKey(), new FieldBinding(property));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("无法创建Entity[" + entityName + "]对应的EntityRowMapper", e);
+        }
+        EntityAccessor accessor = entityMetadata.getAccessor();
+        this.generatedAccessor = accessor != null && accessor.hasRowMapper() ? accessor : null;
+    }
+
+    /**
+     * 一次性映射整个结果集
+     */
+    @Override
+    public List<T> extractData(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            return Collections.emptyList();
+        }
+        RowMapper<T> rowMapper = this.newRowMapper(rs.getMetaData());
+        List<T> entityList = Lists.newArrayList();
+        int rowNum = MixedConstant.INT_0;
+        do {
+            entityList.add(rowMapper.mapRow(rs, rowNum++));
+        } while (rs.next());
+        return entityList;
+    }
+
+    /**
+     * 根据结果集的列信息解析出每一列对应的字段,返回的RowMapper只对该结果集有效
+     * 如果select出来的字段有而entity没有对应的属性,该列被忽略
+     */
+    RowMapper<T> newRowMapper(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        final int[] columnIndexes = new int[columnCount];
+        final FieldBinding[] bindings = new FieldBinding[columnCount];
+        int n = MixedConstant.INT_0;
+        for (int i = MixedConstant.INT_1; i <= columnCount; i++) {
+            String label = JdbcUtils.lookupColumnName(metaData, i).toLowerCase();
+            FieldBinding binding = columnBindingMap.get(label);
+            if (binding == null) {
+                continue;
+            }
+            columnIndexes[n] = i;
+            bindings[n] = binding;
+            n++;
+        }
+        final int boundCount = n;
+        if (generatedAccessor != null) {
+            return this.newGeneratedRowMapper(columnIndexes, bindings, boundCount);
+        }
+        return (rs, rowNum) -> {
+            Object entity;
+            try {
+                entity = entityMetadata.newInstance();
+                for (int i = MixedConstant.INT_0; i < boundCount; i++) {
+                    bindings[i].bind(rs, columnIndexes[i], entity);
+                }
+            } catch (SQLException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException("无法将数据库中第[" + rowNum + "]行记录转换成Entity对象[" + entityName + "]", e);
+            }
+            return entityClass.cast(entity);
+        };
+    }
+
+    /**
+     * 生成的mapRow按属性下标接收列下标,没有出现在结果集中的属性为0
+     */
+    private RowMapper<T> newGeneratedRowMapper(int[] columnIndexes, FieldBinding[] bindings, int boundCount) {
+        List<String> propertyNames = generatedAccessor.getPropertyNames();
+        final int[] propertyColumnIndexes = new int[propertyNames.size()];
+        for (int i = MixedConstant.INT_0; i < boundCount; i++) {
+            propertyColumnIndexes[propertyNames.indexOf(bindings[i].property.getName())] = columnIndexes[i];
+        }
+        return (rs, rowNum) -> {
+            try {
+                return entityClass.cast(generatedAccessor.mapRow(rs, propertyColumnIndexes));
+            } catch (SQLException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException("无法将数据库中第[" + rowNum + "]行记录转换成Entity对象[" + entityName + "]", e);
+            }
+        };
+    }
+
+    /**
+     * 单个字段的读取和写入
+     */
+    private static final class FieldBinding {
+        private final Class<?> type;
+        private final EntityMetadata.Property property;
+
+        private FieldBinding(EntityMetadata.Property property) {
+            this.type = property.getType();
+            this.property = property;
+        }
+
+        private void bind(ResultSet rs, int index, Object entity) throws SQLException {
+            Object value = this.read(rs, index);
+            //null值不写入,基本类型保持默认值
+            if (value != null) {
+                property.set(entity, value);
+            }
+        }
+
+        private Object read(ResultSet rs, int index) throws SQLException {
+            Object value;
+            if (type == String.class) {
+                return rs.getString(index);
+            } else if (type == Long.class || type == long.class) {
+                value = rs.getLong(index);
+            } else if (type == Integer.class || type == int.class) {
+                value = rs.getInt(index);
+            } else if (type == Timestamp.class || type == java.util.Date.class) {
+                return rs.getTimestamp(index);
+            } else if (type == BigDecimal.class) {
+                return rs.getBigDecimal(index);
+            } else if (type == Double.class || type == double.class) {
+                value = rs.getDouble(index);
+            } else if (type == Float.class || type == float.class) {
+                value = rs.getFloat(index);
+            } else if (type == Short.class || type == short.class) {
+                value = rs.getShort(index);
+            } else if (type == Byte.class || type == byte.class) {
+                value = rs.getByte(index);
+            } else if (type == Boolean.class || type == boolean.class) {
+                value = rs.getBoolean(index);
+            } else if (type == java.sql.Date.class) {
+                return rs.getDate(index);
+            } else if (type == java.sql.Time.class) {
+                return rs.getTime(index);
+            } else if (type == LocalDateTime.class) {
+                Timestamp timestamp = rs.getTimestamp(index);
+                return timestamp == null ? null : timestamp.toLocalDateTime();
+            } else if (type == LocalDate.class) {
+                java.sql.Date date = rs.getDate(index);
+                return date == null ? null : date.toLocalDate();
+            } else if (type == byte[].class) {
+                return rs.getBytes(index);
+            } else {
+                //其他类型交给commons-beanutils转换,与原有的拷贝行为保持一致
+                value = JdbcUtils.getResultSetValue(rs, index);
+                if (value == null || type.isInstance(value)) {
+                    return value;
+                }
+                return ConvertUtils.convert(value, type);
+            }
+            return rs.wasNull() ? null : value;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.zhouyutong.zorm.dao.jdbc.annotation.EntityCache;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionContext;
+import com.zhouyutong.zorm.entity.EntityMetadata;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * findOneById的二级缓存,每个开启了EntityCache的entity一个
+ * 不存在的id也会缓存,insert时失效
+ * 写入后立即失效一次,在事物中时提交后再失效一次,避免其他线程在提交前把旧值重新加载进缓存
+ * 加载期间发生过失效时不缓存加载结果,与QueryResultCache的版本检查相同,避免与写入并发的加载把旧值放回缓存
+ * 缓存中的entity不返回给调用方,每次get返回一个复制
+ */
+final class IdCache<T> {
+    private final Class<T> entityClass;
+    private final EntityMetadata entityMetadata;
+    private final Class<?> pkType;
+    private final LoadingCache<Serializable, Optional<T>> cache;
+    //每次失效加1,加载前后不一致时说明加载期间有写入,加载结果可能是旧值
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param entityCache     - 缓存配置
+     * @param entityClass     - entityClass
+     * @param pkType          - 主键类型,不同类型的相同主键值使用同一个缓存项
+     * @param loader          - 缓存未命中时从数据库加载
+     * @param refreshExecutor - 异步刷新使用的线程池
+     */
+    IdCache(EntityCache entityCache, Class<T> entityClass, Class<?> pkType, Function<Serializable, T> loader, Executor refreshExecutor) {
+        this.entityClass = entityClass;
+        this.entityMetadata = EntityMetadata.of(entityClass);
+        this.pkType = pkType;
+        CacheLoader<Serializable, Optional<T>> cacheLoader = new CacheLoader<Serializable, Optional<T>>() {
+            @Override
+            public Optional<T> load(Serializable id) {
+                long loadGeneration = generation.get();
+                Optional<T> value = Optional.fromNullable(loader.apply(id));
+                if (generation.get() != loadGeneration) {
+                    //加载失败时guava不缓存,get中直接使用加载结果;异步刷新失败时保留原缓存项,而原缓存项已经失效
+                    throw new StaleLoadException(value.orNull());
+                }
+                return value;
+            }
+        };
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+                .maximumSize(entityCache.maximumSize())
+                .recordStats();
+        if (entityCache.expireAfterWriteSeconds() > 0L) {
+            cacheBuilder.expireAfterWrite(entityCache.expireAfterWriteSeconds(), TimeUnit.SECONDS);
+        }
+        if (entityCache.refreshAfterWriteSeconds() > 0L
+                && (entityCache.expireAfterWriteSeconds() <= 0L || entityCache.refreshAfterWriteSeconds() < entityCache.expireAfterWriteSeconds())) {
+            cacheBuilder.refreshAfterWrite(entityCache.refreshAfterWriteSeconds(), TimeUnit.SECONDS);
+            cacheLoader = CacheLoader.asyncReloading(cacheLoader, refreshExecutor);
+        }
+        this.cache = cacheBuilder.build(cacheLoader);
+    }
+
+    T get(Serializable id) {
+        try {
+            return this.copy(cache.getUnchecked(this.normalize(id)).orNull());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof StaleLoadException) {
+                return this.copy(entityClass.cast(((StaleLoadException) e.getCause()).value));
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    void invalidate(Serializable id) {
+        Serializable key = this.normalize(id);
+        this.invalidateKeys(Collections.singletonList(key));
+        TransactionContext.afterCommit(() -> this.invalidateKeys(Collections.singletonList(key)));
+    }
+
+    void invalidate(Collection<?> ids) {
+        List<Serializable> keys = Lists.newArrayListWithCapacity(ids.size());
+        for (Object id : ids) {
+            keys.add(this.normalize((Serializable) id));
+        }
+        this.invalidateKeys(keys);
+        TransactionContext.afterCommit(() -> this.invalidateKeys(keys));
+    }
+
+    void invalidateAll() {
+        this.invalidateKeys(null);
+        TransactionContext.afterCommit(() -> this.invalidateKeys(null));
+    }
+
+    /**
+     * 命中数、未命中数、淘汰数等统计
+     */
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    //先增加generation再失效,之后完成的加载都会发现generation变化;keys为null时全部失效
+    private void invalidateKeys(List<Serializable> keys) {
+        generation.incrementAndGet();
+        if (keys == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    private T copy(T entity) {
+        return entity == null ? null : entityClass.cast(entityMetadata.copy(entity));
+    }
+
+    //主键值转换为主键字段的类型,如findOneById(1)和Long类型主键的entity使用同一个缓存项
+    private Serializable normalize(Serializable id) {
+        return (Serializable) JdbcHelper.convertPkValue(id, pkType);
+    }
+
+    /**
+     * 加载期间发生了失效,携带加载结果但不缓存
+     */
+    private static final class StaleLoadException extends RuntimeException {
+        private final Object value;
+
+        private StaleLoadException(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.zhouyutong.zorm.dao.jdbc;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.zhouyutong.zorm.constant.MixedConstant;
 import com.zhouyutong.zorm.dao.AbstractBaseDao;
 import com.zhouyutong.zorm.dao.DaoHelper;
 import com.zhouyutong.zorm.dao.DatabaseRouter;
+import com.zhouyutong.zorm.dao.jdbc.annotation.EntityCache;
+import com.zhouyutong.zorm.dao.jdbc.annotation.QueryCache;
+import com.zhouyutong.zorm.dao.jdbc.dialect.Dialect;
+import com.zhouyutong.zorm.dao.jdbc.route.ReadReplica;
+import com.zhouyutong.zorm.dao.jdbc.route.WriteSession;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionContext;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionProfile;
+import com.zhouyutong.zorm.entity.EntityMetadata;
 import com.zhouyutong.zorm.entity.IdEntity;
-import com.zhouyutong.zorm.enums.DialectEnum;
+import com.zhouyutong.zorm.enums.DaoOperationEnum;
 import com.zhouyutong.zorm.query.*;
 import com.zhouyutong.zorm.utils.ExceptionTranslator;
 import lombok.extern.slf4j.Slf4j;
@@ -16,37 +28,77 @@ import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.SqlTypeValue;
 import org.springframework.jdbc.core.StatementCreatorUtils;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
 import java.io.Serializable;
-import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 基于JdbcTemplate的Dao实现<br>
+ * 分片模式下按主键的操作路由到一个分片,其他查询并行发往所有分片后合并,其他写操作依次在所有分片执行<br>
  *
  * @author zhouyutong
  * @since 2015/11/24
  */
 @Slf4j
 public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements ApplicationContextAware {
+    //不能确定分片
+    private static final int NO_SHARD = -1;
+    //分片模式findListBySql不支持的排序和分页语法
+    private static final Pattern SHARD_UNSUPPORTED_SQL = Pattern.compile("\\b(ORDER\\s+BY|LIMIT|OFFSET|FETCH\\s+(FIRST|NEXT)|ROWNUM)\\b", Pattern.CASE_INSENSITIVE);
     private Class<T> entityClass;
     private EntityMapper<T> entityMapper;
     private JdbcSettings jdbcSettings;
+    private Dialect dialect;
+    //方言不支持upsert时为null
+    private String upsertSql;
     private DatabaseRouter router;
+    //已经释放router,防止重复销毁时多次减少router的引用
+    private boolean destroyed = false;
     private ApplicationContext applicationContext;
+    //entity标注了EntityCache时才有
+    private IdCache<T> idCache;
+    //表的查询缓存版本号,所有dao都有,写入时加1使其它dao的查询缓存失效
+    private AtomicLong tableVersion;
+    //dao标注了QueryCache时才有
+    private QueryResultCache queryCache;
 
     @Override
     public Class<T> getGenericClass() {
@@ -55,6 +107,10 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public boolean exists(Serializable id) {
+        return this.invoke(DaoOperationEnum.EXISTS, id, () -> this.doExists(id));
+    }
+
+    private boolean doExists(Serializable id) {
         DaoHelper.checkArgumentId(id);
 
         return this.exists(Criteria.where(entityMapper.getPkFieldName(), id));
@@ -62,6 +118,10 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public boolean exists(Criteria criteria) {
+        return this.invoke(DaoOperationEnum.EXISTS, criteria, () -> this.doExists(criteria));
+    }
+
+    private boolean doExists(Criteria criteria) {
         DaoHelper.checkArgumentCriteria(criteria);
 
         return null != this.findOne(Arrays.asList(entityMapper.getPkFieldName()), criteria);
@@ -69,19 +129,38 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public long countByCriteria(Criteria criteria) {
+        return this.invoke(DaoOperationEnum.COUNT_BY_CRITERIA, criteria, () -> this.doCountByCriteria(criteria));
+    }
+
+    private long doCountByCriteria(Criteria criteria) {
         DaoHelper.checkArgumentCriteria(criteria);
 
         List<Object> valueList = Lists.newArrayList();
         StringBuilder sql = new StringBuilder();
         sql.append(JdbcHelper.SELECT_COUNT());
-        sql.append(JdbcHelper.FROM(entityClass));
+        sql.append(JdbcHelper.FROM(entityMapper));
         sql.append(JdbcHelper.WHERE(criteria, valueList, entityMapper));
 
+        if (this.useQueryCache()) {
+            return queryCache.getCount(QueryResultCache.key("countByCriteria", sql.toString(), valueList), () -> this.count(criteria, sql.toString(), valueList, true));
+        }
+        return this.count(criteria, sql.toString(), valueList, false);
+    }
+
+    /**
+     * @param cacheLoad - 是否为查询缓存的加载
+     */
+    private long count(Criteria criteria, String sql, List<Object> valueList, boolean cacheLoad) {
         try {
             if (log.isDebugEnabled()) {
                 log.debug("=========countByCriteria request:" + DaoHelper.formatSql(sql.toString(), valueList));
             }
-            long count = ((JdbcTemplate) router.readRoute()).queryForObject(sql.toString(), valueList.toArray(), Long.class);
+            long count;
+            if (this.isSharded()) {
+                count = this.countOnShards(this.shardOf(criteria), sql.toString(), valueList.toArray());
+            } else {
+                count = this.readRoute(cacheLoad).queryForObject(sql.toString(), valueList.toArray(), Long.class);
+            }
             if (log.isDebugEnabled()) {
                 log.debug("=========countByCriteria response:" + count);
             }
@@ -93,15 +172,34 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public long countAll() {
+        return this.invoke(DaoOperationEnum.COUNT_ALL, () -> this.doCountAll());
+    }
+
+    private long doCountAll() {
         StringBuilder sql = new StringBuilder();
         sql.append(JdbcHelper.SELECT_COUNT());
-        sql.append(JdbcHelper.FROM(entityClass));
+        sql.append(JdbcHelper.FROM(entityMapper));
 
+        if (this.useQueryCache()) {
+            return queryCache.getCount(QueryResultCache.key("countAll", sql.toString(), Collections.emptyList()), () -> this.countAll(sql.toString(), true));
+        }
+        return this.countAll(sql.toString(), false);
+    }
+
+    /**
+     * @param cacheLoad - 是否为查询缓存的加载
+     */
+    private long countAll(String sql, boolean cacheLoad) {
         try {
             if (log.isDebugEnabled()) {
                 log.debug("=========countAll request:" + DaoHelper.formatSql(sql.toString(), null));
             }
-            long count = ((JdbcTemplate) router.readRoute()).queryForObject(sql.toString(), Long.class);
+            long count;
+            if (this.isSharded()) {
+                count = this.countOnShards(NO_SHARD, sql.toString(), new Object[MixedConstant.INT_0]);
+            } else {
+                count = this.readRoute(cacheLoad).queryForObject(sql.toString(), Long.class);
+            }
             if (log.isDebugEnabled()) {
                 log.debug("=========countAll response:" + count);
             }
@@ -113,6 +211,10 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     protected long countBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.COUNT_BY_SQL, sql, param, () -> this.doCountBySql(sql, param));
+    }
+
+    private long doCountBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
 
         List<Object> valueList = MapUtils.isEmpty(param) ? null : Lists.newArrayList(param.values());
@@ -121,7 +223,9 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
                 log.debug("=========countBySql request:" + DaoHelper.formatSql(sql.toString(), valueList));
             }
             long count;
-            if (CollectionUtils.isEmpty(valueList)) {
+            if (this.isSharded()) {
+                count = this.countOnShards(NO_SHARD, sql, CollectionUtils.isEmpty(valueList) ? new Object[MixedConstant.INT_0] : valueList.toArray());
+            } else if (CollectionUtils.isEmpty(valueList)) {
                 count = ((JdbcTemplate) router.readRoute()).queryForObject(sql, Long.class);
             } else {
                 count = ((JdbcTemplate) router.readRoute()).queryForObject(sql, valueList.toArray(), Long.class);
@@ -137,13 +241,44 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public T findOneById(Serializable id) {
+        return this.invoke(DaoOperationEnum.FIND_ONE_BY_ID, id, () -> this.doFindOneById(id));
+    }
+
+    private T doFindOneById(Serializable id) {
         DaoHelper.checkArgumentId(id);
 
+        //事物中需要读到自己未提交的写,不使用缓存
+        if (idCache != null && !TransactionContext.isInTransaction()) {
+            return idCache.get(id);
+        }
         return this.findOne(Criteria.where(entityMapper.getPkFieldName(), id));
     }
 
+    /**
+     * 缓存未命中时从主库加载,避免把读库上尚未同步的旧值放进缓存
+     */
+    private T loadById(Serializable id) {
+        List<Object> valueList = Lists.newArrayList();
+        String sql = this.buildQuerySql(Query.query(Criteria.where(entityMapper.getPkFieldName(), id)), valueList, MixedConstant.INT_0, MixedConstant.INT_0);
+        JdbcDatabaseRouter jdbcRouter = (JdbcDatabaseRouter) router;
+        JdbcTemplate jdbcTemplate = this.isSharded() ? jdbcRouter.readRoute(this.shardOfPk(id)) : jdbcRouter.primaryReadRoute();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("=========loadById request:" + DaoHelper.formatSql(sql, valueList));
+            }
+            List<T> entityList = jdbcTemplate.query(sql, valueList.toArray(), entityMapper.getRowMapper());
+            return CollectionUtils.isEmpty(entityList) ? null : entityList.get(MixedConstant.INT_0);
+        } catch (DataAccessException e) {
+            throw ExceptionTranslator.translate(e, jdbcSettings.getDialectEnum());
+        }
+    }
+
     @Override
     public T findOneByQuery(Query query) {
+        return this.invoke(DaoOperationEnum.FIND_ONE_BY_QUERY, query, () -> this.doFindOneByQuery(query));
+    }
+
+    private T doFindOneByQuery(Query query) {
         DaoHelper.checkArgumentQuery(query);
 
         query.offset(MixedConstant.INT_0).limit(MixedConstant.INT_1);
@@ -153,59 +288,321 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     protected T findOneBySql(String sqlOrgin, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.FIND_ONE_BY_SQL, sqlOrgin, param, () -> this.doFindOneBySql(sqlOrgin, param));
+    }
+
+    private T doFindOneBySql(String sqlOrgin, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sqlOrgin);
 
         List<T> entityList = this.findListBySql(sqlOrgin, param);
         return CollectionUtils.isEmpty(entityList) ? null : entityList.get(MixedConstant.INT_0);
     }
 
+    /**
+     * ids分批查询,每批补齐到规范长度以减少不同的sql
+     * 多批时在并行查询线程池中分散到各个读库执行,结果按调用方ids的顺序返回
+     * 事物中的查询必须使用当前线程绑定的链接,因此串行执行
+     * 分片模式先按分片分组,每批只包含一个分片的ids
+     */
     @Override
     public List<T> findListByIds(List<Serializable> ids) {
+        return this.invoke(DaoOperationEnum.FIND_LIST_BY_IDS, ids, () -> this.doFindListByIds(ids));
+    }
+
+    private List<T> doFindListByIds(List<Serializable> ids) {
         DaoHelper.checkArgumentIds(ids);
 
-        return this.findList(Criteria.where(entityMapper.getPkFieldName(), CriteriaOperators.IN, ids));
+        int bucketSize = jdbcSettings.getIdLookupBatchSize() > MixedConstant.INT_0 ? jdbcSettings.getIdLookupBatchSize() : ids.size();
+        List<List<Serializable>> buckets;
+        if (this.isSharded()) {
+            buckets = Lists.newArrayList();
+            for (List<Serializable> shardIds : this.groupByShard(ids).values()) {
+                buckets.addAll(JdbcHelper.ID_BUCKETS(shardIds, bucketSize));
+            }
+        } else {
+            buckets = JdbcHelper.ID_BUCKETS(ids, bucketSize);
+        }
+        ExecutorService queryExecutor = ((JdbcDatabaseRouter) router).getQueryExecutor();
+
+        List<T> resultList = Lists.newArrayList();
+        try {
+            if (buckets.size() == MixedConstant.INT_1 || queryExecutor == null || TransactionContext.isInTransaction()) {
+                for (List<Serializable> bucket : buckets) {
+                    this.addAllIfNotNull(resultList, this.findListByBucket(bucket));
+                }
+            } else {
+                //并行线程沿用调用方的写时间,保证写后读一致
+                long writeToken = WriteSession.getWriteToken();
+                List<CompletableFuture<List<T>>> futureList = Lists.newArrayList();
+                for (List<Serializable> bucket : buckets) {
+                    futureList.add(CompletableFuture.supplyAsync(() -> WriteSession.callWithToken(writeToken, () -> this.findListByBucket(bucket)), queryExecutor));
+                }
+                for (CompletableFuture<List<T>> future : futureList) {
+                    this.addAllIfNotNull(resultList, future.join());
+                }
+            }
+        } catch (CompletionException e) {
+            throw ExceptionTranslator.translate(e.getCause());
+        }
+        if (resultList.isEmpty()) {
+            return null;
+        }
+
+        //按调用方ids的顺序合并
+        Map<String, T> pkToEntityMap = Maps.newHashMapWithExpectedSize(resultList.size());
+        for (T entity : resultList) {
+            pkToEntityMap.put(String.valueOf(DaoHelper.getPkValue((IdEntity) entity)), entity);
+        }
+        List<T> entityList = Lists.newArrayListWithCapacity(pkToEntityMap.size());
+        for (Serializable id : new LinkedHashSet<>(ids)) {
+            T entity = pkToEntityMap.get(String.valueOf(id));
+            if (entity != null) {
+                entityList.add(entity);
+            }
+        }
+        return entityList;
+    }
+
+    /**
+     * 并行时在查询线程中执行,嵌套深度不会传递过去,不经过findListByQuery的拦截器和统计,与串行时一致
+     */
+    private List<T> findListByBucket(List<Serializable> bucket) {
+        return this.doFindListByQuery(Query.query(Criteria.where(entityMapper.getPkFieldName(), CriteriaOperators.IN, bucket)));
+    }
+
+    private void addAllIfNotNull(List<T> resultList, List<T> entityList) {
+        if (entityList != null) {
+            resultList.addAll(entityList);
+        }
     }
 
     @Override
     public List<T> findListByQuery(Query query) {
+        return this.invoke(DaoOperationEnum.FIND_LIST_BY_QUERY, query, () -> this.doFindListByQuery(query));
+    }
+
+    private List<T> doFindListByQuery(Query query) {
         DaoHelper.checkArgumentQuery(query);
 
+        if (this.useQueryCache()) {
+            List<Object> valueList = Lists.newArrayList();
+            String sql = this.buildQuerySql(query, valueList, query.getOffset(), query.getLimit());
+            return queryCache.getList(QueryResultCache.key("findListByQuery", sql, valueList), entityClass, () -> this.queryList(query, true));
+        }
+        return this.queryList(query, false);
+    }
+
+    /**
+     * @param cacheLoad - 是否为查询缓存的加载
+     */
+    private List<T> queryList(Query query, boolean cacheLoad) {
+        if (this.isSharded()) {
+            return this.findListByQueryOnShards(query);
+        }
+
         List<Object> valueList = Lists.newArrayList();
-        StringBuilder sql = new StringBuilder();
-        sql.append(JdbcHelper.SELECT(query, entityMapper));
-        sql.append(JdbcHelper.FROM(entityClass));
-        sql.append(JdbcHelper.WHERE(query.getCriteria(), valueList, entityMapper));
-        sql.append(JdbcHelper.GROUP_BY(query.getGroupBys(), entityMapper));
-        sql.append(JdbcHelper.ORDER_BY(query.getOrderBys(), entityMapper));
-        sql.append(JdbcHelper.LIMIT(query.getOffset(), query.getLimit(), jdbcSettings.getDialectEnum(), sql));
+        String sql = this.buildQuerySql(query, valueList, query.getOffset(), query.getLimit());
 
         try {
             if (log.isDebugEnabled()) {
-                log.debug("=========findListByQuery request:" + DaoHelper.formatSql(sql.toString(), valueList));
+                log.debug("=========findListByQuery request:" + DaoHelper.formatSql(sql, valueList));
             }
-            List<Map<String, Object>> list = ((JdbcTemplate) router.readRoute()).queryForList(sql.toString(), valueList.toArray());
+            List<T> entityList = this.readRoute(cacheLoad).query(sql, valueList.toArray(), entityMapper.getRowMapper());
             if (log.isDebugEnabled()) {
-                log.debug("=========findListByQuery response:" + list);
+                log.debug("=========findListByQuery response:" + entityList);
             }
-            if (CollectionUtils.isEmpty(list)) {
-                return null;
+            return CollectionUtils.isEmpty(entityList) ? null : entityList;
+        } catch (DataAccessException e) {
+            throw ExceptionTranslator.translate(e, jdbcSettings.getDialectEnum());
+        }
+    }
+
+    /**
+     * 分片查询,主键条件能确定分片时只查询该分片
+     * 否则并行查询所有分片,每个分片取前offset+limit行,归并排序后跳过offset行取limit行
+     */
+    private List<T> findListByQueryOnShards(Query query) {
+        JdbcDatabaseRouter jdbcRouter = (JdbcDatabaseRouter) router;
+        int shard = this.shardOf(query.getCriteria());
+        List<Object> valueList = Lists.newArrayList();
+        try {
+            List<T> entityList;
+            if (shard != NO_SHARD) {
+                String sql = this.buildQuerySql(query, valueList, query.getOffset(), query.getLimit());
+                if (log.isDebugEnabled()) {
+                    log.debug("=========findListByQuery request:shard[" + shard + "]" + DaoHelper.formatSql(sql, valueList));
+                }
+                entityList = jdbcRouter.readRoute(shard).query(sql, valueList.toArray(), entityMapper.getRowMapper());
+            } else {
+                this.checkScatterQuery(query);
+                int offset = query.getLimit() > MixedConstant.INT_0 ? Math.max(query.getOffset(), MixedConstant.INT_0) : MixedConstant.INT_0;
+                int limit = query.getLimit() > MixedConstant.INT_0 ? query.getLimit() : MixedConstant.INT_0;
+                String sql = this.buildQuerySql(query, valueList, MixedConstant.INT_0, limit > MixedConstant.INT_0 ? offset + limit : MixedConstant.INT_0);
+                if (log.isDebugEnabled()) {
+                    log.debug("=========findListByQuery request:all shards" + DaoHelper.formatSql(sql, valueList));
+                }
+                Object[] args = valueList.toArray();
+                List<List<T>> shardResultList = this.scatter(jdbcRouter.getShardReadJdbcTemplates(), jdbcTemplate -> jdbcTemplate.query(sql, args, entityMapper.getRowMapper()));
+                List<Iterator<T>> iterators = Lists.newArrayListWithCapacity(shardResultList.size());
+                for (List<T> shardResult : shardResultList) {
+                    iterators.add(shardResult == null ? Collections.<T>emptyIterator() : shardResult.iterator());
+                }
+                Iterator<T> merged = ShardMergeIterator.merge(iterators, this.mergeComparator(query));
+                Iterators.advance(merged, offset);
+                entityList = Lists.newArrayList(limit > MixedConstant.INT_0 ? Iterators.limit(merged, limit) : merged);
             }
-            List<T> entityList = Lists.newArrayList();
-            for (Map<String, Object> map : list) {
-                entityList.add(JdbcHelper.map2Entity(map, entityMapper, entityClass));
+            if (log.isDebugEnabled()) {
+                log.debug("=========findListByQuery response:" + entityList);
             }
-            return entityList;
+            return CollectionUtils.isEmpty(entityList) ? null : entityList;
         } catch (DataAccessException e) {
             throw ExceptionTranslator.translate(e, jdbcSettings.getDialectEnum());
         }
     }
 
+    @Override
+    public Stream<T> stream(Query query) {
+        return this.invoke(DaoOperationEnum.STREAM, query, () -> this.doStream(query));
+    }
+
+    private Stream<T> doStream(Query query) {
+        DaoHelper.checkArgumentQuery(query);
+        if (this.isSharded()) {
+            return this.streamOnShards(query);
+        }
+
+        List<Object> valueList = Lists.newArrayList();
+        String sql = this.buildQuerySql(query, valueList, query.getOffset(), query.getLimit());
+        if (log.isDebugEnabled()) {
+            log.debug("=========stream request:" + DaoHelper.formatSql(sql, valueList));
+        }
+        //游标不经过JdbcTemplate.execute,打开游标的结果计入读库统计,拿到探测请求时以此作为探测结果
+        JdbcTemplate jdbcTemplate = (JdbcTemplate) router.readRoute();
+        Consumer<Throwable> tracker = ReadReplica.track(jdbcTemplate);
+        Stream<T> stream;
+        try {
+            stream = ResultSetSpliterator.stream(jdbcTemplate.getDataSource(), sql, valueList, jdbcSettings.getFetchSize(), entityMapper, dialect);
+        } catch (RuntimeException e) {
+            tracker.accept(e);
+            throw e;
+        }
+        tracker.accept(null);
+        return stream;
+    }
+
+    /**
+     * 分片流式查询,主键条件能确定分片时只查询该分片
+     * 否则在每个分片打开一个游标,按order by逐行归并,close时关闭所有分片的游标
+     */
+    private Stream<T> streamOnShards(Query query) {
+        JdbcDatabaseRouter jdbcRouter = (JdbcDatabaseRouter) router;
+        int shard = this.shardOf(query.getCriteria());
+        List<Object> valueList = Lists.newArrayList();
+        if (shard != NO_SHARD) {
+            String sql = this.buildQuerySql(query, valueList, query.getOffset(), query.getLimit());
+            if (log.isDebugEnabled()) {
+                log.debug("=========stream request:shard[" + shard + "]" + DaoHelper.formatSql(sql, valueList));
+            }
+            return ResultSetSpliterator.stream(jdbcRouter.readRoute(shard).getDataSource(), sql, valueList, jdbcSettings.getFetchSize(), entityMapper, dialect);
+        }
+
+        this.checkScatterQuery(query);
+        int offset = query.getLimit() > MixedConstant.INT_0 ? Math.max(query.getOffset(), MixedConstant.INT_0) : MixedConstant.INT_0;
+        int limit = query.getLimit() > MixedConstant.INT_0 ? query.getLimit() : MixedConstant.INT_0;
+        String sql = this.buildQuerySql(query, valueList, MixedConstant.INT_0, limit > MixedConstant.INT_0 ? offset + limit : MixedConstant.INT_0);
+        if (log.isDebugEnabled()) {
+            log.debug("=========stream request:all shards" + DaoHelper.formatSql(sql, valueList));
+        }
+        List<Stream<T>> streamList = Lists.newArrayList();
+        try {
+            for (JdbcTemplate jdbcTemplate : jdbcRouter.getShardReadJdbcTemplates()) {
+                streamList.add(ResultSetSpliterator.stream(jdbcTemplate.getDataSource(), sql, valueList, jdbcSettings.getFetchSize(), entityMapper, dialect));
+            }
+        } catch (RuntimeException e) {
+            closeAll(streamList);
+            throw e;
+        }
+        List<Iterator<T>> iterators = Lists.newArrayListWithCapacity(streamList.size());
+        for (Stream<T> shardStream : streamList) {
+            iterators.add(shardStream.iterator());
+        }
+        Iterator<T> merged = ShardMergeIterator.merge(iterators, this.mergeComparator(query));
+        Stream<T> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> closeAll(streamList));
+        return limit > MixedConstant.INT_0 ? stream.skip(offset).limit(limit) : stream;
+    }
+
+    private static <T> void closeAll(List<Stream<T>> streamList) {
+        for (Stream<T> shardStream : streamList) {
+            try {
+                shardStream.close();
+            } catch (RuntimeException e) {
+                log.warn("close shard stream failed", e);
+            }
+        }
+    }
+
+    /**
+     * 跨分片查询无法合并分组结果
+     */
+    private void checkScatterQuery(Query query) {
+        if (CollectionUtils.isNotEmpty(query.getGroupBys())) {
+            throw new IllegalArgumentException("分片查询不支持跨分片的groupBy,查询条件需要包含主键");
+        }
+    }
+
+    /**
+     * 分片结果归并使用的排序,与buildQuerySql中的order by一致
+     */
+    private Comparator<T> mergeComparator(Query query) {
+        List<OrderBy> orderBys = query.getOrderBys();
+        if (query.getKeyset() != null) {
+            orderBys = Keyset.seekOrderBys(orderBys, entityMapper.getPkFieldName());
+        }
+        return ShardMergeIterator.comparator(entityClass, orderBys, dialect);
+    }
+
+    /**
+     * 根据query拼装查询sql
+     *
+     * @param offset - 使用的offset,分片查询时与query中的不同
+     * @param limit  - 使用的limit,分片查询时与query中的不同
+     */
+    private String buildQuerySql(Query query, List<Object> valueList, int offset, int limit) {
+        List<OrderBy> orderBys = query.getOrderBys();
+        if (query.getKeyset() != null) {
+            if (CollectionUtils.isNotEmpty(query.getGroupBys())) {
+                throw new IllegalArgumentException("seek分页不支持groupBy查询");
+            }
+            orderBys = Keyset.seekOrderBys(orderBys, entityMapper.getPkFieldName());
+        }
+
+        StringBuilder sql = new StringBuilder();
+        sql.append(JdbcHelper.SELECT(query, entityMapper));
+        sql.append(JdbcHelper.FROM(entityMapper));
+        String where = JdbcHelper.WHERE(query.getCriteria(), valueList, entityMapper);
+        sql.append(where);
+        sql.append(JdbcHelper.KEYSET(query.getKeyset(), orderBys, !where.isEmpty(), valueList, entityMapper, dialect));
+        sql.append(JdbcHelper.GROUP_BY(query.getGroupBys(), entityMapper));
+        sql.append(JdbcHelper.ORDER_BY(orderBys, entityMapper));
+        sql.append(JdbcHelper.LIMIT(offset, limit, dialect, sql));
+        return sql.toString();
+    }
+
     @Override
     public List<T> findListByQuery(Query query, Pageable pageable) {
+        return this.invoke(DaoOperationEnum.FIND_LIST_BY_QUERY, query, pageable, () -> this.doFindListByQuery(query, pageable));
+    }
+
+    private List<T> doFindListByQuery(Query query, Pageable pageable) {
         DaoHelper.checkArgumentQuery(query);
         DaoHelper.checkArgumentPageable(pageable);
 
         int limit = pageable.getPageSize();
+        if (pageable.getKeyset() != null) {   //seek分页从游标之后取limit条
+            query.seek(pageable.getKeyset()).offset(MixedConstant.INT_0).limit(limit);
+            return this.findListByQuery(query);
+        }
         int offset = (pageable.getPageNumber() - MixedConstant.INT_1) * limit;
         query.offset(offset).limit(limit);
         return this.findListByQuery(query);
@@ -213,29 +610,33 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     protected List<T> findListBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.FIND_LIST_BY_SQL, sql, param, () -> this.doFindListBySql(sql, param));
+    }
+
+    private List<T> doFindListBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
         List<Object> valueList = MapUtils.isEmpty(param) ? null : Lists.newArrayList(param.values());
         try {
             if (log.isDebugEnabled()) {
                 log.debug("=========findListBySql request:" + DaoHelper.formatSql(sql.toString(), valueList));
             }
-            List<Map<String, Object>> list;
-            if (CollectionUtils.isEmpty(valueList)) {
-                list = ((JdbcTemplate) router.readRoute()).queryForList(sql);
+            List<T> entityList;
+            if (this.isSharded()) {   //各分片结果依次拼接,不能排序和分页
+                this.checkShardSql(sql);
+                Object[] args = CollectionUtils.isEmpty(valueList) ? new Object[MixedConstant.INT_0] : valueList.toArray();
+                entityList = Lists.newArrayList();
+                for (List<T> shardResult : this.scatter(((JdbcDatabaseRouter) router).getShardReadJdbcTemplates(), jdbcTemplate -> jdbcTemplate.query(sql, args, entityMapper.getRowMapper()))) {
+                    this.addAllIfNotNull(entityList, shardResult);
+                }
+            } else if (CollectionUtils.isEmpty(valueList)) {
+                entityList = ((JdbcTemplate) router.readRoute()).query(sql, entityMapper.getRowMapper());
             } else {
-                list = ((JdbcTemplate) router.readRoute()).queryForList(sql, valueList.toArray());
+                entityList = ((JdbcTemplate) router.readRoute()).query(sql, valueList.toArray(), entityMapper.getRowMapper());
             }
             if (log.isDebugEnabled()) {
-                log.debug("=========findListBySql response:" + list);
-            }
-            if (CollectionUtils.isEmpty(list)) {
-                return null;
+                log.debug("=========findListBySql response:" + entityList);
             }
-            List<T> entityList = Lists.newArrayList();
-            for (Map<String, Object> map : list) {
-                entityList.add(JdbcHelper.map2Entity(map, entityMapper, entityClass));
-            }
-            return entityList;
+            return CollectionUtils.isEmpty(entityList) ? null : entityList;
         } catch (DataAccessException e) {
             throw ExceptionTranslator.translate(e, jdbcSettings.getDialectEnum());
         }
@@ -243,22 +644,29 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public int insert(T entity) {
+        return this.invoke(DaoOperationEnum.INSERT, entity, () -> this.doInsert(entity));
+    }
+
+    private int doInsert(T entity) {
         DaoHelper.checkArgumentEntity(entity);
 
         final IdEntity idEntity = (IdEntity) entity;
-        final Field pkField = DaoHelper.getPkField(idEntity);
-        final Object pkValue = DaoHelper.getColumnValue(pkField, idEntity);
+        final EntityMetadata.Property pk = entityMapper.getEntityMetadata().getPk();
+        final Object pkValue = pk.get(idEntity);
+        if (this.isSharded()) {
+            this.checkShardPk(pkValue);
+        }
         final List<Object> valueList = Lists.newArrayList();
         StringBuilder insertSql = new StringBuilder();
 
         PreparedStatementCreator psc = connection -> {
-            String insertSqlToUse = JdbcHelper.INSERT(idEntity, valueList, entityMapper, entityClass, jdbcSettings.getDialectEnum(), connection);
+            String insertSqlToUse = JdbcHelper.INSERT(idEntity, valueList, entityMapper, dialect, connection);
             insertSql.append(insertSqlToUse);
             PreparedStatement ps;
             if (DaoHelper.hasSetPkValue(pkValue)) {
                 ps = connection.prepareStatement(insertSqlToUse);
             } else {
-                ps = connection.prepareStatement(insertSqlToUse, new String[]{entityMapper.getPkFieldName()});
+                ps = connection.prepareStatement(insertSqlToUse, new String[]{entityMapper.getPropertyToColumnMapper().get(entityMapper.getPkFieldName())});
             }
 
             int i = MixedConstant.INT_0;
@@ -273,13 +681,20 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
             if (log.isDebugEnabled()) {
                 log.debug("=========insert request:" + DaoHelper.formatSql(insertSql.toString(), valueList));
             }
-            if (DaoHelper.hasSetPkValue(pkValue) || DialectEnum.ORACLE.equals(jdbcSettings.getDialectEnum())) {//KeyHolder不支持oracle
+            if (this.isSharded()) {
+                JdbcDatabaseRouter jdbcRouter = (JdbcDatabaseRouter) router;
+                n = jdbcRouter.writeRoute(this.shardOfPk(pkValue)).update(psc);
+            } else if (DaoHelper.hasSetPkValue(pkValue) || !dialect.supportsGeneratedKeys()) {//主键由sequence分配
                 n = ((JdbcTemplate) router.writeRoute()).update(psc);
             } else {
                 KeyHolder keyHolder = new GeneratedKeyHolder();
                 n = ((JdbcTemplate) router.writeRoute()).update(psc, keyHolder);
-                DaoHelper.setColumnValue(pkField, idEntity, keyHolder.getKey());
+                pk.set(idEntity, JdbcHelper.convertPkValue(keyHolder.getKey(), pk.getType()));
             }
+            if (idCache != null) {  //可能缓存了该id不存在
+                idCache.invalidate((Serializable) pk.get(idEntity));
+            }
+            this.invalidateQueryCache();
             if (log.isDebugEnabled()) {
                 log.debug("=========insert response:" + n);
             }
@@ -290,12 +705,203 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
     }
 
     @Override
-    public int insert(List<T> entity) {
-        throw new IllegalArgumentException("JdbcBaseDao not support batch insert.");
+    public int insert(List<T> entityList) {
+        return this.invoke(DaoOperationEnum.INSERT, entityList, () -> this.doInsert(entityList));
+    }
+
+    private int doInsert(List<T> entityList) {
+        DaoHelper.checkArgumentEntityList(entityList);
+
+        int batchSize = jdbcSettings.getBatchInsertSize() > MixedConstant.INT_0 ? jdbcSettings.getBatchInsertSize() : entityList.size();
+        int n = MixedConstant.INT_0;
+        try {
+            if (this.isSharded()) {   //按分片分组后每个分片分批插入
+                JdbcDatabaseRouter jdbcRouter = (JdbcDatabaseRouter) router;
+                Map<Integer, List<T>> shardToEntityMap = Maps.newTreeMap();
+                for (T entity : entityList) {
+                    DaoHelper.checkArgumentEntity(entity);
+                    Object pkValue = DaoHelper.getPkValue((IdEntity) entity);
+                    this.checkShardPk(pkValue);
+                    shardToEntityMap.computeIfAbsent(this.shardOfPk(pkValue), k -> Lists.newArrayList()).add(entity);
+                }
+                for (Map.Entry<Integer, List<T>> entry : shardToEntityMap.entrySet()) {
+                    JdbcTemplate jdbcTemplate = jdbcRouter.writeRoute(entry.getKey());
+                    for (List<T> batchList : Lists.partition(entry.getValue(), batchSize)) {
+                        n += jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> this.insertBatch(batchList, connection));
+                    }
+                }
+            } else {
+                for (List<T> batchList : Lists.partition(entityList, batchSize)) {
+                    n += ((JdbcTemplate) router.writeRoute()).execute((ConnectionCallback<Integer>) connection -> this.insertBatch(batchList, connection));
+                }
+            }
+            if (idCache != null) {
+                List<Serializable> ids = Lists.newArrayListWithCapacity(entityList.size());
+                for (T entity : entityList) {
+                    ids.add(DaoHelper.getPkValue((IdEntity) entity));
+                }
+                idCache.invalidate(ids);
+            }
+            this.invalidateQueryCache();
+            if (log.isDebugEnabled()) {
+                log.debug("=========batch insert response:" + n);
+            }
+            return n;
+        } catch (DataAccessException e) {
+            throw ExceptionTranslator.translate(e, jdbcSettings.getDialectEnum());
+        }
+    }
+
+    /**
+     * 一批entity一次网络往返,有主键值和没有主键值的entity对应不同的insert sql,分开执行
+     * oracle的主键由sequence生成,mysql的自增主键执行后回写到entity
+     */
+    private int insertBatch(List<T> batchList, Connection connection) throws SQLException {
+        Map<String, List<IdEntity>> sqlToEntityMap = Maps.newLinkedHashMap();
+        Map<String, List<List<Object>>> sqlToValueMap = Maps.newLinkedHashMap();
+        for (T entity : batchList) {
+            DaoHelper.checkArgumentEntity(entity);
+            IdEntity idEntity = (IdEntity) entity;
+            List<Object> valueList = Lists.newArrayList();
+            String insertSql = JdbcHelper.INSERT(idEntity, valueList, entityMapper, dialect, connection);
+            sqlToEntityMap.computeIfAbsent(insertSql, k -> Lists.newArrayList()).add(idEntity);
+            sqlToValueMap.computeIfAbsent(insertSql, k -> Lists.newArrayList()).add(valueList);
+        }
+
+        int n = MixedConstant.INT_0;
+        for (Map.Entry<String, List<IdEntity>> entry : sqlToEntityMap.entrySet()) {
+            String insertSql = entry.getKey();
+            List<IdEntity> idEntityList = entry.getValue();
+            List<List<Object>> rowValueList = sqlToValueMap.get(insertSql);
+            //只有没有设置主键值的insert才需要取回数据库生成的主键
+            boolean needGeneratedKey = insertSql.equals(entityMapper.getInsertWithoutPkSql());
+            boolean multiRow = jdbcSettings.isMultiRowInsert() && dialect.supportsMultiRowInsert();
+            String sqlToUse = multiRow ? JdbcHelper.MULTI_ROW_INSERT(insertSql, idEntityList.size()) : insertSql;
+            if (log.isDebugEnabled()) {
+                log.debug("=========batch insert request:" + sqlToUse + ",rows:" + idEntityList.size());
+            }
+
+            PreparedStatement ps = null;
+            try {
+                if (needGeneratedKey) {
+                    ps = connection.prepareStatement(sqlToUse, new String[]{entityMapper.getPropertyToColumnMapper().get(entityMapper.getPkFieldName())});
+                } else {
+                    ps = connection.prepareStatement(sqlToUse);
+                }
+
+                if (multiRow) {
+                    int i = MixedConstant.INT_0;
+                    for (List<Object> valueList : rowValueList) {
+                        for (Object value : valueList) {
+                            StatementCreatorUtils.setParameterValue(ps, ++i, SqlTypeValue.TYPE_UNKNOWN, value);
+                        }
+                    }
+                    n += ps.executeUpdate();
+                } else {
+                    for (List<Object> valueList : rowValueList) {
+                        int i = MixedConstant.INT_0;
+                        for (Object value : valueList) {
+                            StatementCreatorUtils.setParameterValue(ps, ++i, SqlTypeValue.TYPE_UNKNOWN, value);
+                        }
+                        ps.addBatch();
+                    }
+                    for (int count : ps.executeBatch()) {
+                        //驱动无法返回具体影响行数时按1条计算
+                        n += count == Statement.SUCCESS_NO_INFO ? MixedConstant.INT_1 : count;
+                    }
+                }
+
+                if (needGeneratedKey) {
+                    this.setGeneratedKeys(ps, idEntityList);
+                }
+            } finally {
+                JdbcUtils.closeStatement(ps);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 按插入顺序将数据库生成的主键回写到entity
+     */
+    private void setGeneratedKeys(PreparedStatement ps, List<IdEntity> idEntityList) throws SQLException {
+        EntityMetadata.Property pk = entityMapper.getEntityMetadata().getPk();
+        ResultSet rs = null;
+        try {
+            rs = ps.getGeneratedKeys();
+            int i = MixedConstant.INT_0;
+            while (rs.next() && i < idEntityList.size()) {
+                pk.set(idEntityList.get(i++), JdbcHelper.convertPkValue(rs.getObject(MixedConstant.INT_1), pk.getType()));
+            }
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+        }
+    }
+
+    /**
+     * 主键存在时更新所有字段,不存在时插入,一次网络往返,entity必须设置主键值
+     *
+     * @param entity - entity
+     * @return - 影响行数,不同数据库对更新的计数不同,如mysql中更新计为2
+     */
+    public int upsert(T entity) {
+        return this.invoke(DaoOperationEnum.UPSERT, entity, () -> this.doUpsert(entity));
+    }
+
+    private int doUpsert(T entity) {
+        DaoHelper.checkArgumentEntity(entity);
+        if (upsertSql == null) {
+            throw new UnsupportedOperationException("数据库[" + dialect + "]不支持upsert");
+        }
+
+        IdEntity idEntity = (IdEntity) entity;
+        Serializable pkValue = DaoHelper.getPkValue(idEntity);
+        if (!DaoHelper.hasSetPkValue(pkValue)) {
+            throw new IllegalArgumentException("upsert必须设置主键值");
+        }
+        List<Object> valueList = Lists.newArrayList();
+        valueList.add(pkValue);
+        entityMapper.addInsertValues(idEntity, valueList);
+
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("=========upsert request:" + DaoHelper.formatSql(upsertSql, valueList));
+            }
+            int n;
+            if (this.isSharded()) {
+                JdbcDatabaseRouter jdbcRouter = (JdbcDatabaseRouter) router;
+                n = jdbcRouter.writeRoute(this.shardOfPk(pkValue)).update(upsertSql, valueList.toArray());
+            } else {
+                n = ((JdbcTemplate) router.writeRoute()).update(upsertSql, valueList.toArray());
+            }
+            if (idCache != null) {
+                idCache.invalidate(pkValue);
+            }
+            this.invalidateQueryCache();
+            if (log.isDebugEnabled()) {
+                log.debug("=========upsert response:" + n);
+            }
+            return n;
+        } catch (DataAccessException e) {
+            throw ExceptionTranslator.translate(e, jdbcSettings.getDialectEnum());
+        }
+    }
+
+    private String buildUpsertSql() {
+        Map<String, String> propertyToColumnMapper = entityMapper.getPropertyToColumnMapper();
+        List<String> columns = Lists.newArrayListWithCapacity(entityMapper.getInsertPropertyList().size());
+        for (String fieldName : entityMapper.getInsertPropertyList()) {
+            columns.add(propertyToColumnMapper.get(fieldName));
+        }
+        return dialect.upsert(entityMapper.getTableName(), propertyToColumnMapper.get(entityMapper.getPkFieldName()), columns);
     }
 
     @Override
     public int update(T entity) {
+        return this.invoke(DaoOperationEnum.UPDATE, entity, () -> this.doUpdate(entity));
+    }
+
+    private int doUpdate(T entity) {
         DaoHelper.checkArgumentEntity(entity);
 
         return this.update(entity, null);
@@ -303,6 +909,10 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public int update(T entity, List<String> propetyList) {
+        return this.invoke(DaoOperationEnum.UPDATE, entity, propetyList, () -> this.doUpdate(entity, propetyList));
+    }
+
+    private int doUpdate(T entity, List<String> propetyList) {
         DaoHelper.checkArgumentEntity(entity);
 
         IdEntity idEntity = (IdEntity) entity;
@@ -312,6 +922,10 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public int updateById(Serializable id, Update update) {
+        return this.invoke(DaoOperationEnum.UPDATE_BY_ID, id, update, () -> this.doUpdateById(id, update));
+    }
+
+    private int doUpdateById(Serializable id, Update update) {
         DaoHelper.checkArgumentId(id);
         DaoHelper.checkArgumentUpdate(update);
 
@@ -320,21 +934,36 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public int updateByIds(List<Serializable> ids, Update update) {
+        return this.invoke(DaoOperationEnum.UPDATE_BY_IDS, ids, update, () -> this.doUpdateByIds(ids, update));
+    }
+
+    private int doUpdateByIds(List<Serializable> ids, Update update) {
         DaoHelper.checkArgumentIds(ids);
         DaoHelper.checkArgumentUpdate(update);
 
+        if (this.isSharded()) {   //每个分片只更新自己的ids
+            int n = MixedConstant.INT_0;
+            for (List<Serializable> shardIds : this.groupByShard(ids).values()) {
+                n += this.updateByCriteria(Criteria.where(entityMapper.getPkFieldName(), CriteriaOperators.IN, shardIds), update);
+            }
+            return n;
+        }
         return this.updateByCriteria(Criteria.where(entityMapper.getPkFieldName(), CriteriaOperators.IN, ids), update);
     }
 
     @Override
     public int updateByCriteria(Criteria criteria, Update update) {
+        return this.invoke(DaoOperationEnum.UPDATE_BY_CRITERIA, criteria, update, () -> this.doUpdateByCriteria(criteria, update));
+    }
+
+    private int doUpdateByCriteria(Criteria criteria, Update update) {
         DaoHelper.checkArgumentCriteria(criteria);
         DaoHelper.checkArgumentUpdate(update);
 
         List<Object> valueList = Lists.newArrayList();
         StringBuilder sql = new StringBuilder();
 
-        sql.append(JdbcHelper.UPDATE(entityClass));
+        sql.append(JdbcHelper.UPDATE(entityMapper));
         sql.append(JdbcHelper.SET(update, valueList, entityMapper));
         sql.append(JdbcHelper.WHERE(criteria, valueList, entityMapper));
 
@@ -342,7 +971,13 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
             if (log.isDebugEnabled()) {
                 log.debug("=========updateByCriteria request:" + DaoHelper.formatSql(sql.toString(), valueList));
             }
-            int n = ((JdbcTemplate) router.writeRoute()).update(sql.toString(), valueList.toArray());
+            int n;
+            if (this.isSharded()) {
+                n = this.updateOnShards(this.shardOf(criteria), sql.toString(), valueList.toArray());
+            } else {
+                n = ((JdbcTemplate) router.writeRoute()).update(sql.toString(), valueList.toArray());
+            }
+            this.invalidateCache(criteria);
             if (log.isDebugEnabled()) {
                 log.debug("=========countByCriteria response:" + n);
             }
@@ -354,6 +989,10 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     protected int updateBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.UPDATE_BY_SQL, sql, param, () -> this.doUpdateBySql(sql, param));
+    }
+
+    private int doUpdateBySql(String sql, LinkedHashMap<String, Object> param) {
         DaoHelper.checkArgument(sql);
 
         List<Object> valueList = MapUtils.isEmpty(param) ? null : Lists.newArrayList(param.values());
@@ -362,11 +1001,17 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
                 log.debug("=========updateBySql request:" + DaoHelper.formatSql(sql.toString(), valueList));
             }
             int n;
-            if (CollectionUtils.isEmpty(valueList)) {
+            if (this.isSharded()) {
+                n = this.updateOnShards(NO_SHARD, sql, CollectionUtils.isEmpty(valueList) ? new Object[MixedConstant.INT_0] : valueList.toArray());
+            } else if (CollectionUtils.isEmpty(valueList)) {
                 n = ((JdbcTemplate) router.writeRoute()).update(sql);
             } else {
                 n = ((JdbcTemplate) router.writeRoute()).update(sql, valueList.toArray());
             }
+            if (idCache != null) {  //无法确定影响了哪些行
+                idCache.invalidateAll();
+            }
+            this.invalidateQueryCache();
             if (log.isDebugEnabled()) {
                 log.debug("=========updateBySql response:" + n);
             }
@@ -378,16 +1023,29 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public int deleteById(Serializable id) {
+        return this.invoke(DaoOperationEnum.DELETE_BY_ID, id, () -> this.doDeleteById(id));
+    }
+
+    private int doDeleteById(Serializable id) {
         DaoHelper.checkArgumentId(id);
 
         StringBuilder sql = new StringBuilder();
-        sql.append(JdbcHelper.DELETE(entityClass));
+        sql.append(JdbcHelper.DELETE(entityMapper));
         try {
             if (log.isDebugEnabled()) {
                 List<Object> valueList = Lists.newArrayList(id);
                 log.debug("=========deleteById request:" + DaoHelper.formatSql(sql.toString(), valueList));
             }
-            int n = ((JdbcTemplate) router.writeRoute()).update(sql.toString(), new Object[]{id});
+            int n;
+            if (this.isSharded()) {
+                n = this.updateOnShards(this.shardOfPk(id), sql.toString(), new Object[]{id});
+            } else {
+                n = ((JdbcTemplate) router.writeRoute()).update(sql.toString(), new Object[]{id});
+            }
+            if (idCache != null) {
+                idCache.invalidate(id);
+            }
+            this.invalidateQueryCache();
             if (log.isDebugEnabled()) {
                 log.debug("=========deleteById response:" + n);
             }
@@ -399,9 +1057,263 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
 
     @Override
     public int deleteBySql(String sql, LinkedHashMap<String, Object> param) {
+        return this.invoke(DaoOperationEnum.DELETE_BY_SQL, sql, param, () -> this.doDeleteBySql(sql, param));
+    }
+
+    private int doDeleteBySql(String sql, LinkedHashMap<String, Object> param) {
         throw new RuntimeException("JdbcBaseDao do not support The Method");
     }
 
+    /**
+     * criteria中主键等于某个值或主键IN时只失效这些id,否则失效全部缓存
+     */
+    private void invalidateCache(Criteria criteria) {
+        this.invalidateQueryCache();
+        if (idCache == null) {
+            return;
+        }
+        for (Criteria c : criteria.getCriteriaChain()) {
+            if (!entityMapper.getPkFieldName().equals(c.getKey()) || c.getValue() == null) {
+                continue;
+            }
+            if (CriteriaOperators.EQ.match(c.getOperator()) && c.getValue() instanceof Serializable) {
+                idCache.invalidate((Serializable) c.getValue());
+                return;
+            }
+            if (CriteriaOperators.IN.match(c.getOperator()) && c.getValue() instanceof Collection) {
+                idCache.invalidate((Collection<?>) c.getValue());
+                return;
+            }
+        }
+        idCache.invalidateAll();
+    }
+
+    /**
+     * 非分片模式的读JdbcTemplate,查询缓存的加载与IdCache相同读主库
+     * 加载线程不一定在写后时间窗口内,从延迟的读库加载的旧结果放入缓存后,写入方在时间窗口内也会命中
+     *
+     * @param cacheLoad - 是否为查询缓存的加载
+     */
+    private JdbcTemplate readRoute(boolean cacheLoad) {
+        return cacheLoad ? ((JdbcDatabaseRouter) router).primaryReadRoute() : (JdbcTemplate) router.readRoute();
+    }
+
+    private void invalidateQueryCache() {
+        QueryResultCache.tableWritten(tableVersion, queryCache);
+    }
+
+    /**
+     * 事物中需要读到自己未提交的写,不使用查询缓存
+     */
+    private boolean useQueryCache() {
+        return queryCache != null && !TransactionContext.isInTransaction();
+    }
+
+    private boolean isSharded() {
+        return ((JdbcDatabaseRouter) router).isSharded();
+    }
+
+    /**
+     * criteria中主键等于某个值,或主键IN的值都在同一个分片时返回该分片,否则返回NO_SHARD
+     */
+    private int shardOf(Criteria criteria) {
+        if (criteria == null) {
+            return NO_SHARD;
+        }
+        for (Criteria c : criteria.getCriteriaChain()) {
+            if (!entityMapper.getPkFieldName().equals(c.getKey()) || c.getValue() == null) {
+                continue;
+            }
+            if (CriteriaOperators.EQ.match(c.getOperator())) {
+                return this.shardOfPk(c.getValue());
+            }
+            if (CriteriaOperators.IN.match(c.getOperator()) && c.getValue() instanceof Collection) {
+                int shard = NO_SHARD;
+                for (Object value : (Collection<?>) c.getValue()) {
+                    int valueShard = this.shardOfPk(value);
+                    if (shard != NO_SHARD && valueShard != shard) {
+                        shard = NO_SHARD;
+                        break;
+                    }
+                    shard = valueShard;
+                }
+                if (shard != NO_SHARD) {
+                    return shard;
+                }
+            }
+        }
+        return NO_SHARD;
+    }
+
+    /**
+     * ids按所在分片分组,分片按下标排序,分片内保持调用方的顺序
+     */
+    private Map<Integer, List<Serializable>> groupByShard(List<Serializable> ids) {
+        Map<Integer, List<Serializable>> shardToIdMap = Maps.newTreeMap();
+        for (Serializable id : ids) {
+            shardToIdMap.computeIfAbsent(this.shardOfPk(id), k -> Lists.newArrayList()).add(id);
+        }
+        return shardToIdMap;
+    }
+
+    /**
+     * 主键值转换为主键字段的类型后再计算分片,如Long类型主键的1和"1"落在同一个分片
+     */
+    private int shardOfPk(Object pkValue) {
+        Class<?> pkType = entityMapper.getEntityMetadata().getRequiredProperty(entityMapper.getPkFieldName()).getType();
+        return ((JdbcDatabaseRouter) router).shardOf(JdbcHelper.convertPkValue(pkValue, pkType));
+    }
+
+    /**
+     * 分片模式findListBySql只拼接各分片的结果,sql中的排序和分页只在单个分片内有效,结果是错的
+     * 需要排序或分页时使用findListByQuery,按排序字段归并各分片结果后再分页
+     */
+    private void checkShardSql(String sql) {
+        if (SHARD_UNSUPPORTED_SQL.matcher(sql).find()) {
+            throw new IllegalArgumentException("分片模式findListBySql不支持ORDER BY和分页,请使用findListByQuery,sql[" + sql + "]");
+        }
+    }
+
+    private void checkShardPk(Object pkValue) {
+        if (!DaoHelper.hasSetPkValue(pkValue)) {
+            throw new IllegalArgumentException("分片模式insert必须设置主键值,用于确定分片");
+        }
+    }
+
+    /**
+     * 在指定分片或所有分片(并行)上执行count并求和
+     */
+    private long countOnShards(int shard, String sql, Object[] args) {
+        JdbcDatabaseRouter jdbcRouter = (JdbcDatabaseRouter) router;
+        if (shard != NO_SHARD) {
+            return jdbcRouter.readRoute(shard).queryForObject(sql, args, Long.class);
+        }
+        long count = MixedConstant.LONG_0;
+        for (Long shardCount : this.scatter(jdbcRouter.getShardReadJdbcTemplates(), jdbcTemplate -> jdbcTemplate.queryForObject(sql, args, Long.class))) {
+            count += shardCount == null ? MixedConstant.LONG_0 : shardCount;
+        }
+        return count;
+    }
+
+    /**
+     * 在指定分片或依次在所有分片上执行更新,返回影响行数之和
+     * 写操作串行执行,保证在当前线程的事物和写后读一致的记录中
+     * 所有分片的更新不是原子的:某个分片失败时仍然更新其余分片,最后抛出ShardWriteException,
+     * 其中包含失败的分片和已成功分片的影响行数,由调用方决定重试失败的分片或补偿
+     */
+    private int updateOnShards(int shard, String sql, Object[] args) {
+        JdbcDatabaseRouter jdbcRouter = (JdbcDatabaseRouter) router;
+        if (shard != NO_SHARD) {
+            return jdbcRouter.writeRoute(shard).update(sql, args);
+        }
+        int n = MixedConstant.INT_0;
+        Map<Integer, DataAccessException> failedShardMap = Maps.newTreeMap();
+        List<JdbcTemplate> jdbcTemplates = jdbcRouter.getShardWriteJdbcTemplates();
+        for (int i = MixedConstant.INT_0; i < jdbcTemplates.size(); i++) {
+            try {
+                n += jdbcTemplates.get(i).update(sql, args);
+            } catch (DataAccessException e) {
+                failedShardMap.put(i, e);
+            }
+        }
+        if (!failedShardMap.isEmpty()) {
+            throw new ShardWriteException(failedShardMap, n);
+        }
+        return n;
+    }
+
+    /**
+     * 在每个JdbcTemplate上执行查询,结果顺序与jdbcTemplates一致
+     * 有并行查询线程池且不在事物中时并行执行,否则串行执行
+     */
+    private <R> List<R> scatter(List<JdbcTemplate> jdbcTemplates, Function<JdbcTemplate, R> action) {
+        ExecutorService queryExecutor = ((JdbcDatabaseRouter) router).getQueryExecutor();
+        List<R> resultList = Lists.newArrayListWithCapacity(jdbcTemplates.size());
+        if (jdbcTemplates.size() == MixedConstant.INT_1 || queryExecutor == null || TransactionContext.isInTransaction()) {
+            for (JdbcTemplate jdbcTemplate : jdbcTemplates) {
+                resultList.add(action.apply(jdbcTemplate));
+            }
+            return resultList;
+        }
+
+        long writeToken = WriteSession.getWriteToken();
+        List<CompletableFuture<R>> futureList = Lists.newArrayListWithCapacity(jdbcTemplates.size());
+        for (JdbcTemplate jdbcTemplate : jdbcTemplates) {
+            futureList.add(CompletableFuture.supplyAsync(() -> WriteSession.callWithToken(writeToken, () -> action.apply(jdbcTemplate)), queryExecutor));
+        }
+        try {
+            for (CompletableFuture<R> future : futureList) {
+                resultList.add(future.join());
+            }
+        } catch (CompletionException e) {
+            //还原为执行线程抛出的异常,由调用方统一转换
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw ExceptionTranslator.translate(e.getCause(), jdbcSettings.getDialectEnum());
+        }
+        return resultList;
+    }
+
+    /**
+     * 异步操作在JdbcSettings对应的异步线程池中执行,线程数限制了异步操作占用的连接数
+     * 事物中的操作必须使用当前线程绑定的链接,在调用线程同步执行
+     * 执行线程沿用调用方的写时间保证写后读一致,异步写成功后写时间写回调用方线程,
+     * future完成后调用方的读同样能读到该写
+     */
+    @Override
+    protected <R> CompletableFuture<R> async(Supplier<R> supplier) {
+        ExecutorService asyncExecutor = ((JdbcDatabaseRouter) router).getAsyncExecutor();
+        if (asyncExecutor == null || TransactionContext.isInTransaction()) {
+            return super.async(supplier);
+        }
+        return CompletableFuture.supplyAsync(WriteSession.propagate(supplier), asyncExecutor);
+    }
+
+    /**
+     * 事物中的dao调用记录到当前事物的TransactionProfile
+     */
+    @Override
+    protected <R> R invoke(DaoOperationEnum operation, Supplier<R> action) {
+        return super.invoke(operation, this.profiled(operation, action));
+    }
+
+    @Override
+    protected <R> R invoke(DaoOperationEnum operation, Object arg, Supplier<R> action) {
+        return super.invoke(operation, arg, this.profiled(operation, action));
+    }
+
+    @Override
+    protected <R> R invoke(DaoOperationEnum operation, Object arg0, Object arg1, Supplier<R> action) {
+        return super.invoke(operation, arg0, arg1, this.profiled(operation, action));
+    }
+
+    private <R> Supplier<R> profiled(DaoOperationEnum operation, Supplier<R> action) {
+        TransactionProfile profile = TransactionContext.getProfile();
+        return profile == null ? action : () -> profile.recordDaoCall(this.getClass().getName(), operation.value(), action);
+    }
+
+    /**
+     * 读库的运行统计(执行中请求数、平均耗时、异常率、是否摘除),用于监控
+     */
+    public List<ReadReplica> getReadReplicas() {
+        return Collections.unmodifiableList(((JdbcDatabaseRouter) router).getReadReplicas());
+    }
+
+    /**
+     * findOneById二级缓存的命中率、加载耗时、淘汰数等统计,用于监控,没有开启缓存时返回null
+     */
+    public CacheStats getEntityCacheStats() {
+        return idCache == null ? null : idCache.stats();
+    }
+
+    /**
+     * 查询结果缓存的命中率、淘汰数等统计,用于监控,没有开启缓存时返回null
+     */
+    public CacheStats getQueryCacheStats() {
+        return queryCache == null ? null : queryCache.stats();
+    }
+
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
     }
@@ -425,6 +1337,36 @@ public abstract class JdbcBaseDao<T> extends AbstractBaseDao<T> implements Appli
         //create router
         JdbcDatabaseRouterFactory.INSTANCE.setDatabaseRouter(this.jdbcSettings);
         this.entityMapper = new EntityMapper(this.entityClass);
+        this.dialect = this.jdbcSettings.getDialect();
+        this.upsertSql = this.buildUpsertSql();
         this.router = JdbcDatabaseRouterFactory.INSTANCE.getDatabaseRouter(this.jdbcSettings);
+
+        //create findOneById cache
+        EntityCache entityCache = JdbcHelper.getEntityCache(this.entityClass);
+        if (entityCache != null) {
+            Class<?> pkType = entityMapper.getEntityMetadata().getRequiredProperty(entityMapper.getPkFieldName()).getType();
+            JdbcDatabaseRouter jdbcRouter = (JdbcDatabaseRouter) this.router;
+            ExecutorService refreshExecutor = jdbcRouter.getAsyncExecutor() != null ? jdbcRouter.getAsyncExecutor() : jdbcRouter.getQueryExecutor();
+            this.idCache = new IdCache<>(entityCache, this.entityClass, pkType, this::loadById, refreshExecutor != null ? refreshExecutor : MoreExecutors.directExecutor());
+        }
+
+        //create query result cache
+        this.tableVersion = QueryResultCache.tableVersion(this.router, entityMapper.getTableName());
+        QueryCache queryCacheAnnotation = this.getClass().getAnnotation(QueryCache.class);
+        if (queryCacheAnnotation != null) {
+            this.queryCache = new QueryResultCache(queryCacheAnnotation, this.tableVersion);
+        }
+    }
+
+    /**
+     * 释放router,最后一个使用该router的Dao销毁时关闭并行查询、异步操作等线程池
+     */
+    @PreDestroy
+    protected void destroy() {
+        if (this.router == null || this.destroyed) {
+            return;
+        }
+        this.destroyed = true;
+        JdbcDatabaseRouterFactory.INSTANCE.releaseDatabaseRouter(this.jdbcSettings);
     }
-}
\ No newline at end of file
+}
@@ -1,57 +1,352 @@
 package com.zhouyutong.zorm.dao.jdbc;
 
+import com.zhouyutong.zorm.constant.MixedConstant;
 import com.zhouyutong.zorm.dao.DatabaseRouter;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zhouyutong.zorm.dao.jdbc.route.ReadBalancer;
+import com.zhouyutong.zorm.dao.jdbc.route.ReadReplica;
+import com.zhouyutong.zorm.dao.jdbc.route.ShardStrategy;
+import com.zhouyutong.zorm.dao.jdbc.route.WriteSession;
+import com.zhouyutong.zorm.dao.jdbc.transaction.ProfilingJdbcTemplate;
 import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionContext;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.*;
 
 import javax.sql.DataSource;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 简单JdbcTemplate路由器
- * TODO:后续结合sharding-jdbc
+ * 配置了JdbcSettings.shardStrategy时每个写库是一个分片,按分片键路由到指定分片
  *
  * @Author zhouyutong
  * @Date 2017/6/8
  */
+@Slf4j
 public class JdbcDatabaseRouter implements DatabaseRouter {
     private List<JdbcTemplate> writeJdbcTemplate = Lists.newArrayList();
-    private List<JdbcTemplate> readJdbcTemplate = Lists.newArrayList();
+    //读主库使用,不记录写时间
+    private JdbcTemplate primaryReadJdbcTemplate;
+    //分片模式每个分片读主库使用,不分片时为空
+    private List<JdbcTemplate> shardReadJdbcTemplate = Lists.newArrayList();
+    //分片策略,不分片时为null
+    private ShardStrategy shardStrategy;
+    private List<ReadReplica> readReplicas = Lists.newArrayList();
+    private ReadBalancer readBalancer;
+    //写后读主库的时间窗口,0表示不开启
+    private long readYourWritesMillis;
+    //复制延迟检测线程,没有配置replicaLagSql时为null
+    private ScheduledExecutorService lagChecker;
+    //并行查询线程池,队列满时由调用线程执行
+    private ExecutorService queryExecutor;
+    //异步操作线程池,队列满时由调用线程执行
+    private ExecutorService asyncExecutor;
+    //关闭时等待线程池中已提交任务完成的时间
+    private static final long CLOSE_WAIT_MILLIS = 5000L;
 
     public JdbcDatabaseRouter(JdbcSettings jdbcSettings) {
         //write
         List<DataSource> writeList = jdbcSettings.getWriteDataSource();
         if (CollectionUtils.isNotEmpty(writeList)) {
             for (DataSource dataSource : writeList) {
-                JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+                JdbcTemplate jdbcTemplate = new WriteJdbcTemplate(dataSource);
                 writeJdbcTemplate.add(jdbcTemplate);
             }
+            primaryReadJdbcTemplate = new ProfilingJdbcTemplate(writeList.get(0));
+        }
+
+        //shard
+        shardStrategy = jdbcSettings.getShardStrategy();
+        if (shardStrategy != null) {
+            if (CollectionUtils.isEmpty(writeList)) {
+                throw new IllegalArgumentException("JdbcSettings.writeDataSource must be not empty when sharding");
+            }
+            if (CollectionUtils.isNotEmpty(jdbcSettings.getReadDataSource())) {
+                throw new IllegalArgumentException("JdbcSettings.readDataSource must be empty when sharding");
+            }
+            for (DataSource dataSource : writeList) {
+                shardReadJdbcTemplate.add(new ProfilingJdbcTemplate(dataSource));
+            }
         }
 
         //read
         List<DataSource> readList = jdbcSettings.getReadDataSource();
+        List<Integer> readWeights = jdbcSettings.getReadWeights();
         if (CollectionUtils.isNotEmpty(readList)) {
-            for (DataSource dataSource : readList) {
-                JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-                readJdbcTemplate.add(jdbcTemplate);
+            for (int i = 0; i < readList.size(); i++) {
+                int weight = readWeights != null && i < readWeights.size() && readWeights.get(i) != null ? readWeights.get(i) : 1;
+                readReplicas.add(new ReadReplica("read-" + i, weight, readList.get(i), jdbcSettings));
             }
         }
+        readBalancer = jdbcSettings.getReadBalancer();
+        if (readBalancer == null) {
+            throw new IllegalArgumentException("JdbcSettings.readBalancer must be not null");
+        }
+
+        //read your writes
+        readYourWritesMillis = jdbcSettings.getReadYourWritesMillis();
+        if (readYourWritesMillis > 0 && !readReplicas.isEmpty() && StringUtils.isNotBlank(jdbcSettings.getReplicaLagSql())) {
+            this.startLagChecker(jdbcSettings.getReplicaLagSql(), jdbcSettings.getReplicaLagCheckMillis());
+        }
+
+        //query executor
+        int threads = jdbcSettings.getParallelQueryThreads();
+        if (threads > 0) {
+            ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("z-orm-jdbc-query-%d").setDaemon(true).build();
+            queryExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(threads * 16), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        //async executor
+        int asyncThreads = jdbcSettings.getAsyncThreads();
+        if (asyncThreads > 0) {
+            ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("z-orm-jdbc-async-%d").setDaemon(true).build();
+            asyncExecutor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(jdbcSettings.getAsyncQueueSize(), 1)), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    /**
+     * 定时在每个读库上执行replicaLagSql测量复制延迟
+     */
+    private void startLagChecker(String lagSql, long checkMillis) {
+        List<JdbcTemplate> lagJdbcTemplates = Lists.newArrayListWithCapacity(readReplicas.size());
+        for (ReadReplica replica : readReplicas) {
+            lagJdbcTemplates.add(new JdbcTemplate(replica.getJdbcTemplate().getDataSource()));
+        }
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("z-orm-jdbc-lag-checker-%d").setDaemon(true).build();
+        lagChecker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        lagChecker.scheduleWithFixedDelay(() -> {
+            for (int i = 0; i < readReplicas.size(); i++) {
+                ReadReplica replica = readReplicas.get(i);
+                long measuredAt = System.currentTimeMillis();
+                try {
+                    Number lag = lagJdbcTemplates.get(i).queryForObject(lagSql, Number.class);
+                    if (lag != null) {
+                        replica.updateLag(measuredAt, lag.longValue());
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("read replica[" + replica.getName() + "] lag check failed", e);
+                }
+            }
+        }, 0L, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 并行查询的线程池,没有配置parallelQueryThreads时为null
+     */
+    ExecutorService getQueryExecutor() {
+        return queryExecutor;
+    }
+
+    /**
+     * 异步操作的线程池,没有配置asyncThreads时为null
+     */
+    ExecutorService getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * 停止复制延迟检测,等待并行查询和异步操作中已提交的任务完成后关闭线程池
+     * 超时未完成的任务被中断,关闭后提交的任务不再执行
+     */
+    void close() {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        long deadline = System.currentTimeMillis() + CLOSE_WAIT_MILLIS;
+        shutdown(asyncExecutor, deadline);
+        shutdown(queryExecutor, deadline);
+    }
+
+    private static void shutdown(ExecutorService executor, long deadline) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            long remaining = Math.max(deadline - System.currentTimeMillis(), MixedConstant.LONG_0);
+            if (!executor.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                log.warn("executor not terminated in " + CLOSE_WAIT_MILLIS + "ms,interrupt running tasks");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 所有读库及其运行统计
+     */
+    List<ReadReplica> getReadReplicas() {
+        return readReplicas;
+    }
+
+    /**
+     * 是否分片
+     */
+    boolean isSharded() {
+        return shardStrategy != null;
+    }
+
+    /**
+     * 分片数,不分片时为1
+     */
+    int getShardCount() {
+        return isSharded() ? writeJdbcTemplate.size() : 1;
+    }
+
+    /**
+     * 计算分片键所在的分片
+     */
+    int shardOf(Object shardKey) {
+        if (shardKey == null) {
+            throw new IllegalArgumentException("shardKey must be not null");
+        }
+        int shard = shardStrategy.shard(shardKey, writeJdbcTemplate.size());
+        if (shard < 0 || shard >= writeJdbcTemplate.size()) {
+            throw new IllegalStateException("ShardStrategy[" + shardStrategy + "] return invalid shard[" + shard + "] for shardKey[" + shardKey + "]");
+        }
+        return shard;
+    }
+
+    /**
+     * 指定分片的写JdbcTemplate
+     */
+    JdbcTemplate writeRoute(int shard) {
+        return writeJdbcTemplate.get(shard);
+    }
+
+    /**
+     * 指定分片的读JdbcTemplate,分片模式读分片主库
+     */
+    JdbcTemplate readRoute(int shard) {
+        return shardReadJdbcTemplate.get(shard);
+    }
+
+    /**
+     * 主库的读JdbcTemplate,不经过读库负载均衡,用于必须读到最新数据的场景
+     */
+    JdbcTemplate primaryReadRoute() {
+        return primaryReadJdbcTemplate;
+    }
+
+    /**
+     * 所有分片的写JdbcTemplate,下标即分片
+     */
+    List<JdbcTemplate> getShardWriteJdbcTemplates() {
+        return writeJdbcTemplate;
+    }
+
+    /**
+     * 所有分片的读JdbcTemplate,下标即分片
+     */
+    List<JdbcTemplate> getShardReadJdbcTemplates() {
+        return shardReadJdbcTemplate;
     }
 
     @Override
     public Object writeRoute() {
+        if (isSharded()) {
+            throw new IllegalStateException("分片模式必须通过分片键指定分片");
+        }
         return writeJdbcTemplate.get(0);
     }
 
     @Override
     public Object readRoute() {
-        if (TransactionContext.isInTransaction() || CollectionUtils.isEmpty(readJdbcTemplate)) {
-            return this.writeRoute();
+        if (isSharded()) {
+            throw new IllegalStateException("分片模式必须通过分片键指定分片");
+        }
+        if (readReplicas.isEmpty() || (TransactionContext.isInTransaction() && !TransactionContext.isReadOnly())) {
+            return primaryReadJdbcTemplate;
+        }
+        long now = System.currentTimeMillis();
+        //写后时间窗口内只有已经同步到最后一次写的读库可以读
+        long lastWriteMillis = MixedConstant.LONG_0;
+        if (readYourWritesMillis > MixedConstant.LONG_0) {
+            lastWriteMillis = WriteSession.getLastWriteMillis();
+            if (now - lastWriteMillis >= readYourWritesMillis) {
+                lastWriteMillis = MixedConstant.LONG_0;
+            }
+        }
+        //摘除到期的读库优先放行一个探测请求
+        List<ReadReplica> available = null;
+        for (ReadReplica replica : readReplicas) {
+            if (lastWriteMillis > MixedConstant.LONG_0 && !replica.isCaughtUp(lastWriteMillis)) {
+                continue;
+            }
+            if (replica.isAvailable()) {
+                if (available == null) {
+                    available = Lists.newArrayListWithCapacity(readReplicas.size());
+                }
+                available.add(replica);
+            } else if (replica.tryProbe(now)) {
+                return replica.getProbeJdbcTemplate();
+            }
+        }
+        //读库全部摘除或都没有同步时读主库
+        if (available == null) {
+            return primaryReadJdbcTemplate;
+        }
+        return readBalancer.select(available).getJdbcTemplate();
+    }
+
+    /**
+     * 写主库的JdbcTemplate,每次执行完记录当前线程的写时间
+     */
+    private static final class WriteJdbcTemplate extends ProfilingJdbcTemplate {
+
+        private WriteJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> T execute(ConnectionCallback<T> action) throws DataAccessException {
+            try {
+                return super.execute(action);
+            } finally {
+                WriteSession.markWrite();
+            }
+        }
+
+        @Override
+        public <T> T execute(StatementCallback<T> action) throws DataAccessException {
+            try {
+                return super.execute(action);
+            } finally {
+                WriteSession.markWrite();
+            }
+        }
+
+        @Override
+        public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action) throws DataAccessException {
+            try {
+                return super.execute(psc, action);
+            } finally {
+                WriteSession.markWrite();
+            }
+        }
+
+        @Override
+        public <T> T execute(CallableStatementCreator csc, CallableStatementCallback<T> action) throws DataAccessException {
+            try {
+                return super.execute(csc, action);
+            } finally {
+                WriteSession.markWrite();
+            }
         }
-        int randomPos = ThreadLocalRandom.current().nextInt(readJdbcTemplate.size());
-        return readJdbcTemplate.get(randomPos);
     }
 }
@@ -14,6 +14,8 @@ import java.util.HashMap;
 public class JdbcDatabaseRouterFactory implements DatabaseRouterFactory {
     static final JdbcDatabaseRouterFactory INSTANCE = new JdbcDatabaseRouterFactory();
     private HashMap<JdbcSettings, JdbcDatabaseRouter> jdbcTemplateRouterMap = Maps.newHashMap();
+    //同一个JdbcSettings的router被多个Dao共享,记录使用该router的Dao数
+    private HashMap<JdbcSettings, Integer> referenceCountMap = Maps.newHashMap();
 
     /**
      * JdbcTemplateRouter的获取发生在项目运行中
@@ -32,14 +34,36 @@ public class JdbcDatabaseRouterFactory implements DatabaseRouterFactory {
      */
     @Override
     public synchronized void setDatabaseRouter(DaoSettings daoSettings) {
-        if (getDatabaseRouter(daoSettings) != null) {
+        JdbcSettings jdbcSettings = (JdbcSettings) daoSettings;
+        if (getDatabaseRouter(daoSettings) == null) {
+            try {
+                jdbcTemplateRouterMap.put(jdbcSettings, new JdbcDatabaseRouter(jdbcSettings));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("无法生产JdbcTemplateRouter[" + jdbcSettings + "]", e);
+            }
+        }
+        referenceCountMap.merge(jdbcSettings, 1, Integer::sum);
+    }
+
+    /**
+     * Dao销毁时调用,与setDatabaseRouter成对使用
+     * 最后一个使用该router的Dao销毁时移除router并关闭其线程池
+     *
+     * @param daoSettings - daoSettings
+     */
+    synchronized void releaseDatabaseRouter(DaoSettings daoSettings) {
+        Integer count = referenceCountMap.get(daoSettings);
+        if (count == null) {
             return;
         }
-        JdbcSettings jdbcSettings = (JdbcSettings) daoSettings;
-        try {
-            jdbcTemplateRouterMap.put(jdbcSettings, new JdbcDatabaseRouter(jdbcSettings));
-        } catch (RuntimeException e) {
-            throw new RuntimeException("无法生产JdbcTemplateRouter[" + jdbcSettings + "]", e);
+        if (count > 1) {
+            referenceCountMap.put((JdbcSettings) daoSettings, count - 1);
+            return;
+        }
+        referenceCountMap.remove(daoSettings);
+        JdbcDatabaseRouter router = jdbcTemplateRouterMap.remove(daoSettings);
+        if (router != null) {
+            router.close();
         }
     }
 }
@@ -1,28 +1,24 @@
 package com.zhouyutong.zorm.dao.jdbc;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.zhouyutong.zorm.annotation.PK;
 import com.zhouyutong.zorm.constant.MixedConstant;
 import com.zhouyutong.zorm.constant.SymbolConstant;
 import com.zhouyutong.zorm.dao.DaoHelper;
 import com.zhouyutong.zorm.dao.jdbc.annotation.Column;
+import com.zhouyutong.zorm.dao.jdbc.annotation.EntityCache;
 import com.zhouyutong.zorm.dao.jdbc.annotation.Table;
+import com.zhouyutong.zorm.dao.jdbc.dialect.Dialect;
+import com.zhouyutong.zorm.entity.EntityMetadata;
 import com.zhouyutong.zorm.entity.IdEntity;
-import com.zhouyutong.zorm.enums.DialectEnum;
 import com.zhouyutong.zorm.query.*;
-import com.zhouyutong.zorm.utils.BeanUtils;
-import com.zhouyutong.zorm.utils.ExceptionTranslator;
 import com.zhouyutong.zorm.utils.StrUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.jdbc.support.JdbcUtils;
 
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -44,6 +40,10 @@ public final class JdbcHelper {
         Map<String, String> propertyToColumnMapper = entityMapper.getPropertyToColumnMapper();
         List<String> fields = query.getFields();
         List<GroupBy> groupBys = query.getGroupBys();
+        //没有group by也没有指定字段,直接使用预编译的select
+        if (CollectionUtils.isEmpty(groupBys) && CollectionUtils.isEmpty(fields)) {
+            return entityMapper.getSelectAllSql();
+        }
 
         StringBuilder sb = new StringBuilder("SELECT ");
 
@@ -58,15 +58,9 @@ public final class JdbcHelper {
                 }
             }
         } else {
-            if (CollectionUtils.isNotEmpty(fields)) {
-                for (String field : fields) {
-                    String column = propertyToColumnMapper.get(field);
-                    sb.append(column).append(SymbolConstant.COMMA);
-                }
-            } else {
-                for (String column : propertyToColumnMapper.values()) {
-                    sb.append(column).append(SymbolConstant.COMMA);
-                }
+            for (String field : fields) {
+                String column = propertyToColumnMapper.get(field);
+                sb.append(column).append(SymbolConstant.COMMA);
             }
         }
 
@@ -75,12 +69,12 @@ public final class JdbcHelper {
         return sb.toString();
     }
 
-    static String DELETE(Class<?> entityClass) {
-        return "DELETE " + FROM(entityClass) + " WHERE id = ?";
+    static String DELETE(EntityMapper<?> entityMapper) {
+        return entityMapper.getDeleteByPkSql();
     }
 
-    static String FROM(Class<?> entityClass) {
-        return "FROM " + getTableName(entityClass) + SymbolConstant.BLANK;
+    static String FROM(EntityMapper<?> entityMapper) {
+        return entityMapper.getFromSql();
     }
 
     static String GROUP_BY(List<GroupBy> groupByList, EntityMapper entityMapper) {
@@ -111,32 +105,17 @@ public final class JdbcHelper {
         return sb.toString();
     }
 
-    static String LIMIT(int offset, int limit, DialectEnum dialectEnum, final StringBuilder sql) {
+    static String LIMIT(int offset, int limit, Dialect dialect, final StringBuilder sql) {
         if (offset < MixedConstant.INT_0 || limit <= MixedConstant.INT_0) {
             return SymbolConstant.EMPTY;
         }
-        StringBuilder newSql = new StringBuilder();
-        if (DialectEnum.MYSQL.equals(dialectEnum)) {
-            newSql.append(sql.toString());
-            newSql.append("LIMIT ");
-            newSql.append(offset).append(SymbolConstant.COMMA).append(limit);
-        } else if (DialectEnum.ORACLE.equals(dialectEnum)) {
-            newSql.append("SELECT * FROM (")
-                    .append("SELECT ROWNUM AS RN,table_alias.* FROM (")
-                    .append(sql.toString())
-                    .append(") table_alias ")
-                    .append("WHERE ROWNUM <= ")
-                    .append(offset + limit)
-                    .append(") ")
-                    .append("WHERE RN > ").append(offset);
-
-        }
+        String newSql = dialect.limit(sql.toString(), offset, limit);
         sql.setLength(MixedConstant.INT_0);
-        return newSql.toString();
+        return newSql;
     }
 
-    static String UPDATE(Class<?> entityClass) {
-        return "UPDATE " + getTableName(entityClass) + SymbolConstant.BLANK;
+    static String UPDATE(EntityMapper<?> entityMapper) {
+        return entityMapper.getUpdateSql();
     }
 
     static String SET(Update update, List<Object> valueList, EntityMapper<?> entityMapper) {
@@ -157,27 +136,6 @@ public final class JdbcHelper {
         return sb.toString();
     }
 
-    static <T> T map2Entity(Map<String, Object> map, EntityMapper<T> entityMapper, Class<T> entityClass) {
-        Map<String, String> columnToPropertyMapper = entityMapper.getColumnToPropertyMapper();
-
-        try {
-            HashMap<String, Object> propertyMap = Maps.newHashMap();
-            for (Map.Entry<String, Object> entry : map.entrySet()) {
-                String k = entry.getKey();
-                Object v = entry.getValue();
-                //如果select出来的字段有而entity没有对应的属性，需要忽略该字段
-                String propertyName = columnToPropertyMapper.get(k.toLowerCase());
-                if (propertyName == null) {
-                    continue;
-                }
-                propertyMap.put(propertyName, v);
-            }
-            return BeanUtils.mapToBean(propertyMap, entityClass);
-        } catch (Exception e) {
-            throw new RuntimeException("map2Entity无法将数据库中行记录[" + map + "]转换成Entity对象[" + entityClass.getSimpleName() + "]", e);
-        }
-    }
-
     /**
      * 根据criteria拼装sql where
      *
@@ -218,87 +176,164 @@ public final class JdbcHelper {
     }
 
     /**
-     * 生成oracle id
+     * 根据keyset拼装seek分页的游标条件
+     * 排序方向一致的mysql使用行值比较(a,id) > (?,?),
+     * 其他情况展开为(a > ?) OR (a = ? AND id > ?)
      *
-     * @param sequence   - sequence名字
-     * @param connection - 链接
-     * @return - id
+     * @param keyset       - 游标,为null或第一页时没有条件
+     * @param seekOrderBys - seek分页实际使用的排序,最后一个是主键
+     * @param hasWhere     - 前面是否已经有where
+     * @param valueList    - 值列表
+     * @param entityMapper - entityMapper
+     * @param dialect      - dialect
+     * @return keyset sql
      */
-    private static Long genOracleId(String sequence, Connection connection) {
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
-        try {
-            pstmt = connection.prepareStatement("SELECT " + sequence + ".NEXTVAL AS ID FROM DUAL");
-            rs = pstmt.executeQuery();
-            rs.next();
-            return rs.getLong(MixedConstant.INT_1);
-        } catch (SQLException e) {
-            throw ExceptionTranslator.translate(e, DialectEnum.ORACLE);
-        } finally {
-            JdbcUtils.closeResultSet(rs);
-            JdbcUtils.closeStatement(pstmt);
+    static String KEYSET(Keyset keyset, List<OrderBy> seekOrderBys, boolean hasWhere, List<Object> valueList, EntityMapper<?> entityMapper, Dialect dialect) {
+        if (keyset == null || keyset.isFirst()) {
+            return SymbolConstant.EMPTY;
+        }
+        List<Object> values = keyset.getValues();
+        if (values.size() != seekOrderBys.size()) {
+            throw new IllegalArgumentException("Keyset值的个数[" + values.size() + "]必须与seek排序" + seekOrderBys + "的个数一致");
         }
-    }
 
-    static String INSERT(IdEntity idEntity, List<Object> valueList, EntityMapper<?> entityMapper, Class<?> entityClass, DialectEnum dialectEnum, Connection connection) {
         Map<String, String> propertyToColumnMapper = entityMapper.getPropertyToColumnMapper();
-        Set<String> notNeedTransientPropertySet = entityMapper.getNotNeedTransientPropertySet();
-
-        StringBuilder sb = new StringBuilder(" INSERT INTO ");
+        boolean sameDirection = true;
+        for (OrderBy orderBy : seekOrderBys) {
+            sameDirection = sameDirection && orderBy.getDirection().equals(seekOrderBys.get(MixedConstant.INT_0).getDirection());
+        }
 
-        //组装表名
-        sb.append(getTableName(entityClass)).append(" (");
+        StringBuilder sb = new StringBuilder(hasWhere ? "AND (" : "WHERE (");
+        if (sameDirection && dialect.supportsRowValueComparison()) {
+            StringBuilder questionSB = new StringBuilder();
+            sb.append("(");
+            for (int i = MixedConstant.INT_0; i < seekOrderBys.size(); i++) {
+                sb.append(propertyToColumnMapper.get(seekOrderBys.get(i).getKey())).append(SymbolConstant.COMMA);
+                questionSB.append(SymbolConstant.QUESTION).append(SymbolConstant.COMMA);
+                valueList.add(values.get(i));
+            }
+            sb.deleteCharAt(sb.length() - MixedConstant.INT_1);
+            questionSB.deleteCharAt(questionSB.length() - MixedConstant.INT_1);
+            sb.append(") ").append(seekOperator(seekOrderBys.get(MixedConstant.INT_0))).append(" (").append(questionSB).append(")");
+        } else {
+            for (int i = MixedConstant.INT_0; i < seekOrderBys.size(); i++) {
+                if (i > MixedConstant.INT_0) {
+                    sb.append(" OR ");
+                }
+                sb.append("(");
+                for (int j = MixedConstant.INT_0; j < i; j++) {
+                    sb.append(propertyToColumnMapper.get(seekOrderBys.get(j).getKey())).append(" = ? AND ");
+                    valueList.add(values.get(j));
+                }
+                OrderBy orderBy = seekOrderBys.get(i);
+                sb.append(propertyToColumnMapper.get(orderBy.getKey())).append(SymbolConstant.BLANK).append(seekOperator(orderBy)).append(" ?)");
+                valueList.add(values.get(i));
+            }
+        }
+        sb.append(") ");
+        return sb.toString();
+    }
 
-        //组装字段
-        List<String> pList = Lists.newArrayList();
+    private static String seekOperator(OrderBy orderBy) {
+        return OrderBy.Direction.ASC.getDirection().equals(orderBy.getDirection()) ? SymbolConstant.GREATER : SymbolConstant.LESS;
+    }
 
+    static String INSERT(IdEntity idEntity, List<Object> valueList, EntityMapper<?> entityMapper, Dialect dialect, Connection connection) {
         //IdEntity字段
-        final Field pkField = DaoHelper.getPkField(idEntity);
-        final Object pkValue = DaoHelper.getColumnValue(pkField, idEntity);
+        final EntityMetadata.Property pk = entityMapper.getEntityMetadata().getPk();
+        final Object pkValue = pk.get(idEntity);
+        String insertSql;
         if (DaoHelper.hasSetPkValue(pkValue)) {
-            pList.add(SymbolConstant.QUESTION);
-            sb.append(propertyToColumnMapper.get(entityMapper.getPkFieldName())).append(SymbolConstant.COMMA);
+            insertSql = entityMapper.getInsertWithPkSql();
             valueList.add(pkValue);
+        } else if (!dialect.supportsGeneratedKeys()) {
+            if (entityMapper.getSequenceIdAllocator() == null) {
+                throw new RuntimeException("数据库[" + dialect + "]不支持自增主键,实体Table注解必须设置sequence");
+            }
+            insertSql = entityMapper.getInsertWithPkSql();
+            Long oracleId = entityMapper.getSequenceIdAllocator().nextId(connection);
+            valueList.add(oracleId);
+            pk.set(idEntity, oracleId);
         } else {
-            if (DialectEnum.ORACLE.equals(dialectEnum)) {
-                sb.append(propertyToColumnMapper.get(entityMapper.getPkFieldName())).append(SymbolConstant.COMMA);
-                if (StringUtils.isNotBlank(getSequenceName(entityClass))) {
-                    pList.add(SymbolConstant.QUESTION);
-                    Long oracleId = genOracleId(getSequenceName(entityClass), connection);
-                    valueList.add(oracleId);
-                    DaoHelper.setColumnValue(pkField, idEntity, oracleId);
-                } else {
-                    throw new RuntimeException("连接ORACLE,实体Table注解必须设置sequence");
-                }
+            insertSql = entityMapper.getInsertWithoutPkSql();
+            if (insertSql == null) {
+                throw new RuntimeException("entity[" + entityMapper.getEntityName() + "]除主键外没有需要持久化的字段,必须设置主键值");
             }
         }
 
-        //本类字段
-        for (Map.Entry<String, String> entry : propertyToColumnMapper.entrySet()) {
-            String fieldName = entry.getKey();
-            String columnName = entry.getValue();
-            //pk前面已经处理了
-            if (fieldName.equals(entityMapper.getPkFieldName())) {
-                continue;
-            }
-            //过滤掉不需要持久化的
-            if (notNeedTransientPropertySet.contains(fieldName)) {
-                continue;
-            }
+        //本类字段,pk前面已经处理了
+        entityMapper.addInsertValues(idEntity, valueList);
+        return insertSql;
+    }
 
-            sb.append(columnName).append(SymbolConstant.COMMA);
-            pList.add(SymbolConstant.QUESTION);
-            valueList.add(DaoHelper.getColumnValue(fieldName, idEntity));
+    /**
+     * 将单行insert改写为多行values的insert,用于mysql批量插入
+     *
+     * @param insertSql - 单行insert sql
+     * @param rowCount  - 行数
+     * @return - insert into t(...) values (...),(...)
+     */
+    static String MULTI_ROW_INSERT(String insertSql, int rowCount) {
+        int valuesIndex = insertSql.lastIndexOf(" VALUES ") + " VALUES ".length();
+        String rowPlaceholder = insertSql.substring(valuesIndex).trim();
+
+        StringBuilder sb = new StringBuilder(valuesIndex + (rowPlaceholder.length() + MixedConstant.INT_1) * rowCount);
+        sb.append(insertSql, MixedConstant.INT_0, valuesIndex);
+        for (int i = MixedConstant.INT_0; i < rowCount; i++) {
+            sb.append(rowPlaceholder).append(SymbolConstant.COMMA);
         }
-        sb.deleteCharAt(sb.length() - MixedConstant.INT_1).append(")");
+        sb.deleteCharAt(sb.length() - MixedConstant.INT_1);//去掉最后一个,
+        return sb.toString();
+    }
 
-        //组装值
-        sb.append(" VALUES (");
-        for (String p : pList) {
-            sb.append(p).append(SymbolConstant.COMMA);
+    /**
+     * 将主键值转换为pk字段的类型,用于数据库生成的主键、缓存key和分片键
+     * 如Long类型主键的findOneById(1)和findOneById("1")得到同一个主键值
+     *
+     * @param key    - 数据库生成的或调用方传入的主键值
+     * @param pkType - pk字段类型,只能是Long,Integer,String其中之一
+     * @return - 转换后的主键值
+     */
+    static Object convertPkValue(Object key, Class<?> pkType) {
+        if (key == null || pkType.isInstance(key)) {
+            return key;
         }
-        sb.deleteCharAt(sb.length() - MixedConstant.INT_1).append(") ");
-        return sb.toString();
+        if (Long.class.equals(pkType)) {
+            return key instanceof Number ? ((Number) key).longValue() : Long.valueOf(key.toString());
+        }
+        if (Integer.class.equals(pkType)) {
+            return key instanceof Number ? ((Number) key).intValue() : Integer.valueOf(key.toString());
+        }
+        return key.toString();
+    }
+
+    /**
+     * 将主键列表去重后按bucketSize分批,每批补齐到规范长度(2的幂或bucketSize)
+     * 补齐使用该批最后一个主键,使不同长度的ids只产生少量不同的IN sql,便于语句缓存
+     *
+     * @param ids        - 主键列表
+     * @param bucketSize - 每批上限
+     * @return - 分批后的主键列表
+     */
+    static List<List<Serializable>> ID_BUCKETS(List<Serializable> ids, int bucketSize) {
+        List<Serializable> distinctIds = Lists.newArrayList(new LinkedHashSet<>(ids));
+        List<List<Serializable>> buckets = Lists.newArrayList();
+        for (List<Serializable> partition : Lists.partition(distinctIds, bucketSize)) {
+            int canonicalSize = MixedConstant.INT_1;
+            while (canonicalSize < partition.size()) {
+                canonicalSize <<= MixedConstant.INT_1;
+            }
+            canonicalSize = Math.min(canonicalSize, bucketSize);
+
+            List<Serializable> bucket = Lists.newArrayListWithCapacity(canonicalSize);
+            bucket.addAll(partition);
+            Serializable padding = partition.get(partition.size() - MixedConstant.INT_1);
+            while (bucket.size() < canonicalSize) {
+                bucket.add(padding);
+            }
+            buckets.add(bucket);
+        }
+        return buckets;
     }
 
     /**
@@ -323,6 +358,27 @@ public final class JdbcHelper {
         return tableAnnotation.sequence();
     }
 
+    /**
+     * 根据entity的class获取sequence一次预取的个数
+     *
+     * @param entityClass - entityClass
+     * @return - 注解标注的sequenceBlockSize
+     */
+    static int getSequenceBlockSize(Class<?> entityClass) {
+        Table tableAnnotation = entityClass.getAnnotation(Table.class);
+        return tableAnnotation.sequenceBlockSize();
+    }
+
+    /**
+     * 根据entity的class获取二级缓存配置
+     *
+     * @param entityClass - entityClass
+     * @return - 注解,没有开启缓存时为null
+     */
+    static EntityCache getEntityCache(Class<?> entityClass) {
+        return entityClass.getAnnotation(EntityCache.class);
+    }
+
     /**
      * 校验entityClass必须符合框架的规范
      *
@@ -342,6 +398,10 @@ public final class JdbcHelper {
         if (tableAnnotation == null) {
             throw new RuntimeException("entity[" + entityClassName + "] must have Table annotation");
         }
+        //z-orm-processor生成accessor时已经在编译期校验过
+        if (EntityMetadata.of(entityClass).isGenerated()) {
+            return;
+        }
 
         Field[] fields = entityClass.getDeclaredFields();
         if (fields == null || fields.length == 0) {
@@ -1,6 +1,11 @@
 package com.zhouyutong.zorm.dao.jdbc;
 
 import com.zhouyutong.zorm.dao.DaoSettings;
+import com.zhouyutong.zorm.dao.jdbc.dialect.Dialect;
+import com.zhouyutong.zorm.dao.jdbc.dialect.JdbcDialectEnum;
+import com.zhouyutong.zorm.dao.jdbc.route.ReadBalancer;
+import com.zhouyutong.zorm.dao.jdbc.route.ReadBalancerEnum;
+import com.zhouyutong.zorm.dao.jdbc.route.ShardStrategy;
 import com.zhouyutong.zorm.enums.DialectEnum;
 import lombok.Data;
 
@@ -15,7 +20,98 @@ import java.util.List;
  */
 @Data
 public class JdbcSettings implements DaoSettings {
+    /**
+     * 数据库,设置了dialect时可以不设置
+     */
     private DialectEnum dialectEnum;
+    /**
+     * 数据库方言,为null时根据dialectEnum使用JdbcDialectEnum中的内置方言
+     * oracle 12c及以后建议设置为JdbcDialectEnum.ORACLE12C
+     */
+    private Dialect dialect;
     private List<DataSource> writeDataSource;
     private List<DataSource> readDataSource;
+    /**
+     * 批量插入时每批的条数,每批一次网络往返
+     */
+    private int batchInsertSize = 500;
+    /**
+     * mysql批量插入是否使用多行values,即insert into t(...) values (...),(...)
+     * false时使用jdbc的addBatch/executeBatch
+     */
+    private boolean multiRowInsert = false;
+    /**
+     * stream查询时每次从数据库获取的行数,0使用驱动默认值
+     * mysql设置为Integer.MIN_VALUE时逐行流式读取,不会把整个结果集读入内存
+     */
+    private int fetchSize = 0;
+    /**
+     * findListByIds单个IN查询的主键个数上限,oracle不能超过1000
+     */
+    private int idLookupBatchSize = 500;
+    /**
+     * 并行查询(如分批的findListByIds)使用的线程数,0表示不并行
+     */
+    private int parallelQueryThreads = 4;
+    /**
+     * 异步操作(xxxAsync)使用的线程数,即同时占用的连接数上限,应小于连接池大小,0表示在调用线程执行
+     */
+    private int asyncThreads = 8;
+    /**
+     * 异步操作的等待队列长度,队列满时由调用线程执行
+     */
+    private int asyncQueueSize = 1024;
+    /**
+     * 读库负载均衡策略,默认随机
+     */
+    private ReadBalancer readBalancer = ReadBalancerEnum.RANDOM;
+    /**
+     * 读库权重,顺序与readDataSource一致,WEIGHTED策略使用,为空时每个读库权重为1
+     */
+    private List<Integer> readWeights;
+    /**
+     * 读库异常率(EWMA)超过该值时摘除,0表示不按异常率摘除
+     */
+    private double replicaMaxErrorRate = 0.5D;
+    /**
+     * 读库平均耗时(EWMA)超过该毫秒数时摘除,0表示不按耗时摘除
+     */
+    private long replicaMaxLatencyMillis = 0L;
+    /**
+     * 读库至少执行多少次请求后才判断是否摘除
+     */
+    private int replicaMinRequests = 20;
+    /**
+     * 读库摘除的毫秒数,到期后放行一个探测请求,成功则恢复
+     */
+    private long replicaEjectMillis = 30000L;
+    /**
+     * 写后读一致的时间窗口毫秒数,当前线程写主库后该时间内的读请求路由到主库,0表示不开启
+     * 跨线程或跨请求时通过WriteSession的write token传递
+     */
+    private long readYourWritesMillis = 0L;
+    /**
+     * 测量读库复制延迟的sql,返回一个毫秒数,为空表示不测量
+     * 配置后写后时间窗口内已经同步到最后一次写的读库也可以读,如postgresql:
+     * SELECT COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+     */
+    private String replicaLagSql;
+    /**
+     * 测量读库复制延迟的间隔毫秒数
+     */
+    private long replicaLagCheckMillis = 1000L;
+    /**
+     * 分片策略,为null表示不分片
+     * 分片时writeDataSource中的每个数据源是一个分片,按主键路由,主键之外的查询并行发往所有分片后合并
+     * 分片模式不使用readDataSource
+     */
+    private ShardStrategy shardStrategy;
+
+    public DialectEnum getDialectEnum() {
+        return dialectEnum != null || dialect == null ? dialectEnum : dialect.getDialectEnum();
+    }
+
+    public Dialect getDialect() {
+        return dialect != null ? dialect : JdbcDialectEnum.of(dialectEnum);
+    }
 }
@@ -0,0 +1,154 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.dao.jdbc.annotation.QueryCache;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionContext;
+import com.zhouyutong.zorm.entity.EntityMetadata;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * 查询结果缓存,每个开启了QueryCache的dao一个,key为查询类型+sql+参数值
+ * 每个表有一个版本号,同一数据源的任意dao(不论是否开启QueryCache)写入该表时版本号加1,缓存项的版本号不是最新时视为未命中
+ * 加载期间版本号发生变化的结果不放入缓存,避免把写入前读到的旧结果缓存下来
+ * 加载读主库,读库的延迟不会进入缓存
+ * 缓存的entity与返回给调用方的entity不是同一个实例,调用方修改返回的列表和entity都不影响缓存
+ */
+final class QueryResultCache {
+    //路由(数据源)+表名 -> 版本号
+    private static final ConcurrentMap<List<Object>, AtomicLong> TABLE_VERSION_MAP = Maps.newConcurrentMap();
+
+    private final AtomicLong tableVersion;
+    private final int maximumResultRows;
+    private final Cache<List<Object>, Entry> cache;
+
+    /**
+     * @param queryCache   - 缓存配置
+     * @param tableVersion - 表的版本号,见tableVersion
+     */
+    QueryResultCache(QueryCache queryCache, AtomicLong tableVersion) {
+        this.tableVersion = tableVersion;
+        this.maximumResultRows = queryCache.maximumResultRows();
+        CacheBuilder<List<Object>, Entry> cacheBuilder = CacheBuilder.newBuilder()
+                .maximumWeight(queryCache.maximumRows())
+                .weigher((List<Object> key, Entry entry) -> entry.rows)
+                .recordStats();
+        if (queryCache.expireAfterWriteSeconds() > 0L) {
+            cacheBuilder.expireAfterWrite(queryCache.expireAfterWriteSeconds(), TimeUnit.SECONDS);
+        }
+        this.cache = cacheBuilder.build();
+    }
+
+    /**
+     * 表的版本号,每个dao初始化时取得,写入时通过tableWritten加1
+     *
+     * @param router    - 数据源的路由,不同数据源的同名表互不影响
+     * @param tableName - 表名
+     */
+    static AtomicLong tableVersion(Object router, String tableName) {
+        return TABLE_VERSION_MAP.computeIfAbsent(Lists.newArrayList(router, tableName), k -> new AtomicLong());
+    }
+
+    /**
+     * 表发生写入,该表所有dao的查询缓存失效,事物中的写在提交后再次失效
+     *
+     * @param queryCache - 写入方dao的查询缓存,没有开启QueryCache时为null
+     */
+    static void tableWritten(AtomicLong tableVersion, QueryResultCache queryCache) {
+        tableVersion.incrementAndGet();
+        if (queryCache != null) {
+            queryCache.cache.invalidateAll();
+        }
+        TransactionContext.afterCommit(() -> {
+            tableVersion.incrementAndGet();
+            if (queryCache != null) {
+                queryCache.cache.invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * 缓存的key
+     *
+     * @param method    - 查询类型,如findListByQuery、countByCriteria
+     * @param sql       - 带占位符的sql
+     * @param valueList - 参数值
+     */
+    static List<Object> key(String method, String sql, List<Object> valueList) {
+        List<Object> key = Lists.newArrayListWithCapacity(valueList.size() + MixedConstant.INT_2);
+        key.add(method);
+        key.add(sql);
+        key.addAll(valueList);
+        return key;
+    }
+
+    /**
+     * 查询结果列表,放入缓存和命中时都复制列表及其中的entity,调用方修改列表或entity不影响缓存
+     *
+     * @param entityClass - 列表中entity的类型
+     */
+    <T> List<T> getList(List<Object> key, Class<T> entityClass, Supplier<List<T>> loader) {
+        EntityMetadata entityMetadata = EntityMetadata.of(entityClass);
+        UnaryOperator<List<T>> copier = entityList -> {
+            if (entityList == null) {
+                return null;
+            }
+            List<T> copyList = Lists.newArrayListWithCapacity(entityList.size());
+            for (T entity : entityList) {
+                copyList.add(entity == null ? null : entityClass.cast(entityMetadata.copy(entity)));
+            }
+            return copyList;
+        };
+        return this.get(key, loader, copier, entityListToCache -> entityListToCache == null ? MixedConstant.INT_1 : entityListToCache.size());
+    }
+
+    long getCount(List<Object> key, Supplier<Long> loader) {
+        return this.get(key, loader, UnaryOperator.identity(), count -> MixedConstant.INT_1);
+    }
+
+    /**
+     * @param copier - 缓存中的值与返回给调用方的值之间的复制,值不可变时为identity
+     */
+    @SuppressWarnings("unchecked")
+    private <R> R get(List<Object> key, Supplier<R> loader, UnaryOperator<R> copier, ToIntFunction<R> rowCounter) {
+        long version = tableVersion.get();
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.version == version) {
+            //缓存中只放入过该key对应的loader的结果,类型与R一致
+            return copier.apply((R) entry.value);
+        }
+        R value = loader.get();
+        int rows = Math.max(rowCounter.applyAsInt(value), MixedConstant.INT_1);
+        if (rows <= maximumResultRows && tableVersion.get() == version) {
+            cache.put(key, new Entry(version, copier.apply(value), rows));
+        }
+        return value;
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static final class Entry {
+        private final long version;
+        private final Object value;
+        private final int rows;
+
+        private Entry(long version, Object value, int rows) {
+            this.version = version;
+            this.value = value;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.dao.jdbc.dialect.Dialect;
+import com.zhouyutong.zorm.utils.ExceptionTranslator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于打开的ResultSet逐行映射entity的游标
+ * 读完最后一行或Stream被close时立即释放ResultSet、Statement和连接
+ * 方言为stream修改过连接的autocommit时,释放连接前回滚并恢复
+ */
+@Slf4j
+final class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+    private final DataSource dataSource;
+    private final Dialect dialect;
+    private final Connection connection;
+    private final PreparedStatement ps;
+    private final ResultSet rs;
+    private final RowMapper<T> rowMapper;
+    private final boolean restoreAutoCommit;
+    private int rowNum = MixedConstant.INT_0;
+    private boolean closed = false;
+
+    private ResultSetSpliterator(DataSource dataSource, Dialect dialect, Connection connection,
+                                 PreparedStatement ps, ResultSet rs, RowMapper<T> rowMapper, boolean restoreAutoCommit) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+        this.connection = connection;
+        this.ps = ps;
+        this.rs = rs;
+        this.rowMapper = rowMapper;
+        this.restoreAutoCommit = restoreAutoCommit;
+    }
+
+    /**
+     * 执行查询并返回按行映射的Stream,调用方必须close该Stream(推荐try-with-resources)
+     *
+     * @param dataSource   - 数据源,连接通过DataSourceUtils获取,可以参与当前事物
+     * @param sql          - 查询sql
+     * @param valueList    - 参数值列表
+     * @param fetchSize    - 每次从数据库获取的行数,0使用驱动默认值,实际设置的值由方言决定
+     * @param entityMapper - entityMapper
+     * @param dialect      - dialect
+     */
+    static <T> Stream<T> stream(DataSource dataSource, String sql, List<Object> valueList, int fetchSize,
+                                EntityMapper<T> entityMapper, Dialect dialect) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        boolean restoreAutoCommit = false;
+        try {
+            restoreAutoCommit = dialect.prepareStreamingConnection(connection);
+            ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            int fetchSizeToUse = dialect.streamFetchSize(fetchSize);
+            if (fetchSizeToUse != MixedConstant.INT_0) {
+                ps.setFetchSize(fetchSizeToUse);
+            }
+            int i = MixedConstant.INT_0;
+            for (Object value : valueList) {
+                StatementCreatorUtils.setParameterValue(ps, ++i, SqlTypeValue.TYPE_UNKNOWN, value);
+            }
+            rs = ps.executeQuery();
+            RowMapper<T> rowMapper = entityMapper.getRowMapper().newRowMapper(rs.getMetaData());
+
+            ResultSetSpliterator<T> spliterator = new ResultSetSpliterator<>(dataSource, dialect, connection, ps, rs, rowMapper, restoreAutoCommit);
+            return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+        } catch (SQLException | RuntimeException e) {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(ps);
+            restoreAutoCommit(connection, restoreAutoCommit);
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            throw ExceptionTranslator.translate(e, dialect.getDialectEnum());
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed) {
+            return false;
+        }
+        T entity;
+        try {
+            if (!rs.next()) {
+                this.close();
+                return false;
+            }
+            entity = rowMapper.mapRow(rs, rowNum++);
+        } catch (SQLException | RuntimeException e) {
+            this.close();
+            throw ExceptionTranslator.translate(e, dialect.getDialectEnum());
+        }
+        action.accept(entity);
+        return true;
+    }
+
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        JdbcUtils.closeResultSet(rs);
+        JdbcUtils.closeStatement(ps);
+        restoreAutoCommit(connection, restoreAutoCommit);
+        DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+
+    //只读查询,回滚结束方言开启的事物后恢复autocommit,连接归还连接池后与取出时状态一致
+    private static void restoreAutoCommit(Connection connection, boolean restoreAutoCommit) {
+        if (!restoreAutoCommit) {
+            return;
+        }
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (SQLException | RuntimeException e) {
+            log.warn("restore autocommit failed", e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.enums.DialectEnum;
+import com.zhouyutong.zorm.utils.ExceptionTranslator;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * oracle sequence主键分配器,每个entity一个
+ * 一次查询取回一批sequence值,之后无锁分配,只有一批用完时才再次访问数据库
+ * 未使用完的值在应用重启后丢弃,主键会出现空洞
+ */
+final class SequenceIdAllocator {
+    private final String sequenceName;
+    private final int blockSize;
+    private final String nextValSql;
+    private volatile Block block;
+
+    SequenceIdAllocator(String sequenceName, int blockSize) {
+        this.sequenceName = sequenceName;
+        this.blockSize = blockSize < MixedConstant.INT_1 ? MixedConstant.INT_1 : blockSize;
+        if (this.blockSize == MixedConstant.INT_1) {
+            this.nextValSql = "SELECT " + sequenceName + ".NEXTVAL AS ID FROM DUAL";
+        } else {
+            this.nextValSql = "SELECT " + sequenceName + ".NEXTVAL AS ID FROM DUAL CONNECT BY LEVEL <= " + this.blockSize;
+        }
+    }
+
+    /**
+     * 分配一个主键
+     *
+     * @param connection - 当前批用完时用于取下一批的链接
+     * @return - id
+     */
+    long nextId(Connection connection) {
+        while (true) {
+            Block current = this.block;
+            if (current != null) {
+                int i = current.index.getAndIncrement();
+                if (i < current.ids.length) {
+                    return current.ids[i];
+                }
+            }
+            this.refill(current, connection);
+        }
+    }
+
+    /**
+     * 只有一个线程取下一批,其他线程发现已经换批后直接重试
+     */
+    private synchronized void refill(Block exhausted, Connection connection) {
+        if (this.block != exhausted) {
+            return;
+        }
+        this.block = new Block(this.fetch(connection));
+    }
+
+    private long[] fetch(Connection connection) {
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = connection.prepareStatement(nextValSql);
+            pstmt.setFetchSize(blockSize);
+            rs = pstmt.executeQuery();
+            long[] ids = new long[blockSize];
+            int n = MixedConstant.INT_0;
+            while (n < blockSize && rs.next()) {
+                ids[n++] = rs.getLong(MixedConstant.INT_1);
+            }
+            if (n == MixedConstant.INT_0) {
+                throw new SQLException("sequence[" + sequenceName + "]没有返回值");
+            }
+            return n == blockSize ? ids : Arrays.copyOf(ids, n);
+        } catch (SQLException e) {
+            throw ExceptionTranslator.translate(e, DialectEnum.ORACLE);
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+        }
+    }
+
+    private static final class Block {
+        private final long[] ids;
+        private final AtomicInteger index = new AtomicInteger();
+
+        private Block(long[] ids) {
+            this.ids = ids;
+        }
+    }
+}
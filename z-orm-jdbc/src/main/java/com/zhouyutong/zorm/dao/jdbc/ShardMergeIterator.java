@@ -0,0 +1,137 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.dao.jdbc.dialect.Dialect;
+import com.zhouyutong.zorm.entity.EntityMetadata;
+import com.zhouyutong.zorm.query.OrderBy;
+import org.apache.commons.collections.CollectionUtils;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 多个分片结果的k路归并,每个分片的结果已经按order by排好序
+ * 每次只从堆顶取一行,按需推进各分片的迭代器,取够limit行后剩余的行不会被读取
+ * 排序值相等时按分片下标排序,保证结果稳定
+ */
+final class ShardMergeIterator<T> implements Iterator<T> {
+    private final PriorityQueue<Head<T>> heap;
+    private final List<Iterator<T>> iterators;
+
+    private ShardMergeIterator(List<Iterator<T>> iterators, Comparator<T> comparator) {
+        this.iterators = iterators;
+        this.heap = new PriorityQueue<>(Math.max(iterators.size(), MixedConstant.INT_1), (a, b) -> {
+            int c = comparator.compare(a.value, b.value);
+            return c != MixedConstant.INT_0 ? c : Integer.compare(a.shard, b.shard);
+        });
+        for (int shard = MixedConstant.INT_0; shard < iterators.size(); shard++) {
+            this.advance(shard);
+        }
+    }
+
+    /**
+     * 归并各分片的结果
+     *
+     * @param iterators  - 各分片的结果,下标即分片
+     * @param comparator - 排序规则,为null时按分片顺序依次返回
+     */
+    static <T> Iterator<T> merge(List<Iterator<T>> iterators, Comparator<T> comparator) {
+        if (comparator == null || iterators.size() == MixedConstant.INT_1) {
+            return Iterators.concat(iterators.iterator());
+        }
+        return new ShardMergeIterator<>(iterators, comparator);
+    }
+
+    /**
+     * 根据order by构造entity比较器,orderBys为空时返回null
+     * null值的顺序与数据库一致,由方言的nullsFirst决定
+     * 字符串按java的字典序比较,与数据库的排序规则(collation)不一致时归并结果的顺序可能不同
+     */
+    static <T> Comparator<T> comparator(Class<T> entityClass, List<OrderBy> orderBys, Dialect dialect) {
+        if (CollectionUtils.isEmpty(orderBys)) {
+            return null;
+        }
+        boolean nullFirst = dialect.nullsFirst();
+        EntityMetadata entityMetadata = EntityMetadata.of(entityClass);
+        List<EntityMetadata.Property> properties = Lists.newArrayListWithCapacity(orderBys.size());
+        List<Boolean> descs = Lists.newArrayListWithCapacity(orderBys.size());
+        for (OrderBy orderBy : orderBys) {
+            EntityMetadata.Property property = entityMetadata.getProperty(orderBy.getKey());
+            if (property == null) {
+                throw new IllegalArgumentException("entity[" + entityClass.getName() + "]没有order by的属性[" + orderBy.getKey() + "]");
+            }
+            properties.add(property);
+            descs.add(OrderBy.Direction.DESC.getDirection().equals(orderBy.getDirection()));
+        }
+
+        return (a, b) -> {
+            for (int i = MixedConstant.INT_0; i < properties.size(); i++) {
+                int c = compareValue(properties.get(i).get(a), properties.get(i).get(b), nullFirst);
+                if (c != MixedConstant.INT_0) {
+                    return descs.get(i) ? -c : c;
+                }
+            }
+            return MixedConstant.INT_0;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValue(Object a, Object b, boolean nullFirst) {
+        if (a == b) {
+            return MixedConstant.INT_0;
+        }
+        if (a == null) {
+            return nullFirst ? -MixedConstant.INT_1 : MixedConstant.INT_1;
+        }
+        if (b == null) {
+            return nullFirst ? MixedConstant.INT_1 : -MixedConstant.INT_1;
+        }
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Comparable) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+        return String.valueOf(a).compareTo(String.valueOf(b));
+    }
+
+    private void advance(int shard) {
+        Iterator<T> iterator = iterators.get(shard);
+        if (iterator.hasNext()) {
+            heap.add(new Head<>(shard, iterator.next()));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heap.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Head<T> head = heap.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        this.advance(head.shard);
+        return head.value;
+    }
+
+    /**
+     * 某个分片当前的第一行
+     */
+    private static final class Head<T> {
+        private final int shard;
+        private final T value;
+
+        private Head(int shard, T value) {
+            this.shard = shard;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import org.springframework.dao.DataAccessException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分片模式下不能确定分片的更新在所有分片上依次执行,部分分片失败时抛出
+ * 失败的分片没有更新,其余分片已经更新(不在事物中时已经提交)
+ */
+public class ShardWriteException extends DataAccessException {
+    private final Map<Integer, DataAccessException> failedShardMap;
+    private final int updatedRows;
+
+    /**
+     * @param failedShardMap - 失败的分片下标 -> 该分片的异常,按分片下标排序
+     * @param updatedRows    - 成功的分片影响行数之和
+     */
+    ShardWriteException(Map<Integer, DataAccessException> failedShardMap, int updatedRows) {
+        super("分片" + failedShardMap.keySet() + "更新失败,其余分片已更新" + updatedRows + "行", failedShardMap.values().iterator().next());
+        this.failedShardMap = Collections.unmodifiableMap(failedShardMap);
+        this.updatedRows = updatedRows;
+        for (DataAccessException e : failedShardMap.values()) {
+            if (e != this.getCause()) {
+                this.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * 失败的分片下标
+     */
+    public Set<Integer> getFailedShards() {
+        return failedShardMap.keySet();
+    }
+
+    /**
+     * 失败的分片下标 -> 该分片的异常
+     */
+    public Map<Integer, DataAccessException> getFailedShardMap() {
+        return failedShardMap;
+    }
+
+    /**
+     * 成功的分片影响行数之和
+     */
+    public int getUpdatedRows() {
+        return updatedRows;
+    }
+}
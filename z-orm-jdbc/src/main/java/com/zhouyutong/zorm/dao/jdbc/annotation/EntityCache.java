@@ -0,0 +1,35 @@
+package com.zhouyutong.zorm.dao.jdbc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注entity开启findOneById的二级缓存,适用于读多写少的实体
+ * 通过该dao的insert、update、delete写入时失效对应的缓存,事物中的写在提交后再次失效
+ * 其他应用或直接执行sql的修改只能等待过期
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface EntityCache {
+    /**
+     * 最多缓存的entity个数,超过时按最近最少使用淘汰
+     *
+     * @return
+     */
+    long maximumSize() default 10000L;
+
+    /**
+     * 写入缓存后多少秒过期
+     *
+     * @return
+     */
+    long expireAfterWriteSeconds() default 300L;
+
+    /**
+     * 写入缓存后多少秒异步刷新,刷新完成前返回旧值,0表示不刷新
+     * 小于expireAfterWriteSeconds时生效
+     *
+     * @return
+     */
+    long refreshAfterWriteSeconds() default 0L;
+}
@@ -0,0 +1,34 @@
+package com.zhouyutong.zorm.dao.jdbc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注dao开启findListByQuery、countByCriteria、countAll的结果缓存,适用于查询重复度高且变化慢的表
+ * 相同的sql和参数值命中同一个缓存项,同一个表的任意dao写入后该表的所有查询缓存失效
+ * 其他应用或直接执行sql的修改只能等待过期
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface QueryCache {
+    /**
+     * 所有缓存结果的总行数上限,count结果按1行计算,超过时按最近最少使用淘汰
+     *
+     * @return
+     */
+    long maximumRows() default 100000L;
+
+    /**
+     * 单个查询结果超过该行数时不缓存,避免一个大结果挤掉其他缓存
+     *
+     * @return
+     */
+    int maximumResultRows() default 1000;
+
+    /**
+     * 写入缓存后多少秒过期
+     *
+     * @return
+     */
+    long expireAfterWriteSeconds() default 60L;
+}
@@ -22,4 +22,11 @@ public @interface Table {
      * @return
      */
     String sequence() default "";
+
+    /**
+     * 一次从sequence预取的主键个数,大于1时一次查询取回多个值在本地分配
+     *
+     * @return
+     */
+    int sequenceBlockSize() default 1;
 }
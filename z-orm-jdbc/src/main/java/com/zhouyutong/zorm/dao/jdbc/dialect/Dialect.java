@@ -0,0 +1,94 @@
+package com.zhouyutong.zorm.dao.jdbc.dialect;
+
+import com.zhouyutong.zorm.enums.DialectEnum;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 数据库方言,生成sql和执行时与具体数据库相关的部分
+ * 内置方言见JdbcDialectEnum,也可以实现该接口自定义
+ */
+public interface Dialect {
+
+    /**
+     * 对应的数据库,用于异常转换
+     *
+     * @return - DialectEnum,没有对应的数据库时返回null
+     */
+    DialectEnum getDialectEnum();
+
+    /**
+     * 分页
+     *
+     * @param sql    - 不带分页的查询sql
+     * @param offset - 跳过的行数,大于等于0
+     * @param limit  - 返回的行数,大于0
+     * @return - 带分页的查询sql
+     */
+    String limit(String sql, int offset, int limit);
+
+    /**
+     * 给表名、字段名加上引号,用于关键字或需要区分大小写的标识符
+     *
+     * @param identifier - 表名或字段名
+     * @return - 加上引号的标识符
+     */
+    String quoteIdentifier(String identifier);
+
+    /**
+     * 是否支持insert后通过getGeneratedKeys取回自增主键,不支持时主键通过Table注解的sequence分配
+     *
+     * @return
+     */
+    boolean supportsGeneratedKeys();
+
+    /**
+     * 主键存在时更新、不存在时插入的sql,参数顺序为主键和columns
+     *
+     * @param tableName - 表名
+     * @param pkColumn  - 主键字段
+     * @param columns   - 主键之外的字段
+     * @return - upsert sql,不支持时返回null
+     */
+    String upsert(String tableName, String pkColumn, List<String> columns);
+
+    /**
+     * 批量插入是否支持多行values,即insert into t(...) values (...),(...)
+     *
+     * @return
+     */
+    boolean supportsMultiRowInsert();
+
+    /**
+     * 是否支持行值比较,即(a, b) > (?, ?),seek分页各排序字段方向相同时使用
+     *
+     * @return
+     */
+    boolean supportsRowValueComparison();
+
+    /**
+     * 升序时null值是否排在最前面,用于多个分片结果的归并排序与数据库保持一致
+     *
+     * @return
+     */
+    boolean nullsFirst();
+
+    /**
+     * stream查询时实际设置到Statement的fetchSize
+     *
+     * @param fetchSize - JdbcSettings配置的fetchSize
+     * @return - 需要设置的fetchSize,0表示使用驱动默认值
+     */
+    int streamFetchSize(int fetchSize);
+
+    /**
+     * stream查询执行前准备连接,如postgresql只有autocommit=false时fetchSize才生效
+     *
+     * @param connection - 执行stream查询的连接
+     * @return - 是否把autocommit改为了false,为true时stream结束后回滚并恢复autocommit=true
+     * @throws SQLException
+     */
+    boolean prepareStreamingConnection(Connection connection) throws SQLException;
+}
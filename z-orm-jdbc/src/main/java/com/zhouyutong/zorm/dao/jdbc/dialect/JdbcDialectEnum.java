@@ -0,0 +1,267 @@
+package com.zhouyutong.zorm.dao.jdbc.dialect;
+
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.constant.SymbolConstant;
+import com.zhouyutong.zorm.enums.DialectEnum;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 内置的数据库方言
+ */
+public enum JdbcDialectEnum implements Dialect {
+    MYSQL(DialectEnum.MYSQL) {
+        @Override
+        public String limit(String sql, int offset, int limit) {
+            return sql + "LIMIT " + offset + SymbolConstant.COMMA + limit;
+        }
+
+        @Override
+        public String quoteIdentifier(String identifier) {
+            return "`" + identifier + "`";
+        }
+
+        @Override
+        public String upsert(String tableName, String pkColumn, List<String> columns) {
+            StringBuilder sb = insertInto(tableName, pkColumn, columns).append("ON DUPLICATE KEY UPDATE ");
+            if (columns.isEmpty()) {
+                return sb.append(pkColumn).append(" = ").append(pkColumn).toString();
+            }
+            for (String column : columns) {
+                sb.append(column).append(" = VALUES(").append(column).append(")").append(SymbolConstant.COMMA);
+            }
+            return sb.deleteCharAt(sb.length() - MixedConstant.INT_1).toString();
+        }
+
+        @Override
+        public boolean nullsFirst() {
+            return true;
+        }
+
+        /**
+         * Integer.MIN_VALUE开启逐行流式读取,不会把整个结果集读入内存
+         */
+        @Override
+        public int streamFetchSize(int fetchSize) {
+            return fetchSize > MixedConstant.INT_0 || fetchSize == Integer.MIN_VALUE ? fetchSize : MixedConstant.INT_0;
+        }
+    },
+    /**
+     * oracle 11g及以前,分页使用ROWNUM嵌套查询
+     */
+    ORACLE(DialectEnum.ORACLE) {
+        @Override
+        public String limit(String sql, int offset, int limit) {
+            return "SELECT * FROM (SELECT ROWNUM AS RN,table_alias.* FROM (" + sql + ") table_alias WHERE ROWNUM <= " + (offset + limit) + ") WHERE RN > " + offset;
+        }
+
+        @Override
+        public String upsert(String tableName, String pkColumn, List<String> columns) {
+            return oracleMerge(tableName, pkColumn, columns);
+        }
+
+        @Override
+        public boolean supportsGeneratedKeys() {
+            return false;
+        }
+
+        @Override
+        public boolean supportsMultiRowInsert() {
+            return false;
+        }
+
+        @Override
+        public boolean supportsRowValueComparison() {
+            return false;
+        }
+    },
+    /**
+     * oracle 12c及以后,分页使用OFFSET ... FETCH NEXT,优化器可以使用top-n排序
+     */
+    ORACLE12C(DialectEnum.ORACLE) {
+        @Override
+        public String limit(String sql, int offset, int limit) {
+            return sql + "OFFSET " + offset + " ROWS FETCH NEXT " + limit + " ROWS ONLY";
+        }
+
+        @Override
+        public String upsert(String tableName, String pkColumn, List<String> columns) {
+            return oracleMerge(tableName, pkColumn, columns);
+        }
+
+        @Override
+        public boolean supportsGeneratedKeys() {
+            return false;
+        }
+
+        @Override
+        public boolean supportsMultiRowInsert() {
+            return false;
+        }
+
+        @Override
+        public boolean supportsRowValueComparison() {
+            return false;
+        }
+    },
+    /**
+     * postgresql的fetchSize只在事物中(autocommit=false)生效,否则驱动会读取整个结果集
+     */
+    POSTGRESQL(DialectEnum.POSTGRESQL) {
+        @Override
+        public String upsert(String tableName, String pkColumn, List<String> columns) {
+            StringBuilder sb = insertInto(tableName, pkColumn, columns).append("ON CONFLICT (").append(pkColumn).append(") ");
+            if (columns.isEmpty()) {
+                return sb.append("DO NOTHING").toString();
+            }
+            sb.append("DO UPDATE SET ");
+            for (String column : columns) {
+                sb.append(column).append(" = EXCLUDED.").append(column).append(SymbolConstant.COMMA);
+            }
+            return sb.deleteCharAt(sb.length() - MixedConstant.INT_1).toString();
+        }
+
+        /**
+         * 已经在事物中时autocommit已经是false,不需要修改
+         */
+        @Override
+        public boolean prepareStreamingConnection(Connection connection) throws SQLException {
+            if (!connection.getAutoCommit()) {
+                return false;
+            }
+            connection.setAutoCommit(false);
+            return true;
+        }
+    },
+    H2(DialectEnum.H2) {
+        @Override
+        public String upsert(String tableName, String pkColumn, List<String> columns) {
+            StringBuilder sb = new StringBuilder("MERGE INTO ").append(tableName).append(" (").append(pkColumn);
+            for (String column : columns) {
+                sb.append(SymbolConstant.COMMA).append(column);
+            }
+            sb.append(") KEY (").append(pkColumn).append(") VALUES (?");
+            for (int i = MixedConstant.INT_0; i < columns.size(); i++) {
+                sb.append(SymbolConstant.COMMA).append(SymbolConstant.QUESTION);
+            }
+            return sb.append(")").toString();
+        }
+
+        @Override
+        public boolean nullsFirst() {
+            return true;
+        }
+    };
+
+    private final DialectEnum dialectEnum;
+
+    JdbcDialectEnum(DialectEnum dialectEnum) {
+        this.dialectEnum = dialectEnum;
+    }
+
+    /**
+     * 根据DialectEnum得到内置方言,oracle使用兼容所有版本的ORACLE
+     *
+     * @param dialectEnum - DialectEnum
+     * @return - 方言
+     */
+    public static Dialect of(DialectEnum dialectEnum) {
+        if (dialectEnum != null) {
+            for (JdbcDialectEnum jdbcDialect : values()) {
+                if (jdbcDialect.dialectEnum.equals(dialectEnum)) {
+                    return jdbcDialect;
+                }
+            }
+        }
+        throw new IllegalArgumentException("不支持的jdbc数据库[" + dialectEnum + "]");
+    }
+
+    @Override
+    public DialectEnum getDialectEnum() {
+        return dialectEnum;
+    }
+
+    /**
+     * 默认使用LIMIT ? OFFSET ?,postgresql和h2支持
+     */
+    @Override
+    public String limit(String sql, int offset, int limit) {
+        return sql + "LIMIT " + limit + " OFFSET " + offset;
+    }
+
+    @Override
+    public String quoteIdentifier(String identifier) {
+        return "\"" + identifier + "\"";
+    }
+
+    @Override
+    public boolean supportsGeneratedKeys() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRowValueComparison() {
+        return true;
+    }
+
+    /**
+     * 默认null值最大,升序时排在最后
+     */
+    @Override
+    public boolean nullsFirst() {
+        return false;
+    }
+
+    @Override
+    public int streamFetchSize(int fetchSize) {
+        return fetchSize > MixedConstant.INT_0 ? fetchSize : MixedConstant.INT_0;
+    }
+
+    @Override
+    public boolean prepareStreamingConnection(Connection connection) throws SQLException {
+        return false;
+    }
+
+    private static StringBuilder insertInto(String tableName, String pkColumn, List<String> columns) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(tableName).append(" (").append(pkColumn);
+        for (String column : columns) {
+            sb.append(SymbolConstant.COMMA).append(column);
+        }
+        sb.append(") VALUES (?");
+        for (int i = MixedConstant.INT_0; i < columns.size(); i++) {
+            sb.append(SymbolConstant.COMMA).append(SymbolConstant.QUESTION);
+        }
+        return sb.append(") ");
+    }
+
+    private static String oracleMerge(String tableName, String pkColumn, List<String> columns) {
+        StringBuilder sb = new StringBuilder("MERGE INTO ").append(tableName).append(" t USING (SELECT ? ").append(pkColumn);
+        for (String column : columns) {
+            sb.append(", ? ").append(column);
+        }
+        sb.append(" FROM DUAL) s ON (t.").append(pkColumn).append(" = s.").append(pkColumn).append(") ");
+        if (!columns.isEmpty()) {
+            sb.append("WHEN MATCHED THEN UPDATE SET ");
+            for (String column : columns) {
+                sb.append("t.").append(column).append(" = s.").append(column).append(SymbolConstant.COMMA);
+            }
+            sb.deleteCharAt(sb.length() - MixedConstant.INT_1).append(SymbolConstant.BLANK);
+        }
+        sb.append("WHEN NOT MATCHED THEN INSERT (").append(pkColumn);
+        for (String column : columns) {
+            sb.append(SymbolConstant.COMMA).append(column);
+        }
+        sb.append(") VALUES (s.").append(pkColumn);
+        for (String column : columns) {
+            sb.append(", s.").append(column);
+        }
+        return sb.append(")").toString();
+    }
+}
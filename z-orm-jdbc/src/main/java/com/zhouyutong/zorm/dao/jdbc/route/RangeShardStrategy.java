@@ -0,0 +1,44 @@
+package com.zhouyutong.zorm.dao.jdbc.route;
+
+import com.google.common.base.Preconditions;
+import com.zhouyutong.zorm.constant.MixedConstant;
+
+import java.util.Arrays;
+
+/**
+ * 按数值分片键的范围分片
+ * 分片i保存[upperBounds[i-1], upperBounds[i])之间的数据,超过最后一个上界的数据在最后一个分片
+ */
+public class RangeShardStrategy implements ShardStrategy {
+    private final long[] upperBounds;
+
+    /**
+     * @param upperBounds - 前n-1个分片的上界(不包含),必须递增
+     */
+    public RangeShardStrategy(long... upperBounds) {
+        Preconditions.checkArgument(upperBounds != null && upperBounds.length > 0, "Param upperBounds must be not null or empty");
+        for (int i = MixedConstant.INT_1; i < upperBounds.length; i++) {
+            Preconditions.checkArgument(upperBounds[i] > upperBounds[i - MixedConstant.INT_1], "Param upperBounds must be increasing");
+        }
+        this.upperBounds = upperBounds.clone();
+    }
+
+    @Override
+    public int shard(Object shardKey, int shardCount) {
+        long key;
+        if (shardKey instanceof Number) {
+            key = ((Number) shardKey).longValue();
+        } else {
+            key = Long.parseLong(String.valueOf(shardKey));
+        }
+        int i = Arrays.binarySearch(upperBounds, key);
+        //等于上界时属于下一个分片
+        int shard = i >= MixedConstant.INT_0 ? i + MixedConstant.INT_1 : -i - MixedConstant.INT_1;
+        return Math.min(shard, shardCount - MixedConstant.INT_1);
+    }
+
+    @Override
+    public String toString() {
+        return "RangeShardStrategy" + Arrays.toString(upperBounds);
+    }
+}
@@ -0,0 +1,18 @@
+package com.zhouyutong.zorm.dao.jdbc.route;
+
+import java.util.List;
+
+/**
+ * 读库负载均衡策略
+ * 内置策略见ReadBalancerEnum,也可以实现该接口自定义
+ */
+public interface ReadBalancer {
+
+    /**
+     * 从可用的读库中选择一个
+     *
+     * @param replicas - 当前可用的读库,至少有一个
+     * @return - 选中的读库
+     */
+    ReadReplica select(List<ReadReplica> replicas);
+}
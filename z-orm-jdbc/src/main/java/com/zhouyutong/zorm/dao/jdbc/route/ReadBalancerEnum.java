@@ -0,0 +1,83 @@
+package com.zhouyutong.zorm.dao.jdbc.route;
+
+import com.zhouyutong.zorm.constant.MixedConstant;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 内置的读库负载均衡策略
+ */
+public enum ReadBalancerEnum implements ReadBalancer {
+    /**
+     * 随机
+     */
+    RANDOM {
+        @Override
+        public ReadReplica select(List<ReadReplica> replicas) {
+            return replicas.get(ThreadLocalRandom.current().nextInt(replicas.size()));
+        }
+    },
+    /**
+     * 随机取两个,选择正在执行的请求较少的一个
+     */
+    LEAST_OUTSTANDING {
+        @Override
+        public ReadReplica select(List<ReadReplica> replicas) {
+            int size = replicas.size();
+            if (size == MixedConstant.INT_1) {
+                return replicas.get(MixedConstant.INT_0);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int i = random.nextInt(size);
+            int j = (i + MixedConstant.INT_1 + random.nextInt(size - MixedConstant.INT_1)) % size;
+            ReadReplica a = replicas.get(i);
+            ReadReplica b = replicas.get(j);
+            return a.getOutstanding() <= b.getOutstanding() ? a : b;
+        }
+    },
+    /**
+     * 选择 平均耗时(EWMA) * (正在执行的请求数 + 1) 最小的读库,还没有耗时数据的读库优先
+     */
+    EWMA {
+        @Override
+        public ReadReplica select(List<ReadReplica> replicas) {
+            ReadReplica selected = null;
+            double minCost = Double.MAX_VALUE;
+            int size = replicas.size();
+            int start = ThreadLocalRandom.current().nextInt(size);
+            for (int n = MixedConstant.INT_0; n < size; n++) {
+                ReadReplica replica = replicas.get((start + n) % size);
+                double cost = replica.getLatencyEwmaMillis() * (replica.getOutstanding() + MixedConstant.INT_1);
+                if (cost < minCost) {
+                    minCost = cost;
+                    selected = replica;
+                }
+            }
+            return selected;
+        }
+    },
+    /**
+     * 按JdbcSettings.readWeights加权随机
+     */
+    WEIGHTED {
+        @Override
+        public ReadReplica select(List<ReadReplica> replicas) {
+            int totalWeight = MixedConstant.INT_0;
+            for (ReadReplica replica : replicas) {
+                totalWeight += replica.getWeight();
+            }
+            if (totalWeight <= MixedConstant.INT_0) {
+                return RANDOM.select(replicas);
+            }
+            int r = ThreadLocalRandom.current().nextInt(totalWeight);
+            for (ReadReplica replica : replicas) {
+                r -= replica.getWeight();
+                if (r < MixedConstant.INT_0) {
+                    return replica;
+                }
+            }
+            return replicas.get(replicas.size() - MixedConstant.INT_1);
+        }
+    }
+}
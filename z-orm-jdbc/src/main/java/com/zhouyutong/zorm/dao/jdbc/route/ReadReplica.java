@@ -0,0 +1,331 @@
+package com.zhouyutong.zorm.dao.jdbc.route;
+
+import com.zhouyutong.zorm.constant.MixedConstant;
+import com.zhouyutong.zorm.dao.jdbc.JdbcSettings;
+import com.zhouyutong.zorm.dao.jdbc.transaction.ProfilingJdbcTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.*;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 一个读库及其运行统计
+ * 所有经过该读库JdbcTemplate的语句都会记录耗时和异常,只有连接失败、超时等资源类异常计为读库异常,
+ * sql错误、约束冲突等应用异常不影响读库健康
+ * 异常率或平均耗时超过阈值时暂时摘除,摘除到期后通过探测专用的JdbcTemplate放行一个探测请求,
+ * 只有该探测请求的结果决定恢复或继续摘除
+ */
+@Slf4j
+public class ReadReplica {
+    //EWMA的平滑系数
+    private static final double EWMA_ALPHA = 0.1D;
+
+    private final String name;
+    private final int weight;
+    private final JdbcTemplate jdbcTemplate;
+    //摘除到期后探测请求使用,语句结束时作为探测结果
+    private final JdbcTemplate probeJdbcTemplate;
+    private final double maxErrorRate;
+    private final long maxLatencyMillis;
+    private final int minRequests;
+    private final long ejectMillis;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder ejectCount = new LongAdder();
+    //double的bit位
+    private final AtomicLong latencyEwmaMillis = new AtomicLong(Double.doubleToLongBits(0D));
+    private final AtomicLong errorEwma = new AtomicLong(Double.doubleToLongBits(0D));
+    //自上次恢复以来的请求数,不足minRequests时不摘除
+    private final AtomicLong requestsSinceRestore = new AtomicLong();
+
+    private volatile boolean ejected = false;
+    private volatile long ejectedUntil = MixedConstant.LONG_0;
+    //探测请求放行的时间,0表示没有进行中的探测
+    private final AtomicLong probeStartedMillis = new AtomicLong();
+    //最近一次测得的复制延迟,-1表示未知
+    private volatile long lagMillis = -1L;
+    //该时间之前主库的写已经同步到该读库,0表示未知
+    private volatile long replicatedUntilMillis = MixedConstant.LONG_0;
+
+    public ReadReplica(String name, int weight, DataSource dataSource, JdbcSettings jdbcSettings) {
+        this.name = name;
+        this.weight = weight;
+        this.jdbcTemplate = new TrackingJdbcTemplate(dataSource, false);
+        this.probeJdbcTemplate = new TrackingJdbcTemplate(dataSource, true);
+        this.maxErrorRate = jdbcSettings.getReplicaMaxErrorRate();
+        this.maxLatencyMillis = jdbcSettings.getReplicaMaxLatencyMillis();
+        this.minRequests = jdbcSettings.getReplicaMinRequests();
+        this.ejectMillis = jdbcSettings.getReplicaEjectMillis();
+    }
+
+    /**
+     * 当前是否可以正常分配请求
+     */
+    public boolean isAvailable() {
+        return !ejected;
+    }
+
+    /**
+     * 摘除到期后只放行一个探测请求,放行后超过ejectMillis仍没有结果(如拿到后没有执行语句)时允许重新探测
+     *
+     * @return - true表示本次请求作为探测请求路由到该读库,应使用getProbeJdbcTemplate
+     */
+    public boolean tryProbe(long now) {
+        if (!ejected || now < ejectedUntil) {
+            return false;
+        }
+        long started = probeStartedMillis.get();
+        if (started != MixedConstant.LONG_0 && now - started < ejectMillis) {
+            return false;
+        }
+        return probeStartedMillis.compareAndSet(started, now);
+    }
+
+    /**
+     * 不经过JdbcTemplate.execute执行的语句(如流式查询打开游标)通过该方法计入读库统计,探测请求同样生效
+     * jdbcTemplate不是读库的JdbcTemplate时返回的回调什么都不做
+     *
+     * @return 语句结束时调用,参数为语句抛出的异常,成功时为null
+     */
+    public static Consumer<Throwable> track(JdbcTemplate jdbcTemplate) {
+        if (!(jdbcTemplate instanceof TrackingJdbcTemplate)) {
+            return failure -> {
+            };
+        }
+        TrackingJdbcTemplate trackingJdbcTemplate = (TrackingJdbcTemplate) jdbcTemplate;
+        long start = trackingJdbcTemplate.begin();
+        return failure -> trackingJdbcTemplate.complete(start, failure);
+    }
+
+    /**
+     * 只有连接失败和超时计为读库异常
+     */
+    static boolean isReplicaFailure(Throwable failure) {
+        return failure instanceof DataAccessResourceFailureException
+                || failure instanceof QueryTimeoutException
+                || failure instanceof TransientDataAccessResourceException;
+    }
+
+    /**
+     * 记录一次复制延迟测量
+     *
+     * @param measuredAt - 开始测量的时间
+     * @param lagMillis  - 复制延迟毫秒数
+     */
+    public void updateLag(long measuredAt, long lagMillis) {
+        this.lagMillis = lagMillis;
+        this.replicatedUntilMillis = measuredAt - lagMillis;
+    }
+
+    /**
+     * 该读库是否已经同步到指定时间的写
+     */
+    public boolean isCaughtUp(long writeMillis) {
+        return replicatedUntilMillis >= writeMillis;
+    }
+
+    private void onStart() {
+        outstanding.incrementAndGet();
+    }
+
+    private void onComplete(long elapsedNanos, boolean error, boolean probe) {
+        outstanding.decrementAndGet();
+        requestCount.increment();
+        if (error) {
+            errorCount.increment();
+        }
+        double elapsedMillis = elapsedNanos / 1000000D;
+        updateEwma(latencyEwmaMillis, elapsedMillis);
+        updateEwma(errorEwma, error ? 1D : 0D);
+
+        if (ejected) {
+            //摘除前开始的语句在摘除后结束不作为探测结果
+            if (probe && probeStartedMillis.get() != MixedConstant.LONG_0) {
+                if (error) {
+                    this.eject("probe failed");
+                } else {
+                    this.restore();
+                }
+                probeStartedMillis.set(MixedConstant.LONG_0);
+            }
+            return;
+        }
+        if (requestsSinceRestore.incrementAndGet() < minRequests) {
+            return;
+        }
+        if (maxErrorRate > 0D && getErrorRate() > maxErrorRate) {
+            this.eject("error rate " + getErrorRate());
+        } else if (maxLatencyMillis > MixedConstant.LONG_0 && getLatencyEwmaMillis() > maxLatencyMillis) {
+            this.eject("latency " + getLatencyEwmaMillis() + "ms");
+        }
+    }
+
+    private void eject(String reason) {
+        ejectedUntil = System.currentTimeMillis() + ejectMillis;
+        if (!ejected) {
+            ejected = true;
+            ejectCount.increment();
+            log.warn("read replica[" + name + "] ejected for " + ejectMillis + "ms, reason:" + reason);
+        }
+    }
+
+    private void restore() {
+        errorEwma.set(Double.doubleToLongBits(0D));
+        latencyEwmaMillis.set(Double.doubleToLongBits(0D));
+        requestsSinceRestore.set(MixedConstant.LONG_0);
+        ejected = false;
+        log.warn("read replica[" + name + "] restored");
+    }
+
+    private static void updateEwma(AtomicLong ewma, double sample) {
+        long prevBits;
+        long nextBits;
+        do {
+            prevBits = ewma.get();
+            double prev = Double.longBitsToDouble(prevBits);
+            nextBits = Double.doubleToLongBits(prev + EWMA_ALPHA * (sample - prev));
+        } while (!ewma.compareAndSet(prevBits, nextBits));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public JdbcTemplate getProbeJdbcTemplate() {
+        return probeJdbcTemplate;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    public long getEjectCount() {
+        return ejectCount.sum();
+    }
+
+    public double getLatencyEwmaMillis() {
+        return Double.longBitsToDouble(latencyEwmaMillis.get());
+    }
+
+    public double getErrorRate() {
+        return Double.longBitsToDouble(errorEwma.get());
+    }
+
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadReplica{name=" + name + ",weight=" + weight + ",outstanding=" + getOutstanding()
+                + ",requests=" + getRequestCount() + ",errors=" + getErrorCount() + ",ejects=" + getEjectCount()
+                + ",latencyEwmaMillis=" + getLatencyEwmaMillis() + ",errorRate=" + getErrorRate() + ",ejected=" + ejected + ",lagMillis=" + lagMillis + "}";
+    }
+
+    /**
+     * JdbcTemplate所有的查询最终都经过这几个execute方法,在此统计耗时和异常
+     */
+    private final class TrackingJdbcTemplate extends ProfilingJdbcTemplate {
+        private final boolean probe;
+
+        private TrackingJdbcTemplate(DataSource dataSource, boolean probe) {
+            super(dataSource);
+            this.probe = probe;
+        }
+
+        @Override
+        public <T> T execute(ConnectionCallback<T> action) throws DataAccessException {
+            long start = this.begin();
+            RuntimeException failure = null;
+            try {
+                return super.execute(action);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                this.complete(start, failure);
+            }
+        }
+
+        @Override
+        public <T> T execute(StatementCallback<T> action) throws DataAccessException {
+            long start = this.begin();
+            RuntimeException failure = null;
+            try {
+                return super.execute(action);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                this.complete(start, failure);
+            }
+        }
+
+        @Override
+        public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action) throws DataAccessException {
+            long start = this.begin();
+            RuntimeException failure = null;
+            try {
+                return super.execute(psc, action);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                this.complete(start, failure);
+            }
+        }
+
+        @Override
+        public <T> T execute(CallableStatementCreator csc, CallableStatementCallback<T> action) throws DataAccessException {
+            long start = this.begin();
+            RuntimeException failure = null;
+            try {
+                return super.execute(csc, action);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                this.complete(start, failure);
+            }
+        }
+
+        private long begin() {
+            onStart();
+            return System.nanoTime();
+        }
+
+        private void complete(long start, Throwable failure) {
+            onComplete(System.nanoTime() - start, isReplicaFailure(failure), probe);
+        }
+    }
+}
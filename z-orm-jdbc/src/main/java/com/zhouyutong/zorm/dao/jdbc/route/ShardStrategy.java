@@ -0,0 +1,17 @@
+package com.zhouyutong.zorm.dao.jdbc.route;
+
+/**
+ * 分片策略,根据分片键(主键值)计算所在的分片
+ * 内置策略见ShardStrategyEnum和RangeShardStrategy,也可以实现该接口自定义
+ */
+public interface ShardStrategy {
+
+    /**
+     * 计算分片键所在的分片
+     *
+     * @param shardKey   - 分片键,不为null,dao已经转换为主键字段的类型
+     * @param shardCount - 分片数,至少为1
+     * @return - 分片下标,范围[0, shardCount)
+     */
+    int shard(Object shardKey, int shardCount);
+}
@@ -0,0 +1,31 @@
+package com.zhouyutong.zorm.dao.jdbc.route;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * 内置的分片策略
+ */
+public enum ShardStrategyEnum implements ShardStrategy {
+    /**
+     * 对分片键的字符串形式做murmur3哈希后一致性哈希,增加分片时只有约1/n的数据需要迁移
+     */
+    HASH {
+        @Override
+        public int shard(Object shardKey, int shardCount) {
+            return Hashing.consistentHash(Hashing.murmur3_128().hashString(String.valueOf(shardKey), Charsets.UTF_8), shardCount);
+        }
+    },
+    /**
+     * 数值分片键对分片数取模,非数值分片键按HASH计算
+     */
+    MOD {
+        @Override
+        public int shard(Object shardKey, int shardCount) {
+            if (shardKey instanceof Number) {
+                return (int) Math.floorMod(((Number) shardKey).longValue(), (long) shardCount);
+            }
+            return HASH.shard(shardKey, shardCount);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.zhouyutong.zorm.dao.jdbc.route;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 当前线程最后一次写主库的时间,用于写后读一致(read-your-writes)
+ * JdbcSettings.readYourWritesMillis大于0时,写后该时间窗口内的读请求路由到主库,
+ * 配置了replicaLagSql时,已经同步到最后一次写的读库可以提前参与读
+ * <p>
+ * 写时间以线程为单位记录,不区分JdbcSettings,跨线程或跨请求时可以通过write token传递
+ */
+public final class WriteSession {
+    private WriteSession() {
+    }
+
+    //异步操作在执行线程中写回调用线程的写时间,使用AtomicLong保证可见性
+    private static final ThreadLocal<AtomicLong> context = new ThreadLocal<AtomicLong>() {
+        @Override
+        protected AtomicLong initialValue() {
+            return new AtomicLong();
+        }
+    };
+
+    /**
+     * 记录一次写,在写语句或事物完成后调用
+     */
+    public static void markWrite() {
+        context.get().set(System.currentTimeMillis());
+    }
+
+    /**
+     * 当前线程最后一次写的时间,0表示没有写
+     */
+    public static long getLastWriteMillis() {
+        return context.get().get();
+    }
+
+    /**
+     * 获取write token,可以返回给调用方在后续请求中通过resume恢复
+     */
+    public static long getWriteToken() {
+        return getLastWriteMillis();
+    }
+
+    /**
+     * 用其他线程或上一个请求的write token恢复写时间,取较晚的一个
+     *
+     * @param writeToken - getWriteToken返回的值
+     */
+    public static void resume(long writeToken) {
+        context.get().accumulateAndGet(writeToken, Math::max);
+    }
+
+    /**
+     * 清除当前线程的写时间,线程池复用线程时在请求结束时调用
+     */
+    public static void clear() {
+        context.remove();
+    }
+
+    /**
+     * 在其他线程中使用指定的write token执行,执行完后恢复该线程原来的写时间
+     */
+    public static <R> R callWithToken(long writeToken, Supplier<R> supplier) {
+        AtomicLong lastWrite = context.get();
+        long origin = lastWrite.get();
+        lastWrite.set(writeToken);
+        try {
+            return supplier.get();
+        } finally {
+            lastWrite.set(origin);
+        }
+    }
+
+    /**
+     * 在调用线程中包装要交给其他线程执行的操作:执行线程沿用调用线程的写时间,
+     * 执行成功后把执行中产生的写时间写回调用线程,调用线程之后的读同样保证写后读一致
+     */
+    public static <R> Supplier<R> propagate(Supplier<R> supplier) {
+        AtomicLong callerLastWrite = context.get();
+        long writeToken = callerLastWrite.get();
+        return () -> {
+            AtomicLong lastWrite = context.get();
+            long origin = lastWrite.get();
+            lastWrite.set(writeToken);
+            try {
+                R result = supplier.get();
+                long written = lastWrite.get();
+                if (written > writeToken) {
+                    callerLastWrite.accumulateAndGet(written, Math::max);
+                }
+                return result;
+            } finally {
+                lastWrite.set(origin);
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.zhouyutong.zorm.dao.jdbc.transaction;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.CallableStatementCallback;
+import org.springframework.jdbc.core.CallableStatementCreator;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.StatementCallback;
+
+import javax.sql.DataSource;
+
+/**
+ * JdbcTemplate所有的语句最终都经过这几个execute方法,在此把语句和行数记录到当前事物的TransactionProfile
+ * 不在事物中时只多一次ThreadLocal读取
+ */
+public class ProfilingJdbcTemplate extends JdbcTemplate {
+
+    public ProfilingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    public <T> T execute(ConnectionCallback<T> action) throws DataAccessException {
+        T result = super.execute(action);
+        TransactionContext.recordStatement(result);
+        return result;
+    }
+
+    @Override
+    public <T> T execute(StatementCallback<T> action) throws DataAccessException {
+        T result = super.execute(action);
+        TransactionContext.recordStatement(result);
+        return result;
+    }
+
+    @Override
+    public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action) throws DataAccessException {
+        T result = super.execute(psc, action);
+        TransactionContext.recordStatement(result);
+        return result;
+    }
+
+    @Override
+    public <T> T execute(CallableStatementCreator csc, CallableStatementCallback<T> action) throws DataAccessException {
+        T result = super.execute(csc, action);
+        TransactionContext.recordStatement(result);
+        return result;
+    }
+}
@@ -0,0 +1,24 @@
+package com.zhouyutong.zorm.dao.jdbc.transaction;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * 单个事物的预算,超出任意一项时事物被标记为大事物,0表示不限制
+ */
+@Builder
+@Getter
+public class TransactionBudget {
+    //事物耗时,毫秒
+    @Builder.Default
+    private long maxMillis = 0L;
+    //执行的语句数
+    @Builder.Default
+    private int maxStatements = 0;
+    //影响或返回的行数
+    @Builder.Default
+    private long maxRows = 0L;
+    //调用的dao操作数
+    @Builder.Default
+    private int maxDaoCalls = 0;
+}
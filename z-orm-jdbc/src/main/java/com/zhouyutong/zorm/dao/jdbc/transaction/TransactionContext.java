@@ -1,38 +1,110 @@
 package com.zhouyutong.zorm.dao.jdbc.transaction;
 
-import java.util.HashSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 public class TransactionContext {
     private TransactionContext() {
     }
 
     /**
-     * 标识当前处于事物中的threadId
+     * 进入过事物的线程和其事物状态,线程第一次进入事物时登记,之后只修改状态不再修改map
+     * 线程对象是弱引用,线程结束后自动移除
      */
-    private static final HashSet<Long/*threadId*/> inTransThreadIdSet = new HashSet();
+    private static final ConcurrentMap<Thread, TransactionState> threadStateMap = new MapMaker().weakKeys().makeMap();
 
     /**
-     * ThreadLocal标识当前线程是否处于事物中
+     * ThreadLocal保存当前线程的事物状态
      */
-    private static final ThreadLocal<Boolean> context = new ThreadLocal<Boolean>() {
-        @Override
-        public Boolean initialValue() {
-            return Boolean.FALSE;
-        }
-    };
+    private static final ThreadLocal<TransactionState> context = ThreadLocal.withInitial(TransactionState::new);
 
     public static void enterTransaction() {
-        context.set(Boolean.TRUE);
-        inTransThreadIdSet.add(Thread.currentThread().getId());
+        enterTransaction(false);
+    }
+
+    public static void enterTransaction(boolean readOnly) {
+        enterTransaction(readOnly, null);
+    }
+
+    /**
+     * @param readOnly - 只读事物
+     * @param profile  - 记录本次事物的执行情况,为null时不记录
+     */
+    static void enterTransaction(boolean readOnly, TransactionProfile profile) {
+        TransactionState state = context.get();
+        if (!state.registered) {
+            threadStateMap.put(Thread.currentThread(), state);
+            state.registered = true;
+        }
+        state.readOnly = readOnly;
+        state.profile = profile;
+        state.inTransaction = true;
     }
 
     public static void leaveTransaction() {
-        context.set(Boolean.FALSE);
-        inTransThreadIdSet.remove(Thread.currentThread().getId());
+        TransactionState state = context.get();
+        state.inTransaction = false;
+        state.readOnly = false;
+        state.afterCommitActions = null;
+        state.profile = null;
+    }
+
+    /**
+     * 在当前事物提交后执行,回滚时丢弃,不在事物中时立即执行
+     *
+     * @param action - 要执行的动作
+     */
+    public static void afterCommit(Runnable action) {
+        TransactionState state = context.get();
+        if (!state.inTransaction) {
+            action.run();
+            return;
+        }
+        if (state.afterCommitActions == null) {
+            state.afterCommitActions = Lists.newArrayList();
+        }
+        state.afterCommitActions.add(action);
+    }
+
+    /**
+     * 取出并清空当前事物提交后要执行的动作
+     */
+    static List<Runnable> takeAfterCommitActions() {
+        TransactionState state = context.get();
+        List<Runnable> actions = state.afterCommitActions;
+        state.afterCommitActions = null;
+        return actions == null ? Collections.<Runnable>emptyList() : actions;
+    }
+
+    /**
+     * 当前事物的执行情况,不在事物中或没有开启profile时为null
+     */
+    public static TransactionProfile getProfile() {
+        return context.get().profile;
+    }
+
+    /**
+     * 记录当前事物中执行的一条语句,不在事物中或没有开启profile时忽略
+     *
+     * @param result - 语句的执行结果,用于计算行数
+     */
+    public static void recordStatement(Object result) {
+        TransactionProfile profile = context.get().profile;
+        if (profile != null) {
+            profile.recordStatement(result);
+        }
+    }
+
+    public static boolean isReadOnly() {
+        return context.get().readOnly;
     }
 
     public static boolean isInTransaction() {
-        return context.get();
+        return context.get().inTransaction;
     }
 
     public static boolean isInTransaction(Thread thread) {
@@ -40,6 +112,20 @@ public class TransactionContext {
             return isInTransaction();
         }
 
-        return inTransThreadIdSet.contains(thread.getId());
+        TransactionState state = threadStateMap.get(thread);
+        return state != null && state.inTransaction;
+    }
+
+    /**
+     * 一个线程的事物状态,只有inTransaction会被其他线程读取
+     */
+    private static final class TransactionState {
+        private volatile boolean inTransaction;
+        //只读事物的查询可以路由到读库
+        private boolean readOnly;
+        //事物提交后要执行的动作,如失效缓存
+        private List<Runnable> afterCommitActions;
+        private TransactionProfile profile;
+        private boolean registered;
     }
 }
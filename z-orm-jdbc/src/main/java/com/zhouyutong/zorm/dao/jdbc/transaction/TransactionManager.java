@@ -1,7 +1,9 @@
 package com.zhouyutong.zorm.dao.jdbc.transaction;
 
+import com.zhouyutong.zorm.dao.jdbc.route.WriteSession;
 import com.zhouyutong.zorm.utils.ExceptionTranslator;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
@@ -15,9 +17,20 @@ import org.springframework.transaction.support.DefaultTransactionDefinition;
  * @author zhouyutong
  * @since 2015/11/24
  */
+@Slf4j
 public class TransactionManager {
     @Setter
     private PlatformTransactionManager txManager;
+    /**
+     * 默认的事物预算,超出时打印warn日志,为null时不检查
+     */
+    @Setter
+    private TransactionBudget budget;
+    /**
+     * 每个事物结束后回调,为null时不回调
+     */
+    @Setter
+    private TransactionProfileListener profileListener;
 
     /**
      * 开启一个事物，使用数据库默认的隔离级别
@@ -39,14 +52,26 @@ public class TransactionManager {
         DefaultTransactionDefinition def = new DefaultTransactionDefinition();
         def.setIsolationLevel(transactionSettings.getIsolationLevel().value());
         def.setTimeout(transactionSettings.getTimeout());
+        def.setReadOnly(transactionSettings.isReadOnly());
         TransactionStatus ts = txManager.getTransaction(def);
         boolean isNested = TransactionContext.isInTransaction();//是否嵌套事物
+        TransactionBudget txBudget = transactionSettings.getBudget() != null ? transactionSettings.getBudget() : budget;
+        //没有预算和监听时不记录
+        TransactionProfile profile = isNested || (txBudget == null && profileListener == null) ? null : new TransactionProfile();
+        boolean committed = false;
         try {
             if (!isNested) {
-                TransactionContext.enterTransaction();//嵌套事物由外层标记enter
+                TransactionContext.enterTransaction(transactionSettings.isReadOnly(), profile);//嵌套事物由外层标记enter
             }
             object = transactionCallback.doTransaction();
             txManager.commit(ts);
+            committed = true;
+            if (!transactionSettings.isReadOnly()) {
+                WriteSession.markWrite();//事物提交后才对读库可见
+            }
+            if (!isNested) {//嵌套事物由外层提交后执行
+                runAfterCommitActions();
+            }
         } catch (Throwable ex) {
             txManager.rollback(ts);
             throw ExceptionTranslator.translate(ex);
@@ -54,7 +79,34 @@ public class TransactionManager {
             if (!isNested) {//嵌套事物由外层标记leave
                 TransactionContext.leaveTransaction();
             }
+            if (profile != null) {
+                this.completeProfile(profile, committed, txBudget);
+            }
         }
         return object;
     }
+
+    private void completeProfile(TransactionProfile profile, boolean committed, TransactionBudget txBudget) {
+        profile.finish(committed, txBudget);
+        if (profile.isOverBudget()) {
+            log.warn("transaction over budget " + profile.getViolations() + ":" + profile);
+        }
+        if (profileListener != null) {
+            try {
+                profileListener.onComplete(profile);
+            } catch (RuntimeException e) {
+                log.warn("transaction profile listener failed", e);
+            }
+        }
+    }
+
+    private static void runAfterCommitActions() {
+        for (Runnable action : TransactionContext.takeAfterCommitActions()) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("run after commit action failed", e);
+            }
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package com.zhouyutong.zorm.dao.jdbc.transaction;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.zhouyutong.zorm.constant.MixedConstant;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 一次事物(最外层)的执行情况:耗时、语句数、影响或返回的行数、调用的dao操作
+ * 只在开启事物的线程中读写,事物结束后交给TransactionProfileListener
+ */
+public final class TransactionProfile {
+    private final long startNanos = System.nanoTime();
+    private long durationNanos;
+    private int statements;
+    private long rows;
+    private int daoCallCount;
+    //dao类名.操作名 -> 调用次数,按第一次调用的顺序
+    private final Map<String, Integer> daoCalls = Maps.newLinkedHashMap();
+    //当前线程正在执行的dao操作的嵌套层数,只记录最外层的dao调用
+    private int depth;
+    private boolean committed;
+    private List<String> violations = Collections.emptyList();
+
+    TransactionProfile() {
+    }
+
+    /**
+     * 执行并记录一次dao调用,dao内部委托的其他操作不重复记录
+     */
+    public <R> R recordDaoCall(String daoName, String operation, Supplier<R> action) {
+        if (depth == 0) {
+            daoCalls.merge(daoName + "." + operation, MixedConstant.INT_1, Integer::sum);
+            daoCallCount++;
+        }
+        depth++;
+        try {
+            return action.get();
+        } finally {
+            depth--;
+        }
+    }
+
+    void recordStatement(Object result) {
+        statements++;
+        rows += rows(result);
+    }
+
+    void finish(boolean committed, TransactionBudget budget) {
+        this.durationNanos = System.nanoTime() - startNanos;
+        this.committed = committed;
+        if (budget == null) {
+            return;
+        }
+        List<String> exceeded = Lists.newArrayList();
+        if (budget.getMaxMillis() > 0 && getDurationMillis() > budget.getMaxMillis()) {
+            exceeded.add("duration " + getDurationMillis() + "ms > " + budget.getMaxMillis() + "ms");
+        }
+        if (budget.getMaxStatements() > 0 && statements > budget.getMaxStatements()) {
+            exceeded.add("statements " + statements + " > " + budget.getMaxStatements());
+        }
+        if (budget.getMaxRows() > 0 && rows > budget.getMaxRows()) {
+            exceeded.add("rows " + rows + " > " + budget.getMaxRows());
+        }
+        if (budget.getMaxDaoCalls() > 0 && daoCallCount > budget.getMaxDaoCalls()) {
+            exceeded.add("daoCalls " + daoCallCount + " > " + budget.getMaxDaoCalls());
+        }
+        this.violations = exceeded;
+    }
+
+    public long getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public int getDaoCallCount() {
+        return daoCallCount;
+    }
+
+    public Map<String, Integer> getDaoCalls() {
+        return Collections.unmodifiableMap(daoCalls);
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * 超出TransactionBudget的项,没有超出时为空
+     */
+    public List<String> getViolations() {
+        return Collections.unmodifiableList(violations);
+    }
+
+    public boolean isOverBudget() {
+        return !violations.isEmpty();
+    }
+
+    //int为影响的行数,int[]为批量语句每条影响的行数,集合为返回的行数
+    private static long rows(Object result) {
+        if (result == null) {
+            return MixedConstant.LONG_0;
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        if (result instanceof int[]) {
+            long n = MixedConstant.LONG_0;
+            for (int count : (int[]) result) {
+                //驱动无法返回具体影响行数时按1条计算
+                n += count < 0 ? MixedConstant.INT_1 : count;
+            }
+            return n;
+        }
+        if (result instanceof Collection) {
+            return ((Collection) result).size();
+        }
+        return MixedConstant.LONG_1;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionProfile{committed=" + committed + ",durationMillis=" + getDurationMillis() + ",statements=" + statements
+                + ",rows=" + rows + ",daoCalls=" + daoCalls + ",violations=" + violations + "}";
+    }
+}
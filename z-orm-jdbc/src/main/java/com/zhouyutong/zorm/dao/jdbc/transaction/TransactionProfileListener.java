@@ -0,0 +1,12 @@
+package com.zhouyutong.zorm.dao.jdbc.transaction;
+
+/**
+ * 事物结束(提交或回滚)后回调,在开启事物的线程中执行,可以把事物的执行情况桥接到自己的监控系统
+ */
+public interface TransactionProfileListener {
+
+    /**
+     * @param profile - 事物的执行情况,profile.isOverBudget()表示超出了TransactionBudget
+     */
+    void onComplete(TransactionProfile profile);
+}
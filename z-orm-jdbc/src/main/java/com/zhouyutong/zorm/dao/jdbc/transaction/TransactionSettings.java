@@ -10,4 +10,13 @@ public class TransactionSettings {
     private IsolationLevelEnum isolationLevel = IsolationLevelEnum.DEFAULT;
     @Builder.Default
     private int timeout = -1;
+    /**
+     * 只读事物,其中的查询可以路由到读库,嵌套事物以最外层为准
+     */
+    @Builder.Default
+    private boolean readOnly = false;
+    /**
+     * 本次事物的预算,为null时使用TransactionManager的budget,嵌套事物以最外层为准
+     */
+    private TransactionBudget budget;
 }
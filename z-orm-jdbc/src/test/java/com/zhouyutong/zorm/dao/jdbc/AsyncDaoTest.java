@@ -0,0 +1,97 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.annotation.Dao;
+import com.zhouyutong.zorm.dao.jdbc.route.WriteSession;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncDaoTest {
+    private DataSource writeDataSource;
+    private AnnotationConfigApplicationContext context;
+    private ThreadRecordingDao dao;
+
+    @Before
+    public void setUp() {
+        WriteSession.clear();
+        writeDataSource = JdbcTestSupport.dataSource();
+        JdbcSettings jdbcSettings = JdbcTestSupport.settings(writeDataSource);
+        jdbcSettings.setReadDataSource(Lists.newArrayList(JdbcTestSupport.dataSource()));
+        jdbcSettings.setReadYourWritesMillis(60000L);
+        jdbcSettings.setAsyncThreads(2);
+        context = JdbcTestSupport.context(jdbcSettings, ThreadRecordingDao.class);
+        dao = context.getBean(ThreadRecordingDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        WriteSession.clear();
+        context.close();
+    }
+
+    @Test
+    public void runsOnAsyncExecutor() {
+        assertEquals(Long.valueOf(0L), dao.countAllAsync().join());
+
+        assertTrue(dao.lastThreadName, dao.lastThreadName.startsWith("z-orm-jdbc-async-"));
+    }
+
+    @Test
+    public void asyncWriteIsVisibleToCallerReads() {
+        //读库是独立的空库,调用线程能读到说明异步写的写时间写回了调用线程
+        assertEquals(Integer.valueOf(1), dao.insertAsync(new TestUser(1L, "tom", 18)).join());
+
+        assertTrue(WriteSession.getLastWriteMillis() > 0L);
+        assertNotNull(dao.findOneById(1L));
+        assertNotNull(dao.findOneByIdAsync(1L).join());
+    }
+
+    @Test
+    public void failureCompletesFutureExceptionally() throws Exception {
+        CompletableFuture<Integer> future = dao.deleteBySqlAsync("DELETE FROM no_such_table", new LinkedHashMap<>());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertNotNull(e.getCause());
+        }
+    }
+
+    @Test
+    public void runsOnCallerThreadInTransaction() {
+        TransactionManager transactionManager = new TransactionManager();
+        transactionManager.setTxManager(new DataSourceTransactionManager(writeDataSource));
+
+        transactionManager.doInTransaction(() -> dao.countAllAsync().join());
+
+        assertEquals(Thread.currentThread().getName(), dao.lastThreadName);
+    }
+
+    /**
+     * 记录countAll的执行线程
+     */
+    @Dao(settingBeanName = JdbcTestSupport.SETTINGS_BEAN_NAME)
+    public static class ThreadRecordingDao extends JdbcBaseDao<TestUser> {
+        private volatile String lastThreadName;
+
+        @Override
+        public long countAll() {
+            lastThreadName = Thread.currentThread().getName();
+            return super.countAll();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class BatchInsertTest {
+    private AnnotationConfigApplicationContext context;
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    private TestUserDao dao(boolean multiRowInsert) {
+        JdbcSettings jdbcSettings = JdbcTestSupport.settings(JdbcTestSupport.dataSource());
+        jdbcSettings.setBatchInsertSize(2);
+        jdbcSettings.setMultiRowInsert(multiRowInsert);
+        context = JdbcTestSupport.context(jdbcSettings, TestUserDao.class);
+        return context.getBean(TestUserDao.class);
+    }
+
+    @Test
+    public void insertInBatchesAndWriteBackGeneratedKeys() {
+        TestUserDao dao = this.dao(false);
+        List<TestUser> userList = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            userList.add(new TestUser(null, "user" + i, i));
+        }
+
+        assertEquals(5, dao.insert(userList));
+
+        assertEquals(5L, dao.countAll());
+        for (TestUser user : userList) {
+            assertNotNull(user.getId());
+            assertEquals(user.getName(), dao.findOneById(user.getId()).getName());
+        }
+    }
+
+    @Test
+    public void insertWithAndWithoutPkInOneCall() {
+        TestUserDao dao = this.dao(true);
+        //H2插入显式主键后自增值会跳到该主键之后,没有主键的entity放在前面
+        List<TestUser> userList = Lists.newArrayList(new TestUser(null, "a", 1), new TestUser(100L, "b", 2), new TestUser(101L, "c", 3));
+
+        assertEquals(3, dao.insert(userList));
+
+        assertEquals(3L, dao.countAll());
+        assertNotNull(userList.get(0).getId());
+        assertEquals("a", dao.findOneById(userList.get(0).getId()).getName());
+        assertEquals("b", dao.findOneById(100L).getName());
+        assertEquals("c", dao.findOneById(101L).getName());
+    }
+}
@@ -0,0 +1,24 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.zhouyutong.zorm.annotation.PK;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Column;
+import com.zhouyutong.zorm.dao.jdbc.annotation.EntityCache;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Table;
+import com.zhouyutong.zorm.entity.IdEntity;
+import lombok.Data;
+
+/**
+ * 开启了findOneById缓存的测试entity,与TestUser使用同一张表
+ */
+@Data
+@Table("t_user")
+@EntityCache(maximumSize = 100L)
+public class CachedUser implements IdEntity {
+    @PK
+    @Column
+    private Long id;
+    @Column
+    private String name;
+    @Column
+    private Integer age;
+}
@@ -0,0 +1,182 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.annotation.Dao;
+import com.zhouyutong.zorm.dao.interceptor.DaoInterceptor;
+import com.zhouyutong.zorm.dao.interceptor.DaoInterceptorRegistry;
+import com.zhouyutong.zorm.dao.interceptor.DaoInvocation;
+import com.zhouyutong.zorm.enums.DaoOperationEnum;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.CriteriaOperators;
+import com.zhouyutong.zorm.query.Query;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DaoInterceptorTest {
+    private final List<String> trace = new CopyOnWriteArrayList<>();
+    private final List<DaoInterceptor> registered = Lists.newArrayList();
+    private AnnotationConfigApplicationContext context;
+    private InterceptedUserDao dao;
+
+    @Before
+    public void setUp() {
+        context = JdbcTestSupport.context(JdbcTestSupport.settings(JdbcTestSupport.dataSource()), InterceptedUserDao.class);
+        dao = context.getBean(InterceptedUserDao.class);
+        dao.insert(Lists.newArrayList(new TestUser(1L, "tom", 18), new TestUser(2L, "jerry", 20)));
+    }
+
+    @After
+    public void tearDown() {
+        for (DaoInterceptor interceptor : registered) {
+            DaoInterceptorRegistry.INSTANCE.removeInterceptor(interceptor);
+        }
+        context.close();
+    }
+
+    /**
+     * 只拦截InterceptedUserDao,记录经过的操作和参数后继续执行
+     */
+    private DaoInterceptor register(String name, DaoOperationEnum... operations) {
+        List<DaoOperationEnum> operationList = Lists.newArrayList(operations);
+        DaoInterceptor interceptor = new DaoInterceptor() {
+            @Override
+            public boolean supports(Class<?> daoClass, DaoOperationEnum operation) {
+                return daoClass == InterceptedUserDao.class && (operationList.isEmpty() || operationList.contains(operation));
+            }
+
+            @Override
+            public Object intercept(DaoInvocation invocation) {
+                trace.add(name + ">" + invocation.getOperation().value());
+                Object result = invocation.proceed();
+                trace.add(name + "<" + invocation.getOperation().value());
+                return result;
+            }
+        };
+        DaoInterceptorRegistry.INSTANCE.addInterceptor(interceptor);
+        registered.add(interceptor);
+        return interceptor;
+    }
+
+    @Test
+    public void registeredFirstIsOutermost() {
+        this.register("outer");
+        this.register("inner");
+
+        dao.countAll();
+
+        assertEquals(Lists.newArrayList("outer>countAll", "inner>countAll", "inner<countAll", "outer<countAll"), trace);
+    }
+
+    /**
+     * findOneByQuery内部调用findListByQuery,拦截器只在最外层执行一次
+     */
+    @Test
+    public void nestedOperationsInterceptedOnce() {
+        this.register("trace");
+
+        TestUser user = dao.findOneByQuery(Query.query(Criteria.where("name", CriteriaOperators.EQ, "jerry")));
+
+        assertEquals(Long.valueOf(2L), user.getId());
+        assertEquals(Lists.newArrayList("trace>findOneByQuery", "trace<findOneByQuery"), trace);
+    }
+
+    /**
+     * findListByIds按批并行查询时,查询线程中的分批查询同样不再经过拦截器
+     */
+    @Test
+    public void parallelBucketsNotInterceptedAgain() {
+        JdbcSettings jdbcSettings = JdbcTestSupport.settings(JdbcTestSupport.dataSource());
+        jdbcSettings.setParallelQueryThreads(2);
+        jdbcSettings.setIdLookupBatchSize(4);
+        try (AnnotationConfigApplicationContext parallelContext = JdbcTestSupport.context(jdbcSettings, InterceptedUserDao.class)) {
+            InterceptedUserDao parallelDao = parallelContext.getBean(InterceptedUserDao.class);
+            List<TestUser> users = Lists.newArrayList();
+            List<Serializable> ids = Lists.newArrayList();
+            for (long id = 1L; id <= 12L; id++) {
+                users.add(new TestUser(id, "user" + id, (int) id));
+                ids.add(id);
+            }
+            parallelDao.insert(users);
+            this.register("trace");
+
+            assertEquals(12, parallelDao.findListByIds(ids).size());
+            assertEquals(Lists.newArrayList("trace>findListByIds", "trace<findListByIds"), trace);
+        }
+    }
+
+    @Test
+    public void supportsLimitsOperations() {
+        this.register("count", DaoOperationEnum.COUNT_ALL);
+
+        dao.findOneById(1L);
+        dao.countAll();
+
+        assertEquals(Lists.newArrayList("count>countAll", "count<countAll"), trace);
+    }
+
+    /**
+     * 拦截器可以读取参数并不调用proceed直接返回,例如缓存
+     */
+    @Test
+    public void interceptorReceivesArgsAndCanShortCircuit() {
+        TestUser cached = new TestUser(1L, "cached", 0);
+        DaoInterceptor interceptor = new DaoInterceptor() {
+            @Override
+            public boolean supports(Class<?> daoClass, DaoOperationEnum operation) {
+                return daoClass == InterceptedUserDao.class && operation == DaoOperationEnum.FIND_ONE_BY_ID;
+            }
+
+            @Override
+            public Object intercept(DaoInvocation invocation) {
+                assertSame(dao, invocation.getTarget());
+                return Long.valueOf(1L).equals(invocation.getArgs()[0]) ? cached : invocation.proceed();
+            }
+        };
+        DaoInterceptorRegistry.INSTANCE.addInterceptor(interceptor);
+        registered.add(interceptor);
+
+        assertSame(cached, dao.findOneById(1L));
+        assertEquals("jerry", dao.findOneById(2L).getName());
+    }
+
+    /**
+     * dao创建后注册或移除的拦截器在下次调用时生效
+     */
+    @Test
+    public void registryChangesApplyToExistingDao() {
+        dao.countAll();
+        DaoInterceptor interceptor = this.register("late");
+
+        dao.countAll();
+        DaoInterceptorRegistry.INSTANCE.removeInterceptor(interceptor);
+        dao.countAll();
+
+        assertEquals(Lists.newArrayList("late>countAll", "late<countAll"), trace);
+    }
+
+    @Test
+    public void exceptionPropagatesThroughInterceptors() {
+        this.register("trace");
+
+        try {
+            dao.countBySql("SELECT COUNT(*) FROM t_missing", null);
+        } catch (RuntimeException e) {
+            trace.add("caught");
+        }
+
+        assertEquals(Lists.newArrayList("trace>countBySql", "caught"), trace);
+    }
+
+    @Dao(settingBeanName = JdbcTestSupport.SETTINGS_BEAN_NAME)
+    public static class InterceptedUserDao extends JdbcBaseDao<TestUser> {
+    }
+}
@@ -0,0 +1,78 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zapplication.exception.RemoteCallException;
+import com.zhouyutong.zorm.annotation.Dao;
+import com.zhouyutong.zorm.metrics.MetricsRegistry;
+import com.zhouyutong.zorm.metrics.OperationSnapshot;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.CriteriaOperators;
+import com.zhouyutong.zorm.query.Query;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class DaoMetricsTest {
+    private AnnotationConfigApplicationContext context;
+    private MeteredUserDao dao;
+
+    @Before
+    public void setUp() {
+        context = JdbcTestSupport.context(JdbcTestSupport.settings(JdbcTestSupport.dataSource()), MeteredUserDao.class);
+        dao = context.getBean(MeteredUserDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    private Map<String, OperationSnapshot> snapshots() {
+        Map<String, OperationSnapshot> snapshots = new HashMap<>();
+        for (OperationSnapshot snapshot : MetricsRegistry.INSTANCE.snapshot()) {
+            if (snapshot.getDaoName().equals(MeteredUserDao.class.getName())) {
+                snapshots.put(snapshot.getOperation(), snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * 每个公开操作记录一次,内部委托的操作(findOneByQuery -> findListByQuery)不重复记录
+     */
+    @Test
+    public void recordsEachOperationOnce() {
+        dao.insert(Lists.newArrayList(new TestUser(1L, "tom", 18), new TestUser(2L, "jerry", 20), new TestUser(3L, "spike", 30)));
+        dao.findListByQuery(Query.query(Criteria.where("age", CriteriaOperators.GTE, 20)));
+        dao.findOneByQuery(Query.query(Criteria.where("name", CriteriaOperators.EQ, "tom")));
+        try {
+            dao.countBySql("SELECT COUNT(*) FROM t_missing", null);
+            fail();
+        } catch (RemoteCallException e) {
+            //表不存在
+        }
+
+        Map<String, OperationSnapshot> snapshots = this.snapshots();
+        assertEquals(1, snapshots.get("insert").getCalls());
+        assertEquals(3, snapshots.get("insert").getRows());
+        assertEquals(1, snapshots.get("findListByQuery").getCalls());
+        assertEquals(2, snapshots.get("findListByQuery").getRows());
+        assertEquals(1, snapshots.get("findListByQuery").getLatency().getCount());
+        assertEquals(1, snapshots.get("findOneByQuery").getCalls());
+        assertEquals(1, snapshots.get("findOneByQuery").getRows());
+        assertEquals(1, snapshots.get("countBySql").getErrors());
+        assertFalse(snapshots.containsKey("countAll"));
+    }
+
+    @Dao(settingBeanName = JdbcTestSupport.SETTINGS_BEAN_NAME)
+    public static class MeteredUserDao extends JdbcBaseDao<TestUser> {
+    }
+}
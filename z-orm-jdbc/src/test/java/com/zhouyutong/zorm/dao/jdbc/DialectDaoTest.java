@@ -0,0 +1,102 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.dao.jdbc.dialect.JdbcDialectEnum;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.CriteriaOperators;
+import com.zhouyutong.zorm.query.OrderBy;
+import com.zhouyutong.zorm.query.Query;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 通过dao验证方言生成的分页、upsert和流式读取设置
+ */
+public class DialectDaoTest {
+    private AnnotationConfigApplicationContext context;
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    private TestUserDao dao(JdbcSettings jdbcSettings) {
+        context = JdbcTestSupport.context(jdbcSettings, TestUserDao.class);
+        TestUserDao dao = context.getBean(TestUserDao.class);
+        List<TestUser> userList = Lists.newArrayList();
+        for (int i = 1; i <= 5; i++) {
+            userList.add(new TestUser((long) i, "user" + i, i));
+        }
+        dao.insert(userList);
+        return dao;
+    }
+
+    @Test
+    public void h2PaginatesWithLimitOffset() {
+        TestUserDao dao = this.dao(JdbcTestSupport.settings(JdbcTestSupport.dataSource()));
+
+        List<TestUser> page = dao.findListByQuery(Query.query().orderBy(OrderBy.asc("id")).offset(1).limit(2));
+
+        assertEquals(Lists.newArrayList(2L, 3L), page.stream().map(TestUser::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void h2UpsertInsertsThenUpdates() {
+        TestUserDao dao = this.dao(JdbcTestSupport.settings(JdbcTestSupport.dataSource()));
+
+        assertEquals(1, dao.upsert(new TestUser(6L, "new", 60)));
+        assertEquals(1, dao.upsert(new TestUser(1L, "updated", 10)));
+
+        assertEquals("new", dao.findOneById(6L).getName());
+        TestUser updated = dao.findOneById(1L);
+        assertEquals("updated", updated.getName());
+        assertEquals(Integer.valueOf(10), updated.getAge());
+        assertEquals(6L, dao.countAll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void upsertRequiresPk() {
+        TestUserDao dao = this.dao(JdbcTestSupport.settings(JdbcTestSupport.dataSource()));
+
+        dao.upsert(new TestUser(null, "no pk", 1));
+    }
+
+    /**
+     * postgresql方言在流式读取期间关闭autocommit,关闭stream后恢复,归还的连接与取出时状态一致
+     * h2支持LIMIT ... OFFSET和流式读取使用的sql,这里只验证连接状态
+     */
+    @Test
+    public void postgresqlStreamTogglesAutoCommit() throws Exception {
+        JdbcConnectionPool pool = JdbcTestSupport.dataSource();
+        try (Connection connection = pool.getConnection()) {
+            JdbcSettings jdbcSettings = JdbcTestSupport.settings(new SingleConnectionDataSource(connection, true));
+            jdbcSettings.setDialect(JdbcDialectEnum.POSTGRESQL);
+            jdbcSettings.setFetchSize(2);
+            TestUserDao dao = this.dao(jdbcSettings);
+            assertTrue(connection.getAutoCommit());
+
+            try (Stream<TestUser> stream = dao.stream(Query.query(Criteria.where("age", CriteriaOperators.GT, 0)).orderBy(OrderBy.asc("id")))) {
+                Iterator<TestUser> iterator = stream.iterator();
+                assertEquals(Long.valueOf(1L), iterator.next().getId());
+                assertFalse(connection.getAutoCommit());
+            }
+
+            assertTrue(connection.getAutoCommit());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class EntityMapperTest {
+    private AnnotationConfigApplicationContext context;
+    private TestUserDao dao;
+
+    @Before
+    public void setUp() {
+        context = JdbcTestSupport.context(JdbcTestSupport.settings(JdbcTestSupport.dataSource()), TestUserDao.class);
+        dao = context.getBean(TestUserDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void precompileSqlFragments() {
+        EntityMapper<TestUser> entityMapper = new EntityMapper<>(TestUser.class);
+
+        assertEquals("SELECT id,name,age,create_time ", entityMapper.getSelectAllSql());
+        assertEquals("FROM t_user ", entityMapper.getFromSql());
+        assertEquals("UPDATE t_user ", entityMapper.getUpdateSql());
+        assertEquals("DELETE FROM t_user WHERE id = ?", entityMapper.getDeleteByPkSql());
+        assertEquals(" INSERT INTO t_user (id,name,age,create_time) VALUES (?,?,?,?) ", entityMapper.getInsertWithPkSql());
+        assertEquals(" INSERT INTO t_user (name,age,create_time) VALUES (?,?,?) ", entityMapper.getInsertWithoutPkSql());
+        assertEquals("name", entityMapper.getInsertPropertyList().get(0));
+    }
+
+    @Test
+    public void precompiledSqlRoundTrip() {
+        TestUser user = new TestUser(null, "tom", 18);
+        assertEquals(1, dao.insert(user));
+        assertNotNull(user.getId());
+
+        TestUser found = dao.findOneById(user.getId());
+        assertEquals("tom", found.getName());
+        assertEquals(Integer.valueOf(18), found.getAge());
+
+        assertEquals(1, dao.deleteById(user.getId()));
+        assertNull(dao.findOneById(user.getId()));
+    }
+}
@@ -0,0 +1,52 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import org.h2.tools.SimpleResultSet;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EntityRowMapperTest {
+    private final EntityMapper<TestUser> entityMapper = new EntityMapper<>(TestUser.class);
+
+    @Test
+    public void mapColumnsByLabelIgnoringCaseOrderAndUnknownColumns() throws Exception {
+        Timestamp createTime = new Timestamp(1496880000000L);
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("AGE", Types.INTEGER, 10, 0);
+        rs.addColumn("UNKNOWN", Types.VARCHAR, 10, 0);
+        rs.addColumn("Create_Time", Types.TIMESTAMP, 0, 0);
+        rs.addColumn("ID", Types.BIGINT, 19, 0);
+        rs.addColumn("name", Types.VARCHAR, 64, 0);
+        rs.addRow(18, "ignored", createTime, 1L, "tom");
+        rs.addRow(null, "ignored", null, 2L, null);
+
+        List<TestUser> userList = entityMapper.getRowMapper().extractData(rs);
+
+        assertEquals(2, userList.size());
+        TestUser tom = userList.get(0);
+        assertEquals(Long.valueOf(1L), tom.getId());
+        assertEquals("tom", tom.getName());
+        assertEquals(Integer.valueOf(18), tom.getAge());
+        assertEquals(createTime.getTime(), tom.getCreateTime().getTime());
+        //null列不能被读成基本类型的默认值
+        TestUser empty = userList.get(1);
+        assertEquals(Long.valueOf(2L), empty.getId());
+        assertNull(empty.getName());
+        assertNull(empty.getAge());
+        assertNull(empty.getCreateTime());
+    }
+
+    @Test
+    public void emptyResultSet() throws Exception {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("id", Types.BIGINT, 19, 0);
+
+        assertTrue(entityMapper.getRowMapper().extractData(rs).isEmpty());
+    }
+}
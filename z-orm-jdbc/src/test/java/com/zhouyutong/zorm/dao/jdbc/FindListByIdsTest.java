@@ -0,0 +1,100 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FindListByIdsTest {
+    private AnnotationConfigApplicationContext context;
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void bucketsAreDistinctAndPaddedToCanonicalSize() {
+        List<Serializable> ids = Lists.newArrayList(1L, 2L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L);
+
+        List<List<Serializable>> buckets = JdbcHelper.ID_BUCKETS(ids, 8);
+
+        assertEquals(2, buckets.size());
+        assertEquals(Lists.newArrayList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), buckets.get(0));
+        //3个id补齐到4个,重复最后一个
+        assertEquals(Lists.newArrayList(9L, 10L, 11L, 11L), buckets.get(1));
+    }
+
+    @Test
+    public void parallelBucketsKeepCallerOrder() {
+        JdbcSettings jdbcSettings = JdbcTestSupport.settings(JdbcTestSupport.dataSource());
+        jdbcSettings.setIdLookupBatchSize(4);
+        jdbcSettings.setParallelQueryThreads(2);
+        context = JdbcTestSupport.context(jdbcSettings, TestUserDao.class);
+        TestUserDao dao = context.getBean(TestUserDao.class);
+        List<TestUser> userList = Lists.newArrayList();
+        for (int i = 1; i <= 20; i++) {
+            userList.add(new TestUser((long) i, "user" + i, i));
+        }
+        dao.insert(userList);
+
+        List<TestUser> found = dao.findListByIds(Lists.newArrayList(17L, 3L, 99L, 3L, 12L, 1L, 20L, 8L, 5L, 14L, 2L));
+
+        List<Long> foundIds = Lists.newArrayList();
+        for (TestUser user : found) {
+            foundIds.add(user.getId());
+        }
+        assertEquals(Lists.newArrayList(17L, 3L, 12L, 1L, 20L, 8L, 5L, 14L, 2L), foundIds);
+        assertNull(dao.findListByIds(Lists.newArrayList(98L, 99L)));
+    }
+
+    @Test
+    public void executorsShutDownWhenLastDaoReleasesRouter() {
+        JdbcSettings jdbcSettings = JdbcTestSupport.settings(JdbcTestSupport.dataSource());
+        jdbcSettings.setParallelQueryThreads(2);
+        jdbcSettings.setAsyncThreads(2);
+        JdbcDatabaseRouterFactory factory = JdbcDatabaseRouterFactory.INSTANCE;
+        factory.setDatabaseRouter(jdbcSettings);
+        factory.setDatabaseRouter(jdbcSettings);
+        JdbcDatabaseRouter router = (JdbcDatabaseRouter) factory.getDatabaseRouter(jdbcSettings);
+        ExecutorService queryExecutor = router.getQueryExecutor();
+        ExecutorService asyncExecutor = router.getAsyncExecutor();
+
+        factory.releaseDatabaseRouter(jdbcSettings);
+        assertSame(router, factory.getDatabaseRouter(jdbcSettings));
+        assertFalse(queryExecutor.isShutdown());
+
+        factory.releaseDatabaseRouter(jdbcSettings);
+        assertNull(factory.getDatabaseRouter(jdbcSettings));
+        assertTrue(queryExecutor.isTerminated());
+        assertTrue(asyncExecutor.isTerminated());
+    }
+
+    @Test
+    public void closingContextShutsDownExecutors() {
+        JdbcSettings jdbcSettings = JdbcTestSupport.settings(JdbcTestSupport.dataSource());
+        jdbcSettings.setAsyncThreads(2);
+        context = JdbcTestSupport.context(jdbcSettings, TestUserDao.class);
+        JdbcDatabaseRouter router = (JdbcDatabaseRouter) JdbcDatabaseRouterFactory.INSTANCE.getDatabaseRouter(jdbcSettings);
+        assertNotNull(router);
+
+        context.close();
+        context = null;
+
+        assertTrue(router.getAsyncExecutor().isTerminated());
+        assertNull(JdbcDatabaseRouterFactory.INSTANCE.getDatabaseRouter(jdbcSettings));
+    }
+}
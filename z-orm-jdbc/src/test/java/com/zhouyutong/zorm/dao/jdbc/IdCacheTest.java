@@ -0,0 +1,117 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.zhouyutong.zorm.annotation.Dao;
+import com.zhouyutong.zorm.dao.jdbc.annotation.EntityCache;
+import com.zhouyutong.zorm.query.Update;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IdCacheTest {
+    private final Map<Long, CachedUser> rows = Maps.newConcurrentMap();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private IdCache<CachedUser> newCache(Function<Serializable, CachedUser> loader) {
+        return new IdCache<>(CachedUser.class.getAnnotation(EntityCache.class), CachedUser.class, Long.class, loader, MoreExecutors.directExecutor());
+    }
+
+    private CachedUser user(long id, String name) {
+        CachedUser user = new CachedUser();
+        user.setId(id);
+        user.setName(name);
+        return user;
+    }
+
+    @Test
+    public void hitsReturnCopiesAndNormalizePk() {
+        rows.put(1L, this.user(1L, "tom"));
+        IdCache<CachedUser> cache = this.newCache(id -> {
+            loads.incrementAndGet();
+            return rows.get((Long) id);
+        });
+
+        CachedUser first = cache.get(1L);
+        first.setName("changed by caller");
+        CachedUser second = cache.get("1");
+
+        assertEquals(1, loads.get());
+        assertEquals("tom", second.getName());
+        assertNotSame(first, second);
+        assertNull(cache.get(2L));
+        assertNull(cache.get(2));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loadRacingWithInvalidateIsNotCached() throws Exception {
+        rows.put(1L, this.user(1L, "old"));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        IdCache<CachedUser> cache = this.newCache(id -> {
+            CachedUser user = rows.get((Long) id);
+            if (loads.incrementAndGet() == 1) {
+                loading.countDown();
+                try {
+                    invalidated.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return user;
+        });
+
+        CompletableFuture<CachedUser> staleRead = CompletableFuture.supplyAsync(() -> cache.get(1L));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        rows.put(1L, this.user(1L, "new"));
+        cache.invalidate(1L);
+        invalidated.countDown();
+
+        //与写入并发的加载返回旧值,但不能留在缓存中
+        assertEquals("old", staleRead.get(5, TimeUnit.SECONDS).getName());
+        assertEquals("new", cache.get(1L).getName());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void daoWritesInvalidateCache() {
+        DataSource dataSource = JdbcTestSupport.dataSource();
+        try (AnnotationConfigApplicationContext context = JdbcTestSupport.context(JdbcTestSupport.settings(dataSource), CachedUserDao.class)) {
+            CachedUserDao dao = context.getBean(CachedUserDao.class);
+            assertNull(dao.findOneById(1L));
+            CachedUser user = this.user(1L, "tom");
+            dao.insert(user);
+            assertEquals("tom", dao.findOneById(1L).getName());
+
+            //绕过dao的修改在缓存过期前不可见,说明命中了缓存
+            new JdbcTemplate(dataSource).update("UPDATE t_user SET name = 'bypass' WHERE id = 1");
+            assertEquals("tom", dao.findOneById(1L).getName());
+
+            dao.updateById(1L, Update.update("name", "jerry"));
+            assertEquals("jerry", dao.findOneById(1L).getName());
+            assertTrue(dao.getEntityCacheStats().hitCount() > 0L);
+
+            dao.deleteById(1L);
+            assertNull(dao.findOneById(1L));
+        }
+    }
+
+    @Dao(settingBeanName = JdbcTestSupport.SETTINGS_BEAN_NAME)
+    public static class CachedUserDao extends JdbcBaseDao<CachedUser> {
+    }
+}
@@ -0,0 +1,55 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.enums.DialectEnum;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * jdbc模块测试共用的H2内存库和spring容器
+ * 每次创建的内存库名字不同,测试之间互不影响
+ */
+final class JdbcTestSupport {
+    static final String SETTINGS_BEAN_NAME = "jdbcSettings";
+    private static final AtomicInteger DATABASE_SEQUENCE = new AtomicInteger();
+
+    private JdbcTestSupport() {
+    }
+
+    /**
+     * 创建一个新的内存库并建好t_user表,连接全部关闭后库仍然保留
+     * 使用连接池,测试可以通过getActiveConnections检查连接是否归还
+     */
+    static JdbcConnectionPool dataSource() {
+        JdbcConnectionPool dataSource = JdbcConnectionPool.create("jdbc:h2:mem:z_orm_" + DATABASE_SEQUENCE.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(dataSource).execute("CREATE TABLE t_user (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(64), age INT, create_time TIMESTAMP)");
+        return dataSource;
+    }
+
+    /**
+     * 只有一个写库的H2设置,不启用并行查询和异步线程池
+     */
+    static JdbcSettings settings(DataSource writeDataSource) {
+        JdbcSettings jdbcSettings = new JdbcSettings();
+        jdbcSettings.setDialectEnum(DialectEnum.H2);
+        jdbcSettings.setWriteDataSource(Lists.newArrayList(writeDataSource));
+        jdbcSettings.setParallelQueryThreads(0);
+        jdbcSettings.setAsyncThreads(0);
+        return jdbcSettings;
+    }
+
+    /**
+     * 注册jdbcSettings和dao并启动容器,dao的PostConstruct/PreDestroy随容器执行
+     */
+    static AnnotationConfigApplicationContext context(JdbcSettings jdbcSettings, Class<?>... daoClasses) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerSingleton(SETTINGS_BEAN_NAME, jdbcSettings);
+        context.register(daoClasses);
+        context.refresh();
+        return context;
+    }
+}
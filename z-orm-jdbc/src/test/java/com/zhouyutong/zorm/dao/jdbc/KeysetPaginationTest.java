@@ -0,0 +1,94 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.query.Keyset;
+import com.zhouyutong.zorm.query.OrderBy;
+import com.zhouyutong.zorm.query.Pageable;
+import com.zhouyutong.zorm.query.Query;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KeysetPaginationTest {
+    private AnnotationConfigApplicationContext context;
+    private TestUserDao dao;
+
+    @Before
+    public void setUp() {
+        context = JdbcTestSupport.context(JdbcTestSupport.settings(JdbcTestSupport.dataSource()), TestUserDao.class);
+        dao = context.getBean(TestUserDao.class);
+        //age有重复值,翻页依赖主键区分同一个age的记录
+        List<TestUser> userList = Lists.newArrayList();
+        for (int i = 1; i <= 8; i++) {
+            userList.add(new TestUser((long) i, "user" + i, i % 3));
+        }
+        dao.insert(userList);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void seekPagesVisitEveryRowOnceInOrder() {
+        List<OrderBy> orderBys = Lists.newArrayList(OrderBy.desc("age"));
+        List<Long> ids = Lists.newArrayList();
+        Keyset keyset = Keyset.first();
+        while (true) {
+            List<TestUser> page = dao.findListByQuery(Query.query().orderBy(orderBys.toArray(new OrderBy[0])), new Pageable(keyset, 3));
+            if (page == null) {
+                break;
+            }
+            for (TestUser user : page) {
+                ids.add(user.getId());
+            }
+            keyset = Keyset.after(page.get(page.size() - 1), orderBys);
+        }
+
+        //age desc,相同age按主键desc
+        assertEquals(Lists.newArrayList(8L, 5L, 2L, 7L, 4L, 1L, 6L, 3L), ids);
+    }
+
+    @Test
+    public void seekAfterExplicitValues() {
+        List<TestUser> page = dao.findListByQuery(Query.query().orderBy(OrderBy.asc("age")), new Pageable(Keyset.of(1, 4L), 10));
+
+        List<Long> ids = Lists.newArrayList();
+        for (TestUser user : page) {
+            ids.add(user.getId());
+        }
+        assertEquals(Lists.newArrayList(7L, 2L, 5L, 8L), ids);
+        assertNull(dao.findListByQuery(Query.query().orderBy(OrderBy.asc("age")), new Pageable(Keyset.of(2, 8L), 10)));
+    }
+
+    /**
+     * null与任何值比较都不成立,游标中有null时后续的页会被静默跳过,构造游标时直接拒绝
+     */
+    @Test
+    public void nullCursorValuesRejected() {
+        List<OrderBy> orderBys = Lists.newArrayList(OrderBy.asc("createTime"));
+        List<TestUser> page = dao.findListByQuery(Query.query().orderBy(orderBys.toArray(new OrderBy[0])), new Pageable(Keyset.first(), 3));
+
+        try {
+            Keyset.after(page.get(page.size() - 1), orderBys);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("[createTime]"));
+        }
+        try {
+            Keyset.of(null, 4L);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("第1个值为null"));
+        }
+    }
+}
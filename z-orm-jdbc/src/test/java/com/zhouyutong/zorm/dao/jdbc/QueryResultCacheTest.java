@@ -0,0 +1,115 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.annotation.Dao;
+import com.zhouyutong.zorm.dao.jdbc.annotation.QueryCache;
+import com.zhouyutong.zorm.dao.jdbc.route.WriteSession;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.CriteriaOperators;
+import com.zhouyutong.zorm.query.OrderBy;
+import com.zhouyutong.zorm.query.Query;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 绕过dao直接修改数据库,读到旧值说明命中了缓存
+ */
+public class QueryResultCacheTest {
+    private DataSource dataSource;
+    private AnnotationConfigApplicationContext context;
+    private QueryCachedUserDao dao;
+
+    @Before
+    public void setUp() {
+        dataSource = JdbcTestSupport.dataSource();
+        context = JdbcTestSupport.context(JdbcTestSupport.settings(dataSource), QueryCachedUserDao.class, TestUserDao.class);
+        dao = context.getBean(QueryCachedUserDao.class);
+        dao.insert(Lists.newArrayList(new TestUser(1L, "tom", 18), new TestUser(2L, "jerry", 20), new TestUser(3L, "spike", 30)));
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    private Query ageQuery(int minAge) {
+        return Query.query(Criteria.where("age", CriteriaOperators.GTE, minAge)).orderBy(OrderBy.asc("id"));
+    }
+
+    private void bypassDao(String sql) {
+        new JdbcTemplate(dataSource).update(sql);
+    }
+
+    @Test
+    public void sameQueryShapeAndValuesHitsAndReturnsCopies() {
+        List<TestUser> first = dao.findListByQuery(this.ageQuery(20));
+        first.get(0).setName("changed by caller");
+        first.clear();
+        this.bypassDao("UPDATE t_user SET name = 'bypass'");
+
+        List<TestUser> second = dao.findListByQuery(this.ageQuery(20));
+
+        assertEquals(2, second.size());
+        assertEquals("jerry", second.get(0).getName());
+        assertEquals(1L, dao.getQueryCacheStats().hitCount());
+        //绑定值不同是不同的缓存项
+        assertEquals("bypass", dao.findListByQuery(this.ageQuery(30)).get(0).getName());
+    }
+
+    @Test
+    public void writeThroughAnyDaoOfTheTableInvalidates() {
+        assertEquals(3L, dao.countByCriteria(Criteria.where("age", CriteriaOperators.GT, 0)));
+        this.bypassDao("DELETE FROM t_user WHERE id = 3");
+        assertEquals(3L, dao.countByCriteria(Criteria.where("age", CriteriaOperators.GT, 0)));
+
+        //TestUserDao没有开启QueryCache,写入同样使该表的查询缓存失效
+        context.getBean(TestUserDao.class).insert(Lists.newArrayList(new TestUser(4L, "tyke", 1), new TestUser(5L, "butch", 2)));
+
+        assertEquals(4L, dao.countByCriteria(Criteria.where("age", CriteriaOperators.GT, 0)));
+    }
+
+    @Test
+    public void resultsOverMaximumRowsAreNotCached() {
+        assertEquals(3, dao.findListByQuery(this.ageQuery(0)).size());
+        this.bypassDao("DELETE FROM t_user WHERE id = 3");
+
+        assertEquals(2, dao.findListByQuery(this.ageQuery(0)).size());
+    }
+
+    @Test
+    public void cacheLoadsReadPrimaryNotLaggingReplica() throws Exception {
+        JdbcSettings jdbcSettings = JdbcTestSupport.settings(JdbcTestSupport.dataSource());
+        //读库是独立的空库,相当于没有同步任何写入
+        jdbcSettings.setReadDataSource(Lists.newArrayList(JdbcTestSupport.dataSource()));
+        jdbcSettings.setReadYourWritesMillis(60000L);
+        WriteSession.clear();
+        try (AnnotationConfigApplicationContext replicaContext = JdbcTestSupport.context(jdbcSettings, QueryCachedUserDao.class)) {
+            QueryCachedUserDao replicaDao = replicaContext.getBean(QueryCachedUserDao.class);
+            replicaDao.insert(new TestUser(1L, "tom", 18));
+
+            //没有写过的线程加载缓存,写入线程随后在写后时间窗口内命中
+            List<TestUser> loadedByOtherThread = CompletableFuture.supplyAsync(() -> replicaDao.findListByQuery(this.ageQuery(0))).get();
+            List<TestUser> readAfterWrite = replicaDao.findListByQuery(this.ageQuery(0));
+
+            assertEquals(1, loadedByOtherThread.size());
+            assertEquals(1L, replicaDao.getQueryCacheStats().hitCount());
+            assertEquals("tom", readAfterWrite.get(0).getName());
+        } finally {
+            WriteSession.clear();
+        }
+    }
+
+    @Dao(settingBeanName = JdbcTestSupport.SETTINGS_BEAN_NAME)
+    @QueryCache(maximumResultRows = 2)
+    public static class QueryCachedUserDao extends JdbcBaseDao<TestUser> {
+    }
+}
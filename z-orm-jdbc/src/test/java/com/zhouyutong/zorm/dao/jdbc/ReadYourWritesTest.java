@@ -0,0 +1,74 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.dao.jdbc.route.WriteSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 主库和读库是两个独立的内存库,不做复制,读到的数据说明了请求被路由到哪个库
+ */
+public class ReadYourWritesTest {
+    private AnnotationConfigApplicationContext context;
+    private JdbcSettings jdbcSettings;
+    private TestUserDao dao;
+
+    @Before
+    public void setUp() {
+        WriteSession.clear();
+        jdbcSettings = JdbcTestSupport.settings(JdbcTestSupport.dataSource());
+        jdbcSettings.setReadDataSource(Lists.newArrayList(JdbcTestSupport.dataSource()));
+        jdbcSettings.setReadYourWritesMillis(60000L);
+        context = JdbcTestSupport.context(jdbcSettings, TestUserDao.class);
+        dao = context.getBean(TestUserDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        WriteSession.clear();
+        context.close();
+    }
+
+    @Test
+    public void readsAfterWriteGoToPrimary() {
+        JdbcDatabaseRouter router = (JdbcDatabaseRouter) JdbcDatabaseRouterFactory.INSTANCE.getDatabaseRouter(jdbcSettings);
+        assertSame(router.getReadReplicas().get(0).getJdbcTemplate(), router.readRoute());
+
+        dao.insert(new TestUser(1L, "tom", 18));
+
+        assertSame(router.primaryReadRoute(), router.readRoute());
+        assertNotNull(dao.findOneById(1L));
+        WriteSession.clear();
+        assertNull("没有写时读库,读库没有该记录", dao.findOneById(1L));
+    }
+
+    @Test
+    public void writeTokenCarriesConsistencyToAnotherThread() throws Exception {
+        dao.insert(new TestUser(1L, "tom", 18));
+        long writeToken = WriteSession.getWriteToken();
+
+        TestUser withoutToken = CompletableFuture.supplyAsync(() -> dao.findOneById(1L)).get();
+        TestUser withToken = CompletableFuture.supplyAsync(() -> WriteSession.callWithToken(writeToken, () -> dao.findOneById(1L))).get();
+
+        assertNull(withoutToken);
+        assertEquals("tom", withToken.getName());
+    }
+
+    @Test
+    public void propagateWritesBackToCaller() throws Exception {
+        assertEquals(0L, WriteSession.getLastWriteMillis());
+
+        CompletableFuture.supplyAsync(WriteSession.propagate(() -> dao.insert(new TestUser(1L, "tom", 18)))).get();
+
+        assertNotNull(dao.findOneById(1L));
+    }
+}
@@ -0,0 +1,130 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * H2不支持oracle的CONNECT BY,取一批值的sql改写为SYSTEM_RANGE后交给真实的H2连接执行
+ */
+public class SequenceIdAllocatorTest {
+    private final List<Connection> realConnections = new CopyOnWriteArrayList<>();
+    private DataSource dataSource;
+    private Connection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = JdbcTestSupport.dataSource();
+        new JdbcTemplate(dataSource).execute("CREATE SEQUENCE seq_user START WITH 1");
+        connection = this.oracleConnection();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Connection realConnection : realConnections) {
+            realConnection.close();
+        }
+    }
+
+    //新的H2连接,取一批值的sql改写后执行
+    private Connection oracleConnection() throws SQLException {
+        Connection realConnection = dataSource.getConnection();
+        realConnections.add(realConnection);
+        Connection oracleConnection = spy(realConnection);
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            return realConnection.prepareStatement(sql.replaceAll("FROM DUAL CONNECT BY LEVEL <= (\\d+)", "FROM SYSTEM_RANGE(1, $1)"));
+        }).when(oracleConnection).prepareStatement(anyString());
+        return oracleConnection;
+    }
+
+    @Test
+    public void allocateFromBlocks() throws Exception {
+        SequenceIdAllocator allocator = new SequenceIdAllocator("seq_user", 5);
+        List<Long> ids = Lists.newArrayList();
+        for (int i = 0; i < 12; i++) {
+            ids.add(allocator.nextId(connection));
+        }
+
+        assertEquals(Lists.newArrayList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L), ids);
+        //12个id只访问3次数据库
+        verify(connection, times(3)).prepareStatement(anyString());
+    }
+
+    @Test
+    public void blockSizeOneReadsEveryTime() throws Exception {
+        SequenceIdAllocator allocator = new SequenceIdAllocator("seq_user", 0);
+
+        assertEquals(1L, allocator.nextId(connection));
+        assertEquals(2L, allocator.nextId(connection));
+        verify(connection, times(2)).prepareStatement("SELECT seq_user.NEXTVAL AS ID FROM DUAL");
+    }
+
+    /**
+     * 每个线程使用自己的连接,分配不加锁并发执行,每批只有一个线程取下一批
+     */
+    @Test
+    public void concurrentAllocationNeverRepeats() throws Exception {
+        SequenceIdAllocator allocator = new SequenceIdAllocator("seq_user", 10);
+        int threads = 8;
+        List<Connection> connections = Lists.newArrayList();
+        for (int i = 0; i < threads; i++) {
+            connections.add(this.oracleConnection());
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Long>>> futures = Lists.newArrayList();
+            for (Connection threadConnection : connections) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<Long> ids = Lists.newArrayList();
+                    for (int j = 0; j < 50; j++) {
+                        ids.add(allocator.nextId(threadConnection));
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+            Set<Long> ids = Sets.newHashSet();
+            for (Future<List<Long>> future : futures) {
+                ids.addAll(future.get());
+            }
+
+            assertEquals(400, ids.size());
+            assertEquals(Long.valueOf(400L), Collections.max(ids));
+            //400个id正好40批,并发换批时没有多取
+            int fetches = 0;
+            for (Connection threadConnection : connections) {
+                fetches += mockingDetails(threadConnection).getInvocations().stream()
+                        .filter(invocation -> "prepareStatement".equals(invocation.getMethod().getName())).count();
+            }
+            assertEquals(40, fetches);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
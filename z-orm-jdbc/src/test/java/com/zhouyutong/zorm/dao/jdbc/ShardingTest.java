@@ -0,0 +1,101 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zapplication.exception.RemoteCallException;
+import com.zhouyutong.zorm.dao.jdbc.route.ShardStrategyEnum;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.CriteriaOperators;
+import com.zhouyutong.zorm.query.OrderBy;
+import com.zhouyutong.zorm.query.Query;
+import com.zhouyutong.zorm.query.Update;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 两个分片,MOD策略,偶数主键在分片0,奇数主键在分片1
+ */
+public class ShardingTest {
+    private List<DataSource> shards;
+    private AnnotationConfigApplicationContext context;
+    private TestUserDao dao;
+
+    @Before
+    public void setUp() {
+        shards = Lists.newArrayList(JdbcTestSupport.dataSource(), JdbcTestSupport.dataSource());
+        JdbcSettings jdbcSettings = JdbcTestSupport.settings(shards.get(0));
+        jdbcSettings.setWriteDataSource(shards);
+        jdbcSettings.setShardStrategy(ShardStrategyEnum.MOD);
+        jdbcSettings.setParallelQueryThreads(2);
+        context = JdbcTestSupport.context(jdbcSettings, TestUserDao.class);
+        dao = context.getBean(TestUserDao.class);
+        List<TestUser> userList = Lists.newArrayList();
+        for (int i = 1; i <= 6; i++) {
+            userList.add(new TestUser((long) i, "user" + i, 10 - i));
+        }
+        dao.insert(userList);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    private long countOnShard(int shard) {
+        return new JdbcTemplate(shards.get(shard)).queryForObject("SELECT COUNT(*) FROM t_user", Long.class);
+    }
+
+    @Test
+    public void rowsAreRoutedByPk() {
+        assertEquals(3L, this.countOnShard(0));
+        assertEquals(3L, this.countOnShard(1));
+        assertEquals(6L, dao.countAll());
+        //字符串形式的主键与Long主键落在同一个分片
+        assertEquals("user3", dao.findOneById("3").getName());
+        assertEquals("user4", dao.findOneById(4L).getName());
+    }
+
+    @Test
+    public void scatterQueryMergesOrderAndPage() {
+        List<TestUser> page = dao.findListByQuery(Query.query(Criteria.where("age", CriteriaOperators.GT, 4)).orderBy(OrderBy.asc("age")).offset(1).limit(3));
+
+        List<Long> ids = Lists.newArrayList();
+        for (TestUser user : page) {
+            ids.add(user.getId());
+        }
+        //age依次为9..4,age>4升序为 5(5),6(4),7(3),8(2),9(1)
+        assertEquals(Lists.newArrayList(4L, 3L, 2L), ids);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shardedFindListBySqlRejectsOrderBy() {
+        assertEquals(6, dao.findListBySql("SELECT * FROM t_user", new LinkedHashMap<>()).size());
+
+        dao.findListBySql("SELECT * FROM t_user ORDER BY age", new LinkedHashMap<>());
+    }
+
+    @Test
+    public void partialShardFailureReportsFailedShards() {
+        new JdbcTemplate(shards.get(1)).execute("DROP TABLE t_user");
+
+        try {
+            dao.updateByCriteria(Criteria.where("age", CriteriaOperators.GT, 0), new Update().set("name", "x"));
+            fail();
+        } catch (RemoteCallException e) {
+            ShardWriteException shardWriteException = (ShardWriteException) e.getCause();
+            assertEquals(Collections.singleton(1), shardWriteException.getFailedShards());
+            assertEquals(3, shardWriteException.getUpdatedRows());
+        }
+        assertEquals(3, new JdbcTemplate(shards.get(0)).queryForObject("SELECT COUNT(*) FROM t_user WHERE name = 'x'", Integer.class).intValue());
+    }
+}
@@ -0,0 +1,78 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.query.Criteria;
+import com.zhouyutong.zorm.query.CriteriaOperators;
+import com.zhouyutong.zorm.query.OrderBy;
+import com.zhouyutong.zorm.query.Query;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamTest {
+    private JdbcConnectionPool dataSource;
+    private AnnotationConfigApplicationContext context;
+    private TestUserDao dao;
+
+    @Before
+    public void setUp() {
+        dataSource = JdbcTestSupport.dataSource();
+        JdbcSettings jdbcSettings = JdbcTestSupport.settings(dataSource);
+        jdbcSettings.setFetchSize(2);
+        context = JdbcTestSupport.context(jdbcSettings, TestUserDao.class);
+        dao = context.getBean(TestUserDao.class);
+        List<TestUser> userList = Lists.newArrayList();
+        for (int i = 1; i <= 10; i++) {
+            userList.add(new TestUser((long) i, "user" + i, i));
+        }
+        dao.insert(userList);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void streamHoldsConnectionUntilClosed() {
+        Query query = Query.query(Criteria.where("age", CriteriaOperators.GT, 3)).orderBy(OrderBy.desc("id"));
+        List<Long> ids;
+        try (Stream<TestUser> stream = dao.stream(query)) {
+            assertEquals(1, dataSource.getActiveConnections());
+            ids = stream.map(TestUser::getId).collect(Collectors.toList());
+        }
+
+        assertEquals(Lists.newArrayList(10L, 9L, 8L, 7L, 6L, 5L, 4L), ids);
+        assertEquals(0, dataSource.getActiveConnections());
+    }
+
+    @Test
+    public void closeBeforeExhaustedReleasesConnection() {
+        try (Stream<TestUser> stream = dao.stream(Query.query().orderBy(OrderBy.asc("id")))) {
+            Iterator<TestUser> iterator = stream.iterator();
+            assertEquals(Long.valueOf(1L), iterator.next().getId());
+            assertTrue(iterator.hasNext());
+        }
+
+        assertEquals(0, dataSource.getActiveConnections());
+    }
+
+    @Test
+    public void forEachVisitsEveryRow() {
+        List<String> names = Lists.newArrayList();
+        dao.forEach(Query.query(Criteria.where("id", CriteriaOperators.LTE, 3L)).orderBy(OrderBy.asc("id")), user -> names.add(user.getName()));
+
+        assertEquals(Lists.newArrayList("user1", "user2", "user3"), names);
+        assertEquals(0, dataSource.getActiveConnections());
+    }
+}
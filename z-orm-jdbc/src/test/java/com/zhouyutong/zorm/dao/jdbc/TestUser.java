@@ -0,0 +1,35 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.zhouyutong.zorm.annotation.PK;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Column;
+import com.zhouyutong.zorm.dao.jdbc.annotation.Table;
+import com.zhouyutong.zorm.entity.IdEntity;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 测试用entity,对应JdbcTestSupport创建的t_user表
+ */
+@Data
+@Table("t_user")
+public class TestUser implements IdEntity {
+    @PK
+    @Column
+    private Long id;
+    @Column
+    private String name;
+    @Column
+    private Integer age;
+    @Column
+    private Date createTime;
+
+    public TestUser() {
+    }
+
+    public TestUser(Long id, String name, Integer age) {
+        this.id = id;
+        this.name = name;
+        this.age = age;
+    }
+}
@@ -0,0 +1,7 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.zhouyutong.zorm.annotation.Dao;
+
+@Dao(settingBeanName = JdbcTestSupport.SETTINGS_BEAN_NAME)
+public class TestUserDao extends JdbcBaseDao<TestUser> {
+}
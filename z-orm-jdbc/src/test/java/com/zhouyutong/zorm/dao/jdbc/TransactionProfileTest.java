@@ -0,0 +1,188 @@
+package com.zhouyutong.zorm.dao.jdbc;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zapplication.exception.RemoteCallException;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionBudget;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionContext;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionManager;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionProfile;
+import com.zhouyutong.zorm.dao.jdbc.transaction.TransactionSettings;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionProfileTest {
+    private static final String INSERT = TestUserDao.class.getName() + ".insert";
+    private static final String FIND_ONE_BY_ID = TestUserDao.class.getName() + ".findOneById";
+
+    private final List<TransactionProfile> profiles = new CopyOnWriteArrayList<>();
+    private AnnotationConfigApplicationContext context;
+    private TestUserDao dao;
+    private TransactionManager transactionManager;
+
+    @Before
+    public void setUp() {
+        JdbcConnectionPool dataSource = JdbcTestSupport.dataSource();
+        context = JdbcTestSupport.context(JdbcTestSupport.settings(dataSource), TestUserDao.class);
+        dao = context.getBean(TestUserDao.class);
+        transactionManager = new TransactionManager();
+        transactionManager.setTxManager(new DataSourceTransactionManager(dataSource));
+        transactionManager.setProfileListener(profiles::add);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void profileRecordsStatementsRowsAndDaoCalls() {
+        transactionManager.doInTransaction(() -> {
+            dao.insert(Lists.newArrayList(new TestUser(1L, "tom", 18), new TestUser(2L, "jerry", 20)));
+            dao.findOneById(1L);
+            return dao.findOneById(2L);
+        });
+
+        assertEquals(1, profiles.size());
+        TransactionProfile profile = profiles.get(0);
+        assertTrue(profile.isCommitted());
+        assertFalse(profile.isOverBudget());
+        assertEquals(3, profile.getDaoCallCount());
+        Map<String, Integer> daoCalls = profile.getDaoCalls();
+        assertEquals(Lists.newArrayList(INSERT, FIND_ONE_BY_ID), Lists.newArrayList(daoCalls.keySet()));
+        assertEquals(Integer.valueOf(2), daoCalls.get(FIND_ONE_BY_ID));
+        assertEquals(3, profile.getStatements());
+        assertEquals(4, profile.getRows());
+        assertTrue(profile.getDurationNanos() > 0);
+    }
+
+    @Test
+    public void budgetFromSettingsOverridesDefault() {
+        transactionManager.setBudget(TransactionBudget.builder().maxStatements(100).build());
+
+        transactionManager.doInTransaction(() -> dao.findOneById(1L));
+        transactionManager.doInTransaction(() -> {
+            dao.findOneById(1L);
+            return dao.findOneById(2L);
+        }, TransactionSettings.builder().budget(TransactionBudget.builder().maxStatements(1).maxDaoCalls(1).build()).build());
+
+        assertFalse(profiles.get(0).isOverBudget());
+        TransactionProfile overBudget = profiles.get(1);
+        assertTrue(overBudget.isOverBudget());
+        assertEquals(2, overBudget.getViolations().size());
+    }
+
+    /**
+     * 嵌套事物只有最外层的一个profile,afterCommit在最外层提交后执行
+     */
+    @Test
+    public void nestedTransactionJoinsOuterProfileAndAfterCommit() {
+        List<String> events = new CopyOnWriteArrayList<>();
+
+        transactionManager.doInTransaction(() -> {
+            transactionManager.doInTransaction(() -> {
+                TransactionContext.afterCommit(() -> events.add("afterCommit"));
+                return dao.insert(new TestUser(1L, "tom", 18));
+            });
+            events.add("outer body done");
+            return dao.findOneById(1L);
+        });
+
+        assertEquals(Lists.newArrayList("outer body done", "afterCommit"), events);
+        assertEquals(1, profiles.size());
+        assertEquals(2, profiles.get(0).getDaoCallCount());
+        assertFalse(TransactionContext.isInTransaction());
+    }
+
+    @Test
+    public void rollbackDiscardsAfterCommitActions() {
+        List<String> events = new CopyOnWriteArrayList<>();
+
+        try {
+            transactionManager.doInTransaction(() -> {
+                dao.insert(new TestUser(1L, "tom", 18));
+                TransactionContext.afterCommit(() -> events.add("afterCommit"));
+                throw new IllegalStateException("rollback");
+            });
+            fail();
+        } catch (RemoteCallException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertTrue(events.isEmpty());
+        assertNull(dao.findOneById(1L));
+        assertFalse(profiles.get(0).isCommitted());
+        //不在事物中时立即执行
+        TransactionContext.afterCommit(() -> events.add("immediately"));
+        assertEquals(Lists.newArrayList("immediately"), events);
+    }
+
+    @Test
+    public void noProfileWithoutBudgetOrListener() {
+        transactionManager.setProfileListener(null);
+
+        transactionManager.doInTransaction(() -> {
+            assertTrue(TransactionContext.isInTransaction());
+            assertNull(TransactionContext.getProfile());
+            return null;
+        });
+    }
+
+    /**
+     * 其他线程可以看到某个线程是否在事物中,多个线程同时进出事物互不影响
+     */
+    @Test
+    public void inTransactionVisibleAcrossThreads() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch entered = new CountDownLatch(threads);
+        CountDownLatch leave = new CountDownLatch(1);
+        try {
+            List<Thread> workers = new CopyOnWriteArrayList<>();
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    TransactionContext.enterTransaction();
+                    workers.add(Thread.currentThread());
+                    entered.countDown();
+                    leave.await();
+                    TransactionContext.leaveTransaction();
+                    return null;
+                }));
+            }
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            for (Thread worker : workers) {
+                assertTrue(TransactionContext.isInTransaction(worker));
+            }
+            assertFalse(TransactionContext.isInTransaction(Thread.currentThread()));
+
+            leave.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            for (Thread worker : workers) {
+                assertFalse(TransactionContext.isInTransaction(worker));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.zhouyutong.zorm.dao.jdbc.dialect;
+
+import com.google.common.collect.Lists;
+import com.zhouyutong.zorm.enums.DialectEnum;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.Test;
+
+import java.sql.Connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DialectTest {
+
+    @Test
+    public void ofReturnsBuiltinDialect() {
+        assertSame(JdbcDialectEnum.H2, JdbcDialectEnum.of(DialectEnum.H2));
+        assertSame(JdbcDialectEnum.POSTGRESQL, JdbcDialectEnum.of(DialectEnum.POSTGRESQL));
+        //oracle默认使用兼容所有版本的ROWNUM分页
+        assertSame(JdbcDialectEnum.ORACLE, JdbcDialectEnum.of(DialectEnum.ORACLE));
+        assertSame(DialectEnum.ORACLE, JdbcDialectEnum.ORACLE12C.getDialectEnum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ofRejectsNonJdbcDialect() {
+        JdbcDialectEnum.of(DialectEnum.ELASTICSEARCH);
+    }
+
+    @Test
+    public void limitClauses() {
+        String sql = "SELECT * FROM t_user ORDER BY id ";
+
+        assertEquals(sql + "LIMIT 20,10", JdbcDialectEnum.MYSQL.limit(sql, 20, 10));
+        assertEquals(sql + "LIMIT 10 OFFSET 20", JdbcDialectEnum.H2.limit(sql, 20, 10));
+        assertEquals(sql + "LIMIT 10 OFFSET 20", JdbcDialectEnum.POSTGRESQL.limit(sql, 20, 10));
+        assertEquals(sql + "OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY", JdbcDialectEnum.ORACLE12C.limit(sql, 20, 10));
+        assertTrue(JdbcDialectEnum.ORACLE.limit(sql, 20, 10).contains("ROWNUM <= 30) WHERE RN > 20"));
+    }
+
+    @Test
+    public void upsertStatements() {
+        assertEquals("INSERT INTO t_user (id,name,age) VALUES (?,?,?) ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name,age = EXCLUDED.age",
+                JdbcDialectEnum.POSTGRESQL.upsert("t_user", "id", Lists.newArrayList("name", "age")));
+        assertEquals("INSERT INTO t_user (id,name) VALUES (?,?) ON DUPLICATE KEY UPDATE name = VALUES(name)",
+                JdbcDialectEnum.MYSQL.upsert("t_user", "id", Lists.newArrayList("name")));
+        assertEquals("MERGE INTO t_user (id,name) KEY (id) VALUES (?,?)",
+                JdbcDialectEnum.H2.upsert("t_user", "id", Lists.newArrayList("name")));
+    }
+
+    @Test
+    public void postgresqlStreamingNeedsTransactionOnlyWhenAutoCommit() throws Exception {
+        JdbcConnectionPool dataSource = JdbcConnectionPool.create("jdbc:h2:mem:z_orm_dialect", "sa", "");
+        try (Connection connection = dataSource.getConnection()) {
+            assertTrue(JdbcDialectEnum.POSTGRESQL.prepareStreamingConnection(connection));
+            assertFalse(connection.getAutoCommit());
+            //已经在事物中,不需要恢复
+            assertFalse(JdbcDialectEnum.POSTGRESQL.prepareStreamingConnection(connection));
+            assertFalse(JdbcDialectEnum.H2.prepareStreamingConnection(connection));
+        } finally {
+            dataSource.dispose();
+        }
+    }
+}
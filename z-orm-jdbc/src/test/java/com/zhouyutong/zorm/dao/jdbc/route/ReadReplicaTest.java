@@ -0,0 +1,132 @@
+package com.zhouyutong.zorm.dao.jdbc.route;
+
+import com.zhouyutong.zorm.dao.jdbc.JdbcSettings;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReadReplicaTest {
+    private JdbcConnectionPool pool;
+    private SwitchableDataSource dataSource;
+    private ReadReplica replica;
+
+    @Before
+    public void setUp() {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:replica_test;DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource = new SwitchableDataSource(pool);
+        JdbcSettings jdbcSettings = new JdbcSettings();
+        jdbcSettings.setReplicaMaxErrorRate(0.3D);
+        jdbcSettings.setReplicaMinRequests(2);
+        jdbcSettings.setReplicaEjectMillis(50L);
+        replica = new ReadReplica("read-0", 1, dataSource, jdbcSettings);
+    }
+
+    @After
+    public void tearDown() {
+        pool.dispose();
+    }
+
+    @Test
+    public void connectionFailuresEjectReplica() {
+        dataSource.down = true;
+        for (int i = 0; i < 4; i++) {
+            this.queryIgnoringFailure(replica);
+        }
+
+        assertTrue(replica.isEjected());
+        assertEquals(4L, replica.getErrorCount());
+        assertEquals(1L, replica.getEjectCount());
+    }
+
+    @Test
+    public void sqlErrorsDoNotCountAsReplicaFailures() {
+        for (int i = 0; i < 10; i++) {
+            try {
+                replica.getJdbcTemplate().queryForObject("SELECT no_such_column FROM DUAL", Integer.class);
+                fail();
+            } catch (BadSqlGrammarException e) {
+                //应用异常
+            }
+        }
+
+        assertFalse(replica.isEjected());
+        assertEquals(10L, replica.getRequestCount());
+        assertEquals(0L, replica.getErrorCount());
+    }
+
+    @Test
+    public void onlyOneProbeAfterEjectionAndItDecidesRestore() throws Exception {
+        dataSource.down = true;
+        for (int i = 0; i < 4; i++) {
+            this.queryIgnoringFailure(replica);
+        }
+        assertTrue(replica.isEjected());
+        long now = System.currentTimeMillis();
+        assertFalse("摘除期间不放行探测", replica.tryProbe(now));
+
+        Thread.sleep(60L);
+        now = System.currentTimeMillis();
+        assertTrue(replica.tryProbe(now));
+        assertFalse("同一时间只放行一个探测", replica.tryProbe(now));
+        //普通请求的结果不影响摘除状态
+        dataSource.down = false;
+        replica.getJdbcTemplate().queryForObject("SELECT 1 FROM DUAL", Integer.class);
+        assertTrue(replica.isEjected());
+
+        replica.getProbeJdbcTemplate().queryForObject("SELECT 1 FROM DUAL", Integer.class);
+        assertFalse(replica.isEjected());
+    }
+
+    @Test
+    public void trackCountsStatementsOutsideJdbcTemplate() {
+        Consumer<Throwable> tracker = ReadReplica.track(replica.getJdbcTemplate());
+        assertEquals(1, replica.getOutstanding());
+
+        tracker.accept(null);
+
+        assertEquals(0, replica.getOutstanding());
+        assertEquals(1L, replica.getRequestCount());
+    }
+
+    private void queryIgnoringFailure(ReadReplica readReplica) {
+        try {
+            readReplica.getJdbcTemplate().queryForObject("SELECT 1 FROM DUAL", Integer.class);
+            fail();
+        } catch (DataAccessException e) {
+            //连接失败
+        }
+    }
+
+    /**
+     * down为true时获取连接失败,模拟读库宕机
+     */
+    static final class SwitchableDataSource extends DelegatingDataSource {
+        volatile boolean down = false;
+
+        SwitchableDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("connection refused", "08001");
+            }
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package com.zhouyutong.zorm.processor;
+
+import com.zhouyutong.zorm.entity.EntityAccessor;
+import com.zhouyutong.zorm.utils.StrUtils;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译期读取entity上的jdbc Table/Column、elasticsearch Document/Field、cassandra CassandraTable和PK注解
+ * 1.按运行期checkEntityClass的规则校验,不符合时编译失败
+ * 2.为每个entity生成EntityAccessor,包含属性列表、jdbc字段列表、创建entity和读写属性的代码,
+ * jdbc entity还生成按属性类型读取ResultSet一行的mapRow和一次取出所有属性值的getValues
+ * 属性不能直接访问(private且没有getter/setter)或没有可访问的无参构造函数时不生成,运行期使用MethodHandle
+ * 注解按类名匹配,processor不依赖jdbc、elasticsearch、cassandra模块
+ */
+@SupportedAnnotationTypes({
+        EntityAccessorProcessor.TABLE,
+        EntityAccessorProcessor.DOCUMENT,
+        EntityAccessorProcessor.CASSANDRA_TABLE
+})
+public class EntityAccessorProcessor extends AbstractProcessor {
+    static final String TABLE = "com.zhouyutong.zorm.dao.jdbc.annotation.Table";
+    static final String DOCUMENT = "com.zhouyutong.zorm.dao.elasticsearch.annotation.Document";
+    static final String CASSANDRA_TABLE = "com.zhouyutong.zorm.dao.cassandra.annotation.CassandraTable";
+    private static final String COLUMN = "com.zhouyutong.zorm.dao.jdbc.annotation.Column";
+    private static final String ES_FIELD = "com.zhouyutong.zorm.dao.elasticsearch.annotation.Field";
+    private static final String PK = "com.zhouyutong.zorm.annotation.PK";
+    private static final String ID_ENTITY = "com.zhouyutong.zorm.entity.IdEntity";
+    private static final List<String> SUPPORT_PK_TYPE = Arrays.asList("java.lang.Integer", "java.lang.Long", "java.lang.String");
+    private static final List<String> LOMBOK_GETTER = Arrays.asList("lombok.Data", "lombok.Value", "lombok.Getter");
+    private static final List<String> LOMBOK_SETTER = Arrays.asList("lombok.Data", "lombok.Setter");
+    //mapRow中直接读取的属性类型 -> 读取ResultSet的表达式,%s为列下标,与EntityRowMapper.FieldBinding一致
+    private static final Map<String, String> ROW_READERS = new LinkedHashMap<>();
+    //读取后需要通过wasNull判断null值的基本类型读取
+    private static final Set<String> PRIMITIVE_READERS = new LinkedHashSet<>();
+
+    static {
+        ROW_READERS.put("java.lang.String", "rs.getString(%s)");
+        ROW_READERS.put("java.sql.Timestamp", "rs.getTimestamp(%s)");
+        ROW_READERS.put("java.util.Date", "rs.getTimestamp(%s)");
+        ROW_READERS.put("java.math.BigDecimal", "rs.getBigDecimal(%s)");
+        ROW_READERS.put("java.sql.Date", "rs.getDate(%s)");
+        ROW_READERS.put("java.sql.Time", "rs.getTime(%s)");
+        ROW_READERS.put("byte[]", "rs.getBytes(%s)");
+        for (String[] primitive : new String[][]{{"long", "Long"}, {"int", "Int"}, {"double", "Double"}, {"float", "Float"},
+                {"short", "Short"}, {"byte", "Byte"}, {"boolean", "Boolean"}}) {
+            String reader = "rs.get" + primitive[1] + "(%s)";
+            ROW_READERS.put(primitive[0], reader);
+            ROW_READERS.put("java.lang." + (primitive[0].equals("int") ? "Integer" : primitive[1]), reader);
+            PRIMITIVE_READERS.add(reader);
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> entityElements = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    entityElements.add((TypeElement) element);
+                }
+            }
+        }
+        for (TypeElement entityElement : entityElements) {
+            boolean valid = true;
+            if (hasAnnotation(entityElement, TABLE)) {
+                valid = this.checkIdEntity(entityElement, TABLE, COLUMN);
+            }
+            if (hasAnnotation(entityElement, DOCUMENT)) {
+                valid = this.checkIdEntity(entityElement, DOCUMENT, ES_FIELD) && valid;
+            }
+            if (hasAnnotation(entityElement, CASSANDRA_TABLE)) {
+                valid = this.checkHasField(entityElement) && valid;
+            }
+            if (valid) {
+                this.generate(entityElement);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 与JdbcHelper、ElasticSearchHelper的checkEntityClass规则一致
+     */
+    private boolean checkIdEntity(TypeElement entityElement, String tableAnnotation, String columnAnnotation) {
+        String entityClassName = entityElement.getQualifiedName().toString();
+        Types types = processingEnv.getTypeUtils();
+        TypeElement idEntityElement = processingEnv.getElementUtils().getTypeElement(ID_ENTITY);
+        if (idEntityElement != null && !types.isAssignable(types.erasure(entityElement.asType()), types.erasure(idEntityElement.asType()))) {
+            return this.error(entityElement, "entity[" + entityClassName + "] must implements IdEntity");
+        }
+        if (!this.checkHasField(entityElement)) {
+            return false;
+        }
+
+        boolean valid = true;
+        List<VariableElement> pkFields = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(entityElement.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.FINAL) || field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            if (!hasAnnotation(field, columnAnnotation)) {
+                valid = this.error(field, "entity[" + entityClassName + "]的字段[" + field.getSimpleName() + "]必须有" + simpleName(columnAnnotation) + "注解");
+            }
+            if (hasAnnotation(field, PK)) {
+                pkFields.add(field);
+            }
+        }
+        if (pkFields.size() != 1) {
+            return this.error(entityElement, "entity[" + entityClassName + "] 有且只能有一个PK注解的字段");
+        }
+        VariableElement pkField = pkFields.get(0);
+        if (!SUPPORT_PK_TYPE.contains(types.erasure(pkField.asType()).toString())) {
+            return this.error(pkField, "entity[" + entityClassName + "]的pk字段类型只能是Long,Integer,String其中之一");
+        }
+        return valid;
+    }
+
+    private boolean checkHasField(TypeElement entityElement) {
+        if (ElementFilter.fieldsIn(entityElement.getEnclosedElements()).isEmpty()) {
+            return this.error(entityElement, "entity[" + entityElement.getQualifiedName() + "] must have least one Field");
+        }
+        return true;
+    }
+
+    private void generate(TypeElement entityElement) {
+        if (!this.isAccessible(entityElement)) {
+            this.note(entityElement, "entity不能从同一个包中访问或有泛型参数,不生成EntityAccessor");
+            return;
+        }
+        if (!this.hasNoArgConstructor(entityElement)) {
+            this.note(entityElement, "entity没有可访问的无参构造函数,不生成EntityAccessor");
+            return;
+        }
+
+        Types types = processingEnv.getTypeUtils();
+        Set<String> methodNames = new LinkedHashSet<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(entityElement))) {
+            if (!method.getModifiers().contains(Modifier.PRIVATE)) {
+                methodNames.add(method.getSimpleName().toString() + "/" + method.getParameters().size());
+            }
+        }
+
+        String entityName = entityElement.getQualifiedName().toString();
+        List<String> propertyNames = new ArrayList<>();
+        List<String> getExpressions = new ArrayList<>();
+        List<String> setStatements = new ArrayList<>();
+        Map<String, String> columnNames = new LinkedHashMap<>();
+        //按属性下标,只包含有jdbc字段的属性,有不能直接读取的属性类型时为null,不生成mapRow
+        Map<Integer, String> mapRowStatements = new LinkedHashMap<>();
+        boolean table = hasAnnotation(entityElement, TABLE);
+        for (VariableElement field : ElementFilter.fieldsIn(entityElement.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            boolean direct = !modifiers.contains(Modifier.PRIVATE);
+            boolean finalField = modifiers.contains(Modifier.FINAL);
+            boolean primitiveBoolean = field.asType().getKind() == TypeKind.BOOLEAN;
+            String getterName = getterName(name, primitiveBoolean);
+            String setterName = setterName(name, primitiveBoolean);
+
+            String getExpression;
+            if (direct) {
+                getExpression = "e." + name;
+            } else if (methodNames.contains(getterName + "/0") || hasLombok(entityElement, field, LOMBOK_GETTER)) {
+                getExpression = "e." + getterName + "()";
+            } else {
+                this.note(field, "属性[" + name + "]是private且没有getter,不生成EntityAccessor");
+                return;
+            }
+            //%s为写入的值,final属性为null
+            String setTemplate;
+            if (finalField) {
+                setTemplate = null;
+            } else if (direct) {
+                setTemplate = "e." + name + " = %s;";
+            } else if (methodNames.contains(setterName + "/1")
+                    || (hasLombok(entityElement, field, LOMBOK_SETTER) && !hasAnnotation(entityElement, "lombok.Value"))) {
+                setTemplate = "e." + setterName + "(%s);";
+            } else {
+                this.note(field, "属性[" + name + "]是private且没有setter,不生成EntityAccessor");
+                return;
+            }
+            String setStatement = setTemplate == null
+                    ? "throw new UnsupportedOperationException(\"final property [" + name + "]\");"
+                    : String.format(setTemplate, "(" + castType(types, field.asType()) + ") value") + "\n                return;";
+
+            propertyNames.add(name);
+            getExpressions.add(getExpression);
+            setStatements.add(setStatement);
+            if (table && !finalField) {
+                columnNames.put(name, columnName(field));
+                String reader = ROW_READERS.get(types.erasure(field.asType()).toString());
+                if (reader == null || mapRowStatements == null) {
+                    mapRowStatements = null;
+                } else {
+                    mapRowStatements.put(propertyNames.size() - 1, mapRowStatement(reader, setTemplate, propertyNames.size() - 1));
+                }
+            }
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(entityElement).getQualifiedName().toString();
+        String accessorSimpleName = binarySimpleName(entityElement) + EntityAccessor.CLASS_SUFFIX;
+        String accessorName = packageName.isEmpty() ? accessorSimpleName : packageName + "." + accessorSimpleName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(accessorName, entityElement).openWriter()) {
+            writer.write(source(packageName, accessorSimpleName, entityName, propertyNames, getExpressions, setStatements, columnNames,
+                    columnNames.isEmpty() ? null : mapRowStatements));
+        } catch (IOException e) {
+            this.error(entityElement, "生成[" + accessorName + "]失败:" + e.getMessage());
+        }
+    }
+
+    /**
+     * mapRow中读取并写入一个属性,列不在结果集中时跳过,null值不写入,基本类型保持默认值
+     */
+    private static String mapRowStatement(String reader, String setTemplate, int index) {
+        String v = "v" + index;
+        StringBuilder sb = new StringBuilder();
+        sb.append("        c = columnIndexes[").append(index).append("];\n");
+        sb.append("        if (c != 0) {\n");
+        sb.append("            ").append(readerType(reader)).append(" ").append(v).append(" = ").append(String.format(reader, "c")).append(";\n");
+        if (PRIMITIVE_READERS.contains(reader)) {
+            sb.append("            if (!rs.wasNull()) {\n");
+        } else {
+            sb.append("            if (").append(v).append(" != null) {\n");
+        }
+        sb.append("                ").append(String.format(setTemplate, v)).append("\n");
+        sb.append("            }\n");
+        sb.append("        }\n");
+        return sb.toString();
+    }
+
+    //ResultSet.getXxx的返回类型
+    private static String readerType(String reader) {
+        String type = reader.substring("rs.get".length(), reader.indexOf('('));
+        switch (type) {
+            case "String":
+                return "String";
+            case "Timestamp":
+                return "java.sql.Timestamp";
+            case "BigDecimal":
+                return "java.math.BigDecimal";
+            case "Date":
+                return "java.sql.Date";
+            case "Time":
+                return "java.sql.Time";
+            case "Bytes":
+                return "byte[]";
+            default:
+                return type.toLowerCase();
+        }
+    }
+
+    /**
+     * @param mapRowStatements - 为null时mapRow不可用,hasRowMapper返回false
+     */
+    private static String source(String packageName, String accessorSimpleName, String entityName, List<String> propertyNames,
+                                 List<String> getExpressions, List<String> setStatements, Map<String, String> columnNames,
+                                 Map<Integer, String> mapRowStatements) {
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        //生成的代码只使用ASCII字符,不依赖编译环境的默认编码
+        sb.append("/**\n * Generated by z-orm-processor from ").append(entityName).append(", do not edit\n */\n");
+        sb.append("public final class ").append(accessorSimpleName).append(" implements com.zhouyutong.zorm.entity.EntityAccessor {\n");
+        sb.append("    private static final java.util.List<String> PROPERTY_NAMES = java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+        for (int i = 0; i < propertyNames.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(literal(propertyNames.get(i)));
+        }
+        sb.append("));\n");
+        sb.append("    private static final java.util.Map<String, String> COLUMN_NAMES;\n\n");
+        sb.append("    static {\n");
+        sb.append("        java.util.Map<String, String> columnNames = new java.util.LinkedHashMap<>();\n");
+        for (Map.Entry<String, String> entry : columnNames.entrySet()) {
+            sb.append("        columnNames.put(").append(literal(entry.getKey())).append(", ").append(literal(entry.getValue())).append(");\n");
+        }
+        sb.append("        COLUMN_NAMES = java.util.Collections.unmodifiableMap(columnNames);\n");
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n    public java.util.List<String> getPropertyNames() {\n        return PROPERTY_NAMES;\n    }\n\n");
+        sb.append("    @Override\n    public java.util.Map<String, String> getColumnNames() {\n        return COLUMN_NAMES;\n    }\n\n");
+        sb.append("    @Override\n    public Object newInstance() {\n        return new ").append(entityName).append("();\n    }\n\n");
+
+        sb.append("    @Override\n    public Object get(Object entity, int index) {\n");
+        sb.append("        ").append(entityName).append(" e = (").append(entityName).append(") entity;\n");
+        sb.append("        switch (index) {\n");
+        for (int i = 0; i < getExpressions.size(); i++) {
+            sb.append("            case ").append(i).append(":\n                return ").append(getExpressions.get(i)).append(";\n");
+        }
+        sb.append("            default:\n                throw new IndexOutOfBoundsException(String.valueOf(index));\n        }\n    }\n\n");
+
+        sb.append("    @Override\n    public void set(Object entity, int index, Object value) {\n");
+        sb.append("        ").append(entityName).append(" e = (").append(entityName).append(") entity;\n");
+        sb.append("        switch (index) {\n");
+        for (int i = 0; i < setStatements.size(); i++) {
+            sb.append("            case ").append(i).append(":\n                ").append(setStatements.get(i)).append("\n");
+        }
+        sb.append("            default:\n                throw new IndexOutOfBoundsException(String.valueOf(index));\n        }\n    }\n\n");
+
+        sb.append("    @Override\n    public Object[] getValues(Object entity) {\n");
+        sb.append("        ").append(entityName).append(" e = (").append(entityName).append(") entity;\n");
+        sb.append("        return new Object[]{");
+        for (int i = 0; i < getExpressions.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(getExpressions.get(i));
+        }
+        sb.append("};\n    }\n\n");
+
+        sb.append("    @Override\n    public boolean hasRowMapper() {\n        return ").append(mapRowStatements != null).append(";\n    }\n\n");
+        sb.append("    @Override\n    public Object mapRow(java.sql.ResultSet rs, int[] columnIndexes) throws java.sql.SQLException {\n");
+        if (mapRowStatements == null) {
+            sb.append("        throw new UnsupportedOperationException();\n    }\n");
+        } else {
+            sb.append("        ").append(entityName).append(" e = new ").append(entityName).append("();\n");
+            sb.append("        int c;\n");
+            for (String statement : mapRowStatements.values()) {
+                sb.append(statement);
+            }
+            sb.append("        return e;\n    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * 与JdbcHelper.getColumnName一致
+     */
+    private static String columnName(VariableElement field) {
+        String name = field.getSimpleName().toString();
+        Object value = annotationValue(field, COLUMN, "value");
+        if (value == null || value.toString().trim().isEmpty()) {
+            return StrUtils.underscoreName(name);
+        }
+        return value.toString().toLowerCase();
+    }
+
+    /**
+     * 顶层或静态嵌套、非private、没有泛型参数的class
+     */
+    private boolean isAccessible(TypeElement typeElement) {
+        Element element = typeElement;
+        while (element instanceof TypeElement) {
+            TypeElement type = (TypeElement) element;
+            if (type.getModifiers().contains(Modifier.PRIVATE) || !type.getTypeParameters().isEmpty()) {
+                return false;
+            }
+            if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            element = type.getEnclosingElement();
+        }
+        return !typeElement.getModifiers().contains(Modifier.ABSTRACT);
+    }
+
+    private boolean hasNoArgConstructor(TypeElement typeElement) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(typeElement.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return hasAnnotation(typeElement, "lombok.NoArgsConstructor");
+    }
+
+    /**
+     * 嵌套class的类名为外部类名_内部类名,与运行期binary name中的$替换为_一致
+     */
+    private static String binarySimpleName(TypeElement typeElement) {
+        String name = typeElement.getSimpleName().toString();
+        Element enclosing = typeElement.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            name = enclosing.getSimpleName() + "_" + name;
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name;
+    }
+
+    private static String castType(Types types, TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return types.boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return types.erasure(type).toString();
+    }
+
+    /**
+     * 与lombok的命名一致,boolean属性isXxx的getter为isXxx,setter为setXxx
+     */
+    private static String getterName(String name, boolean primitiveBoolean) {
+        if (primitiveBoolean) {
+            return isPrefixed(name) ? name : "is" + capitalize(name);
+        }
+        return "get" + capitalize(name);
+    }
+
+    private static String setterName(String name, boolean primitiveBoolean) {
+        if (primitiveBoolean && isPrefixed(name)) {
+            return "set" + name.substring(2);
+        }
+        return "set" + capitalize(name);
+    }
+
+    private static boolean isPrefixed(String name) {
+        return name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2));
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String literal(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String simpleName(String annotationName) {
+        return annotationName.substring(annotationName.lastIndexOf('.') + 1);
+    }
+
+    private static boolean hasLombok(TypeElement typeElement, VariableElement field, List<String> lombokAnnotations) {
+        for (String lombokAnnotation : lombokAnnotations) {
+            if (hasAnnotation(typeElement, lombokAnnotation) || hasAnnotation(field, lombokAnnotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationName) {
+        return findAnnotation(element, annotationName) != null;
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotationMirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return annotationMirror;
+            }
+        }
+        return null;
+    }
+
+    private static Object annotationValue(Element element, String annotationName, String attributeName) {
+        AnnotationMirror annotationMirror = findAnnotation(element, annotationName);
+        if (annotationMirror == null) {
+            return null;
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotationMirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(attributeName)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private boolean error(Element element, String message) {
+        Messager messager = processingEnv.getMessager();
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+}
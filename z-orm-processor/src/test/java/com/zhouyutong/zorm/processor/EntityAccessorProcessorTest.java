@@ -0,0 +1,181 @@
+package com.zhouyutong.zorm.processor;
+
+import com.zhouyutong.zorm.entity.EntityAccessor;
+import com.zhouyutong.zorm.entity.EntityMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用javax.tools编译示例entity,执行EntityAccessorProcessor后加载生成的accessor
+ * jdbc注解在z-orm-jdbc中,processor只按名称读取注解,这里用同名注解代替
+ */
+public class EntityAccessorProcessorTest {
+    private static final String TABLE_SOURCE = "package com.zhouyutong.zorm.dao.jdbc.annotation;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "public @interface Table { String value() default \"\"; }\n";
+    private static final String COLUMN_SOURCE = "package com.zhouyutong.zorm.dao.jdbc.annotation;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "public @interface Column { String value() default \"\"; }\n";
+    private static final String USER_SOURCE = "package sample;\n"
+            + "import com.zhouyutong.zorm.annotation.PK;\n"
+            + "import com.zhouyutong.zorm.dao.jdbc.annotation.Column;\n"
+            + "import com.zhouyutong.zorm.dao.jdbc.annotation.Table;\n"
+            + "@Table(\"t_user\")\n"
+            + "public class User implements com.zhouyutong.zorm.entity.IdEntity {\n"
+            + "    @PK @Column Long id;\n"
+            + "    @Column private String userName;\n"
+            + "    @Column(\"AGE_COL\") private int age;\n"
+            + "    public String getUserName() { return userName; }\n"
+            + "    public void setUserName(String userName) { this.userName = userName; }\n"
+            + "    public int getAge() { return age; }\n"
+            + "    public void setAge(int age) { this.age = age; }\n"
+            + "}\n";
+
+    private Path outputDir;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDir = Files.createTempDirectory("z-orm-processor");
+        diagnostics = new DiagnosticCollector<>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(outputDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private boolean compile(String... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<JavaFileObject> units = new ArrayList<>();
+        for (String source : sources) {
+            String className = source.substring("package ".length(), source.indexOf(';')) + "." + source.replaceAll("(?s).*public (?:class|@interface) (\\w+).*", "$1");
+            units.add(new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            });
+        }
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(outputDir.toFile()));
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(outputDir.toFile()));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-classpath", System.getProperty("java.class.path")), null, units);
+            task.setProcessors(Collections.singletonList(new EntityAccessorProcessor()));
+            return task.call();
+        }
+    }
+
+    private boolean hasDiagnostic(Diagnostic.Kind kind, String message) {
+        return diagnostics.getDiagnostics().stream()
+                .anyMatch(d -> d.getKind() == kind && d.getMessage(null).contains(message));
+    }
+
+    @Test
+    public void generatesAccessorUsedByEntityMetadata() throws Exception {
+        assertTrue(diagnostics.getDiagnostics().toString(), this.compile(TABLE_SOURCE, COLUMN_SOURCE, USER_SOURCE));
+        assertTrue(Files.exists(outputDir.resolve("sample/User" + EntityAccessor.CLASS_SUFFIX + ".java")));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{outputDir.toUri().toURL()}, this.getClass().getClassLoader())) {
+            Class<?> userClass = classLoader.loadClass("sample.User");
+            EntityMetadata entityMetadata = EntityMetadata.of(userClass);
+            assertTrue(entityMetadata.isGenerated());
+            EntityAccessor accessor = entityMetadata.getAccessor();
+
+            assertEquals(Arrays.asList("id", "userName", "age"), accessor.getPropertyNames());
+            Map<String, String> columnNames = new HashMap<>();
+            columnNames.put("id", "id");
+            columnNames.put("userName", "user_name");
+            columnNames.put("age", "age_col");
+            assertEquals(columnNames, accessor.getColumnNames());
+
+            Object user = entityMetadata.newInstance();
+            entityMetadata.getRequiredProperty("id").set(user, 1L);
+            entityMetadata.getRequiredProperty("userName").set(user, "tom");
+            entityMetadata.getRequiredProperty("age").set(user, 18);
+            assertArrayEquals(new Object[]{1L, "tom", 18}, accessor.getValues(user));
+            assertEquals("tom", userClass.getMethod("getUserName").invoke(user));
+            assertEquals(1L, entityMetadata.getPk().get(user));
+
+            assertTrue(accessor.hasRowMapper());
+            //列1是id,列2是age_col(值为null),结果集中没有user_name
+            Object mapped = accessor.mapRow(resultSet(2L, null), new int[]{1, 0, 2});
+            assertArrayEquals(new Object[]{2L, null, 0}, accessor.getValues(mapped));
+        }
+    }
+
+    @Test
+    public void missingColumnAnnotationIsCompileError() throws Exception {
+        String source = USER_SOURCE.replace("@Column private String userName", "private String userName");
+
+        assertFalse(this.compile(TABLE_SOURCE, COLUMN_SOURCE, source));
+        assertTrue(this.hasDiagnostic(Diagnostic.Kind.ERROR, "[userName]必须有Column注解"));
+    }
+
+    @Test
+    public void privateFieldWithoutGetterSkipsGeneration() throws Exception {
+        String source = USER_SOURCE.replace("    public String getUserName() { return userName; }\n", "");
+
+        assertTrue(diagnostics.getDiagnostics().toString(), this.compile(TABLE_SOURCE, COLUMN_SOURCE, source));
+        assertTrue(this.hasDiagnostic(Diagnostic.Kind.NOTE, "属性[userName]是private且没有getter"));
+        assertFalse(Files.exists(outputDir.resolve("sample/User" + EntityAccessor.CLASS_SUFFIX + ".java")));
+    }
+
+    /**
+     * 按列下标返回values中的值,基本类型读取时null返回0并通过wasNull报告
+     */
+    private static ResultSet resultSet(Object... values) {
+        Object[] last = new Object[1];
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "wasNull":
+                    return last[0] == null;
+                case "getLong":
+                case "getInt":
+                case "getString":
+                    last[0] = values[(Integer) args[0] - 1];
+                    if (last[0] == null && method.getReturnType().isPrimitive()) {
+                        return method.getReturnType() == long.class ? (Object) 0L : (Object) 0;
+                    }
+                    return last[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}